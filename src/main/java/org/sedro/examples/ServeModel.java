@@ -0,0 +1,139 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package org.sedro.examples;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import vegml.VegML;
+import vegml.Data.VDataSets;
+import vegml.Data.VFileUtil;
+import vegml.serve.VegServeClient;
+import vegml.serve.VegServeStats;
+import vegml.serve.VegServer;
+
+/**
+ * Serve a saved model over HTTP and optionally put load on it from a loopback client
+ * - load model, make it solid
+ * - start the server: POST /predict, GET /stats
+ * - load=clients:requests:sentences runs the load generator with the test split of the dataset
+ * 
+ * curl --data-binary $'the dog ran\nit is here' http://127.0.0.1:8090/predict
+ */
+public class ServeModel {
+	
+	////////////////////////////////////////////////////
+	// MAIN
+	public static void main(String [] args) throws IOException {
+		VegML.showCopywrite();
+		
+		/////////////////////////////////////////////////////////////////////
+		// Configuration
+		String file = "../models/text-id-w-rn-rdef-5w.veg";
+		String dtag = null, dptag = null;
+		int port = 8090;
+		boolean solid = true;
+		int clients = 0, requests = 1000, perRequest = 4;
+		int batchMax = 64;
+		String corpusDir = "../corpus";
+		String dataset = "WSJ";
+		
+		if (args != null && args.length > 0) {    		
+			for (String a:args) {
+				String [] ap = a.split("=");	
+				if (a.startsWith("file=")) {
+					file = ap[1];	
+				} else if (a.startsWith("dtag=")) {
+					dtag = ap[1];
+				} else if (a.startsWith("dptag=")) {
+					dptag = ap[1];	
+				} else if (a.startsWith("port=")) {
+					port = Integer.parseInt(ap[1]);
+				} else if (a.startsWith("solid=")) {
+					if (ap[1].equalsIgnoreCase("false")) solid = false;
+				} else if (a.startsWith("batch=")) {
+					batchMax = Integer.parseInt(ap[1]);
+				} else if (a.startsWith("load=")) {
+					// clients:requests:sentences
+					String sq [] = ap[1].split(":");
+					clients = Integer.parseInt(sq[0]);
+					if (sq.length > 1) requests = Integer.parseInt(sq[1]);
+					if (sq.length > 2) perRequest = Integer.parseInt(sq[2]);
+				} else if (a.startsWith("dataset=")) {
+					String sq [] = ap[1].split(":");
+					if (sq.length == 2) corpusDir = sq[1];
+					dataset = sq[0];
+				}
+			}
+		} 
+		
+		VegML vML = VegML.load(file);
+		if (vML == null) {
+			System.err.println("MODEL["+file+"] does not exist; generate via GenPosViaText first");
+			return;
+		}
+		if (dtag == null) dtag = vML.getCfgDefaultDTag();
+		if (dptag == null) dptag = vML.getCfgDefaultDPTag();
+		if (solid) vML.makeSolid();
+		
+		/////////////////////
+		// start serving
+		VegServer server = new VegServer(vML, dtag, dptag);
+		server.setCfgPort(port);
+		server.setCfgBatchMax(batchMax);
+		server.start();
+		System.out.println("SERVING["+dtag+"/"+dptag+"] http://"+server.getCfgHost()+":"+server.getCfgPort()+"/predict");
+		if (clients < 1) return; // runs till killed
+		
+		/////////////////////
+		// load from the test data
+		VDataSets dss = VFileUtil.loadDataSet(dataset, corpusDir, 0, 15);
+		if (dss == null) {
+			System.out.println("ERROR DATASET["+dataset+"] not found at: " + corpusDir);
+			server.stop();
+			return;
+		}
+		VDataSets testDs = dss.getTestDataSets();
+		List<List<String>> corpus = new ArrayList<>();
+		for (int i=0;i<testDs.size();i++) corpus.add(testDs.get(i).getDataLS());
+		
+		VegServeClient client = new VegServeClient(server.getCfgHost(), server.getCfgPort());
+		client.runLoad(clients, Math.min(requests, 100), perRequest, corpus); // warm up
+		server.getStats().reset();
+		VegServeStats cs = client.runLoad(clients, requests, perRequest, corpus);
+		System.out.println("CLIENT " + cs);
+		System.out.println("SERVER " + client.getStats());
+		server.stop();
+	}
+}
@@ -33,8 +33,11 @@
 package org.sedro.examples;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -475,10 +478,15 @@ public class VegCmdLine {
     		} else {
 	    		// rule formatter
 	    		VRuleFormatter rfmt = new VRuleFormatter();
-	    		List<String> rules = null;
+	    		int rules = -1;
 	    		if (wit.dimensionTag != null && wit.dataPlaneTag != null) {
-	    			// generate rules
-	    			rules = VegRules.generateAll(vML, wit.dimensionTag, wit.dataPlaneTag, 0, wit.maxDepth, null, rfmt, null, true);
+	    			// generate rules: streamed to the file
+	    			try (Writer w = new BufferedWriter(new FileWriter(wit.saveSymbolicFile))) {
+	    				rules = VegRules.generateAll(vML, wit.dimensionTag, wit.dataPlaneTag, 0, wit.maxDepth, null, rfmt, null, 
+	    							VegRules.makeTextSink(w), false, true, true);
+	    			} catch (IOException e) {
+	    				System.err.println("ERROR >> save file[" + wit.saveSymbolicFile +"] " + e.getMessage());
+	    			}
 	    		} else if (wit.dimensionTag != null) {
 	    			// For all dataplanes
 	    			List<String> dpl = vML.getDataPlaneTagList(wit.dimensionTag);
@@ -501,9 +509,8 @@ public class VegCmdLine {
 	    			// FIXME
 	    		}
 	    			
-	    		if (rules != null) {
-	    			System.out.println("##Veg generated Rules[" + rules.size()+"] => ["+wit.saveSymbolicFile+"]");
-		    	    VFileUtil.writeListToFile(rules, wit.saveSymbolicFile, false);
+	    		if (rules >= 0) {
+	    			System.out.println("##Veg generated Rules[" + rules+"] => ["+wit.saveSymbolicFile+"]");
 	    		} else {
 	    			System.out.println("##Veg generated Rules[NONE]");
 	    		}
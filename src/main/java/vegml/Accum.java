@@ -48,12 +48,13 @@ import vegml.ValProb;
 public abstract class Accum implements java.io.Serializable {
 	private static final long serialVersionUID = 7818193352816842606L;
 	
-	private Accum next;
 	protected long vectorCode;
 	protected long vsid;
 	protected int total;	// could remove total and sum
 
-	public Accum() {}
+	public Accum() {
+		if (VegMetrics.enabled) VegMetrics.ACCUM_ALLOC.inc();
+	}
 
 	/**
 	 * Get the ID for the saved vector set
@@ -87,13 +88,6 @@ public abstract class Accum implements java.io.Serializable {
 		return this.vsid;
 	}
 	
-	Accum getNext() {
-		return next;
-	}
-	void setNext(Accum next) {
-		this.next = next;
-	}
-	
 	/**
 	 * get the Vector ID
 	 * @return
@@ -330,6 +324,26 @@ public abstract class Accum implements java.io.Serializable {
 	 */
 	public abstract List<ValProb> getValPs(List<ValProb> vpList);
 	
+	/**
+	 * get the values, counts and probabilities into arrays; not sorted; same order as getValPs()
+	 * arrays must hold getValueCount() values; accumulators with direct storage don't allocate
+	 * @param values array for the values
+	 * @param counts array for the counts
+	 * @param probs array for the probabilities
+	 * @return count of values set
+	 */
+	int getValPs(long [] values, int [] counts, double [] probs) {
+		List<ValProb> vl = getValPs(null);
+		if (vl == null) return 0;
+		for (int i=0;i<vl.size();i++) {
+			ValProb vp = vl.get(i);
+			values[i] = vp.value;
+			counts[i] = vp.count;
+			probs[i] = vp.probability;
+		}
+		return vl.size();
+	}
+	
 	
 	/**
 	 * get the list of values and probabilities sorted
@@ -598,6 +612,26 @@ public abstract class Accum implements java.io.Serializable {
 	}
 	
 	abstract void mergeInto(Accum intoAc);
+	
+	//
+	// true if addCount() and adjustTotalInc() lock this Accum, so it can be updated without the 
+	// numberSet lock; its state set before put() is then published by its monitor
+	//
+	boolean isConcurrent() {
+		return false;
+	}
+	
+	//
+	// merge a training shard's Accum into this one: the value counts and the total
+	// the total is added directly as filtered training bumps it with no value count
+	//
+	void mergeShard(Accum ac) {
+		synchronized (this) {
+		long tot = (long)total + (long)ac.total;
+		ac.mergeInto(this);
+		total = (int)Math.min(tot, Integer.MAX_VALUE);
+		}
+	}
 
 	/**
 	 * Remove a value from this Accum
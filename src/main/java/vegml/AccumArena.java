@@ -0,0 +1,497 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+package vegml;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import vegml.VegML.AccumType;
+import vegml.ValProb;
+
+
+/**
+ * Accumulator for Integer values (4 bytes) stored in the numberSet's MLAccumArena
+ * 
+ * This is a thin view: the value/count/probability-weight triples are in the arena's 
+ * columns at offset, so there are no per accumulator arrays. Same behavior as AccumInt
+ * 
+ * Until it is put in a numberSet it holds its values in a private arena 
+ */
+class AccumArena extends Accum {
+	private static final long serialVersionUID = -2247106615094533620L;
+	
+	transient MLAccumArena arena = null;	// re-linked by the numberSet on load
+	int offset = -1;
+	int len = 0;
+	int capacity = 0;
+
+	public AccumArena() {
+	}
+	AccumArena(MLAccumArena arena) {
+		this.arena = arena;
+	}
+	
+	@Override
+	AccumType getAccumulatorType() {
+		return AccumType.Arena;
+	}
+	
+	//
+	// move this accumulators values into another arena
+	//
+	void moveTo(MLAccumArena narena) {
+		synchronized (this) {
+		if (narena == arena) return;
+		if (len == 0 || arena == null) {
+			arena = narena;
+			offset = -1;
+			capacity = 0;
+			return;
+		}
+		int noff = narena.alloc(len);
+		System.arraycopy(arena.val, offset, narena.val, noff, len);
+		System.arraycopy(arena.cnt, offset, narena.cnt, noff, len);
+		System.arraycopy(arena.probw, offset, narena.probw, noff, len);
+		arena.free(offset, capacity);
+		arena = narena;
+		offset = noff;
+		capacity = len;
+		}
+	}
+	
+	@Override
+	public double getProbability(long val) {
+		if (total == 0 || len == 0) return 0;
+		return getProbabilityIdx(findValue(val));
+	}
+	@Override
+	public ValProb getValProb(long val) {
+		if (total == 0 || len == 0) return null;
+		int i = findValue(val);
+		if (i < 0) return null;
+	
+		ValProb vp = new ValProb();
+		vp.count = arena.cnt[i];
+		vp.probability = getProbabilityIdx(i);
+		vp.counter = 1;
+		vp.value = val;
+		return vp;
+	}
+	
+	// idx is arena position
+	private double getProbabilityIdx(int idx) {
+		if (idx < 0) return 0;
+		if (arena.probw[idx] > 0) {
+			return ((double) arena.probw[idx]) / (double)Integer.MAX_VALUE;
+		}
+		return ((double) arena.cnt[idx]) / (double)total;
+	}
+
+	//
+	// modify the probability of a value by weighting it 
+	//
+	@Override
+	public boolean weightProbability(long value, double weight) {
+		int idx = findValue(value);
+		if (idx < 0) return false;
+		double cp = getProbabilityIdx(idx);
+		// current times weight 
+		long pw = Math.round((cp*weight) * (double)Integer.MAX_VALUE);
+		// upper limit == 1
+		if (pw < 0 || pw > Integer.MAX_VALUE) pw = Integer.MAX_VALUE;
+		arena.probw[idx] = (int)pw;
+		return true;
+	}
+	// how balanced is this
+	@Override
+	public double getBalance(int dataWidth) {
+		if (total == 0 || len == 0) return 0;
+		int maxc = 0, minc = 0;
+		for (int i=offset;i<offset+len;i++) {
+			int cc = arena.cnt[i];
+			if (cc > maxc) maxc = cc;		
+			if (cc < minc || minc == 0) minc = cc;		
+		}
+		// compare most to least
+		return (double)minc/(double)maxc;
+	}
+
+	// get most probable
+	@Override
+	public boolean isMostProbableValue(long val) {
+		if (total == 0 || len == 0) return false;
+		if (val == getFirstMostProbablityValue()) return true;
+		return false;
+	}
+	// get most probable
+	@Override
+	public boolean isMostProbableValues(long val) {
+		if (total == 0 || len == 0) return false;
+		double p = getFirstMostProbablity();
+		if (getProbability(val) == p) return true;
+		return false;
+	}
+	// get most probable
+	@Override
+	public ValProb getFirstMostProbable() {
+		if (total == 0 || len == 0) return null;
+		int idx = getFirstMostProbablityIdx();
+		ValProb valProb = new ValProb(); 
+		valProb.value = arena.val[idx];
+		valProb.probability = getProbabilityIdx(idx);
+		valProb.count = arena.cnt[idx];
+		return valProb;
+	}
+	@Override
+	public double getFirstMostProbablity() {
+		return getProbabilityIdx(getFirstMostProbablityIdx());
+	}
+	@Override
+	public long getFirstMostProbablityValue() {
+		if (total == 0 || len == 0) return 0;
+		return arena.val[getFirstMostProbablityIdx()];
+	}
+	private int getFirstMostProbablityIdx() {
+		if (total == 0 || len == 0) return -1;
+		double p = 0;		
+		int idx = -1;
+		int val = 0;
+		for (int i=offset;i<offset+len;i++) {
+			double cp = getProbabilityIdx(i);
+			if (cp > p || (cp == p && arena.val[i] < val)) {
+				p = cp;	
+				idx = i;
+				val = arena.val[i];
+			} 		
+		}
+		return idx;
+	}
+	@Override
+	public int getMaxCount() {
+		if (total == 0 || len == 0) return 0;
+		double p = 0;	
+		int val = 0;
+		for (int i=offset;i<offset+len;i++) {
+			double cp = getProbabilityIdx(i);
+			if (cp > p) {
+				p = cp;	
+				val = arena.cnt[i];
+			}
+		}
+		return val;
+	}
+	
+	// get the list of values and probabilities
+	@Override
+	public List<ValProb> getValPs(List<ValProb> vpList) {
+		if (total == 0 || len == 0) return null;
+		if (vpList == null) vpList = new ArrayList<>();
+		
+		for (int i=offset;i<offset+len;i++) {
+			ValProb vp = new ValProb(); 
+			vp.probability = getProbabilityIdx(i);
+			vp.value = arena.val[i];
+			vp.count = arena.cnt[i];
+			vpList.add(vp);		
+		}
+		return vpList;
+	}
+
+	@Override
+	int getValPs(long [] values, int [] counts, double [] probs) {
+		if (total == 0 || len == 0) return 0;
+		for (int i=0;i<len;i++) {
+			values[i] = arena.val[offset+i];
+			counts[i] = arena.cnt[offset+i];
+			probs[i] = getProbabilityIdx(offset+i);
+		}
+		return len;
+	}
+
+	@Override
+	public int getValueCount() {
+		if (total == 0) return 0;
+		return len;
+	}
+	
+	@Override
+	int setCount(long val, int count, int crtCount) {	
+		synchronized (this) {
+		int tot = this.total;
+		int v = findValue(val);
+		if (v >= 0) arena.cnt[v] = count;
+		else addCount(val, count);
+		// don't change total
+		this.total = tot;
+		return count;		
+		}
+	}
+	
+	@Override
+	int addCount(long val, int count) {	
+		synchronized (this) {
+		if (total != Integer.MAX_VALUE) total += count; // HACK to stop things here
+		
+		int v = findValue(val);
+		if (v >= 0) {
+			if (arena.cnt[v] == Integer.MAX_VALUE) return arena.cnt[v];
+			arena.cnt[v] = arena.cnt[v]+count;
+			return arena.cnt[v];			
+		}
+		// new value: extend segment
+		if (arena == null) arena = new MLAccumArena(1);
+		if (len == capacity) {
+			int ncap = (capacity == 0) ? 1 : capacity*2;
+			if (offset < 0) offset = arena.alloc(ncap);
+			else offset = arena.grow(offset, len, capacity, ncap);
+			capacity = ncap;
+		}
+		arena.val[offset+len] = (int)val;
+		arena.cnt[offset+len] = count;
+		arena.probw[offset+len] = 0;
+		len++;
+		return count;
+		}
+	}
+
+	@Override
+	public int getCount(long val) {
+		synchronized (this) {
+		if (total == 0 || len == 0) return 0;
+		int v = findValue(val);
+		if (v < 0) return 0;
+		return arena.cnt[v];
+		}
+	}
+	@Override
+	public boolean hasValue(long val) {
+		if (total == 0 || len == 0) return false;
+		return findValue(val) >= 0;
+	}
+
+	@Override
+	int reduceCount(long val, int count) {
+		synchronized (this) {
+		if (total == 0 || len == 0) return 0;
+		int v = findValue(val);
+		if (v < 0) return 0;
+		int cnt = arena.cnt[v];
+		if (cnt <= count) return remove(val);
+		arena.cnt[v] -= count;
+		total -= count;
+		return cnt;
+		}
+	}
+	// remove a value
+	@Override
+	int remove(long val) {
+		synchronized (this) {
+		if (total == 0 || len == 0) return 0;
+		int v = findValue(val);
+		if (v < 0) return 0;
+			
+		int cnt = arena.cnt[v];
+		if (len == 1) {
+			// empty
+			release();
+			total = 0;
+		} else {
+			// shift down in segment
+			int end = offset+len-1;
+			System.arraycopy(arena.val, v+1, arena.val, v, end-v);
+			System.arraycopy(arena.cnt, v+1, arena.cnt, v, end-v);
+			System.arraycopy(arena.probw, v+1, arena.probw, v, end-v);
+			len--;
+			total -= cnt;
+		}
+		return cnt;
+		}
+	}
+	
+	// give the segment back
+	private void release() {
+		if (offset >= 0 && arena != null) arena.free(offset, capacity);
+		offset = -1;
+		len = capacity = 0;
+	}
+	
+	@Override
+	void clear() {
+		synchronized (this) {
+		if (total == 0) return;
+		release();
+		total = 0;
+		}
+	}
+	
+	@Override
+	public void getValueSet(HashMap<Long, Integer> vm) { 
+		synchronized (this) {
+		if (total == 0 || len == 0) return;
+		for (int i=offset;i<offset+len;i++) {
+			Integer cnt = vm.get((long)arena.val[i]);
+			if (cnt == null) vm.put((long)arena.val[i], 1);
+			else vm.put((long)arena.val[i], cnt+1);
+		}
+		}
+	}
+
+	// merge this into intoAc
+	@Override
+	void mergeInto(Accum intoAc) {
+		synchronized (this) {
+		if (total == 0 || len == 0 || intoAc == null) return;
+		for (int i=offset;i<offset+len;i++) {
+			intoAc.addCount(arena.val[i], arena.cnt[i]);
+			if (arena.probw[i] > 0 && intoAc instanceof AccumArena) {
+				AccumArena aip = (AccumArena)intoAc;
+				aip.arena.probw[aip.findValue(arena.val[i])] = arena.probw[i];
+			}
+		}
+		}
+	}
+	@Override
+	public Accum copy() {
+		synchronized (this) {
+		// copy goes to a private arena, the numberSet will move it on put
+		AccumArena nc = new AccumArena(new MLAccumArena(Math.max(len, 1)));
+		nc.vsid = this.vsid;
+		nc.vectorCode = this.vectorCode;
+		nc.total = this.total;
+		if (len > 0) {
+			nc.offset = nc.arena.alloc(len);
+			System.arraycopy(arena.val, offset, nc.arena.val, nc.offset, len);
+			System.arraycopy(arena.cnt, offset, nc.arena.cnt, nc.offset, len);
+			System.arraycopy(arena.probw, offset, nc.arena.probw, nc.offset, len);
+			nc.len = nc.capacity = len;
+		}
+		return nc;
+		}
+	}
+	//
+	// copy into an arena copied from this one's; same segment
+	//
+	AccumArena copyTo(MLAccumArena narena) {
+		AccumArena nc = new AccumArena(narena);
+		nc.vsid = this.vsid;
+		nc.vectorCode = this.vectorCode;
+		nc.total = this.total;
+		nc.offset = offset;
+		nc.len = len;
+		nc.capacity = capacity;
+		return nc;
+	}
+	@Override
+	public void copyFrom(Accum from) {
+		synchronized (this) {
+		this.vsid = from.vsid;
+		this.vectorCode = from.vectorCode;
+		from.mergeInto(this);
+		}
+	}
+	
+	// compare probabilities
+	@Override
+	public boolean compare(Accum ac) {
+		if (ac == null) return false;
+		if (total != ac.getTotal()) return false;
+		if (ac.getValueCount() != this.getValueCount()) return false;
+		// order is not known
+		for (int i=offset;i<offset+len;i++) {
+			double prob = this.getProbability(arena.val[i]);
+			double acprob = ac.getProbability(arena.val[i]);
+			if (acprob != prob) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public int diff(Accum ac) {
+		int cnt = super.diff(ac);
+		for (int i=offset;i<offset+len;i++) {
+			int c = ac.getCount(arena.val[i]);
+			if (c != arena.cnt[i]) {
+				cnt++;
+				System.out.println("    DIFF[ac_ar]["+this.getVectorCode()+"] valCount["+arena.val[i]+"]=["+c+"]["+arena.cnt[i]+"]");		
+			}
+		}
+		return cnt;
+	}
+	
+	// lock this accum to this value
+	@Override
+	void lock(long value) {
+		synchronized (this) {
+		release();
+		int tot = total;
+		addCount(value, tot);
+		total = tot;
+		}
+	}
+
+	@Override
+	public int getValueTotal() {
+		synchronized (this) {
+		if (total == 0 || len == 0) return -1;
+		int tot = 0;
+		for (int i=offset;i<offset+len;i++) {
+			tot += arena.cnt[i];
+		}
+		return tot;
+		}
+	}
+	
+	// find a value: returns arena position
+	private int findValue(long val) {
+		synchronized (this) {
+		if (total == 0 || len == 0) return -1;
+		for (int i=offset;i<offset+len;i++) {
+			if (arena.val[i] == val) return i;
+		}
+		return -1;
+		}
+	}
+
+	@Override
+	int addCrtCount(long val, int count) {
+		return 0;
+	}
+
+	@Override
+	public int getCrtCount(long val) {
+		return 0;
+	}
+}
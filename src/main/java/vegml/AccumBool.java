@@ -142,6 +142,25 @@ class AccumBool extends Accum {
 		return vpList;
 	}
 	
+	@Override
+	int getValPs(long [] values, int [] counts, double [] probs) {
+		if (total == 0) return 0;
+		int n = 0;
+		if (cnt1 > 0) {
+			values[n] = val1;
+			counts[n] = cnt1;
+			probs[n] = this.getProbability(val1);
+			n++;
+		}
+		if (cnt2 > 0) {
+			values[n] = val2;
+			counts[n] = cnt2;
+			probs[n] = this.getProbability(val2);
+			n++;
+		}
+		return n;
+	}
+	
 	@Override
 	public int getValueCount() {
 		if (total == 0) return 0;
@@ -204,6 +204,17 @@ class AccumInt extends Accum {
 		return vpList;
 	}
 
+	@Override
+	int getValPs(long [] values, int [] counts, double [] probs) {
+		if (total == 0 || dataM == null) return 0;
+		for (int i=0;i<dataM[VAL].length;i++) {
+			values[i] = dataM[VAL][i];
+			counts[i] = dataM[CNT][i];
+			probs[i] = getProbabilityIdx(i);
+		}
+		return dataM[VAL].length;
+	}
+
 	@Override
 	public int getValueCount() {
 		if (total == 0 || dataM == null) return 0;
@@ -230,6 +241,11 @@ class AccumInt extends Accum {
 		}
 	}
 	
+	@Override
+	boolean isConcurrent() {
+		return true;
+	}
+	
 	@Override
 	int addCount(long val, int count) {	
 		synchronized (this) {
@@ -371,6 +387,7 @@ class AccumInt extends Accum {
 		nc.vectorCode = this.vectorCode;
 		nc.total = this.total;
 	//	nc.locked = this.locked;
+		if (dataM == null) return nc;
 		nc.dataM = new int[DSIZE][dataM[VAL].length];
 		for (int i=0;i<dataM[VAL].length;i++) {	
 			nc.dataM[VAL][i] = this.dataM[VAL][i];
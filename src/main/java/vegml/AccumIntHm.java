@@ -219,6 +219,10 @@ class AccumIntHm extends Accum {
 		}
 	}
 	@Override
+	boolean isConcurrent() {
+		return true;
+	}
+	@Override
 	int addCrtCount(long val, int crtCount) {	
 		return 0;
 	}
@@ -280,11 +284,15 @@ class AccumIntHm extends Accum {
 	}
 	@Override
 	public Accum copy() {
-		Accum nc = new AccumIntHm();
+		synchronized (this) {
+		AccumIntHm nc = new AccumIntHm();
 		nc.vsid = this.vsid;
 		nc.vectorCode = this.vectorCode;
-		mergeInto(nc);
+		nc.total = this.total;
+		nc.crtTotal = this.crtTotal;
+		if (dataProb != null) nc.dataProb = new TIntIntHashMap(dataProb);
 		return nc;
+		}
 	}
 	
 	@Override
@@ -292,12 +292,42 @@ class AccumIntHmCrt extends Accum {
 	        });
 		}
 	}
+	// shard merge: correct counts stay correct counts
+	@Override
+	void mergeShard(Accum ac) {
+		if (!(ac instanceof AccumIntHmCrt)) {
+			super.mergeShard(ac);
+			return;
+		}
+		AccumIntHmCrt xac = (AccumIntHmCrt)ac;
+		synchronized (this) {
+		long tot = (long)total + (long)xac.total;
+		long crt = (long)crtTotal + (long)xac.crtTotal;
+		if (xac.dataProb != null) {
+			xac.dataProb.forEachEntry((k, v) -> {
+				addCount(k, v);
+	            return true;
+	        });
+		}
+		if (xac.dataCrt != null) {
+			xac.dataCrt.forEachEntry((k, v) -> {
+				addCrtCount(k, v);
+	            return true;
+	        });
+		}
+		total = (int)Math.min(tot, Integer.MAX_VALUE);
+		crtTotal = (int)Math.min(crt, Integer.MAX_VALUE);
+		}
+	}
 	@Override
 	public Accum copy() {
-		Accum nc = new AccumIntHmCrt();
+		AccumIntHmCrt nc = new AccumIntHmCrt();
 		nc.vsid = this.vsid;
 		nc.vectorCode = this.vectorCode;
-		mergeInto( nc);
+		nc.total = this.total;
+		nc.crtTotal = this.crtTotal;
+		if (dataProb != null) nc.dataProb = new TIntIntHashMap(dataProb);
+		if (dataCrt != null) nc.dataCrt = new TIntIntHashMap(dataCrt);
 		return nc;
 	}
 	
@@ -269,10 +269,12 @@ class AccumLongHm extends Accum {
 	}
 	@Override
 	public Accum copy() {
-		Accum nc = new AccumLongHm();
+		AccumLongHm nc = new AccumLongHm();
 		nc.vsid = this.vsid;
 		nc.vectorCode = this.vectorCode;
-		mergeInto(nc);
+		nc.total = this.total;
+		nc.crtTotal = this.crtTotal;
+		if (dataProb != null) nc.dataProb = new TLongIntHashMap(dataProb);
 		return nc;
 	}
 	
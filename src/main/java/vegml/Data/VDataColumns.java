@@ -0,0 +1,333 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml.Data;
+
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.RandomAccess;
+
+
+/**
+ * Columnar valueId storage for the datasets in a VDataSets
+ * 
+ * - data: one long [] of data valueIds for all tokens in the corpus, sets are ranges by offset
+ * - values: one int [] per token index into a table of distinct value tuples; the table is CSR
+ *   (tuple offsets and one long [] of valueIds) with one shared Long [] per tuple for callers of getValueVD()
+ * 
+ * Tag values repeat heavily, so a token costs 12 bytes instead of the boxed lists per dataset.
+ * Made by VDataSets.makeColumnar() after genVSets() or mapped from a corpus cache by VDataSetsCache;
+ * each dataset is bound to its range and reads from here until its data is changed
+ */
+public class VDataColumns {
+	private final LongBuffer dataVid;	// data valueId per token; heap or mapped
+	private final int [] setOffset;		// first token of each set; size sets+1
+	private final IntBuffer valueRef;	// value tuple per token, -1 if none; heap or mapped
+	private final int [] tupleOffset;	// CSR offsets into tupleVid; size tuples+1
+	private final long [] tupleVid;		// valueIds for all tuples
+	private final Long [][] tuples;		// shared boxed tuples
+	private final boolean mapped;
+	
+	private VDataColumns(LongBuffer dataVid, int [] setOffset, IntBuffer valueRef, int [] tupleOffset, long [] tupleVid, Long [][] tuples, boolean mapped) {
+		this.dataVid = dataVid;
+		this.setOffset = setOffset;
+		this.valueRef = valueRef;
+		this.tupleOffset = tupleOffset;
+		this.tupleVid = tupleVid;
+		this.tuples = tuples;
+		this.mapped = mapped;
+	}
+	
+	//
+	// make columns from tables read from a cache and bind the datasets
+	//
+	static VDataColumns make(List<VDataSet> dsl, LongBuffer dataVid, int [] setOffset, IntBuffer valueRef, int [] tupleOffset, long [] tupleVid, boolean mapped) {
+		Long [][] tuples = new Long[tupleOffset.length-1][];
+		for (int t=0;t<tuples.length;t++) {
+			Long [] v = new Long[tupleOffset[t+1]-tupleOffset[t]];
+			for (int x=0;x<v.length;x++) v[x] = tupleVid[tupleOffset[t]+x];
+			tuples[t] = v;
+		}
+		VDataColumns cols = new VDataColumns(dataVid, setOffset, valueRef, tupleOffset, tupleVid, tuples, mapped);
+		for (int s=0;s<dsl.size();s++) dsl.get(s).bindColumns(cols, setOffset[s]);
+		return cols;
+	}
+	
+	//
+	// make columns for the datasets; all must have generated valueIds with single data per token
+	// returns null if any can not be stored
+	//
+	static VDataColumns make(List<VDataSet> dsl) {
+		int total = 0;
+		for (VDataSet ds:dsl) {
+			if (!ds.isColumnCapable()) return null;
+			total += ds.size();
+		}
+		
+		long [] dataVid = new long[total];
+		int [] setOffset = new int[dsl.size()+1];
+		int [] valueRef = new int[total];
+		
+		// distinct value tuples
+		HashMap<TupleKey, Integer> tupleMap = new HashMap<>();
+		int [] tOff = new int[64];
+		long [] tVid = new long[64];
+		int tCnt = 0, tLen = 0;
+		
+		int pos = 0;
+		for (int s=0;s<dsl.size();s++) {
+			VDataSet ds = dsl.get(s);
+			setOffset[s] = pos;
+			List<Long> dl = ds.getDataLV();
+			List<Long []> vl = ds.haveValues() ? ds.getValueLVD() : null;
+			for (int i=0;i<ds.size();i++, pos++) {
+				Long d = dl.get(i);
+				dataVid[pos] = (d == null) ? 0 : d;
+				
+				Long [] v = (vl != null && i < vl.size()) ? vl.get(i) : null;
+				if (v == null) {
+					valueRef[pos] = -1;
+					continue;
+				}
+				TupleKey k = new TupleKey(v);
+				Integer t = tupleMap.get(k);
+				if (t == null) {
+					t = tCnt;
+					tupleMap.put(k, t);
+					if (tCnt+2 > tOff.length) tOff = Arrays.copyOf(tOff, tOff.length*2);
+					while (tLen+v.length > tVid.length) tVid = Arrays.copyOf(tVid, tVid.length*2);
+					tOff[tCnt] = tLen;
+					for (int x=0;x<v.length;x++) tVid[tLen++] = k.v[x];
+					tCnt++;
+					tOff[tCnt] = tLen;
+				}
+				valueRef[pos] = t;
+			}
+		}
+		setOffset[dsl.size()] = pos;
+		
+		int [] tupleOffset = Arrays.copyOf(tOff, tCnt+1);
+		long [] tupleVid = Arrays.copyOf(tVid, tLen);
+		Long [][] tuples = new Long[tCnt][];
+		for (TupleKey k:tupleMap.keySet()) {
+			tuples[tupleMap.get(k)] = k.boxed;
+		}
+		VDataColumns cols = new VDataColumns(LongBuffer.wrap(dataVid), setOffset, IntBuffer.wrap(valueRef), tupleOffset, tupleVid, tuples, false);
+		for (int s=0;s<dsl.size();s++) dsl.get(s).bindColumns(cols, setOffset[s]);
+		return cols;
+	}
+	
+	// tuple key by value; keeps the first boxed array seen
+	private static class TupleKey {
+		final long [] v;
+		final Long [] boxed;
+		final int hash;
+		TupleKey(Long [] boxed) {
+			this.boxed = boxed;
+			this.v = new long[boxed.length];
+			for (int i=0;i<boxed.length;i++) v[i] = (boxed[i] == null) ? 0 : boxed[i];
+			this.hash = Arrays.hashCode(v);
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof TupleKey)) return false;
+			TupleKey k = (TupleKey)o;
+			if (k.boxed.length != boxed.length) return false;
+			// null entries only match null
+			for (int i=0;i<boxed.length;i++) {
+				if ((k.boxed[i] == null) != (boxed[i] == null)) return false;
+			}
+			return Arrays.equals(k.v, v);
+		}
+	}
+	
+	
+	/**
+	 * get the number of sets
+	 * @return set count
+	 */
+	public int getSetCount() {
+		return setOffset.length-1;
+	}
+	
+	/**
+	 * get the number of tokens in all sets
+	 * @return token count
+	 */
+	public int getTokenCount() {
+		return dataVid.limit();
+	}
+	
+	/**
+	 * Determine if the token columns are mapped from a cache file
+	 * @return true if mapped
+	 */
+	public boolean isMapped() {
+		return mapped;
+	}
+	
+	/**
+	 * get the first token of a set
+	 * @param set set number
+	 * @return token offset in the columns
+	 */
+	public int getSetStart(int set) {
+		return setOffset[set];
+	}
+	
+	/**
+	 * get the token count of a set
+	 * @param set set number
+	 * @return tokens in set
+	 */
+	public int getSetLength(int set) {
+		return setOffset[set+1] - setOffset[set];
+	}
+	
+	/**
+	 * get the number of distinct value tuples
+	 * @return tuple count
+	 */
+	public int getValueTupleCount() {
+		return tuples.length;
+	}
+	
+	/**
+	 * get the data valueId for a token
+	 * @param token token offset in the columns
+	 * @return valueId
+	 */
+	public long getDataVid(int token) {
+		return dataVid.get(token);
+	}
+	
+	/**
+	 * get the number of values for a token
+	 * @param token token offset in the columns
+	 * @return value count, 0 if none
+	 */
+	public int getValueCount(int token) {
+		int t = valueRef.get(token);
+		if (t < 0) return 0;
+		return tupleOffset[t+1] - tupleOffset[t];
+	}
+	
+	/**
+	 * get a value valueId for a token
+	 * @param token token offset in the columns
+	 * @param idx value index
+	 * @return valueId
+	 */
+	public long getValueVid(int token, int idx) {
+		return tupleVid[tupleOffset[valueRef.get(token)] + idx];
+	}
+	
+	/**
+	 * get the values for a token as the shared array; do not modify
+	 * @param token token offset in the columns
+	 * @return valueIds or null if none
+	 */
+	public Long [] getValueVD(int token) {
+		int t = valueRef.get(token);
+		if (t < 0) return null;
+		return tuples[t];
+	}
+	
+	/**
+	 * estimate of the heap memory used in bytes; mapped columns are not counted
+	 * @return bytes
+	 */
+	public long getMemorySize() {
+		long sz = (long)setOffset.length*4;
+		if (!mapped) sz += (long)dataVid.limit()*8 + (long)valueRef.limit()*4;
+		sz += (long)tupleOffset.length*4 + (long)tupleVid.length*8;
+		for (Long [] t:tuples) sz += 16 + (long)t.length*20;
+		return sz;
+	}
+	
+	
+	////////////////////////////////////////////////////
+	// read only list views of a set for List callers
+	
+	List<Long> dataList(int start, int length) {
+		return new DataList(this, start, length);
+	}
+	List<Long []> valueList(int start, int length) {
+		return new ValueList(this, start, length);
+	}
+	
+	private static class DataList extends AbstractList<Long> implements RandomAccess {
+		private final VDataColumns cols;
+		private final int start, length;
+		DataList(VDataColumns cols, int start, int length) {
+			this.cols = cols;
+			this.start = start;
+			this.length = length;
+		}
+		@Override
+		public Long get(int index) {
+			if (index < 0 || index >= length) throw new IndexOutOfBoundsException("Index: "+index+", Size: "+length);
+			return cols.dataVid.get(start+index);
+		}
+		@Override
+		public int size() {
+			return length;
+		}
+	}
+	
+	private static class ValueList extends AbstractList<Long []> implements RandomAccess {
+		private final VDataColumns cols;
+		private final int start, length;
+		ValueList(VDataColumns cols, int start, int length) {
+			this.cols = cols;
+			this.start = start;
+			this.length = length;
+		}
+		@Override
+		public Long [] get(int index) {
+			if (index < 0 || index >= length) throw new IndexOutOfBoundsException("Index: "+index+", Size: "+length);
+			return cols.getValueVD(start+index);
+		}
+		@Override
+		public int size() {
+			return length;
+		}
+	}
+}
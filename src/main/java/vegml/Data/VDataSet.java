@@ -65,6 +65,10 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 	
 	private transient Object dataV;	
 	private transient Object valueV;
+	private transient VDataColumns cols;	// columnar valueIds, if made
+	private transient int colStart;
+	private transient List<Long> colDataView;
+	private transient List<Long []> colValueView;
 	private transient HashMap<Integer, List<RangeTag>> remap;
 	private transient HashMap<Integer, List<RangeTag>> rmap;
 	private transient boolean comp = false;
@@ -488,6 +492,7 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 	public void freeResources() {
 		dataV = null;
 		valueV = null;
+		cols = null;
 		remap = null;
 		rmap = null;
 		comp = false;
@@ -717,7 +722,112 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 	}
 
 	public boolean haveDataV() {
-		return (dataV == null);
+		return (dataV == null && cols == null);
+	}
+	
+	///////////////////////////////////////////////////////////////////////////////
+	// Columnar valueIds
+	///////////////////////////////////////////////////////////////////////////////
+	
+	//
+	// true if the valueIds for this set can be held in VDataColumns
+	// data must be one value per token and values per token or none
+	//
+	boolean isColumnCapable() {
+		if (dataFmt.ordinal() < DSFmt.LL.ordinal() || dataFmt.ordinal() > DSFmt.LV.ordinal()) return false;
+		if (this.getDataLV() == null) return false;
+		if (!this.haveValues()) return true;
+		if (valueFmt == DSFmt.LV) return false;
+		if (valueFmt.ordinal() < DSFmt.LL.ordinal() || valueFmt.ordinal() > DSFmt.LVD.ordinal()) return false;
+		return (this.getValueLVD() != null);
+	}
+	
+	//
+	// bind to columns made by VDataSets.makeColumnar(); the generated lists are dropped
+	//
+	void bindColumns(VDataColumns cols, int start) {
+		this.cols = cols;
+		this.colStart = start;
+		this.colDataView = cols.dataList(start, this.length);
+		this.colValueView = this.haveValues() ? cols.valueList(start, this.length) : null;
+		this.dataV = null;
+		this.valueV = null;
+	}
+	
+	//
+	// share repeated strings in the raw data and trim lists
+	//
+	@SuppressWarnings("unchecked")
+	void compact(HashMap<String, String> strings) {
+		if (dataFmt == DSFmt.LS) compactStrings(this.getDataLS(), strings);
+		if (valueFmt == DSFmt.LS) compactStrings(this.getValueLS(), strings);
+		else if (valueFmt == DSFmt.LSD) {
+			for (String [] sa:this.getValueLSD()) {
+				if (sa == null) continue;
+				for (int i=0;i<sa.length;i++) sa[i] = compactString(sa[i], strings);
+			}
+		}
+		if (data instanceof ArrayList) ((ArrayList<Object>)data).trimToSize();
+		if (value instanceof ArrayList) ((ArrayList<Object>)value).trimToSize();
+	}
+	private static void compactStrings(List<String> ls, HashMap<String, String> strings) {
+		if (ls == null) return;
+		for (int i=0;i<ls.size();i++) ls.set(i, compactString(ls.get(i), strings));
+	}
+	private static String compactString(String s, HashMap<String, String> strings) {
+		if (s == null) return null;
+		String c = strings.putIfAbsent(s, s);
+		return (c == null) ? s : c;
+	}
+	
+	/**
+	 * Determine if this dataset's valueIds are held in columns
+	 * @return true if columnar
+	 */
+	public boolean isColumnar() {
+		return (cols != null);
+	}
+	
+	/**
+	 * get the data valueId at offset without boxing
+	 * 
+	 * @param offset token offset
+	 * @param empty value to return if there is none
+	 * @return valueId
+	 */
+	public long getDataVid(int offset, long empty) {
+		if (cols != null) {
+			if (offset < 0 || offset >= length) return empty;
+			return cols.getDataVid(colStart+offset);
+		}
+		Long v = getDataV(offset);
+		if (v == null) return empty;
+		return v;
+	}
+	
+	/**
+	 * get the number of value valueIds at offset
+	 * 
+	 * @param offset token offset
+	 * @return count, 0 if none
+	 */
+	public int getValueVidCount(int offset) {
+		if (cols != null && valueFmt.ordinal() >= DSFmt.LL.ordinal()) return cols.getValueCount(colStart+offset);
+		Long [] v = getValueVD(offset);
+		if (v == null) return 0;
+		return v.length;
+	}
+	
+	/**
+	 * get a value valueId at offset without boxing
+	 * 
+	 * @param offset token offset
+	 * @param idx index in values
+	 * @return valueId
+	 */
+	public long getValueVid(int offset, int idx) {
+		if (cols != null && valueFmt.ordinal() >= DSFmt.LL.ordinal()) return cols.getValueVid(colStart+offset, idx);
+		return getValueVD(offset)[idx];
 	}
 	
 	///////////////////////////////////////////////////////////////////////////////
@@ -1118,6 +1228,7 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 				}
 			}
 			dataV = null;
+			cols = null;
 		} else if (dataFmt == DSFmt.LLS) {
 			//??
 		} else if (dataFmt == DSFmt.LS) {
@@ -1127,9 +1238,11 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 				if (s != null) ls.set(i, s.toLowerCase());
 			}
 			dataV = null;
+			cols = null;
 		} else if (dataFmt == DSFmt.S) {
 			data = ((String)data).toLowerCase();
 			dataV = null;
+			cols = null;
 		}
 	}
 	
@@ -1169,6 +1282,7 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 			}
 			this.length = ls.size();
 			dataV = null;
+			cols = null;
 		} else if (dataFmt == DSFmt.LLS) {
 			//??
 		} else if (dataFmt == DSFmt.LS) {
@@ -1190,9 +1304,11 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 			}
 			this.length = ls.size();
 			dataV = null;
+			cols = null;
 		} else if (dataFmt == DSFmt.S && data != null) {
 			if (((String)data).equals(dataValue)) data = null;
 			dataV = null;
+			cols = null;
 		}	
 	}
 	
@@ -1213,6 +1329,7 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 				}
 			}
 			dataV = null;
+			cols = null;
 		} else if (dataFmt == DSFmt.LLS) {
 			//??
 		} else if (dataFmt == DSFmt.LS) {
@@ -1223,9 +1340,11 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 				if (s.equals(dataValue)) ls.set(i, newValue);
 			}
 			dataV = null;
+			cols = null;
 		} else if (dataFmt == DSFmt.S && data != null) {
 			if (((String)data).equals(dataValue)) data = newValue;
 			dataV = null;
+			cols = null;
 		}
 	}
 
@@ -1242,6 +1361,7 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 		cp.depth = this.depth;
 		cp.dataV = null;
 		cp.valueV = null;
+		cp.cols = null;
 		cp.data = this.data;
 		cp.value = this.value;
 			
@@ -1823,6 +1943,10 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 		return this.getDataLO().get(offset);
 	}
 	public Long getDataV(int offset) {
+		if (this.cols != null) {
+			if (offset >= length) return null;
+			return cols.getDataVid(colStart+offset);
+		}
 		if (this.dataFmt != DSFmt.LV && this.dataV == null) return null;
 		
 		if (this.dataV != null && this.dataV instanceof Long) {
@@ -1957,6 +2081,7 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 	}
 	@SuppressWarnings("unchecked")
 	public List<Long> getDataLV() {
+		if (this.cols != null) return colDataView;
 		if (this.dataFmt != DSFmt.LV) return (List<Long>)this.dataV;
 		return (List<Long>)this.data;
 	}	
@@ -2258,11 +2383,13 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 	}
 	@SuppressWarnings("unchecked")
 	public List<Long []> getValueLVD() {
+		if (this.colValueView != null && this.cols != null) return colValueView;
 		if (this.valueFmt != DSFmt.LVD) return (List<Long []>)this.valueV;
 		return (List<Long []>)this.value;
 	}	
 	public Long [] getValueVD(int offset) {
 		if (this.valueFmt.ordinal() <= DSFmt.VD.ordinal()) return getValueVD();
+		if (this.cols != null) return cols.getValueVD(colStart+offset);
 		if (this.valueFmt != DSFmt.LVD && this.valueV == null) return null;
 		return this.getValueLVD().get(offset);
 	}
@@ -2345,7 +2472,7 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 		genValueVSet(vtov);
 	}
 	private void genDataVSet(VectorToVid vtov) {
-		if (this.dataV != null) return;
+		if (this.dataV != null || this.cols != null) return;
 		if (dataFmt == DSFmt.LV || dataFmt == DSFmt.V || dataFmt == DSFmt.LVD) return;
 		List<Long> vl = null;
 		List<Long []> vvl = null;
@@ -2433,7 +2560,7 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 		}
 	}
 	private void genValueVSet(VectorToVid vtov) {
-		if (this.valueV != null) return;
+		if (this.valueV != null || this.cols != null) return;
 		if (valueFmt == DSFmt.LV || valueFmt == DSFmt.V) return;
 		List<Long []> vvl = null;
 		Long [] vd = null;
@@ -2798,6 +2925,7 @@ public class VDataSet implements java.io.Serializable, Comparable<VDataSet> {
 		if (this.haveRanges()) System.out.print(" range["+this.getRangeCount()+"]");
 		if (this.dataV != null) System.out.print(" DV");
 		if (this.valueV != null) System.out.print(" VV");
+		if (this.cols != null) System.out.print(" COL");
 		System.out.println("");		
 		
 		for (int i=0;i<this.size();i++) {
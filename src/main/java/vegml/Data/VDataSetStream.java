@@ -0,0 +1,348 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import vegml.Data.VDataSets.DSFmt;
+import vegml.Data.VDataSetDescriptor.DSDataType;
+import vegml.Data.VDataSetDescriptor.DSSetType;
+
+
+/**
+ * Stream datasets from corpus files in bounded chunks
+ * 
+ * Files are parsed lazily by reader threads, each set is vectorized as it is read
+ * and sets are handed out as VDataSets chunks through a bounded queue; readers block
+ * when the queue is full so only queue size * chunk size sets are in memory at once.
+ * 
+ * 	VDataSetStream stream = VFileUtil.openDataSetStream("WSJ", "../corpus");
+ * 	VegTrain.trainStream(vML, "text", "pos", stream);
+ * 
+ * With one reader (default) chunks are in file order; with more readers the order of chunks
+ * across files is not fixed.
+ */
+public class VDataSetStream implements AutoCloseable {
+	
+	/**
+	 * parse one file to datasets
+	 */
+	public interface FileParser {
+		/**
+		 * parse a file
+		 * @param filePath path to file
+		 * @return datasets in the file or null
+		 */
+		List<VDataSet> parse(String filePath);
+	}
+	
+	private static final VDataSets END = new VDataSets();
+	
+	private final List<String> files;
+	private final FileParser parser;
+	private VDataSetDescriptor dsd;
+	private VectorToVid vtov = null;
+	private int chunkSize = 1000;
+	private int queueSize = 4;
+	private int readerThreads = 1;
+	
+	private BlockingQueue<VDataSets> queue = null;
+	private List<Thread> readers = null;
+	private final AtomicInteger nextFile = new AtomicInteger(0);
+	private final AtomicInteger liveReaders = new AtomicInteger(0);
+	private final AtomicInteger fileCount = new AtomicInteger(0);
+	private final AtomicLong setCount = new AtomicLong(0);
+	private final AtomicLong tokenCount = new AtomicLong(0);
+	private volatile boolean closed = false;
+	private boolean done = false;
+	private int chunkCount = 0;
+	
+	/**
+	 * create a stream for files
+	 * 
+	 * @param files paths of files in order
+	 * @param parser parser for each file
+	 */
+	public VDataSetStream(List<String> files, FileParser parser) {
+		this.files = new ArrayList<>(files);
+		this.parser = parser;
+		this.dsd = new VDataSetDescriptor();
+	}
+	
+	/**
+	 * set the number of sets in each chunk, default 1000
+	 * @param chunkSize sets per chunk
+	 */
+	public void setCfgChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(1, chunkSize);
+	}
+	
+	/**
+	 * get the number of sets in each chunk
+	 * @return sets per chunk
+	 */
+	public int getCfgChunkSize() {
+		return chunkSize;
+	}
+	
+	/**
+	 * set the number of chunks read ahead of the consumer, default 4
+	 * @param queueSize chunks
+	 */
+	public void setCfgQueueSize(int queueSize) {
+		this.queueSize = Math.max(1, queueSize);
+	}
+	
+	/**
+	 * get the number of chunks read ahead of the consumer
+	 * @return chunks
+	 */
+	public int getCfgQueueSize() {
+		return queueSize;
+	}
+	
+	/**
+	 * set the number of threads reading files, default 1
+	 * more than 1 reads files in parallel and chunk order is not fixed
+	 * @param readerThreads thread count
+	 */
+	public void setCfgReaderThreads(int readerThreads) {
+		this.readerThreads = Math.max(1, readerThreads);
+	}
+	
+	/**
+	 * get the number of threads reading files
+	 * @return thread count
+	 */
+	public int getCfgReaderThreads() {
+		return readerThreads;
+	}
+	
+	/**
+	 * set the value to valueId converter, default null is the dataplane's converter when trained with VegTrain.trainStream()
+	 * @param vtov converter
+	 */
+	public void setCfgVectorToVid(VectorToVid vtov) {
+		this.vtov = vtov;
+	}
+	
+	/**
+	 * get the value to valueId converter
+	 * @return converter or null
+	 */
+	public VectorToVid getCfgVectorToVid() {
+		return vtov;
+	}
+	
+	/**
+	 * set the data definition for the chunks; value tags read are added to it
+	 * @param dsd data definition
+	 */
+	public void setCfgDataDefinition(VDataSetDescriptor dsd) {
+		if (dsd != null) this.dsd = dsd;
+	}
+	
+	/**
+	 * get the data definition with all value tags read so far
+	 * @return data definition
+	 */
+	public VDataSetDescriptor getDefinition() {
+		return dsd;
+	}
+	
+	/**
+	 * get the files in this stream
+	 * @return file paths
+	 */
+	public List<String> getFiles() {
+		return files;
+	}
+	
+	/**
+	 * get the number of files read
+	 * @return files
+	 */
+	public int getFileCount() {
+		return fileCount.get();
+	}
+	
+	/**
+	 * get the number of sets read
+	 * @return sets
+	 */
+	public long getSetCount() {
+		return setCount.get();
+	}
+	
+	/**
+	 * get the number of tokens read
+	 * @return tokens
+	 */
+	public long getTokenCount() {
+		return tokenCount.get();
+	}
+	
+	/**
+	 * get the number of chunks taken
+	 * @return chunks
+	 */
+	public int getChunkCount() {
+		return chunkCount;
+	}
+	
+	/**
+	 * start the reader threads; next() will start if needed
+	 */
+	public synchronized void start() {
+		if (readers != null) return;
+		queue = new ArrayBlockingQueue<>(queueSize);
+		readers = new ArrayList<>();
+		int cnt = Math.min(readerThreads, Math.max(1, files.size()));
+		liveReaders.set(cnt);
+		for (int i=0;i<cnt;i++) {
+			Thread t = new Thread(this::readLoop, "vegml-stream-"+i);
+			t.setDaemon(true);
+			readers.add(t);
+			t.start();
+		}
+	}
+	
+	/**
+	 * get the next chunk of datasets, blocks until one is read
+	 * the sets have valueIds generated
+	 * 
+	 * @return chunk or null at end of stream
+	 */
+	public VDataSets next() {
+		if (done) return null;
+		start();
+		try {
+			VDataSets dss = queue.take();
+			if (dss == END) {
+				done = true;
+				return null;
+			}
+			chunkCount++;
+			return dss;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			done = true;
+			return null;
+		}
+	}
+	
+	/**
+	 * stop reading; any chunks not taken are dropped
+	 */
+	@Override
+	public synchronized void close() {
+		closed = true;
+		done = true;
+		if (readers == null) return;
+		for (Thread t:readers) t.interrupt();
+		queue.clear();
+	}
+	
+	//
+	// reader thread: parse files and put full chunks
+	//
+	private void readLoop() {
+		List<VDataSet> chunk = new ArrayList<>(chunkSize);
+		try {
+			int f;
+			while (!closed && (f = nextFile.getAndIncrement()) < files.size()) {
+				List<VDataSet> dsl = null;
+				try {
+					dsl = parser.parse(files.get(f));
+				} catch (Exception e) {
+					System.out.println("ERROR stream file["+files.get(f)+"] " + e.getMessage());
+				}
+				fileCount.incrementAndGet();
+				if (dsl == null) continue;
+				for (VDataSet ds:dsl) {
+					if (ds == null || ds.size() < 1) continue;
+					ds.genVSet(vtov);
+					addTags(ds);
+					setCount.incrementAndGet();
+					tokenCount.addAndGet(ds.size());
+					chunk.add(ds);
+					if (chunk.size() >= chunkSize) {
+						queue.put(makeChunk(chunk));
+						chunk = new ArrayList<>(chunkSize);
+					}
+				}
+			}
+			if (!closed && chunk.size() > 0) queue.put(makeChunk(chunk));
+		} catch (InterruptedException e) {
+			return;
+		} finally {
+			// last reader ends the stream
+			if (liveReaders.decrementAndGet() == 0 && !closed) {
+				try {
+					queue.put(END);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+	
+	private VDataSets makeChunk(List<VDataSet> chunk) {
+		VDataSets dss = new VDataSets(dsd, null);
+		for (VDataSet ds:chunk) dss.add(ds);
+		dss.setSplit(dss.size(), 0, 0);
+		dss.genVSets(vtov);
+		return dss;
+	}
+	
+	// add value tags to the definition
+	private void addTags(VDataSet ds) {
+		List<String []> vl = (ds.getFmtValue() == DSFmt.LSD) ? ds.getValueLSD() : null;
+		List<String> sl = ds.getValueLS();
+		synchronized (dsd) {
+			if (vl != null) {
+				for (String [] sa:vl) {
+					if (sa == null) continue;
+					for (String s:sa) dsd.addDataTag(s, DSSetType.Open, DSDataType.String, null);
+				}
+			} else if (sl != null) {
+				for (String s:sl) dsd.addDataTag(s, DSSetType.Open, DSDataType.String, null);
+			}
+		}
+	}
+}
@@ -130,6 +130,7 @@ public class VDataSets implements java.io.Serializable, Comparable<VDataSets> {
 	private transient VDataSets testDs;
 	private transient boolean vgen = false;
 	private transient boolean comp = false;
+	private transient VDataColumns columns;
 	
 	public VDataSets() {
 		train = tune = test = 0;
@@ -176,6 +177,7 @@ public class VDataSets implements java.io.Serializable, Comparable<VDataSets> {
 		clearCache();	
 		if (dsl == null) return;
 		vgen = false;
+		columns = null;
 		for (VDataSet ds:dsl) ds.freeResources();
 	}
 	
@@ -443,6 +445,7 @@ public class VDataSets implements java.io.Serializable, Comparable<VDataSets> {
 		if (!this.isFmtDataS()) return;
 		for (VDataSet ds:dsl) ds.toLowercase();
 		this.vgen = false;
+		this.columns = null;
 		clearCache();
 	}
 	
@@ -453,6 +456,7 @@ public class VDataSets implements java.io.Serializable, Comparable<VDataSets> {
 	public void removeDataS(String dataValue) {
 		for (VDataSet ds:dsl) ds.removeDataS(dataValue);
 		this.vgen = false;
+		this.columns = null;
 		clearCache();
 	}
 	
@@ -464,6 +468,7 @@ public class VDataSets implements java.io.Serializable, Comparable<VDataSets> {
 	public void replaceDataS(String dataValue, String newValue) {
 		for (VDataSet ds:dsl) ds.replaceDataS(dataValue, newValue);
 		this.vgen = false;
+		this.columns = null;
 		clearCache();		
 	}
 	
@@ -677,6 +682,66 @@ public class VDataSets implements java.io.Serializable, Comparable<VDataSets> {
 		return true;
 	}
 	
+	/**
+	 * Generate valueIds and move them to compact columns: one long [] of data valueIds for all sets
+	 * and an int [] per token into a shared table of distinct value tuples. The generated per set lists
+	 * are dropped and repeated strings in the raw data are shared.
+	 * Only for data with one value per token; any change to the data returns the sets to lists
+	 * 
+	 * @return true if columnar
+	 */
+	public boolean makeColumnar() {
+		return makeColumnar(null);
+	}
+	
+	/**
+	 * Generate valueIds with specified converter and move them to compact columns
+	 * 
+	 * @param vtov vector to valueId converter object
+	 * @return true if columnar
+	 */
+	public boolean makeColumnar(VectorToVid vtov) {
+		if (dsl == null || dsl.size() < 1) return false;
+		if (isColumnar()) return true;
+		genVSets(vtov);
+		VDataColumns cols = VDataColumns.make(dsl);
+		if (cols == null) return false;
+		setColumns(cols);
+		
+		// share repeated strings in raw data
+		HashMap<String, String> strings = new HashMap<>();
+		for (VDataSet ds:dsl) ds.compact(strings);
+		if (dsl instanceof ArrayList) ((ArrayList<VDataSet>)dsl).trimToSize();
+		return true;
+	}
+	
+	/**
+	 * Determine if the valueIds for these datasets are columnar
+	 * 
+	 * @return true if columnar
+	 */
+	public boolean isColumnar() {
+		return (columns != null && dsl.get(0).isColumnar());
+	}
+	
+	//
+	// set columns bound to these datasets, from makeColumnar() or a corpus cache
+	//
+	void setColumns(VDataColumns cols) {
+		this.columns = cols;
+		this.vgen = true;
+	}
+	
+	/**
+	 * get the columns made by makeColumnar()
+	 * 
+	 * @return columns or null
+	 */
+	public VDataColumns getColumns() {
+		if (!isColumnar()) return null;
+		return columns;
+	}
+	
 
 	///////////////////////////////////////////////////////////////////////////////
 	// get sub dataSets
@@ -841,6 +906,7 @@ public class VDataSets implements java.io.Serializable, Comparable<VDataSets> {
 		this.vgen = false;
 		this.comp = false;
 		this.clearCache();
+		this.columns = null;
 		if (pos >= 0) dsl.add(pos, ds);
 		else dsl.add(ds);
 		if (this.minSetSize == -1 || this.minSetSize > ds.size()) this.minSetSize = ds.size();
@@ -1484,6 +1550,10 @@ public class VDataSets implements java.io.Serializable, Comparable<VDataSets> {
 		genVSets();
 		return this.get(set).getDataV(offset);
 	}
+	public long getDataLLVid(int set, int offset, long empty) {
+		genVSets();
+		return this.get(set).getDataVid(offset, empty);
+	}
 	
 	public Long [] getDataLLLD(int set, int offset) {
 		return this.get(set).getDataLD(offset);
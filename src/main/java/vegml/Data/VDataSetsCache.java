@@ -0,0 +1,525 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml.Data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import vegml.Data.VDataSet.RangeTag;
+import vegml.Data.VDataSets.DSFmt;
+
+
+/**
+ * Binary corpus cache: datasets with their valueIds so later runs skip parsing and vectorizing
+ * 
+ * The token columns are memory mapped on load and used in place as the datasets' VDataColumns;
+ * the data strings are rebuilt as lists sharing one String per distinct value.
+ * The fingerprint of the VectorToVid is saved, a cache made with other valueIds is not loaded.
+ * Holds string corpora as made by the VFileUtil loaders: LS data, LS/LSD/no values and String ranges.
+ * All values are little-endian.
+ * 
+ * File:
+ *   header	[magic:8][version:4][valueFmt:4][fingerprint:8][sets:4][tokens:4][strings:4][tuples:4]
+ *   		[tupleVids:4][ranges:4][rangeInts:4][0:4][metaLength:8] pad to 64
+ *   meta	JSON: definition, split, source, names
+ *   strings	int [strings] byte length or -1 for null, then UTF-8 bytes
+ *   int [sets+1]		set offsets
+ *   long [tokens]		data valueIds
+ *   int [tokens]		value tuple, -1 for none
+ *   int [tokens]		data string
+ *   int [tuples+1]		tuple offsets
+ *   long [tupleVids]	tuple valueIds
+ *   int [tupleVids]	tuple strings
+ *   int [sets+1]		range offsets
+ *   int [rangeInts]	per range: start, end, depth, count, strings
+ *   each table 8 byte aligned
+ */
+public class VDataSetsCache {
+	static final long MAGIC = 0x56454743_4F525055L;	// VEGCORPU
+	static final int VERSION = 2;
+	static final int HEADER_SIZE = 64;
+	
+	/**
+	 * Save datasets as a corpus cache; valueIds are generated if needed
+	 * 
+	 * @param dss datasets to save
+	 * @param filename file to save as
+	 * @param vtov converter the valueIds are made with, null for default
+	 * @param source description of the source; checked by load if not null
+	 * @return true if saved
+	 */
+	public static boolean save(VDataSets dss, String filename, VectorToVid vtov, String source) {
+		if (dss == null || dss.size() < 1) return false;
+		DSFmt vfmt = DSFmt.N;
+		for (int i=0;i<dss.size();i++) {
+			VDataSet ds = dss.get(i);
+			if (ds.getFmtData() != DSFmt.LS) {
+				System.out.println("ERROR corpus cache["+filename+"] data format["+ds.getFmtData()+"] not supported");
+				return false;
+			}
+			DSFmt f = ds.haveValues() ? ds.getFmtValue() : DSFmt.N;
+			if (f != DSFmt.N && f != DSFmt.LS && f != DSFmt.LSD) {
+				System.out.println("ERROR corpus cache["+filename+"] value format["+f+"] not supported");
+				return false;
+			}
+			if (i == 0) vfmt = f;
+			else if (f != vfmt) {
+				System.out.println("ERROR corpus cache["+filename+"] mixed value formats");
+				return false;
+			}
+		}
+		dss.genVSets(vtov);
+		
+		// build tables
+		HashMap<String, Integer> strMap = new HashMap<>();
+		List<String> strings = new ArrayList<>();
+		HashMap<IntsKey, Integer> tupleMap = new HashMap<>();
+		List<long []> tupleVids = new ArrayList<>();
+		List<int []> tupleStrs = new ArrayList<>();
+		int tokens = 0;
+		for (int i=0;i<dss.size();i++) tokens += dss.get(i).size();
+		int [] setOffset = new int[dss.size()+1];
+		long [] dataVid = new long[tokens];
+		int [] valueRef = new int[tokens];
+		int [] dataStr = new int[tokens];
+		int [] rangeOffset = new int[dss.size()+1];
+		IntList rangeInts = new IntList();
+		int ranges = 0, tupleVidCount = 0;
+		
+		int pos = 0;
+		for (int s=0;s<dss.size();s++) {
+			VDataSet ds = dss.get(s);
+			setOffset[s] = pos;
+			List<String> dl = ds.getDataLS();
+			List<Long> dv = ds.getDataLV();
+			List<String> vl = (vfmt == DSFmt.LS) ? ds.getValueLS() : null;
+			List<String []> vdl = (vfmt == DSFmt.LSD) ? ds.getValueLSD() : null;
+			List<Long []> vv = (vfmt != DSFmt.N) ? ds.getValueLVD() : null;
+			for (int i=0;i<ds.size();i++, pos++) {
+				dataStr[pos] = stringId(dl.get(i), strMap, strings);
+				Long d = dv.get(i);
+				dataVid[pos] = (d == null) ? 0 : d;
+				
+				String [] sv = null;
+				if (vl != null) sv = new String[] {vl.get(i)};
+				else if (vdl != null) sv = vdl.get(i);
+				if (sv == null) {
+					valueRef[pos] = -1;
+					continue;
+				}
+				int [] ids = new int[sv.length];
+				for (int x=0;x<sv.length;x++) ids[x] = stringId(sv[x], strMap, strings);
+				IntsKey k = new IntsKey(ids);
+				Integer t = tupleMap.get(k);
+				if (t == null) {
+					t = tupleVids.size();
+					tupleMap.put(k, t);
+					Long [] vt = vv.get(i);
+					long [] vids = new long[ids.length];
+					for (int x=0;x<ids.length && x<vt.length;x++) vids[x] = (vt[x] == null) ? 0 : vt[x];
+					tupleVids.add(vids);
+					tupleStrs.add(ids);
+					tupleVidCount += ids.length;
+				}
+				valueRef[pos] = t;
+			}
+			
+			// ranges
+			rangeOffset[s] = rangeInts.size();
+			for (int r=0;r<ds.getRangeCount();r++) {
+				RangeTag rt = ds.getRange(r);
+				if (!(rt.v instanceof String [])) {
+					System.out.println("ERROR corpus cache["+filename+"] range values must be String");
+					return false;
+				}
+				String [] rv = rt.getValuesS();
+				rangeInts.add(rt.getStart());
+				rangeInts.add(rt.getEnd());
+				rangeInts.add(rt.getDepth());
+				rangeInts.add(rv.length);
+				for (String x:rv) rangeInts.add(stringId(x, strMap, strings));
+				ranges++;
+			}
+		}
+		setOffset[dss.size()] = pos;
+		rangeOffset[dss.size()] = rangeInts.size();
+		
+		// meta
+		JsonObject meta = new JsonObject();
+		meta.addProperty("definition", dss.getDefinition() != null ? dss.getDefinition().toJSON() : null);
+		meta.addProperty("train", dss.getTrainCount());
+		meta.addProperty("tune", dss.getTuneCount());
+		meta.addProperty("test", dss.getTestCount());
+		meta.addProperty("pdrome", dss.isPalindromeSet());
+		if (source != null) meta.addProperty("source", source);
+		boolean haveNames = false;
+		for (int s=0;s<dss.size() && !haveNames;s++) haveNames = (dss.get(s).getName() != null);
+		if (haveNames) {
+			JsonArray names = new JsonArray();
+			for (int s=0;s<dss.size();s++) names.add(dss.get(s).getName() == null ? "" : dss.get(s).getName());
+			meta.add("names", names);
+		}
+		byte [] mb = meta.toString().getBytes(StandardCharsets.UTF_8);
+		
+		try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			Writer out = new Writer(ch, HEADER_SIZE);
+			out.put(mb);
+			out.align();
+			byte [][] sb = new byte[strings.size()][];
+			for (int i=0;i<sb.length;i++) {
+				if (strings.get(i) == null) {
+					out.putInt(-1);
+					continue;
+				}
+				sb[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+				out.putInt(sb[i].length);
+			}
+			for (byte [] b:sb) {
+				if (b != null) out.put(b);
+			}
+			out.align();
+			for (int v:setOffset) out.putInt(v);
+			out.align();
+			for (long v:dataVid) out.putLong(v);
+			for (int v:valueRef) out.putInt(v);
+			out.align();
+			for (int v:dataStr) out.putInt(v);
+			out.align();
+			int tp = 0;
+			for (int [] t:tupleStrs) {
+				out.putInt(tp);
+				tp += t.length;
+			}
+			out.putInt(tp);
+			out.align();
+			for (long [] t:tupleVids) {
+				for (long v:t) out.putLong(v);
+			}
+			for (int [] t:tupleStrs) {
+				for (int v:t) out.putInt(v);
+			}
+			out.align();
+			for (int v:rangeOffset) out.putInt(v);
+			out.align();
+			for (int i=0;i<rangeInts.size();i++) out.putInt(rangeInts.get(i));
+			out.align();
+			out.flush();
+			
+			ByteBuffer hb = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			hb.putLong(MAGIC).putInt(VERSION).putInt(vfmt.ordinal());
+			hb.putLong(VectorToVid.fingerprint(vtov));
+			hb.putInt(dss.size()).putInt(tokens).putInt(strings.size()).putInt(tupleVids.size());
+			hb.putInt(tupleVidCount).putInt(ranges).putInt(rangeInts.size()).putInt(0);
+			hb.putLong(mb.length);
+			hb.position(0);
+			long p = 0;
+			while (hb.hasRemaining()) p += ch.write(hb, p);
+			ch.force(false);
+		} catch (IOException e) {
+			System.out.println("ERROR corpus cache["+filename+"] save failed: " + e.getMessage());
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Load a corpus cache made with the default valueIds
+	 * 
+	 * @param filename cache file
+	 * @return datasets or null if missing or stale
+	 */
+	public static VDataSets load(String filename) {
+		return load(filename, null, null);
+	}
+	
+	/**
+	 * Load a corpus cache; the token columns are mapped and the datasets are columnar
+	 * 
+	 * @param filename cache file
+	 * @param vtov converter the valueIds must match, null for default
+	 * @param source source description that must match, null to not check
+	 * @return datasets or null if missing, stale or for another source
+	 */
+	public static VDataSets load(String filename, VectorToVid vtov, String source) {
+		if (filename == null || !VFileUtil.fileExists(filename)) return null;
+		try (FileChannel ch = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			ByteBuffer hb = read(ch, 0, HEADER_SIZE);
+			if (hb.getLong() != MAGIC) throw new IOException("not a corpus cache file");
+			int version = hb.getInt();
+			if (version != VERSION) {
+				System.out.println("NOTE corpus cache["+filename+"] is stale: version["+version+"]");
+				return null;
+			}
+			DSFmt vfmt = DSFmt.values()[hb.getInt()];
+			long fp = hb.getLong();
+			if (fp != VectorToVid.fingerprint(vtov)) {
+				System.out.println("NOTE corpus cache["+filename+"] is stale: made with other valueIds");
+				return null;
+			}
+			int sets = hb.getInt();
+			int tokens = hb.getInt();
+			int stringCount = hb.getInt();
+			int tupleCount = hb.getInt();
+			int tupleVidCount = hb.getInt();
+			hb.getInt();
+			int rangeIntCount = hb.getInt();
+			hb.getInt();
+			long metaLength = hb.getLong();
+			
+			// meta
+			long pos = HEADER_SIZE;
+			ByteBuffer mb = read(ch, pos, (int)metaLength);
+			byte [] mba = new byte[mb.remaining()];
+			mb.get(mba);
+			JsonObject meta = new JsonParser().parse(new String(mba, StandardCharsets.UTF_8)).getAsJsonObject();
+			if (source != null && (!meta.has("source") || !source.equals(meta.get("source").getAsString()))) {
+				System.out.println("NOTE corpus cache["+filename+"] is for another source");
+				return null;
+			}
+			pos = align(pos + metaLength);
+			
+			// strings
+			IntBuffer sl = mapRegion(ch, pos, stringCount*4L).asIntBuffer();
+			long sbytes = 0;
+			for (int i=0;i<stringCount;i++) sbytes += Math.max(sl.get(i), 0);
+			ByteBuffer sb = mapRegion(ch, pos + stringCount*4L, sbytes);
+			String [] strings = new String[stringCount];
+			for (int i=0;i<stringCount;i++) {
+				if (sl.get(i) < 0) continue;	// null
+				byte [] b = new byte[sl.get(i)];
+				sb.get(b);
+				strings[i] = new String(b, StandardCharsets.UTF_8);
+			}
+			pos = align(pos + stringCount*4L + sbytes);
+			
+			int [] setOffset = readInts(ch, pos, sets+1);
+			pos = align(pos + (sets+1)*4L);
+			LongBuffer dataVid = mapRegion(ch, pos, tokens*8L).asLongBuffer();
+			pos += tokens*8L;
+			IntBuffer valueRef = mapRegion(ch, pos, tokens*4L).asIntBuffer();
+			pos = align(pos + tokens*4L);
+			IntBuffer dataStr = mapRegion(ch, pos, tokens*4L).asIntBuffer();
+			pos = align(pos + tokens*4L);
+			int [] tupleOffset = readInts(ch, pos, tupleCount+1);
+			pos = align(pos + (tupleCount+1)*4L);
+			LongBuffer tvb = mapRegion(ch, pos, tupleVidCount*8L).asLongBuffer();
+			long [] tupleVid = new long[tupleVidCount];
+			tvb.get(tupleVid);
+			pos += tupleVidCount*8L;
+			int [] tupleStr = readInts(ch, pos, tupleVidCount);
+			pos = align(pos + tupleVidCount*4L);
+			int [] rangeOffset = readInts(ch, pos, sets+1);
+			pos = align(pos + (sets+1)*4L);
+			int [] rangeInts = readInts(ch, pos, rangeIntCount);
+			
+			// shared value tuples
+			String [][] tupleS = new String[tupleCount][];
+			for (int t=0;t<tupleCount;t++) {
+				tupleS[t] = new String[tupleOffset[t+1]-tupleOffset[t]];
+				for (int x=0;x<tupleS[t].length;x++) tupleS[t][x] = strings[tupleStr[tupleOffset[t]+x]];
+			}
+			
+			// datasets
+			VDataSetDescriptor dsd = null;
+			if (meta.has("definition") && !meta.get("definition").isJsonNull()) dsd = VDataSetDescriptor.fromJSON(meta.get("definition").getAsString());
+			VDataSets dss = new VDataSets(dsd, null);
+			JsonArray names = meta.has("names") ? meta.getAsJsonArray("names") : null;
+			for (int s=0;s<sets;s++) {
+				int start = setOffset[s], len = setOffset[s+1]-setOffset[s];
+				List<String> dl = new ArrayList<>(len);
+				for (int i=0;i<len;i++) dl.add(strings[dataStr.get(start+i)]);
+				VDataSet d = new VDataSet();
+				d.setDataLS(dl);
+				if (vfmt == DSFmt.LS) {
+					List<String> vl = new ArrayList<>(len);
+					for (int i=0;i<len;i++) {
+						int t = valueRef.get(start+i);
+						vl.add(t < 0 ? null : tupleS[t][0]);
+					}
+					d.setValueLS(vl);
+				} else if (vfmt == DSFmt.LSD) {
+					List<String []> vl = new ArrayList<>(len);
+					for (int i=0;i<len;i++) {
+						int t = valueRef.get(start+i);
+						vl.add(t < 0 ? null : tupleS[t]);
+					}
+					d.setValueLSD(vl);
+				}
+				for (int r=rangeOffset[s];r<rangeOffset[s+1];) {
+					int n = rangeInts[r+3];
+					String [] rv = new String[n];
+					for (int x=0;x<n;x++) rv[x] = strings[rangeInts[r+4+x]];
+					d.addRange(rangeInts[r], rangeInts[r+1], rangeInts[r+2], rv);
+					r += 4+n;
+				}
+				if (names != null && !names.get(s).getAsString().isEmpty()) d.setName(names.get(s).getAsString());
+				dss.add(d);
+			}
+			dss.setSplit(meta.get("train").getAsInt(), meta.get("tune").getAsInt(), meta.get("test").getAsInt());
+			dss.setPalindromeSet(meta.get("pdrome").getAsBoolean());
+			
+			// bind the mapped columns
+			VDataColumns cols = VDataColumns.make(dss.getAll(), dataVid, setOffset, valueRef, tupleOffset, tupleVid, true);
+			dss.setColumns(cols);
+			return dss;
+		} catch (IOException | RuntimeException e) {
+			System.out.println("ERROR corpus cache["+filename+"] load failed: " + e.getMessage());
+			return null;
+		}
+	}
+	
+	
+	// null is kept as its own string, not as ""
+	private static int stringId(String s, HashMap<String, Integer> strMap, List<String> strings) {
+		Integer id = strMap.get(s);
+		if (id == null) {
+			id = strings.size();
+			strMap.put(s, id);
+			strings.add(s);
+		}
+		return id;
+	}
+	
+	private static int [] readInts(FileChannel ch, long pos, int count) throws IOException {
+		int [] v = new int[count];
+		if (count > 0) mapRegion(ch, pos, count*4L).asIntBuffer().get(v);
+		return v;
+	}
+	
+	private static ByteBuffer mapRegion(FileChannel ch, long pos, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) throw new IOException("corpus cache table too large to map["+size+"]");
+		return ch.map(FileChannel.MapMode.READ_ONLY, pos, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	private static ByteBuffer read(FileChannel ch, long pos, int size) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		while (b.hasRemaining()) {
+			if (ch.read(b, pos + b.position()) < 0) throw new IOException("corpus cache file truncated");
+		}
+		b.flip();
+		return b;
+	}
+	
+	private static long align(long pos) {
+		return (pos + 7) & ~7L;
+	}
+	
+	// int array key for tuple strings
+	private static class IntsKey {
+		final int [] v;
+		final int hash;
+		IntsKey(int [] v) {
+			this.v = v;
+			this.hash = Arrays.hashCode(v);
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof IntsKey) && Arrays.equals(((IntsKey)o).v, v);
+		}
+	}
+	
+	// growable int list
+	private static class IntList {
+		private int [] v = new int[256];
+		private int size = 0;
+		void add(int x) {
+			if (size == v.length) v = Arrays.copyOf(v, v.length*2);
+			v[size++] = x;
+		}
+		int get(int i) {
+			return v[i];
+		}
+		int size() {
+			return size;
+		}
+	}
+	
+	// buffered little-endian writer
+	private static class Writer {
+		private final FileChannel ch;
+		private final ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		private long position;
+		
+		Writer(FileChannel ch, long position) {
+			this.ch = ch;
+			this.position = position;
+		}
+		long position() {
+			return position + buf.position();
+		}
+		void putInt(int v) throws IOException {
+			if (buf.remaining() < 4) flush();
+			buf.putInt(v);
+		}
+		void putLong(long v) throws IOException {
+			if (buf.remaining() < 8) flush();
+			buf.putLong(v);
+		}
+		void put(byte [] b) throws IOException {
+			flush();
+			ByteBuffer bb = ByteBuffer.wrap(b);
+			while (bb.hasRemaining()) position += ch.write(bb, position);
+		}
+		// pad to 8 bytes
+		void align() throws IOException {
+			while ((position() & 7) != 0) {
+				if (!buf.hasRemaining()) flush();
+				buf.put((byte)0);
+			}
+		}
+		void flush() throws IOException {
+			buf.flip();
+			while (buf.hasRemaining()) position += ch.write(buf, position);
+			buf.clear();
+		}
+	}
+}
@@ -181,10 +181,185 @@ public class VFileUtil {
 			
 			dss = VFileUtil.loadDataSetsDS(dataSetToUse, filename, percentTune, percentTest);
 		}		
-		if (dss != null) dss.genVSets();
+		if (dss != null) {
+			dss.genVSets();
+			dss.makeColumnar();
+		}
 		return dss;
 	}
 	
+	/**
+	 * load the data set from a corpus cache file, if the cache is missing or stale the data set
+	 * is loaded from the corpus and the cache is written for the next run
+	 * The cache is for the data set, corpus directory and split; another of these reloads it
+	 * 
+	 * @param dataSet name of data set
+	 * @param corpusDirectory corpus base directory or null for default
+	 * @param percentTune percent for tune
+	 * @param percentTest percent for test
+	 * @param cacheFile corpus cache file
+	 * @return datasets
+	 */
+	public static VDataSets loadDataSet(String dataSet, String corpusDirectory, double percentTune, double percentTest, String cacheFile) {
+		String dir = (corpusDirectory == null) ? "" : new File(corpusDirectory).getAbsolutePath();
+		String source = dataSet+"|"+dir+"|"+percentTune+"|"+percentTest;
+		VDataSets dss = VDataSetsCache.load(cacheFile, null, source);
+		if (dss != null) return dss;
+		dss = loadDataSet(dataSet, corpusDirectory, percentTune, percentTest);
+		if (dss != null) VDataSetsCache.save(dss, cacheFile, null, source);
+		return dss;
+	}
+	
+	/**
+	 * Open a stream of the training data for a data set; names are the same as loadDataSet()
+	 * WSJ streams sections 00-18, conll17 the train files for the set and Brown all files.
+	 * Files are parsed as they are read, nothing is held beyond the stream's chunks
+	 * 
+	 * @param dataSet name of data set
+	 * @param corpusDirectory corpus base directory or null for default
+	 * @return stream or null if no files
+	 */
+	public static VDataSetStream openDataSetStream(String dataSet, String corpusDirectory) {
+		String bdir = "../corpus";
+		if (corpusDirectory != null) bdir = corpusDirectory;
+		List<String> files = new ArrayList<>();
+		VDataSetStream.FileParser parser = null;
+		
+		if (dataSet.equalsIgnoreCase("WSJ")) {
+			//	Training data: sections 0-18
+			for (int i = 0;i<=18;i++) {
+				String dn = bdir+wsj_full_file_base_directory+"/"+String.format("%02d", i);
+				List<String> fnl = VFileUtil.fileList(dn);
+				if (fnl == null) continue;
+				for (String fn:fnl) {
+					if (fn.startsWith(".") || fn.equalsIgnoreCase("README")) continue;
+					files.add(dn+"/"+fn);
+				}
+			}
+			parser = (fp) -> parseTreebankFile(fp, true);
+		} else if (dataSet.toLowerCase().startsWith("conll17")) {
+			String dx [] = dataSet.split("/");
+			String setDir = dx[1];
+			String languageTag = "en";
+			for (int i=0;i<conLLSet.length;i++) {
+				if (conLLSet[i][0].equalsIgnoreCase(setDir)) {
+					languageTag = conLLSet[i][1];
+					break;
+				}
+			}
+			String sdir = bdir+"/"+conll17_train_directory+"/"+setDir;
+			List<String> fnl = VFileUtil.fileList(sdir);
+			if (fnl != null) {
+				for (String fn:fnl) {
+	    			if (!fn.startsWith(languageTag+"-") && !fn.startsWith(languageTag+"_")) continue;
+					if (fn.endsWith("train.conllu")) files.add(sdir+"/"+fn);
+				}
+			}
+			parser = (fp) -> parseUDPipeFile(fp, "XPOS");
+		} else {
+			final DataSetType dtype;
+			if (dataSet.equalsIgnoreCase("brown-penntreebank")) dtype = DataSetType.BrownPennTreebankTags;
+			else dtype = DataSetType.BrownOldTags;
+			String dn = bdir+file_base_directory;
+			List<String> fnl = VFileUtil.fileList(dn);
+			if (fnl != null) {
+				for (String fn:fnl) {
+					if (fn.startsWith(".")) continue;
+					if (fn.equalsIgnoreCase("README") || fn.equalsIgnoreCase("CONTENTS")) continue;
+					files.add(dn+"/"+fn);
+				}
+			}
+			parser = (fp) -> parseTextFile(dtype, fp);
+		}
+		if (files.size() < 1) {
+			System.out.println("ERROR no files found for["+dataSet+"] at["+bdir+"]");
+			return null;
+		}
+		return new VDataSetStream(files, parser);
+	}
+	
+	/**
+	 * Parse a treebank tagged file to a dataset with the same form as loadDataSet("WSJ")
+	 * 
+	 * @param filePath file to parse
+	 * @param includeBreaks include break tokens
+	 * @return list with the dataset
+	 */
+	public static List<VDataSet> parseTreebankFile(String filePath, boolean includeBreaks) {
+		List<String> s = VFileUtil.loadTreebankFile(filePath, includeBreaks);
+		if (s == null || s.size() < 1) return null;
+		List<List<String>> spl = VFileUtil.tokenizeString(s, "/");
+		List<String []> valx = new ArrayList<String[]>(spl.get(1).size());
+		for (int z=0;z<spl.get(1).size();z++) {
+			String sv = spl.get(1).get(z);
+			int idx = sv.indexOf("|");
+			if (idx >= 0) {
+				// has multiple tags
+				String [] s2 = new String[2];
+				s2[0] = sv.substring(0, idx);
+				s2[1] = sv.substring(idx+1, sv.length());
+				spl.get(1).set(z, s2[0]);
+				valx.add(s2);
+			} else {
+				String [] s1 = new String[1];
+				s1[0] = sv;
+				valx.add(s1);
+			}
+		}
+		VDataSet d = new VDataSet();
+		d.setDataLS(spl.get(0));
+		d.setValueLSD(valx);
+		List<VDataSet> dsl = new ArrayList<>(1);
+		dsl.add(d);
+		return dsl;
+	}
+	
+	/**
+	 * Parse a CoNLL-U file to a dataset
+	 * 
+	 * @param filePath file to parse
+	 * @param xposOrupos XPOS or UPOS for values
+	 * @return list with the dataset
+	 */
+	public static List<VDataSet> parseUDPipeFile(String filePath, String xposOrupos) {
+		List<List<String>> tv = loadUDPipeFile(filePath);
+		if (tv == null) return null;
+		VDataSet d = new VDataSet();
+		d.setDataLS(tv.get(0));
+		if (xposOrupos != null && xposOrupos.equalsIgnoreCase("XPOS")) d.setValueLS(tv.get(2));
+		else d.setValueLS(tv.get(1));
+		List<VDataSet> dsl = new ArrayList<>(1);
+		dsl.add(d);
+		return dsl;
+	}
+	
+	//
+	// parse a Brown style text file to a dataset with the same form as loadDataSetsDS()
+	//
+	static List<VDataSet> parseTextFile(DataSetType dtype, String filePath) {
+		String s = loadTextFile(filePath);
+		if (s == null || s.isEmpty()) return null;
+		List<String> tks = VFileUtil.tokenizeString(s, false, false, false);
+		List<List<String>> spl = VFileUtil.tokenizeString(tks, "/");
+		if (dtype == DataSetType.BrownPennTreebankTags) VFileUtil.normalizePosString(spl.get(1), false, true, false);
+		else if (dtype == DataSetType.BrownUniversalTags) VFileUtil.normalizePosString(spl.get(1), false, true, true);
+		else if (dtype == DataSetType.BrownCleanTags) VFileUtil.normalizePosString(spl.get(1), false, false, false);
+		else VFileUtil.normalizePosString(spl.get(1), true, false, false);
+		
+		List<String []> valx = new ArrayList<String[]>(spl.get(1).size());
+		for (int x=0;x<spl.get(1).size();x++) {
+			String [] sx = new String[1];
+			sx[0] = spl.get(1).get(x);
+			valx.add(sx);
+		}
+		VDataSet d = new VDataSet();
+		d.setDataLS(spl.get(0));
+		d.setValueLSD(valx);
+		List<VDataSet> dsl = new ArrayList<>(1);
+		dsl.add(d);
+		return dsl;
+	}
+	
 	/**
 	 * delete a file or directory (if empty)
 	 * @param fn
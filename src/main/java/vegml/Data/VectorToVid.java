@@ -34,6 +34,7 @@ package vegml.Data;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
 import vegml.VegML;
@@ -44,6 +45,9 @@ public class VectorToVid {
 	private static final int PRIME_START = 17; 
 	private static final long PRIME_BASE = 1125899906842597L;
 	static final int VIDplaceHolder = 1975;
+	// digit hash of the placeholder: hashCode64(cur, VIDplaceHolder) == cur*PH_MUL + PH_ADD
+	private static final long PH_MUL = (long)PRIME*PRIME*PRIME*PRIME;
+	private static final long PH_ADD = ((((long)(5+48)*PRIME + (7+48))*PRIME + (9+48))*PRIME) + (1+48);
 
 	////////////////////////////////////////////////////////////////
 	// Overridable default implementation
@@ -134,6 +138,39 @@ public class VectorToVid {
 	}
 	
 	
+	//
+	// values that cover each conversion path, for fingerprints
+	//
+	private static final Object [] FINGERPRINT_PROBE = {
+		null, "", "a", "NN", "the", "<====>", "Vinken", "nonexecutive", "1,000.5",
+		0L, 1L, -7L, Long.MAX_VALUE, 0, 42, -1, 3.75, -2.5, true, false, 'x'
+	};
+	
+	/**
+	 * Fingerprint of the valueIds this converter makes; changes if the converter or
+	 * the hashing changes. Used to detect stale caches of valueIds
+	 * 
+	 * @return fingerprint
+	 */
+	public long fingerprint() {
+		long fp = PRIME_BASE ^ this.getClass().getName().hashCode();
+		for (Object o:FINGERPRINT_PROBE) fp = (fp * PRIME_BASE) + toVectGen(o);
+		return fp;
+	}
+	
+	/**
+	 * Fingerprint of the valueIds made by a converter or the static default
+	 * 
+	 * @param vtov converter or null for static default
+	 * @return fingerprint
+	 */
+	public static long fingerprint(VectorToVid vtov) {
+		if (vtov != null) return vtov.fingerprint();
+		long fp = PRIME_BASE;
+		for (Object o:FINGERPRINT_PROBE) fp = (fp * PRIME_BASE) + toVectorGen(o);
+		return fp;
+	}
+	
 	public static int toVectorS(final List<String> stringSet) {
 		if (stringSet == null || stringSet.size() < 1) return VegML.emptyVect;
 		int result = PRIME_START;
@@ -198,6 +235,255 @@ public class VectorToVid {
 	
 	
 
+	////////////////////////////////////////////////////////////////
+	// precompiled / streaming vector generation
+	// produces the same vids as vectSetGen(nsMap...)
+	////////////////////////////////////////////////////////////////
+	
+	/**
+	 * Precompiled vid generation plan for a dataplane's vector maps
+	 * flat lists of the window position and tier hashed for each vector, in hash order 
+	 */
+	public static class VidPlan {
+		private final boolean [][][] nsMap;
+		private final int [] nsMapLen;
+		private final boolean noEmpty;
+		private final int vectNumAllowEmpty;
+		private final int tiers;
+		private final int window;
+		
+		private final int [][] pos;		// window position per value
+		private final int [][] tier;	// tier per value, -1 for placeholder
+		private final int [][] chkPos;	// positions that must not be empty
+		private final int [][] chkTier;
+		private final boolean [] chk;	// true if empty check applies
+		private final int [] shift;		// vector with the same values one position later, or -1
+		
+		VidPlan(final boolean nsMap[][][], final int nsMapLen [], final boolean noEmpty, final int vectNumAllowEmpty) {
+			this.nsMap = nsMap;
+			this.nsMapLen = nsMapLen;
+			this.noEmpty = noEmpty;
+			this.vectNumAllowEmpty = vectNumAllowEmpty;
+			int cnt = nsMapLen.length;
+			this.window = (nsMap.length > 0) ? nsMap[0].length : 0;
+			this.tiers = (window > 0) ? Math.max(1, nsMap[0][0].length-1) : 1;
+			
+			pos = new int[cnt][];
+			tier = new int[cnt][];
+			chkPos = new int[cnt][];
+			chkTier = new int[cnt][];
+			chk = new boolean[cnt];
+			shift = new int[cnt];
+			
+			List<Integer> pl = new ArrayList<>(), tl = new ArrayList<>(), cpl = new ArrayList<>(), ctl = new ArrayList<>();
+			for (int x=0;x<cnt;x++) {
+				pl.clear(); tl.clear(); cpl.clear(); ctl.clear();
+				chk[x] = noEmpty && x != vectNumAllowEmpty;
+				if (nsMapLen[x] > 0) {
+					for (int i=0;i<window;i++) {
+						if (!nsMap[x][i][0]) continue;
+						cpl.add(i); ctl.add(0);
+						if (nsMap[x][i].length > 1) {
+							// dependent values: placeholders for the positions not used
+							for (int d=1;d<nsMap[x][i].length;d++) {
+								pl.add(i);
+								if (nsMap[x][i][d]) {
+									tl.add(d-1);
+									if (d > 1) { cpl.add(i); ctl.add(d-1); }
+								} else {
+									tl.add(-1);
+								}
+							}
+						} else {
+							pl.add(i); tl.add(0);
+						}
+					}
+				}
+				pos[x] = toArray(pl);
+				tier[x] = toArray(tl);
+				chkPos[x] = toArray(cpl);
+				chkTier[x] = toArray(ctl);
+			}
+			
+			// map each vector to the one that hashes the same values in the prior frame
+			HashMap<String, Integer> sigMap = new HashMap<>();
+			for (int x=0;x<cnt;x++) sigMap.put(signature(x, 0), x);
+			for (int x=0;x<cnt;x++) {
+				shift[x] = -1;
+				if (nsMapLen[x] < 1 || pos[x].length == 0) continue;
+				Integer y = sigMap.get(signature(x, 1));
+				if (y != null && chk[y] == chk[x]) shift[x] = y;
+			}
+		}
+		
+		private String signature(int x, int offset) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(nsMapLen[x]).append(chk[x]?'c':'n');
+			for (int k=0;k<pos[x].length;k++) sb.append(':').append(pos[x][k]+offset).append('/').append(tier[x][k]);
+			return sb.toString();
+		}
+		
+		private static int [] toArray(List<Integer> l) {
+			int [] a = new int[l.size()];
+			for (int i=0;i<a.length;i++) a[i] = l.get(i);
+			return a;
+		}
+		
+		/**
+		 * check if this plan was made for these maps and settings
+		 * @return true if it matches
+		 */
+		public boolean isFor(final boolean nsMap[][][], final int nsMapLen [], final boolean noEmpty, final int vectNumAllowEmpty) {
+			return this.nsMap == nsMap && this.nsMapLen == nsMapLen && this.noEmpty == noEmpty && this.vectNumAllowEmpty == vectNumAllowEmpty;
+		}
+	}
+	
+	/**
+	 * Streaming state for a frame: the prior frame and its vids
+	 * frames that are shifted by one reuse the vids of the prior frame
+	 */
+	public static class VidState {
+		private VidPlan plan = null;
+		private int [][] lastFrame = null;
+		private long [] lastSpace = null;
+		private long [][] mul = null;	// digit hash multiplier per position
+		private long [][] add = null;	// digit hash addend per position
+		
+		/**
+		 * drop the prior frame
+		 */
+		public void reset() {
+			plan = null;
+		}
+	}
+	
+	/**
+	 * make a precompiled plan for these vector maps
+	 * 
+	 * @param nsMap vector position map
+	 * @param nsMapLen vector lengths
+	 * @param noEmpty true if no empty elements
+	 * @param vectNumAllowEmpty vector that allows empty
+	 * @return plan or null if no maps
+	 */
+	public static VidPlan makeVidPlan(final boolean nsMap[][][], final int nsMapLen [], final boolean noEmpty, final int vectNumAllowEmpty) {
+		if (nsMap == null || nsMapLen == null) return null;
+		return new VidPlan(nsMap, nsMapLen, noEmpty, vectNumAllowEmpty);
+	}
+	
+	/**
+	 * generate the vids for a frame with a plan
+	 * if the state has the prior frame and this frame is it shifted by one, vids are reused where they can be
+	 * 
+	 * @param plan plan for the dataplane
+	 * @param frameVect frame values [tier][window]
+	 * @param vectSpace vids out
+	 * @param state streaming state for the frame or null
+	 */
+	public static void vectSetGen(final VidPlan plan, final int frameVect [][], long [] vectSpace, VidState state) {
+		Arrays.fill(vectSpace, -1);
+		if (plan == null) return;
+		final int cnt = Math.min(plan.nsMapLen.length, vectSpace.length);
+		final int w = Math.min(plan.window, frameVect[0].length);
+		final int tiers = Math.min(plan.tiers, frameVect.length);
+		
+		if (state == null) state = new VidState();
+		boolean shifted = false;
+		if (state.plan == plan && state.lastSpace.length == vectSpace.length 
+				&& state.lastFrame.length == frameVect.length && state.lastFrame[0].length == frameVect[0].length) {
+			shifted = true;
+			for (int t=0;t<frameVect.length && shifted;t++) {
+				for (int i=0;i<(frameVect[t].length-1);i++) {
+					if (frameVect[t][i] != state.lastFrame[t][i+1]) {
+						shifted = false;
+						break;
+					}
+				}
+			}
+		}
+		if (state.mul == null || state.mul.length != tiers || state.mul[0].length != w) {
+			state.mul = new long[tiers][w];
+			state.add = new long[tiers][w];
+			shifted = false;
+		}
+		
+		// digit hash for each value in the frame, once
+		for (int t=0;t<tiers;t++) {
+			int st = 0;
+			if (shifted && w > 0) {
+				System.arraycopy(state.mul[t], 1, state.mul[t], 0, w-1);
+				System.arraycopy(state.add[t], 1, state.add[t], 0, w-1);
+				st = w-1;
+			}
+			for (int i=st;i<w;i++) {
+				int num = frameVect[t][i];
+				long m = 1, a = 0;
+				if (num < 0) {
+					m *= PRIME;
+					a = (PRIME*a) + 45; // '-'
+					num = (-num);
+				}
+				while (num > 0) {
+				    a = (PRIME*a) + ((num % 10)+48);
+				    m *= PRIME;
+				    num = num / 10;
+				}
+				state.mul[t][i] = m;
+				state.add[t][i] = a;
+			}
+		}
+		
+		for (int x=0;x<cnt;x++) {
+			final int len = plan.nsMapLen[x];
+			if (len < 1) continue;
+			if (shifted && plan.shift[x] >= 0) {
+				vectSpace[x] = state.lastSpace[plan.shift[x]];
+				continue;
+			}
+			if (plan.chk[x]) {
+				final int [] cp = plan.chkPos[x], ct = plan.chkTier[x];
+				boolean empty = false;
+				for (int k=0;k<cp.length;k++) {
+					if (frameVect[ct[k]][cp[k]] == VegML.emptyVect) {
+						empty = true;
+						break;
+					}
+				}
+				if (empty) {
+					vectSpace[x] = -2;
+					continue;
+				}
+			}
+			final int [] p = plan.pos[x], tr = plan.tier[x];
+			long cur = -1;
+			for (int k=0;k<p.length;k++) {
+				final int t = tr[k];
+				final int vect = (t < 0) ? VIDplaceHolder : frameVect[t][p[k]];
+				if (len == 1) {
+					cur = (long)vect;
+				} else if (len == 2) {
+					if (cur == -1) cur = ((((long)vect)*PRIME2) & 0xffffffffL);
+					else cur = (((long)vect) << 32) | cur;
+				} else {
+					if (cur == -1 || cur == 0) cur = PRIME_BASE;
+					if (t < 0) cur = (cur*PH_MUL) + PH_ADD;
+					else cur = (cur*state.mul[t][p[k]]) + state.add[t][p[k]];
+				}
+			}
+			vectSpace[x] = cur;
+		}
+		
+		// save for the next frame
+		if (state.lastFrame == null || state.lastFrame.length != frameVect.length || state.lastFrame[0].length != frameVect[0].length) {
+			state.lastFrame = new int[frameVect.length][frameVect[0].length];
+		}
+		for (int t=0;t<frameVect.length;t++) System.arraycopy(frameVect[t], 0, state.lastFrame[t], 0, frameVect[t].length);
+		if (state.lastSpace == null || state.lastSpace.length != vectSpace.length) state.lastSpace = new long[vectSpace.length];
+		System.arraycopy(vectSpace, 0, state.lastSpace, 0, vectSpace.length);
+		state.plan = plan;
+	}
+	
+	
 	// incremental vector building.. 
 	public static long toVectorV64Inc(final int length, final int vect, long curVect) {		
 		if (length == 1) {
@@ -0,0 +1,174 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+package vegml;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+
+/**
+ * Columnar storage for the value/count/probability-weight triples of all the
+ * AccumArena accumulators in a single numberSet
+ * 
+ * Each accumulator owns a segment [offset, offset+capacity) in the arrays; when a
+ * segment fills it is moved to the end and the old space is wasted until compact()
+ */
+class MLAccumArena implements java.io.Serializable {
+	private static final long serialVersionUID = 2306478832140716458L;
+	
+	private static final int BASE_SIZE = 1024;
+	private static final double GROW_FACTOR = 1.5;
+	
+	int [] val;
+	int [] cnt;
+	int [] probw;
+	private int top = 0;		// next free position
+	private int wasted = 0;		// space held by abandoned segments
+	
+	MLAccumArena() {
+		this(BASE_SIZE);
+	}
+	MLAccumArena(int size) {
+		if (size < 1) size = 1;
+		val = new int[size];
+		cnt = new int[size];
+		probw = new int[size];
+		top = wasted = 0;
+	}
+	
+	//
+	// copy with the same segment layout
+	//
+	synchronized MLAccumArena copy() {
+		MLAccumArena a = new MLAccumArena(1);
+		a.val = Arrays.copyOf(val, val.length);
+		a.cnt = Arrays.copyOf(cnt, cnt.length);
+		a.probw = Arrays.copyOf(probw, probw.length);
+		a.top = top;
+		a.wasted = wasted;
+		return a;
+	}
+	
+	//
+	// allocate a segment, return its offset
+	//
+	synchronized int alloc(int size) {
+		ensure(top+size);
+		int off = top;
+		top += size;
+		return off;
+	}
+	
+	//
+	// release a segment; space is retained until compact
+	//
+	synchronized void free(int offset, int size) {
+		if (offset+size == top) top = offset;
+		else wasted += size;
+	}
+	
+	//
+	// move a segment to a new larger segment at the end
+	//
+	synchronized int grow(int offset, int len, int capacity, int ncapacity) {
+		int noff = alloc(ncapacity);
+		System.arraycopy(val, offset, val, noff, len);
+		System.arraycopy(cnt, offset, cnt, noff, len);
+		System.arraycopy(probw, offset, probw, noff, len);
+		free(offset, capacity);
+		return noff;
+	}
+	
+	private void ensure(int size) {
+		if (size <= val.length) return;
+		int nsize = (int)(val.length*GROW_FACTOR);
+		if (nsize < size) nsize = size;
+		val = Arrays.copyOf(val, nsize);
+		cnt = Arrays.copyOf(cnt, nsize);
+		probw = Arrays.copyOf(probw, nsize);
+	}
+	
+	//
+	// in use
+	//
+	int size() {
+		return top - wasted;
+	}
+	
+	//
+	// true if compacting will recover enough to be worth it
+	//
+	boolean isFragmented() {
+		return top > BASE_SIZE && wasted > (top/2);
+	}
+	
+	//
+	// repack all accumulators in this arena into right sized arrays
+	//
+	synchronized void compact(Iterator<Accum> it) {
+		int [] nval = new int[Math.max(size(), 1)];
+		int [] ncnt = new int[nval.length];
+		int [] nprobw = new int[nval.length];
+		int pos = 0;
+		while (it.hasNext()) {
+			Accum a = it.next();
+			if (!(a instanceof AccumArena)) continue;
+			AccumArena ac = (AccumArena)a;
+			if (ac.arena != this) continue;
+			if (ac.len > 0) {
+				if (pos+ac.len > nval.length) {
+					// size() was off; grow to fit
+					int ns = (int)((pos+ac.len)*GROW_FACTOR);
+					nval = Arrays.copyOf(nval, ns);
+					ncnt = Arrays.copyOf(ncnt, ns);
+					nprobw = Arrays.copyOf(nprobw, ns);
+				}
+				System.arraycopy(val, ac.offset, nval, pos, ac.len);
+				System.arraycopy(cnt, ac.offset, ncnt, pos, ac.len);
+				System.arraycopy(probw, ac.offset, nprobw, pos, ac.len);
+				ac.offset = pos;
+				ac.capacity = ac.len;
+				pos += ac.len;
+			} else {
+				ac.offset = -1;
+				ac.capacity = 0;
+			}
+		}
+		val = nval;
+		cnt = ncnt;
+		probw = nprobw;
+		top = pos;
+		wasted = 0;
+	}
+}
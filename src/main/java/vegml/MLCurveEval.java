@@ -0,0 +1,262 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+
+
+package vegml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import vegml.Data.VDataSet;
+import vegml.Data.VDataSets;
+import vegml.Data.VectorToVid;
+import vegml.VegML.PredictionType;
+import vegml.VegML.VegPCalc;
+import vegml.VegTest.SaveStats;
+
+
+/**
+ * Incremental test set evaluation for learning curves
+ * 
+ * A trained token only changes the accumulators at its frame's vectors (and the defaults), so each
+ * test position is indexed by the (vector number, vid) pairs its frame makes. After training only the 
+ * positions touched since the last evaluation are predicted again and running pass/fail totals kept.
+ * The dataplane default accumulator is used for the default response and to order ties: positions
+ * whose last result was a default, a fail or a tie are predicted every time. Totals are the same as
+ * VegTest.testSets() on the test set.
+ * 
+ * Only for dataplanes whose results come from their accumulators alone: see canUse()
+ */
+class MLCurveEval {
+	private static final byte NOEVAL = 0, PASS = 1, FAIL = 2;
+	
+	private final VDataPlane dp;
+	private final VDataSets testDs;
+	private final int [] posSet, posOffset;		// position -> dataset / offset
+	private final byte [] result;				// position result
+	private final boolean [] vol;				// predict every time
+	private final boolean [] dirty;
+	private final TIntArrayList dirtyList = new TIntArrayList();
+	private final TLongObjectHashMap<TIntArrayList> [] index;	// [vector number] vid -> positions
+	private final TLongObjectHashMap<TIntArrayList> identIndex;	// identity fast path: data vid -> positions
+	private final int identVn;
+	private boolean all = true;
+	private int passTotal = 0, failTotal = 0;
+	
+	// scratch
+	private final VFrame frame = new VFrame();
+	private final List<Long> valueOut = new ArrayList<>();
+	private final List<ValProb> identList = new ArrayList<>(1);
+	
+	/**
+	 * check if the dataplane's results depend only on its accumulators and defaults
+	 */
+	static boolean canUse(VDataPlane dp) {
+		if (dp.isValueOutDependent() || dp.getCfgCallout() != null) return false;
+		if (dp.isFrameReverse() || dp.isSolid()) return false;
+		VegPCalc pc = dp.getCfgPCalc();
+		return (pc == VegML.probNumberSetWeightCalc || pc == VegML.probOnlyCalc);
+	}
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	MLCurveEval(VDataPlane dp, VDataSets testDs) {
+		this.dp = dp;
+		this.testDs = testDs;
+		int total = 0;
+		for (int set=0;set<testDs.size();set++) total += testDs.get(set).size();
+		posSet = new int[total];
+		posOffset = new int[total];
+		result = new byte[total];
+		vol = new boolean[total];
+		dirty = new boolean[total];
+		
+		frame.init(dp);
+		int vnCount = frame.getVectSpace().length;
+		index = new TLongObjectHashMap[vnCount];
+		for (int i=0;i<vnCount;i++) index[i] = new TLongObjectHashMap<>();
+		identVn = dp.getCfgNSVectNumIdentityNumber();
+		identIndex = dp.isCfgIdentityOnly() ? new TLongObjectHashMap<>() : null;
+		
+		// index the positions by the vectors their frames make
+		VContext ctx = new VContext(dp.getVegML());
+		long [] inputNo = dp.getIgnoreInputs();
+		int position = 0;
+		for (int set=0;set<testDs.size();set++) {
+			VDataSet ds = testDs.get(set);
+			for (int i=0;i<ds.size();i++, position++) {
+				posSet[position] = set;
+				posOffset[position] = i;
+				result[position] = NOEVAL;
+				long dvid = ds.getDataVid(i, VegML.emptyVect);
+				if (VegUtil.contains(inputNo, dvid) >= 0) continue; // fixed response
+				
+				valueOut.clear();
+				if (!dp.getFramer().makeFrameSetup(ctx, dp, frame, dp.getFramerArg(), false, valueOut, testDs, set, i)) continue;
+				if (identIndex != null) add(identIndex, dvid, position);
+				VectorToVid.vectSetGen(dp.getVidPlan(), frame.getFrameFull(), frame.getVectSpace(), frame.getVidState());
+				long [] vs = frame.getVectSpace();
+				for (int vn=0;vn<vs.length;vn++) {
+					if (vs[vn] == -2 || vs[vn] == -1 || vs[vn] == 0) continue;
+					add(index[vn], vs[vn], position);
+				}
+			}
+		}
+	}
+	
+	private static void add(TLongObjectHashMap<TIntArrayList> m, long vid, int position) {
+		TIntArrayList l = m.get(vid);
+		if (l == null) {
+			l = new TIntArrayList(2);
+			m.put(vid, l);
+		}
+		l.add(position);
+	}
+	
+	//
+	// note the frame just trained: call after a trainFocus() that trained
+	//
+	void trained(VFrame tframe) {
+		if (all) return;
+		long [] vs = tframe.getVectSpace();
+		for (int vn=0;vn<vs.length && vn<index.length;vn++) {
+			if (vs[vn] == -2 || vs[vn] == -1 || vs[vn] == 0) continue;
+			mark(index[vn].get(vs[vn]));
+		}
+		if (identIndex != null && identVn >= 0 && identVn < vs.length) mark(identIndex.get(vs[identVn]));
+	}
+	
+	private void mark(TIntArrayList l) {
+		if (l == null) return;
+		for (int i=0;i<l.size();i++) {
+			int p = l.getQuick(i);
+			if (dirty[p]) continue;
+			dirty[p] = true;
+			dirtyList.add(p);
+		}
+	}
+	
+	//
+	// predict the changed positions; returns the count predicted
+	//
+	int eval() {
+		VContext ctx = new VContext(dp.getVegML());
+		int cnt = 0;
+		if (all) {
+			for (int p=0;p<result.length;p++) {
+				if (isEvaluated(p)) {
+					predict(ctx, p);
+					cnt++;
+				}
+			}
+			all = false;
+		} else {
+			for (int p=0;p<vol.length;p++) {
+				if (vol[p] && !dirty[p]) {
+					dirty[p] = true;
+					dirtyList.add(p);
+				}
+			}
+			for (int i=0;i<dirtyList.size();i++) {
+				int p = dirtyList.getQuick(i);
+				dirty[p] = false;
+				predict(ctx, p);
+				cnt++;
+			}
+		}
+		dirtyList.resetQuick();
+		return cnt;
+	}
+	
+	// positions that are framed; fixed responses and positions not framed are never counted
+	private boolean isEvaluated(int p) {
+		VDataSet ds = testDs.get(posSet[p]);
+		long dvid = ds.getDataVid(posOffset[p], VegML.emptyVect);
+		if (VegUtil.contains(dp.getIgnoreInputs(), dvid) >= 0) return false;
+		return true;
+	}
+	
+	//
+	// predict a position as VegTest.testSets() does and update the totals
+	//
+	private void predict(VContext ctx, int p) {
+		int set = posSet[p], i = posOffset[p];
+		VDataSet ds = testDs.get(set);
+		Long [] valueId = ds.getValueVD(i);
+		long dvid = ds.getDataVid(i, VegML.emptyVect);
+		
+		boolean match = false, framed = true, v = false;
+		ValProb vp = dp.isCfgIdentityOnly() ? dp.getIdenityValProbIfSingle(dvid) : null;
+		if (vp != null) {
+			// identity fast path
+			identList.clear();
+			identList.add(vp);
+			match = (valueId == null || valueId[0] == 0 || VegUtil.isBestValProb(identList, valueId));
+		} else {
+			valueOut.clear();
+			if (!dp.getFramer().makeFrameSetup(ctx, dp, frame, dp.getFramerArg(), false, valueOut, testDs, set, i)) {
+				framed = false;
+			} else {
+				PredictionType ret = VegTest.testAnswerFocus(ctx, dp, frame, valueOut, valueId, SaveStats.NoSave);
+				match = (ret != PredictionType.None);
+				List<ValProb> vpl = frame.vpList;
+				PredictionType pt = frame.getPredictionType();
+				v = (vpl.size() < 1 || pt == PredictionType.Default || pt == PredictionType.Fail 
+						|| (vpl.size() > 1 && vpl.get(0).probability == vpl.get(1).probability));
+			}
+		}
+		
+		// update totals
+		if (result[p] == PASS) passTotal--;
+		else if (result[p] == FAIL) failTotal--;
+		if (!framed) {
+			result[p] = NOEVAL;
+		} else if (match) {
+			result[p] = PASS;
+			passTotal++;
+		} else {
+			result[p] = FAIL;
+			failTotal++;
+		}
+		vol[p] = v;
+	}
+
+	int getPassTotal() {
+		return passTotal;
+	}
+	int getFailTotal() {
+		return failTotal;
+	}
+}
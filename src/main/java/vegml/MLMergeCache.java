@@ -0,0 +1,259 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+
+
+package vegml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import vegml.VegML.PredictionType;
+
+
+/**
+ * Cached results for merge tuning
+ * 
+ * Merge tuning predicts both dataplanes once then tests many merge matrix candidates over the same 
+ * two ValProb lists per token. Here the lists are flattened into primitive columns with the value 
+ * matches between them found once; a candidate is then a pass over arrays that picks each token's 
+ * winner without making or sorting lists. Sums are made in the same order as 
+ * OptimizerMerge.mergeVPListOnlyCopyAvg() and the winner is the first by VpSort so the results are 
+ * identical.
+ * 
+ * Tokens with a base entry that has no counter (the average could be NaN) use the list merge.
+ * eval() only reads the cache: candidates, or token ranges of one candidate, can be tested concurrently.
+ */
+class MLMergeCache {
+	private final int ptCount;
+	private final int tokenCount;
+	private final long [] cval;			// correct value
+	private final byte [] pt1, pt2;		// prediction type of each list
+	private final int [] off1, off2;	// token -> entry offset
+	private final int maxLen;
+	
+	// base entries
+	private final long [] v1;
+	private final double [] p1;
+	private final int [] c1, k1, pos1;
+	// merge entries
+	private final long [] v2;
+	private final double [] p2;
+	private final int [] c2, pos2;
+	private final int [] m1;	// first base entry with the same value or -1
+	private final int [] d2;	// first prior merge entry with the same value or -1
+	
+	// tokens for the list merge
+	private final List<ValProb> [] raw1, raw2;
+	
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private MLMergeCache(List<List<Long []>> values, List<List<List<ValProb>>> inputv1, List<List<List<ValProb>>> inputv2) {
+		ptCount = VegML.getPredictionTypeCount();
+		int tcnt = 0, n1 = 0, n2 = 0, ml = 0;
+		for (int i=0;i<values.size();i++) {
+			List<List<ValProb>> inv1 = inputv1.get(i), inv2 = inputv2.get(i);
+			for (int xi=0;xi<values.get(i).size();xi++) {
+				n1 += inv1.get(xi).size();
+				n2 += inv2.get(xi).size();
+				ml = Math.max(ml, inv1.get(xi).size() + inv2.get(xi).size());
+				tcnt++;
+			}
+		}
+		tokenCount = tcnt;
+		maxLen = ml;
+		cval = new long[tcnt];
+		pt1 = new byte[tcnt];
+		pt2 = new byte[tcnt];
+		off1 = new int[tcnt+1];
+		off2 = new int[tcnt+1];
+		v1 = new long[n1];
+		p1 = new double[n1];
+		c1 = new int[n1];
+		k1 = new int[n1];
+		pos1 = new int[n1];
+		v2 = new long[n2];
+		p2 = new double[n2];
+		c2 = new int[n2];
+		pos2 = new int[n2];
+		m1 = new int[n2];
+		d2 = new int[n2];
+		raw1 = new List[tcnt];
+		raw2 = new List[tcnt];
+		
+		int t = 0, e1 = 0, e2 = 0;
+		for (int i=0;i<values.size();i++) {
+			List<Long[]> vl1 = values.get(i);
+			List<List<ValProb>> inv1 = inputv1.get(i), inv2 = inputv2.get(i);
+			for (int xi=0;xi<vl1.size();xi++, t++) {
+				List<ValProb> l1 = inv1.get(xi), l2 = inv2.get(xi);
+				cval[t] = vl1.get(xi)[0];
+				pt1[t] = (byte)(l1.size() > 0 ? l1.get(0).type : PredictionType.Default).ordinal();
+				pt2[t] = (byte)(l2.size() > 0 ? l2.get(0).type : PredictionType.Default).ordinal();
+				off1[t] = e1;
+				off2[t] = e2;
+				boolean list = false;
+				for (int k=0;k<l1.size();k++, e1++) {
+					ValProb vp = l1.get(k);
+					v1[e1] = vp.value;
+					p1[e1] = vp.probability;
+					c1[e1] = vp.count;
+					k1[e1] = vp.counter;
+					pos1[e1] = vp.position;
+					if (vp.counter <= 0) list = true;
+				}
+				for (int k=0;k<l2.size();k++, e2++) {
+					ValProb vp = l2.get(k);
+					v2[e2] = vp.value;
+					p2[e2] = vp.probability;
+					c2[e2] = vp.count;
+					pos2[e2] = vp.position;
+					m1[e2] = ValProb.indexOf(l1, vp.value);
+					d2[e2] = -1;
+					for (int j=0;j<k;j++) {
+						if (l2.get(j).value == vp.value) {
+							d2[e2] = j;
+							break;
+						}
+					}
+				}
+				if (list) {
+					raw1[t] = l1;
+					raw2[t] = l2;
+				}
+			}
+		}
+		off1[t] = e1;
+		off2[t] = e2;
+	}
+	
+	/**
+	 * make the cache from the correct values and the two dataplanes' results
+	 */
+	static MLMergeCache make(List<List<Long []>> values, VResultSet rst1, VResultSet rst2) {
+		if (rst1.getResultsVpList() == null || rst2.getResultsVpList() == null) return null;
+		return new MLMergeCache(values, rst1.getResultsVpList(), rst2.getResultsVpList());
+	}
+	
+	//
+	// test a merge matrix: pass/fail counts [0=pass/1=fail][input1 type][input2 type]
+	//
+	int [][][] eval(double [][] probMatrix) {
+		return eval(probMatrix, 0, tokenCount);
+	}
+	
+	//
+	// test a merge matrix on tokens start to end; counts of ranges sum to the full counts
+	//
+	int [][][] eval(double [][] probMatrix, int start, int end) {
+		int [][][] counts = new int[2][ptCount][ptCount];
+		// scratch merged list
+		double [] mp = new double[maxLen];
+		int [] mc = new int[maxLen], mk = new int[maxLen], mpos = new int[maxLen];
+		long [] mv = new long[maxLen];
+		int [] slot = new int[maxLen];
+		List<ValProb> retVpList = null, freeVpList = null;
+		
+		for (int t=start;t<end;t++) {
+			int a = pt1[t], b = pt2[t];
+			double w = probMatrix[a][b];
+			long mvVal = 0;
+			
+			if (raw1[t] != null) {
+				// merge as lists
+				if (retVpList == null) {
+					retVpList = new ArrayList<>();
+					freeVpList = new ArrayList<>();
+				}
+				retVpList.clear();
+				List<ValProb> vxList = OptimizerMerge.mergeVPListOnlyCopyAvg(raw1[t], raw2[t], probMatrix, null, retVpList, freeVpList);
+				if (vxList.size() > 0) mvVal = vxList.get(0).value;
+			} else {
+				int n = 0;
+				// add in the base
+				if (w < 100) {
+					for (int e=off1[t];e<off1[t+1];e++, n++) {
+						mv[n] = v1[e];
+						mp[n] = p1[e];
+						mc[n] = c1[e];
+						mk[n] = k1[e];
+						mpos[n] = pos1[e];
+					}
+				}
+				// merge in the list
+				if (w > 0) {
+					for (int e=off2[t], j=0;e<off2[t+1];e++, j++) {
+						int x = -1;
+						if (n > 0 && w < 100 && m1[e] >= 0) x = m1[e];
+						else if (d2[e] >= 0) x = slot[d2[e]];
+						if (x >= 0) {
+							mp[x] += p2[e]*w;
+							mc[x] += c2[e];
+							mk[x]++;
+						} else {
+							x = n++;
+							mv[x] = v2[e];
+							mp[x] = p2[e]*w;
+							mc[x] = c2[e];
+							mk[x] = 1;
+							mpos[x] = pos2[e];
+						}
+						slot[j] = x;
+					}
+				}
+				// average and get the first by VpSort
+				int best = -1;
+				double bp = 0;
+				for (int x=0;x<n;x++) {
+					double p = mp[x] / mk[x];
+					if (best < 0 || p > bp 
+							|| (p == bp && (mpos[x] > mpos[best] 
+							|| (mpos[x] == mpos[best] && (mc[x] > mc[best] 
+							|| (mc[x] == mc[best] && mv[x] > mv[best])))))) {
+						best = x;
+						bp = p;
+					}
+				}
+				if (best >= 0) mvVal = mv[best];
+			}
+			
+			boolean pass = (cval[t] == mvVal);
+			if (mvVal == 0) pass = false;
+			counts[pass ? 0 : 1][a][b]++;
+		}
+		return counts;
+	}
+	
+	int getTokenCount() {
+		return tokenCount;
+	}
+}
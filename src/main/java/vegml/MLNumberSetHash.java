@@ -34,6 +34,7 @@ package vegml;
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -66,12 +67,14 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	private static final int MIN_D_SIZE = 512;
 	private static final int MIN_SIZE = 64;
 	
-	private static final double BASE_GROW_FACTOR = 2;	
-	private static final int MAX_CHAIN = 25;	
+	private static final double MAX_LOAD = 0.5;	// open addressing load factor: ~1.5 probes on hit
 	
 	private static int NSH_ID_BASE = 12;
 	
-	private Accum [] aclist = null;
+	// open addressing table: vector codes in keys, accumulators in parallel slots (null == empty)
+	// slots is volatile and set after keys so a concurrent reader sees the keys of the slots it reads
+	private long [] keys = null;
+	private volatile Accum [] slots = null;
 	private int size = 0;
 	private boolean turnedOff;
 	private int setNumber;
@@ -92,6 +95,15 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// solid model..
 	private TLongIntHashMap idSetMap;
 	private boolean solid = false;
+	// solid model mapped from file, in place of idSetMap
+	private transient MLSolidMap solidMap = null;
+	private transient int solidNs = 0;
+	
+	// copy-on-write: count of numberSets sharing the data, shared by all of them
+	private transient volatile int [] shared = null;
+	
+	// columnar storage for AccumArena accumulators (AccumType.Arena)
+	private MLAccumArena arena = null;
 	
 	// stats for transient
 	private transient int valMaxCount = -1;
@@ -102,7 +114,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// Constructor
 	//
 	MLNumberSetHash() {
-		aclist = new Accum [BASE_SIZE];
+		allocTable(BASE_SIZE);
 		prob = probSingle = 0;
 		this.nid = NSH_ID_BASE++;
 	}
@@ -113,7 +125,8 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// Constructor; set base bucket size
 	//
 	MLNumberSetHash(int baseSize, int setNumber, List<Integer> numberSet, List<List<Integer []>> numberSetTier) {
-		aclist = new Accum[baseSize];
+		// the table grows on load; don't pre-allocate large for every numberSet
+		allocTable(Math.min(baseSize, BASE_SIZE));
 		this.vectVectMap = new TLongObjectHashMap<>();
 		this.turnedOff = false;
 		this.setNumber = setNumber;
@@ -133,6 +146,141 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 		this.nid = NSH_ID_BASE++;
 	}
 	
+	//
+	// Constructor for a snapshot; same configuration and shared data
+	//
+	private MLNumberSetHash(MLNumberSetHash from) {
+		this.keys = from.keys;
+		this.slots = from.slots;
+		this.size = from.size;
+		this.turnedOff = from.turnedOff;
+		this.setNumber = from.setNumber;
+		this.numberSet = from.numberSet;
+		this.numberSetTier = from.numberSetTier;
+		this.prob = from.prob;
+		this.probSingle = from.probSingle;
+		this.nid = from.nid;
+		this.vectVectMap = from.vectVectMap;
+		this.recallAnswerAccum = from.recallAnswerAccum;
+		this.predictAnswerAccum = from.predictAnswerAccum;
+		this.probAccum = from.probAccum;
+		this.idSetMap = from.idSetMap;
+		this.solid = from.solid;
+		this.solidMap = from.solidMap;
+		this.solidNs = from.solidNs;
+		this.arena = from.arena;
+		this.shared = from.shared;
+	}
+	
+	//
+	// make a copy-on-write snapshot of this numberSet
+	// the snapshot has its own configuration (turnedOff, numberSet, probability) but shares 
+	// the accumulators, mappings and arena with this one until either writes to them
+	//
+	MLNumberSetHash share() {
+		synchronized (this) {
+		if (shared == null) shared = new int [] {1};
+		MLNumberSetHash nsh = new MLNumberSetHash(this);
+		synchronized (shared) {
+			shared[0]++;
+		}
+		return nsh;
+		}
+	}
+	
+	//
+	// true if the data is shared with a snapshot
+	//
+	boolean isShared() {
+		int [] sh = shared;
+		if (sh == null) return false;
+		synchronized (sh) {
+			return sh[0] > 1;
+		}
+	}
+	
+	//
+	// make the data private before writing to it; copies it if shared with a snapshot
+	// all writes through this numberSet do this, callers that change accumulators 
+	// they got from it must call this first (VDataPlane.getNSHashW())
+	//
+	void own() {
+		if (shared == null) return;
+		synchronized (this) {
+		int [] sh = shared;
+		if (sh == null) return;
+		synchronized (sh) {
+			if (sh[0] > 1) {
+				sh[0]--;
+				copyData();
+			}
+		}
+		shared = null;
+		}
+	}
+	
+	//
+	// leave the share without copying, the caller replaces the data
+	// returns true if the data was shared
+	//
+	private boolean release() {
+		if (shared == null) return false;
+		synchronized (this) {
+		int [] sh = shared;
+		if (sh == null) return false;
+		boolean isShared = false;
+		synchronized (sh) {
+			if (sh[0] > 1) {
+				sh[0]--;
+				isShared = true;
+			}
+		}
+		shared = null;
+		if (isShared) {
+			// keep the small accumulators
+			copyAccums();
+			arena = null;
+		}
+		return isShared;
+		}
+	}
+	
+	//
+	// copy all the shared data
+	//
+	private void copyData() {
+		MLAccumArena narena = null;
+		if (arena != null) narena = arena.copy();
+		Accum [] nslots = new Accum[slots.length];
+		for (int i=0;i<slots.length;i++) {
+			Accum ac = slots[i];
+			if (ac == null) continue;
+			if (narena != null && ac instanceof AccumArena && ((AccumArena)ac).arena == arena) {
+				nslots[i] = ((AccumArena)ac).copyTo(narena);
+			} else {
+				nslots[i] = ac.copy();
+			}
+		}
+		this.keys = Arrays.copyOf(keys, keys.length);
+		this.slots = nslots;
+		this.arena = narena;
+		if (vectVectMap != null) {
+			TLongObjectHashMap<NSVectMap> nmap = new TLongObjectHashMap<>(Math.max(vectVectMap.size(), 10));
+			vectVectMap.forEachEntry((k, v) -> {
+				nmap.put(k, v.copy());
+				return true;
+			});
+			this.vectVectMap = nmap;
+		}
+		copyAccums();
+	}
+	private void copyAccums() {
+		if (probAccum != null) probAccum = probAccum.copy();
+		if (recallAnswerAccum != null) recallAnswerAccum = recallAnswerAccum.copy();
+		if (predictAnswerAccum != null) predictAnswerAccum = predictAnswerAccum.copy();
+		if (idSetMap != null) idSetMap = new TLongIntHashMap(idSetMap);
+	}
+	
 	
 	//
 	// check if this hash for a dimension/setNumber is on or off; if off no training on it
@@ -216,6 +364,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// put this Accum for vector code, check remapping
 	//
 	Accum put(Accum accum) {
+		own();
 		if (isSolid()) return null;
 		NSVectMap vidM = getVectorMapVector(accum.getVectorCode());
 		if (vidM != null) return putDirect(accum, vidM.vectorCode);
@@ -226,32 +375,46 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// put this Accum for vector code, no-remapping
 	//
 	Accum putDirect(Accum accum, long vmid) {
+		own();
 		if (isSolid()) return null;
-		int hc = getHash(vmid, aclist.length);
-		Accum lac = null;
-		Accum ac = aclist[hc];
-		int cnt = 0;
-		while (ac != null) {
-			if (ac.getVectorCode() == vmid) {
-				if (ac == accum) return ac; // same object
-				accum.setNext(ac.getNext());
-				ac.setNext(null);
-				if (lac != null) lac.setNext(accum);
-				else aclist[hc] = accum;
+		if (accum instanceof AccumArena) bindArena((AccumArena)accum);
+		int mask = slots.length-1;
+		int i = getHash(vmid, mask);
+		while (slots[i] != null) {
+			if (keys[i] == vmid) {
+				slots[i] = accum; // replace
 				return accum;
 			}
-			cnt++;
-			lac = ac;
-			ac = ac.getNext();
+			i = (i+1) & mask;
 		}
-		accum.setNext(null);
-		if (lac != null) lac.setNext(accum);
-		else aclist[hc] = accum;
+		keys[i] = vmid;
+		slots[i] = accum;
 		this.size++;
-		checkAndGrow(cnt);
+		checkAndGrow();
 		return accum;
 	}
 	
+	//
+	// move an arena accumulator's values into this numberSet's arena
+	//
+	private void bindArena(AccumArena ac) {
+		if (ac.arena == arena && arena != null) return;
+		synchronized (this) {
+		if (arena == null) arena = new MLAccumArena();
+		}
+		ac.moveTo(arena);
+	}
+	
+	//
+	// re-link arena accumulators after load; the arena is not referenced from them
+	//
+	void relinkArena() {
+		if (arena == null) return;
+		for (int i=0;i<slots.length;i++) {
+			if (slots[i] instanceof AccumArena) ((AccumArena)slots[i]).arena = arena;
+		}
+	}
+	
 	//
 	// update a value count
 	//
@@ -262,6 +425,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 		addVectorValueCount(vectorCode, value, upCount, 0);
 	}
 	void addVectorValueCount(long vectorCode, long value, int upCount, int downCount) {
+		own();
 		if (isSolid()) return;
 		Accum ac = this.get(vectorCode);
 		if (ac == null) return;
@@ -271,6 +435,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	}
 	// down count anything not in list
 	void addVectorValueCount(long vectorCode, List<Long> valueIds, int upCount, int downCount) {
+		own();
 		if (isSolid()) return;
 		Accum ac = this.get(vectorCode);
 		if (ac == null) return;
@@ -299,6 +464,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// if found return accume, else null
 	//
 	Accum addCount(long vectorCode, long value) {
+		own();
 		if (isSolid()) return null;
 		Accum ac = null;
 		NSVectMap vidM = getVectorMapVector(vectorCode);
@@ -311,12 +477,61 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 		ac.addCount(value);
 		return ac;
 	}
+	
+	//
+	// concurrent add count: no table lock, the accumulator locks itself
+	// returns null if not found OR if it could not be read safely; caller must 
+	// then retry with addCount() while holding this numberSet's monitor
+	//
+	Accum addCountConcurrent(long vectorCode, long value) {
+		own();
+		Accum ac = getConcurrent(vectorCode);
+		if (ac == null) return null;
+		ac.addCount(value);
+		return ac;
+	}
+	Accum addTotalConcurrent(long vectorCode) {
+		own();
+		Accum ac = getConcurrent(vectorCode);
+		if (ac == null) return null;
+		ac.adjustTotalInc(1);
+		return ac;
+	}
+	
+	//
+	// lookup without the table lock while inserts may be in progress
+	// entries are never removed while training and resize publishes complete tables through the 
+	// volatile slots, so a hit is always the right accumulator; any miss goes to the locked path
+	// A slot entry is read without a lock: only accumulators that lock themselves (isConcurrent())
+	// are returned, the writer's synchronized addCount()/adjustTotal() before put() publishes them.
+	// The others, including Arena that shares this numberSet's arena columns, take the locked path
+	//
+	private Accum getConcurrent(long vmid) {
+		if (isSolid() || (vectVectMap != null && !vectVectMap.isEmpty())) return null;
+		Accum [] s = slots;
+		long [] k = keys;
+		if (s.length != k.length) return null; // resizing
+		int mask = s.length-1;
+		int i = getHash(vmid, mask);
+		Accum ac;
+		for (int cnt=0;cnt<s.length && (ac = s[i]) != null;cnt++) {
+			if (k[i] == vmid) {
+				if (VegMetrics.enabled) VegMetrics.HASH_PROBES.record(cnt+1);
+				if (!ac.isConcurrent()) return null;
+				return ac;
+			}
+			i = (i+1) & mask;
+		}
+		return null;
+	}
+	
 	// add the to total only not the value
 	Accum addTotal(long vectorCode, long value) {
+		own();
 		if (isSolid()) return null;
 		Accum ac = getDirect(vectorCode);
 		if (ac == null) return null;
-		ac.adjustTotal(ac.total+1);
+		ac.adjustTotalInc(1); // locked: concurrent updates may be in progress
 		return ac;
 	}
 	
@@ -349,16 +564,17 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	//
 	Accum getDirect(long vmid) {
 		if (isSolid()) return null; // solid
-		int hc = getHash(vmid, aclist.length);
-		Accum ac = aclist[hc];
-		int cnt = 0;
-		while (ac != null) {
-			if (ac.getVectorCode() == vmid) return ac;
-			ac = ac.getNext();
-			cnt++;
-			//if (cnt > MAX_CHAIN_WARN) System.out.println("AccumHash["+size+"] cnt["+cnt+"] hc["+hc+"] ["+vmid+"] CURR: "+aclist.length);
-		}
-		return null;
+		int mask = slots.length-1;
+		int i = getHash(vmid, mask);
+		Accum ac;
+		int probes = 1;
+		while ((ac = slots[i]) != null) {
+			if (keys[i] == vmid) break;
+			i = (i+1) & mask;
+			probes++;
+		}
+		if (VegMetrics.enabled) VegMetrics.HASH_PROBES.record(probes);
+		return ac;
 	}
 	
 	boolean remove(long vectorCode) {
@@ -367,29 +583,49 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 		return removeDirect(vectorCode);
 	}
 	boolean removeDirect(long vmid) {
-		int hc = getHash(vmid, aclist.length);
-		Accum lac = null;
-		Accum ac = aclist[hc];
-		
-		while (ac != null) {
-			if (ac.getVectorCode() == vmid) {
-				if (lac != null) lac.setNext(ac.getNext());
-				else aclist[hc] = ac.getNext();
-				ac.setNext(null);
+		own();
+		int mask = slots.length-1;
+		int i = getHash(vmid, mask);
+		while (slots[i] != null) {
+			if (keys[i] == vmid) {
+				deleteSlot(i);
 				size--;
 				return true;
 			}
-			lac = ac;
-			ac = ac.getNext();
+			i = (i+1) & mask;
 		}
 		return false;
 	}
 	
+	//
+	// backward shift delete: keep probe runs intact without tombstones
+	//
+	private void deleteSlot(int pos) {
+		int mask = slots.length-1;
+		int i = pos;
+		while (true) {
+			slots[i] = null;
+			int j = i;
+			while (true) {
+				j = (j+1) & mask;
+				if (slots[j] == null) return;
+				int h = getHash(keys[j], mask);
+				// move j back to i if its home is not cyclically within (i, j]
+				if ((i <= j) ? (i < h && h <= j) : (i < h || h <= j)) continue;
+				keys[i] = keys[j];
+				slots[i] = slots[j];
+				i = j;
+				break;
+			}
+		}
+	}
+	
 	//
 	// remove this value from all accums
 	// retain existing probability
 	//
 	int removeAllValue(long value, boolean retainProbability) {
+		own();
 		if (isSolid()) return 0;
 
 		int cnt = 0;
@@ -415,6 +651,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// remove all accum with no values
 	//
 	int removeAllEmptyAccum() {
+		own();
 		if (isSolid()) return 0;
 				
 		List<Accum> del = new ArrayList<>();
@@ -431,6 +668,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// remove all that are in the list
 	//
 	int removeAllValues(HashMap<Long, HashMap<Long, Integer>> removeLists, boolean retainProbability) {	
+		own();
 		if (this.isSolid()) return 0;
 		int cnt = 0;
 	
@@ -463,6 +701,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// remove all except those in the list
 	//
 	int removeAllVectorsExcept(List<Long> exceptionList) {	
+		own();
 		if (this.isSolid()) return 0;
 		int cnt = 0;
 	
@@ -482,6 +721,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// remove all except those in the list
 	//
 	int removeAllVectors(List<Long> vidList) {	
+		own();
 		if (this.isSolid()) return 0;
 		int cnt = 0;
 		for (Long vid:vidList) {
@@ -494,6 +734,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// devalue all that are in the list
 	//
 	int weightAllValues(HashMap<Long, HashMap<Long, Integer>> removeLists, double weight) {	
+		own();
 		if (this.isSolid()) return 0;
 		int cnt = 0;
 	
@@ -514,6 +755,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// retain existing probability
 	//
 	int removeAllValue(long value, int minCount, int maxCount, boolean retainProbability, HashMap<Long, Integer> exMap) {
+		own();
 		if (isSolid()) return 0;
 		
 		int cnt = 0;
@@ -551,6 +793,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// retain existing probability
 	//
 	int weightAllValue(long value, int minCount, int maxCount, HashMap<Long, Integer> exMap, double weight) {
+		own();
 		if (isSolid()) {
 			return 0;
 		}
@@ -584,6 +827,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	 * @return
 	 */
 	int removeAllNSAccum(int maxTotal, boolean retainProbability) {
+		own();
 		if (isSolid()) {
 			return 0;
 		}
@@ -607,6 +851,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// retain existing probability
 	//
 	int removeAllNSByVotes(HashMap<Long, Integer> nsVotes, int minVotes) {
+		own();
 		if (isSolid()) return 0;
 		
 		List<Accum> del = new ArrayList<>();
@@ -630,6 +875,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// retain existing probability
 	//
 	int removeAllNSByVotesExclude(HashMap<Long, Integer> removeList) {
+		own();
 		if (isSolid()) return 0;
 		
 		List<Accum> del = new ArrayList<>();
@@ -653,6 +899,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// - also removes the value
 	//
 	void updateAccumTotalsWithTrainedValue(long value, boolean remove) {
+		own();
 		if (isSolid()) return;
 		
 		// set accumulator
@@ -686,6 +933,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// Update Accumulator Totals to match actuals - remove attenuation
 	//
 	int syncAccumTotals() {
+		own();
 		if (isSolid()) {
 			return 0;
 		}
@@ -832,10 +1080,10 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	
 	
 	//
-	// get count of hash buckets
+	// get count of hash slots
 	//
 	int getBucketCount() {
-		return aclist.length;
+		return slots.length;
 	}
 	
 	//
@@ -844,42 +1092,20 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
     @Override
     public Iterator<Accum> iterator() {
         Iterator<Accum> it = new Iterator<Accum>() {
-            protected int currentBucket = 0;
-            protected Accum lastAccum = null;
+            protected int currentSlot = 0;
             
             @Override
             public boolean hasNext() {
-            	int i = currentBucket;
-            	if (lastAccum != null) {
-            		if (lastAccum.getNext() != null) return true; // in same bucket
-            		i++;
-            	}
-            	// next bucket
-            	for (;i<aclist.length;i++) {
-            		if (aclist[i] != null) return true;
+            	for (;currentSlot<slots.length;currentSlot++) {
+            		if (slots[currentSlot] != null) return true;
             	}
             	return false;
             }
 
             @Override
             public Accum next() {
-        		// next in bucket
-            	if (lastAccum != null) {
-        			lastAccum = lastAccum.getNext();
-        			if (lastAccum != null) return lastAccum; // in same bucket next  		
-            		// end bucket so next
-            		currentBucket++;
-            	} 
-
-            	// next bucket
-            	for (;currentBucket<aclist.length;currentBucket++) {
-            		if (aclist[currentBucket] != null) {
-            			lastAccum = aclist[currentBucket];
-                    	//System.out.println("getNext3["+currentBucket+"] " + lastAccum);
-            			return lastAccum;
-            		}
-            	}
-                return null;
+            	if (!hasNext()) return null;
+                return slots[currentSlot++];
             }
 
             @Override
@@ -891,29 +1117,24 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
     }
 	
 	//
-	// Check hash table for need to grow, resize it for better fit
+	// Check hash table for need to grow, keep it under the load factor
     //
-	private void checkAndGrow(int bucketSize) {	
-		int avgChain = size/aclist.length;
-		if (avgChain < MAX_CHAIN && bucketSize < MAX_CHAIN) return;
-		int nsize = (int)(aclist.length*BASE_GROW_FACTOR);
-		if (nsize < BASE_SIZE) nsize = BASE_SIZE;
-		if (nsize == this.getBucketCount()) {
-			nsize = nsize*2;
-		}
-		resizeHash(nsize);
+	private void checkAndGrow() {	
+		if (size <= (int)(slots.length*MAX_LOAD)) return;
+		resizeHash(slots.length*2);
 	}
 	
 	//
 	// resize the hash for best fit
 	//
 	private void reBalanceHash() {	
-		int nsize = (size/(int)MAX_CHAIN)*2;
+		int nsize = tableSizeFor((int)(size/MAX_LOAD)+1);
 		if (nsize < MIN_D_SIZE) {
-			nsize = (size/(int)MAX_CHAIN)*4;
+			nsize = tableSizeFor(size*4);
 			if (nsize < MIN_SIZE) nsize = MIN_SIZE; // can go small
 			else nsize = MIN_D_SIZE;
 		}
+		if (nsize == slots.length) return;
 		resizeHash(nsize);
 	}
 	
@@ -921,41 +1142,61 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// resize the hash and move what needs to move
 	//
 	private void resizeHash(int nsize) {	
-		//System.out.println("AccumHash["+size+"] GROW: "+aclist.length+" -> " + nsize);
-		// grow it
-		Accum [] oldlist = aclist;
-		aclist = new Accum [nsize];
-		size = 0;
+		//System.out.println("AccumHash["+size+"] GROW: "+slots.length+" -> " + nsize);
+		int cap = tableSizeFor(nsize);
+		long [] nkeys = new long[cap];
+		Accum [] nslots = new Accum[cap];
+		int mask = cap-1;
 		
-		for (int i=0;i<oldlist.length;i++) {
-			// have to re-add all to get the correct buckets
-			Accum ac = oldlist[i];
-			while (ac != null) {				
-				Accum mvc = ac;
-				ac = ac.getNext();
-				mvc.setNext(null);
-				//putDirect(mvc, mvc.getVectorCode());
-				int hc = getHash( mvc.getVectorCode(), aclist.length);
-	// TODO: optimize, order in bucket based on getTotal()
-				mvc.setNext(aclist[hc]);
-				aclist[hc] = mvc;
-				this.size++;
+		int chain = 0;
+		for (int x=0;x<slots.length;x++) {
+			if (slots[x] == null) continue;
+			int i = getHash(keys[x], mask);
+			int c = 1;
+			while (nslots[i] != null) {
+				i = (i+1) & mask;
+				c++;
 			}
+			if (c > chain) chain = c;
+			nkeys[i] = keys[x];
+			nslots[i] = slots[x];
+		}
+		if (VegMetrics.enabled) {
+			VegMetrics.HASH_RESIZE.inc();
+			VegMetrics.HASH_CHAIN.record(chain);
 		}
+		// publish complete table for concurrent readers
+		keys = nkeys;
+		slots = nslots;
+	}
+	
+	//
+	// allocate empty table, capacity is power of 2
+	//
+	private void allocTable(int capacity) {
+		int cap = tableSizeFor(capacity);
+		keys = new long[cap];
+		slots = new Accum[cap];
+	}
+	
+	private static int tableSizeFor(int cap) {
+		if (cap < 2) return 2;
+		int n = Integer.highestOneBit(cap-1) << 1;
+		if (n < 0) return 1 << 30;
+		return n;
 	}
 
 	//
-	// get the hash bucket for a vectorCode
+	// get the home slot for a vectorCode; mix all 64 bits (murmur3 finalizer)
 	//
-	private static int getHash(long vectorCode, int buckets) {
-		//int val = (int)((vectorCode >> 32) ^ vectorCode); // fold it
-		if (buckets < Short.MAX_VALUE) {
-			int val = (int)((vectorCode >>> 32) ^ vectorCode ^ (vectorCode >>> 16) ^ (vectorCode >>> 48)); // fold it
-			return Math.floorMod(val, buckets);
-		}
-		// larger
-		int val = (int)((vectorCode >>> 32) ^ vectorCode); // fold it
-		return Math.floorMod(val, buckets);
+	private static int getHash(long vectorCode, int mask) {
+		long h = vectorCode;
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (int)h & mask;
 	}
 	
 	//
@@ -970,6 +1211,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// merge all the Accum into this hash
 	//
 	int merge(VDataPlane dataPlane, MLNumberSetHash xhm, VDataPlane xdataPlane) {
+		own();
 		if (xhm == null || xhm.size() < 1) return size;
 		if (xhm == this) return size;
 		if (this.size() == 0) {
@@ -986,6 +1228,8 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 				this.idSetMap = new TLongIntHashMap();
 				this.idSetMap.putAll(xhm.idSetMap);
 			}		
+			// mapped tables are read-only: share them
+			if (xhm.solidMap != null) this.setSolidMap(xhm.solidMap, xhm.solidNs);
 		}
 
 		if (xhm.isSolid()) {
@@ -1055,6 +1299,26 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 		return size;
 	}
 
+	//
+	// merge a training shard into this hash; the shard's accumulators are moved not copied
+	// new values are appended in shard order, so merging shards in data order gives
+	// the same accumulators as training in sequence
+	//
+	int mergeShard(MLNumberSetHash xhm) {
+		own();
+		if (xhm == null || xhm == this) return size;
+		for (int x=0;x<xhm.slots.length;x++) {
+			Accum xac = xhm.slots[x];
+			if (xac == null) continue;
+			Accum tac = this.getDirect(xhm.keys[x]);
+			if (tac == null) this.putDirect(xac, xhm.keys[x]);
+			else tac.mergeShard(xac);
+		}
+		this.probAccum.mergeShard(xhm.probAccum);
+		xhm.clear();
+		return size;
+	}
+
 	//
 	// diff 2 AccumeHash
 	//
@@ -1106,16 +1370,15 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// clear all entries from map
 	//
 	void clear() {
+		if (release()) {
+			// was shared: leave the shared tables alone
+			allocTable(slots.length);
+			vectVectMap = new TLongObjectHashMap<>();
+			this.size = 0;
+			return;
+		}
 		this.size = 0;
-		for (int i=0;i<aclist.length;i++) {
-			Accum ac = aclist[i];
-			while (ac != null) {
-				Accum lac = ac;
-				ac = ac.getNext();
-				lac.setNext(null);
-			}
-			aclist[i] = null;
-		}		
+		Arrays.fill(slots, null);
 		vectVectMap.clear();		
 	}
 	
@@ -1123,18 +1386,15 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// clear all mappings from map
 	//
 	void clearMappings() {
+		own();
 		vectVectMap.clear();
 	}
 	
 	// count the hard way
 	private int countAccum() {
 		int cnt = 0;
-		for (int i=0;i<aclist.length;i++) {
-			Accum ac = aclist[i];
-			while (ac != null) {
-				ac = ac.getNext();
-				cnt++;
-			}
+		for (int i=0;i<slots.length;i++) {
+			if (slots[i] != null) cnt++;
 		}
 		return cnt;
 	}
@@ -1187,12 +1447,25 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	}
 	// get list if sold
 	int [] getListSolid() {
+		if (solidMap != null) return solidMap.getListSolid(solidNs);
 		return idSetMap.values();
 	}
 	long [] getListSolidVid() {
+		if (solidMap != null) return solidMap.getListSolidVid(solidNs);
 		return idSetMap.keys();
 	}
 	
+	//
+	// use the mapped solid tables, position ns in the map
+	//
+	void setSolidMap(MLSolidMap solidMap, int ns) {
+		own();
+		this.solidMap = solidMap;
+		this.solidNs = ns;
+		this.idSetMap = null;
+		this.solid = true;
+	}
+	
 
 
 	//
@@ -1216,6 +1489,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
     // Add mapped vector and current count 
     //
     NSVectMap putVectorMapVector(long vectorCode, long vid, int svid, int count) {
+    	own();
     	NSVectMap vidM = new NSVectMap();
 		vidM.vectorCode = vid;
 		vidM.count = count;
@@ -1236,6 +1510,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// Get mapped vector 
 	//
 	void removeVectorMapVector(long vectorCode) {
+		own();
 		vectVectMap.remove(vectorCode);
 	}
 	
@@ -1282,6 +1557,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// change vsid by brute force
 	//
 	void updateVsidBrutus(int vsid, int newVsid) {
+		own();
 		Iterator<Accum> it = this.iterator();
 		while (it.hasNext()) {
 			Accum at = it.next();
@@ -1343,7 +1619,9 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	//
 	int getVectorCount() {
 		int vCnt = 0;
-		if (idSetMap != null) {
+		if (solidMap != null) {
+			vCnt = solidMap.getVectorCount(solidNs);
+		} else if (idSetMap != null) {
 			vCnt = idSetMap.size();
 		} else {
 			// not exact
@@ -1359,12 +1637,15 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// optimize after training complete
 	//
 	void optimize() {
+		if (isShared()) return; // shared with a snapshot; was optimized before sharing
+		own();
 		vectVectMap.compact();
 		if (this.idSetMap != null) {
 			idSetMap.compact();
-		} else {
+		} else if (solidMap == null) {
 			this.reBalanceHash();			
 		}
+		if (arena != null) arena.compact(this.iterator());
 		recallAnswerAccum.optimize();
 		predictAnswerAccum.optimize();
 		probAccum.optimize();
@@ -1374,6 +1655,7 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// get the Solidified Accumulator group
 	//
 	int getSolid(long vid) {
+		if (solidMap != null) return solidMap.getSolid(solidNs, vid);
 		int id = idSetMap.get(vid);
 		if (id <= 0) return -2;
 		return id-1;
@@ -1384,7 +1666,8 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 	// make solid immutable Model
 	//
 	int makeSolid(VDataPlane dp, List<double []> probabilitySets, List<int []> groupList, List<int []> valueSets, List<long []> valueSetsL) {
-		if (idSetMap != null) return 0;
+		own();
+		if (isSolid()) return 0;
 
 		// iterate the vectVectMap
 		idSetMap = new TLongIntHashMap();
@@ -1473,7 +1756,8 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 		}
 
 		this.clear();
-		this.aclist = new Accum[2];
+		allocTable(2);
+		arena = null;
 		this.vectVectMap = new TLongObjectHashMap<>();
 		//System.out.println("... DONE NS["+this.getSetNumber()+"] groups["+groupList.size()+"]prob["+probabilitySets.size()+"]["+valueSets.size()+"] idset["+idSetMap.size()+"]");
 		
@@ -1627,14 +1911,15 @@ class MLNumberSetHash implements java.io.Serializable, Iterable<Accum> {
 		        if (src.solid) {
 			        // just the map of vid/groupid
 		        	JsonArray jsonNVList = new JsonArray();
-	            	src.idSetMap.forEachEntry((k, v) -> {
+		        	long [] vids = src.getListSolidVid();
+		        	int [] gids = src.getListSolid();
+		        	for (int i=0;i<vids.length;i++) {
 			        	JsonArray jsonNV = new JsonArray();
 			        	//k=1;v=0; // 20 -> 5.4 MB
-	            		jsonNV.add(k);
-	            		jsonNV.add(v);
+	            		jsonNV.add(vids[i]);
+	            		jsonNV.add(gids[i]);
 	            		jsonNVList.add(jsonNV);
-	    	            return true;
-	    	        });
+		        	}
 		            
 	            	jsonV.addProperty("ns", src.setNumber);
 			        JsonElement jsonNS = context.serialize(src.numberSet, List.class);
@@ -32,15 +32,20 @@
 package vegml;
 
 
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
 
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.KryoException;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryo.serializers.FieldSerializer;
 
 import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.map.hash.TIntObjectHashMap;
@@ -52,6 +57,7 @@ class MLSerialize {
 	/**
 	 * Serialize VegML instance to a file
 	 * This uses kryo to save the information in a non-standard form; that is fast and small
+	 * The instance, each dataplane and each numberSet are compressed chunks made in parallel (see MLSerializeChunks)
 	 * Alternately the JSON export can be used
 	 * 
 	 * @param vML VegML instance to save
@@ -59,76 +65,143 @@ class MLSerialize {
 	 * @return true if saved, else false
 	 */
 	static public boolean saveVML(VegML vML, String filename) {
-	    Output output = null;
-	    FileOutputStream fout = null;
-	    Kryo kryo = getKryo();
-
+		return saveVML(vML, filename, null, null);
+	}
+	
+	/**
+	 * Serialize VegML instance with only the selected dataplanes to a file
+	 * 
+	 * @param vML VegML instance to save
+	 * @param filename filename to save to
+	 * @param dimensionTag dimension tag to save, null for all
+	 * @param dataPlaneTag dataplane tag to save, null for all in the dimension
+	 * @return true if saved, else false
+	 */
+	static public boolean saveVML(VegML vML, String filename, String dimensionTag, String dataPlaneTag) {
+		for (int c=0;c<vML.getDataPlaneCount();c++) {
+			if (vML.getDataPlane(c).getSolidMap() != null) {
+			    System.out.println("NOT SAVED to[" + filename+ "] mapped solid model, use saveSolid()");
+				return false;				
+			}
+		}
+		long mt = VegMetrics.MODEL_SAVE.start();
 		try {
-			fout = new FileOutputStream(filename, false);
-			output = new Output(fout);
-			// VegML
-			kryo.writeClassAndObject(output, vML);
-
+			MLSerializeChunks.save(vML, filename, dimensionTag, dataPlaneTag, null);
 		} catch (Exception e) {
 		    System.out.println("NOT SAVED to[" + filename+ "] " + e.getMessage());
 		    e.printStackTrace();
 		    return false;
 		} finally {
-			try {
-				output.flush();
-				output.close();
-				if (fout != null) {
-					fout.flush();
-					fout.close();
-					fout = null;
-				}
-				output = null;
-			} catch (Exception e) {}
+			VegMetrics.MODEL_SAVE.stop(mt);
 		}
 		return true;
 	}
 	
+	/**
+	 * Save a checkpoint of a VegML instance: only chunks that differ from the base file are written,
+	 * the others refer to the base. Loading the checkpoint requires the unchanged base.
+	 * 
+	 * @param vML VegML instance to save
+	 * @param filename filename to save to
+	 * @param baseFile full sectioned file to save against
+	 * @return count of chunks written, -1 if not saved
+	 */
+	static public int saveVMLCheckpoint(VegML vML, String filename, String baseFile) {
+		for (int c=0;c<vML.getDataPlaneCount();c++) {
+			if (vML.getDataPlane(c).getSolidMap() != null) {
+			    System.out.println("NOT SAVED to[" + filename+ "] mapped solid model, use saveSolid()");
+				return -1;				
+			}
+		}
+		long mt = VegMetrics.MODEL_SAVE.start();
+		try {
+			return MLSerializeChunks.save(vML, filename, null, null, baseFile);
+		} catch (Exception e) {
+		    System.out.println("NOT SAVED to[" + filename+ "] " + e.getMessage());
+		    e.printStackTrace();
+		    return -1;
+		} finally {
+			VegMetrics.MODEL_SAVE.stop(mt);
+		}
+	}
+	
 	/**
 	 * Load a VegML instance from a file that has a kryo format of an instance
 	 * @param filename file to load from
 	 * @return VegML instance is loaded, else null
 	 */
 	static public VegML loadVML(String filename) {
+		return loadVML(filename, null, null);
+	}
+	
+	/**
+	 * Load a VegML instance with only the selected dataplanes from a file that has a kryo format of an instance
+	 * Sectioned files only read and decode the selected dataplanes
+	 * 
+	 * @param filename file to load from
+	 * @param dimensionTag dimension tag to load, null for all
+	 * @param dataPlaneTag dataplane tag to load, null for all in the dimension
+	 * @return VegML instance is loaded, else null
+	 */
+	static public VegML loadVML(String filename, String dimensionTag, String dataPlaneTag) {
+		long mt = VegMetrics.MODEL_LOAD.start();
+		try {
+			return loadVMLSelect(filename, dimensionTag, dataPlaneTag);
+		} finally {
+			VegMetrics.MODEL_LOAD.stop(mt);
+		}
+	}
+	private static VegML loadVMLSelect(String filename, String dimensionTag, String dataPlaneTag) {
+		VegML vML = null;
+		if (MLSerializeChunks.isChunkFile(filename)) {
+			try {
+				vML = MLSerializeChunks.load(filename, dimensionTag, dataPlaneTag);
+			} catch (Exception e) {
+				System.out.println("Load Failed file["+filename+"] "+e.getMessage());
+				return null;
+			}
+			relink(vML);
+			return vML;
+		}
+		
+		// single kryo stream
+		vML = loadVMLStream(filename);
+		if (vML != null && (dimensionTag != null || dataPlaneTag != null)) {
+			for (int c=vML.getDataPlaneCount()-1;c>=0;c--) {
+				VDataPlane dp = vML.getDataPlane(c);
+				if (dimensionTag != null && !dimensionTag.equals(dp.getDimensionTag())) vML.removeDataPlane(dp.getDimensionTag(), dp.getTag());
+				else if (dataPlaneTag != null && !dataPlaneTag.equals(dp.getTag())) vML.removeDataPlane(dp.getDimensionTag(), dp.getTag());
+			}
+		}
+		return vML;
+	}
+	
+	//
+	// load a file written as a single kryo stream
+	//
+	private static VegML loadVMLStream(String filename) {
 		InputStream si = null;
 	    VegML vML = null;
 	    int cnt = 0;
-	    String msg = null;
 		try {
 			si = new FileInputStream(filename);		
 			Input input = new Input(si);		    	
 		    Kryo kryo = getKryo();
 		    
-		    Object obj = null;
-		    do {
-		    	obj = null;
-		    	try {
-				//	System.out.println("Load... " );
-		    		obj = kryo.readClassAndObject(input);		    		
-		    	} catch (KryoException eg) {
-		    		msg = eg.getMessage();
-					//System.out.println("  ERROR: loadVML2["+filename+"] exception on read: " + eg.getMessage());
-		    		//eg.printStackTrace();
-		    	} catch (Throwable e) {
-		    		msg = e.getMessage();
-					//System.out.println("  ERROR: loadVML["+filename+"] exception on read: " + cnt);
-					//e.printStackTrace();
-		    	}
-		        if (obj != null) {
-					//System.out.println("loadVML["+filename+"] obj: " + obj.getClass().getName());
-		        	cnt++;	        	
-		        	if (obj instanceof VegML) vML = (VegML)obj; 
-		        } 
-		    } while (obj != null);
-
+		    while (!input.eof()) {
+		    	Object obj = kryo.readClassAndObject(input);
+		    	cnt++;
+		    	if (obj instanceof VegML) vML = (VegML)obj; 
+		    }
 		} catch (FileNotFoundException e) {
 			System.out.println("File not found: " + filename);
+			return null;
+		} catch (KryoException e) {
+			System.out.println("Load Failed file["+filename+"] object["+cnt+"] "+e.getMessage());
+			return null;
 		} catch (Exception e) {
-			System.out.println("ERROR Exception " + e.getMessage());
+			System.out.println("Load Failed file["+filename+"] object["+cnt+"] ERROR Exception "+e.getMessage());
+			return null;
 		} finally {
 			//System.out.println("END getAllNodesFile["+filename+"] ");
 			try {
@@ -139,16 +212,114 @@ class MLSerialize {
 			} catch (Throwable t) {}
 		}	
 		if (vML == null) {
-			System.out.println("Load Failed file["+filename+"]["+cnt+"] "+msg);
+			System.out.println("Load Failed file["+filename+"]["+cnt+"] no VegML");
 		} else {
-			// HACK 
-			// must re-link things as references are off in kryo due to its bugs...
-			for (int c=0;c<vML.getDataPlaneCount();c++) {
-				VDataPlane dp = vML.getDataPlane(c);
-				vML.serdpHash(dp);
-				//System.out.println("loaded DP["+dp.getDimensionTag()+"/"+dp.getTag()+"]");
-				dp.setVegML(vML);
+			relink(vML);
+		}
+	    return vML;
+	}
+	
+	//
+	// HACK 
+	// must re-link things as references are off in kryo due to its bugs...
+	//
+	private static void relink(VegML vML) {
+		for (int c=0;c<vML.getDataPlaneCount();c++) {
+			VDataPlane dp = vML.getDataPlane(c);
+			vML.serdpHash(dp);
+			for (int i=0;i<dp.getNSCount();i++) {
+				MLNumberSetHash nsh = dp.getNSHash(i);
+				if (nsh != null) nsh.relinkArena();
+			}
+			//System.out.println("loaded DP["+dp.getDimensionTag()+"/"+dp.getTag()+"]");
+			dp.setVegML(vML);
+		}
+	}
+	
+	/**
+	 * Save a VegML instance with all solid dataplanes to a solid model file
+	 * The solid tables are written in a flat binary form that loadSolidVML() maps
+	 * in place; the rest of the instance is saved with kryo into the same file
+	 * 
+	 * @param vML VegML instance to save, all dataplanes must be solid
+	 * @param filename filename to save to
+	 * @return true if saved, else false
+	 */
+	static public boolean saveSolidVML(VegML vML, String filename) {
+		List<VDataPlane> dpList = new ArrayList<>();
+		for (int c=0;c<vML.getDataPlaneCount();c++) {
+			VDataPlane dp = vML.getDataPlane(c);
+			if (!dp.isSolid()) {
+			    System.out.println("NOT SAVED to[" + filename+ "] dataplane not solid["+dp.getDimensionTag()+"/"+dp.getTag()+"]");
+				return false;
 			}
+			dpList.add(dp);
+		}
+		
+		RandomAccessFile raf = null;
+		try {
+			// everything but the solid tables
+			ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			Output output = new Output(bout);
+			getSolidKryo().writeClassAndObject(output, vML);
+			output.close();
+
+			raf = new RandomAccessFile(filename, "rw");
+			MLSolidMap.writeFile(raf.getChannel(), bout.toByteArray(), dpList);
+		} catch (Exception e) {
+		    System.out.println("NOT SAVED to[" + filename+ "] " + e.getMessage());
+		    e.printStackTrace();
+		    return false;
+		} finally {
+			try {
+				if (raf != null) raf.close();
+			} catch (Exception e) {}
+		}
+		return true;
+	}
+	
+	/**
+	 * Load a VegML instance from a solid model file
+	 * The solid tables are memory mapped read-only and used in place, the file
+	 * pages are shared by all processes that load the same file
+	 * 
+	 * @param filename file to load from
+	 * @return VegML instance is loaded, else null
+	 */
+	static public VegML loadSolidVML(String filename) {
+	    VegML vML = null;
+		RandomAccessFile raf = null;
+		try {
+			raf = new RandomAccessFile(filename, "r");
+			FileChannel ch = raf.getChannel();
+			long [] header = MLSolidMap.readHeader(ch);
+			Input input = new Input(MLSolidMap.readMeta(ch, header));
+			Object obj = getSolidKryo().readClassAndObject(input);
+			if (!(obj instanceof VegML)) {
+				System.out.println("Load Failed file["+filename+"] no VegML");
+				return null;
+			}
+			vML = (VegML)obj;
+			// mappings stay valid after the channel is closed
+			MLSolidMap [] maps = MLSolidMap.mapAll(ch, header);
+			if (maps.length != vML.getDataPlaneCount()) {
+				System.out.println("Load Failed file["+filename+"] dataplanes["+vML.getDataPlaneCount()+"] != ["+maps.length+"]");
+				return null;
+			}
+			relink(vML);
+			for (int c=0;c<maps.length;c++) {
+				vML.getDataPlane(c).setSolidMap(maps[c]);
+			}
+		} catch (FileNotFoundException e) {
+			System.out.println("File not found: " + filename);
+			return null;
+		} catch (Exception e) {
+			System.out.println("Load Failed file["+filename+"] " + e.getMessage());
+			return null;
+		} finally {
+			try {
+				if (raf != null) raf.close();
+			} catch (Exception e) {}
 		}
 	    return vML;
 	}
@@ -177,4 +348,35 @@ class MLSerialize {
 	    
 	    return kryo;
 	}
+	
+	//
+	// kryo for sectioned files: dataplanes and numberSets are their own chunks
+	//
+	static Kryo getChunkKryo() {
+	    Kryo kryo = getKryo();
+	    FieldSerializer<VegML> vs = new FieldSerializer<>(kryo, VegML.class);
+	    vs.removeField("dpList");
+	    kryo.register(VegML.class, vs);
+	    FieldSerializer<VDataPlane> dps = new FieldSerializer<>(kryo, VDataPlane.class);
+	    dps.removeField("nsHashHash");
+	    kryo.register(VDataPlane.class, dps);
+	    return kryo;
+	}
+	
+	//
+	// kryo for the meta of solid model files: the solid tables are not included
+	//
+	private static Kryo getSolidKryo() {
+	    Kryo kryo = getKryo();
+	    FieldSerializer<VDataPlane> dps = new FieldSerializer<>(kryo, VDataPlane.class);
+	    dps.removeField("probabilitySets");
+	    dps.removeField("valueSets");
+	    dps.removeField("valueSetsL");
+	    dps.removeField("groupSet");
+	    kryo.register(VDataPlane.class, dps);
+	    FieldSerializer<MLNumberSetHash> nss = new FieldSerializer<>(kryo, MLNumberSetHash.class);
+	    nss.removeField("idSetMap");
+	    kryo.register(MLNumberSetHash.class, nss);
+	    return kryo;
+	}
 }
@@ -0,0 +1,513 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+
+
+package vegml;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+
+/**
+ * Sectioned model file: each part of the VegML instance is an independent compressed kryo chunk
+ * 
+ * Chunks are the VegML instance without its dataplanes, each dataplane without its numberSets,
+ * and each numberSet. They are encoded and decoded in parallel on the instance's thread pool,
+ * can be loaded selectively by dataplane, and a bad chunk only loses its dataplane.
+ * 
+ * A checkpoint (delta) file is saved against a full base file: chunks with the same kryo bytes
+ * as a base chunk are not written, the toc points at the base chunk. Loading a checkpoint reads
+ * those chunks from the base. Bases are always full files, so any checkpoint is one step from it.
+ * 
+ * File:
+ *   header	[magic:8][version:4][chunkCount:4][tocOffset:8] pad to 32
+ *   chunks	deflated kryo, in toc order
+ *   toc		base file (relative to this file's directory, empty if none), base length, then
+ * 			per chunk: type, dataplane index, setNumber, dimension tag, dataplane tag, in base,
+ * 			offset, length, raw length, sha-256 prefix of the raw kryo, crc32 of the chunk bytes
+ */
+class MLSerializeChunks {
+	static final long MAGIC = 0x56454743_48554E4BL;	// VEGCHUNK
+	static final int VERSION = 2;
+	private static final int HEADER_SIZE = 32;
+	private static final int BUFFER_SIZE = 1 << 16;
+	
+	// chunk types
+	static final int CHUNK_VEGML = 0;
+	static final int CHUNK_DATAPLANE = 1;
+	static final int CHUNK_NUMBERSET = 2;
+	
+	// kryo is not thread safe
+	private static final ThreadLocal<Kryo> kryos = ThreadLocal.withInitial(() -> MLSerialize.getChunkKryo());
+	
+	/**
+	 * Table of contents entry
+	 */
+	static class Chunk {
+		int type;
+		int dp = -1;				// dataplane index
+		int setNumber = -1;
+		String dimensionTag = "";
+		String dataPlaneTag = "";
+		boolean inBase = false;		// chunk is in the base file
+		long offset;
+		int length;
+		long rawLength;
+		long rawHash;				// of the raw kryo, to match base chunks
+		int crc;
+		
+		Chunk(int type, int dp, int setNumber, VDataPlane dataPlane) {
+			this.type = type;
+			this.dp = dp;
+			this.setNumber = setNumber;
+			if (dataPlane != null) {
+				this.dimensionTag = dataPlane.getDimensionTag();
+				this.dataPlaneTag = dataPlane.getTag();
+			}
+		}
+		private Chunk() {
+		}
+		String getName() {
+			if (type == CHUNK_VEGML) return "vegml";
+			if (type == CHUNK_DATAPLANE) return dimensionTag+"/"+dataPlaneTag;
+			return dimensionTag+"/"+dataPlaneTag+" ns["+setNumber+"]";
+		}
+		// same content key
+		String getKey() {
+			return type+":"+rawLength+":"+rawHash;
+		}
+	}
+	
+	/**
+	 * Table of contents
+	 */
+	private static class Toc {
+		String base = "";			// base file for checkpoints
+		long baseLength = 0;
+		List<Chunk> chunks = new ArrayList<>();
+	}
+	
+	//
+	// true if the file is a sectioned model file
+	//
+	static boolean isChunkFile(String filename) {
+		try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+			if (raf.length() < HEADER_SIZE) return false;
+			return raf.readLong() == MAGIC;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	//
+	// true if the file is a full sectioned file that checkpoints can use as base
+	//
+	static boolean isBaseFile(String filename) {
+		if (!isChunkFile(filename)) return false;
+		try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+			Toc toc = readToc(raf.getChannel());
+			return toc.base.isEmpty();
+		} catch (IOException e) {
+			return false;
+		}
+	}
+	
+	
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	// save
+	
+	/**
+	 * Save the instance, or selected dataplanes of it
+	 * 
+	 * @param vML instance to save
+	 * @param filename file to save to
+	 * @param dimensionTag dimension tag to save, null for all
+	 * @param dataPlaneTag dataplane tag to save, null for all in dimension
+	 * @param baseFile full file to save a checkpoint against, null to save all chunks
+	 * @return count of chunks written to the file
+	 */
+	static int save(VegML vML, String filename, String dimensionTag, String dataPlaneTag, String baseFile) throws IOException {
+		// base chunks by content
+		Toc toc = new Toc();
+		HashMap<String, Chunk> baseChunks = null;
+		if (baseFile != null) {
+			if (new File(baseFile).getCanonicalPath().equals(new File(filename).getCanonicalPath())) {
+				throw new IOException("checkpoint can not replace its base");
+			}
+			try (RandomAccessFile braf = new RandomAccessFile(baseFile, "r")) {
+				Toc btoc = readToc(braf.getChannel());
+				if (!btoc.base.isEmpty()) throw new IOException("base["+baseFile+"] is a checkpoint");
+				baseChunks = new HashMap<>();
+				for (Chunk c:btoc.chunks) baseChunks.put(c.getKey(), c);
+				toc.baseLength = braf.length();
+			}
+			Path dir = Paths.get(filename).toAbsolutePath().getParent();
+			toc.base = dir.relativize(Paths.get(baseFile).toAbsolutePath()).toString();
+		}
+		final HashMap<String, Chunk> bChunks = baseChunks;
+		
+		ExecutorService pool = vML.getThreadPool();
+		int window = Math.max(2, vML.getCfgThreadCount()*2);
+		int written = 0;
+		
+		try (RandomAccessFile raf = new RandomAccessFile(filename, "rw")) {
+			FileChannel ch = raf.getChannel();
+			ch.truncate(0);
+			
+			// chunks are written in order as they complete; at most window in memory
+			ArrayDeque<CompletableFuture<byte []>> pending = new ArrayDeque<>();
+			ArrayDeque<Chunk> pendingChunks = new ArrayDeque<>();
+			long [] pos = new long[1];
+			pos[0] = HEADER_SIZE;
+			
+			List<Object> objs = new ArrayList<>();
+			toc.chunks.add(new Chunk(CHUNK_VEGML, -1, -1, null));
+			objs.add(vML);
+			int dpi = 0;
+			for (int d=0;d<vML.getDataPlaneCount();d++) {
+				VDataPlane dp = vML.getDataPlane(d);
+				if (dimensionTag != null && !dimensionTag.equals(dp.getDimensionTag())) continue;
+				if (dataPlaneTag != null && !dataPlaneTag.equals(dp.getTag())) continue;
+				toc.chunks.add(new Chunk(CHUNK_DATAPLANE, dpi, -1, dp));
+				objs.add(dp);
+				for (int i=0;i<dp.getNSCount();i++) {
+					MLNumberSetHash nsh = dp.getNSHash(i);
+					if (nsh == null) continue;
+					toc.chunks.add(new Chunk(CHUNK_NUMBERSET, dpi, i, dp));
+					objs.add(nsh);
+				}
+				dpi++;
+			}
+			
+			for (int i=0;i<toc.chunks.size();i++) {
+				final Chunk c = toc.chunks.get(i);
+				final Object o = objs.get(i);
+				pending.add(CompletableFuture.supplyAsync(() -> encode(c, o, bChunks), pool));
+				pendingChunks.add(c);
+				if (pending.size() >= window) written += writeChunk(ch, pendingChunks.poll(), pending.poll(), pos);
+			}
+			while (!pending.isEmpty()) written += writeChunk(ch, pendingChunks.poll(), pending.poll(), pos);
+			
+			// toc then header
+			long tocOffset = pos[0];
+			ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			DataOutputStream dout = new DataOutputStream(bout);
+			dout.writeUTF(toc.base);
+			dout.writeLong(toc.baseLength);
+			for (Chunk c:toc.chunks) {
+				dout.writeInt(c.type);
+				dout.writeInt(c.dp);
+				dout.writeInt(c.setNumber);
+				dout.writeUTF(c.dimensionTag);
+				dout.writeUTF(c.dataPlaneTag);
+				dout.writeBoolean(c.inBase);
+				dout.writeLong(c.offset);
+				dout.writeInt(c.length);
+				dout.writeLong(c.rawLength);
+				dout.writeLong(c.rawHash);
+				dout.writeInt(c.crc);
+			}
+			dout.flush();
+			writeFully(ch, ByteBuffer.wrap(bout.toByteArray()), tocOffset);
+			
+			ByteBuffer hb = ByteBuffer.allocate(HEADER_SIZE);
+			hb.putLong(MAGIC).putInt(VERSION).putInt(toc.chunks.size()).putLong(tocOffset);
+			hb.position(0);
+			writeFully(ch, hb, 0);
+		}
+		return written;
+	}
+	
+	//
+	// write a completed chunk, nothing if it is in the base; returns 1 if written
+	//
+	private static int writeChunk(FileChannel ch, Chunk c, CompletableFuture<byte []> f, long [] pos) throws IOException {
+		byte [] b;
+		try {
+			b = f.join();
+		} catch (CompletionException e) {
+			throw new IOException("chunk["+c.getName()+"] " + e.getCause().getMessage(), e.getCause());
+		}
+		if (b == null) return 0;
+		c.offset = pos[0];
+		c.length = b.length;
+		writeFully(ch, ByteBuffer.wrap(b), pos[0]);
+		pos[0] += b.length;
+		return 1;
+	}
+	
+	//
+	// kryo and deflate one object; null if the base has the same chunk
+	//
+	private static byte [] encode(Chunk c, Object o, HashMap<String, Chunk> baseChunks) {
+		ByteArrayOutputStream rout = new ByteArrayOutputStream();
+		Output output = new Output(rout, BUFFER_SIZE);
+		kryos.get().writeClassAndObject(output, o);
+		output.close();
+		byte [] raw = rout.toByteArray();
+		rout = null;
+		c.rawHash = hash(raw);
+		c.rawLength = raw.length;
+		
+		if (baseChunks != null) {
+			Chunk bc = baseChunks.get(c.getKey());
+			if (bc != null) {
+				c.inBase = true;
+				c.offset = bc.offset;
+				c.length = bc.length;
+				c.crc = bc.crc;
+				return null;
+			}
+		}
+
+		ByteArrayOutputStream bout = new ByteArrayOutputStream();
+		Deflater def = new Deflater(Deflater.BEST_SPEED);
+		try (DeflaterOutputStream dout = new DeflaterOutputStream(bout, def, BUFFER_SIZE)) {
+			dout.write(raw);
+		} catch (IOException e) {
+			throw new CompletionException(e);
+		} finally {
+			def.end();
+		}
+		byte [] b = bout.toByteArray();
+		CRC32 crc = new CRC32();
+		crc.update(b);
+		c.crc = (int)crc.getValue();
+		return b;
+	}
+	
+	//
+	// 64 bits of sha-256: crc32 is too weak to decide a chunk need not be written
+	//
+	private static long hash(byte [] raw) {
+		try {
+			byte [] d = MessageDigest.getInstance("SHA-256").digest(raw);
+			return ByteBuffer.wrap(d).getLong();
+		} catch (NoSuchAlgorithmException e) {
+			throw new CompletionException(e);
+		}
+	}
+	
+	private static void writeFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+		while (b.hasRemaining()) pos += ch.write(b, pos);
+	}
+	
+	
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	// load
+	
+	/**
+	 * Load the instance, or selected dataplanes of it
+	 * A dataplane with a bad chunk is reported and not loaded
+	 * 
+	 * @param filename file to load from
+	 * @param dimensionTag dimension tag to load, null for all
+	 * @param dataPlaneTag dataplane tag to load, null for all in dimension
+	 * @return instance or null if the file or instance chunk is bad
+	 */
+	static VegML load(String filename, String dimensionTag, String dataPlaneTag) throws IOException {
+		RandomAccessFile braf = null;
+		try (RandomAccessFile raf = new RandomAccessFile(filename, "r")) {
+			FileChannel ch = raf.getChannel();
+			Toc toc = readToc(ch);
+			
+			// checkpoint: chunks in base are read from there
+			String baseFile = null;
+			FileChannel bch = null;
+			if (!toc.base.isEmpty()) {
+				Path dir = Paths.get(filename).toAbsolutePath().getParent();
+				baseFile = dir.resolve(toc.base).toString();
+				braf = new RandomAccessFile(baseFile, "r");
+				if (braf.length() != toc.baseLength) throw new IOException("base["+baseFile+"] changed since checkpoint");
+				bch = braf.getChannel();
+			}
+			if (toc.chunks.size() < 1 || toc.chunks.get(0).type != CHUNK_VEGML) throw new IOException("no instance chunk");
+			
+			// the instance: all else needs its pool
+			Chunk vc = toc.chunks.get(0);
+			VegML vML = (VegML)decode(vc.inBase ? bch : ch, vc);
+			vML.setCheckpointBase(baseFile != null ? baseFile : filename);
+			ExecutorService pool = vML.getThreadPool();
+			
+			// selected dataplanes and their numberSets in parallel
+			List<Chunk> sel = new ArrayList<>();
+			List<CompletableFuture<Object>> futures = new ArrayList<>();
+			for (int i=1;i<toc.chunks.size();i++) {
+				final Chunk c = toc.chunks.get(i);
+				if (dimensionTag != null && !dimensionTag.equals(c.dimensionTag)) continue;
+				if (dataPlaneTag != null && !dataPlaneTag.equals(c.dataPlaneTag)) continue;
+				final FileChannel cch = c.inBase ? bch : ch;
+				sel.add(c);
+				futures.add(CompletableFuture.supplyAsync(() -> {
+					try {
+						return decode(cch, c);
+					} catch (IOException e) {
+						throw new CompletionException(e);
+					}
+				}, pool));
+			}
+			
+			// assemble in file order
+			HashMap<Integer, VDataPlane> dps = new HashMap<>();
+			HashMap<Integer, String> bad = new HashMap<>();
+			List<Integer> order = new ArrayList<>();
+			for (int i=0;i<sel.size();i++) {
+				Chunk c = sel.get(i);
+				Object o = null;
+				try {
+					o = futures.get(i).join();
+				} catch (CompletionException e) {
+					Throwable t = (e.getCause() != null) ? e.getCause() : e;
+					bad.put(c.dp, "chunk["+c.getName()+"] " + t.getMessage());
+					continue;
+				}
+				if (c.type == CHUNK_DATAPLANE) {
+					VDataPlane dp = (VDataPlane)o;
+					dp.setNSHashes(new HashMap<>());
+					dps.put(c.dp, dp);
+					order.add(c.dp);
+				} else if (c.type == CHUNK_NUMBERSET) {
+					VDataPlane dp = dps.get(c.dp);
+					if (dp != null) dp.setNSHash(c.setNumber, (MLNumberSetHash)o);
+				}
+			}
+			for (Integer d:order) {
+				if (bad.containsKey(d)) {
+					System.out.println("Load ERROR file["+filename+"] " + bad.get(d) + " => dataplane not loaded");
+					continue;
+				}
+				vML.addDataPlane(dps.get(d));
+			}
+			for (Integer d:bad.keySet()) {
+				if (!dps.containsKey(d)) System.out.println("Load ERROR file["+filename+"] " + bad.get(d) + " => dataplane not loaded");
+			}
+			return vML;
+		} finally {
+			if (braf != null) braf.close();
+		}
+	}
+	
+	//
+	// read the header and toc
+	//
+	private static Toc readToc(FileChannel ch) throws IOException {
+		ByteBuffer hb = read(ch, 0, HEADER_SIZE);
+		if (hb.getLong() != MAGIC) throw new IOException("not a sectioned model file");
+		int version = hb.getInt();
+		if (version < 1 || version > VERSION) throw new IOException("model file version["+version+"] not supported");
+		int chunkCount = hb.getInt();
+		long tocOffset = hb.getLong();
+		
+		long tocLen = ch.size() - tocOffset;
+		if (tocLen <= 0 || tocLen > Integer.MAX_VALUE) throw new IOException("bad toc offset["+tocOffset+"]");
+		ByteBuffer tb = read(ch, tocOffset, (int)tocLen);
+		DataInputStream din = new DataInputStream(new ByteArrayInputStream(tb.array()));
+		Toc toc = new Toc();
+		if (version > 1) {
+			toc.base = din.readUTF();
+			toc.baseLength = din.readLong();
+		}
+		for (int i=0;i<chunkCount;i++) {
+			Chunk c = new Chunk();
+			c.type = din.readInt();
+			c.dp = din.readInt();
+			c.setNumber = din.readInt();
+			c.dimensionTag = din.readUTF();
+			c.dataPlaneTag = din.readUTF();
+			if (version > 1) c.inBase = din.readBoolean();
+			c.offset = din.readLong();
+			c.length = din.readInt();
+			c.rawLength = din.readLong();
+			if (version > 1) c.rawHash = din.readLong();
+			c.crc = din.readInt();
+			toc.chunks.add(c);
+		}
+		return toc;
+	}
+	
+	//
+	// read, check and decode one chunk
+	//
+	private static Object decode(FileChannel ch, Chunk c) throws IOException {
+		ByteBuffer b = read(ch, c.offset, c.length);
+		CRC32 crc = new CRC32();
+		crc.update(b.array(), 0, c.length);
+		if ((int)crc.getValue() != c.crc) throw new IOException("crc mismatch");
+		Inflater inf = new Inflater();
+		try {
+			Input input = new Input(new InflaterInputStream(new ByteArrayInputStream(b.array()), inf, BUFFER_SIZE), BUFFER_SIZE);
+			Object o = kryos.get().readClassAndObject(input);
+			input.close();
+			return o;
+		} finally {
+			inf.end();
+		}
+	}
+	
+	private static ByteBuffer read(FileChannel ch, long pos, int size) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate(size);
+		while (b.hasRemaining()) {
+			if (ch.read(b, pos + b.position()) < 0) throw new IOException("file truncated");
+		}
+		b.flip();
+		return b;
+	}
+}
@@ -0,0 +1,450 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+
+
+package vegml;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Read-only solid model tables for one dataplane, mapped from a solid model file
+ * 
+ * The tables are read in place from the page cache: nothing is deserialized and
+ * many JVMs on a host can share one model file. All values are little-endian.
+ * 
+ * File:
+ *   header	[magic:8][version:4][dpCount:4][metaOffset:8][metaLength:8][tableOffset:8] pad to 64
+ *   meta	kryo VegML with the solid tables removed
+ *   table	[sectionOffset:8][sectionLength:8] per dataplane
+ *   section per dataplane, 8 byte aligned
+ * 
+ * Section:
+ *   [groupCount:4][probCount:4][valCount:4][valLong:4][nsCount:4][0:4]
+ *   int [nsCount]			vid count per numberSet
+ *   int [groupCount*3]		probStart, valStart, length for each group id
+ *   double [probCount]		probability pool
+ *   int/long [valCount]	value pool
+ *   per numberSet: long [n] sorted vids, int [n] group ids
+ */
+class MLSolidMap {
+	static final long MAGIC = 0x56454753_4F4C4944L;	// VEGSOLID
+	static final int VERSION = 1;
+	static final int HEADER_SIZE = 64;
+	private static final int SECTION_HEADER_SIZE = 24;
+	
+	private final int groupCount;
+	private final boolean valLong;
+	private final IntBuffer groups;		// probStart, valStart, length
+	private final DoubleBuffer probs;
+	private final IntBuffer vals;
+	private final LongBuffer valsL;
+	private final LongBuffer [] nsVids;
+	private final IntBuffer [] nsGids;
+	
+	private MLSolidMap(int groupCount, boolean valLong, IntBuffer groups, DoubleBuffer probs, IntBuffer vals, LongBuffer valsL, LongBuffer [] nsVids, IntBuffer [] nsGids) {
+		this.groupCount = groupCount;
+		this.valLong = valLong;
+		this.groups = groups;
+		this.probs = probs;
+		this.vals = vals;
+		this.valsL = valsL;
+		this.nsVids = nsVids;
+		this.nsGids = nsGids;
+	}
+	
+	int getGroupCount() {
+		return groupCount;
+	}
+	
+	//
+	// number of values in a group
+	//
+	int getLength(int gid) {
+		return groups.get((gid*3)+2);
+	}
+	
+	double getProb(int gid, int i) {
+		return probs.get(groups.get(gid*3)+i);
+	}
+	
+	long getValue(int gid, int i) {
+		int p = groups.get((gid*3)+1)+i;
+		if (valLong) return valsL.get(p);
+		return vals.get(p);
+	}
+	
+	//
+	// true if value is in the group
+	//
+	boolean containsValue(int gid, long value) {
+		int s = groups.get((gid*3)+1);
+		int e = s + groups.get((gid*3)+2);
+		if (valLong) {
+			for (int p=s;p<e;p++) if (valsL.get(p) == value) return true;
+		} else {
+			for (int p=s;p<e;p++) if (vals.get(p) == value) return true;
+		}
+		return false;
+	}
+	
+	//
+	// group id for a vid in a numberSet, -2 if not present (same as MLNumberSetHash.getSolid())
+	//
+	int getSolid(int ns, long vid) {
+		LongBuffer vids = nsVids[ns];
+		int lo = 0, hi = vids.limit()-1;
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			long v = vids.get(mid);
+			if (v < vid) lo = mid+1;
+			else if (v > vid) hi = mid-1;
+			else return nsGids[ns].get(mid);
+		}
+		return -2;
+	}
+	
+	int getVectorCount(int ns) {
+		if (ns < 0 || ns >= nsVids.length) return 0;
+		return nsVids[ns].limit();
+	}
+	
+	long [] getListSolidVid(int ns) {
+		long [] l = new long[getVectorCount(ns)];
+		for (int i=0;i<l.length;i++) l[i] = nsVids[ns].get(i);
+		return l;
+	}
+	
+	// group id+1 for each vid, matches the idSetMap values
+	int [] getListSolid(int ns) {
+		int [] l = new int[getVectorCount(ns)];
+		for (int i=0;i<l.length;i++) l[i] = nsGids[ns].get(i)+1;
+		return l;
+	}
+	
+	
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	// write
+	
+	/**
+	 * Sequential little-endian writer over a file channel
+	 */
+	static class Writer {
+		private final FileChannel ch;
+		private final ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+		private long position;
+		
+		Writer(FileChannel ch, long position) {
+			this.ch = ch;
+			this.position = position;
+		}
+		long position() {
+			return position + buf.position();
+		}
+		void putInt(int v) throws IOException {
+			if (buf.remaining() < 4) flush();
+			buf.putInt(v);
+		}
+		void putLong(long v) throws IOException {
+			if (buf.remaining() < 8) flush();
+			buf.putLong(v);
+		}
+		void putDouble(double v) throws IOException {
+			if (buf.remaining() < 8) flush();
+			buf.putDouble(v);
+		}
+		void put(byte [] b) throws IOException {
+			flush();
+			ByteBuffer bb = ByteBuffer.wrap(b);
+			while (bb.hasRemaining()) position += ch.write(bb, position);
+		}
+		// pad to 8 bytes
+		void align() throws IOException {
+			while ((position() & 7) != 0) {
+				if (!buf.hasRemaining()) flush();
+				buf.put((byte)0);
+			}
+		}
+		void flush() throws IOException {
+			buf.flip();
+			while (buf.hasRemaining()) position += ch.write(buf, position);
+			buf.clear();
+		}
+	}
+	
+	//
+	// write the solid model file: meta then a section per dataplane
+	//
+	static void writeFile(FileChannel ch, byte [] meta, List<VDataPlane> dpList) throws IOException {
+		ch.truncate(0);
+		Writer out = new Writer(ch, HEADER_SIZE);
+		out.put(meta);
+		out.align();
+		long tableOffset = out.position();
+		for (int i=0;i<dpList.size();i++) {
+			out.putLong(0);
+			out.putLong(0);
+		}
+		long [] sections = new long[dpList.size()*2];
+		for (int i=0;i<dpList.size();i++) {
+			sections[i*2] = out.position();
+			dpList.get(i).writeSolid(out);
+			out.align();
+			sections[(i*2)+1] = out.position() - sections[i*2];
+		}
+		out.flush();
+		
+		// header and table
+		ByteBuffer hb = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		hb.putLong(MAGIC).putInt(VERSION).putInt(dpList.size());
+		hb.putLong(HEADER_SIZE).putLong(meta.length).putLong(tableOffset);
+		hb.position(0);
+		writeFully(ch, hb, 0);
+		ByteBuffer tb = ByteBuffer.allocate(sections.length*8).order(ByteOrder.LITTLE_ENDIAN);
+		for (long l:sections) tb.putLong(l);
+		tb.flip();
+		writeFully(ch, tb, tableOffset);
+		ch.force(false);
+	}
+	private static void writeFully(FileChannel ch, ByteBuffer b, long pos) throws IOException {
+		while (b.hasRemaining()) pos += ch.write(b, pos);
+	}
+	
+	//
+	// write a section from heap solid tables
+	// pools keep their sharing: groups point at the same probability/value sets
+	//
+	static void writeSection(Writer out, VDataPlane dp, int [][] groupSet, double [][] probabilitySets, int [][] valueSets, long [][] valueSetsL) throws IOException {
+		boolean vLong = (valueSets == null);
+		int [] probStart = new int[probabilitySets.length];
+		int probCount = 0;
+		for (int i=0;i<probabilitySets.length;i++) {
+			probStart[i] = probCount;
+			probCount += probabilitySets[i].length;
+		}
+		int vsc = vLong ? valueSetsL.length : valueSets.length;
+		int [] valStart = new int[vsc];
+		int valCount = 0;
+		for (int i=0;i<vsc;i++) {
+			valStart[i] = valCount;
+			valCount += vLong ? valueSetsL[i].length : valueSets[i].length;
+		}
+		
+		long [][] vids = getSortedVids(dp);
+		writeSectionHeader(out, groupSet.length, probCount, valCount, vLong, vids);
+		for (int g=0;g<groupSet.length;g++) {
+			out.putInt(probStart[groupSet[g][0]]);
+			out.putInt(valStart[groupSet[g][1]]);
+			out.putInt(probabilitySets[groupSet[g][0]].length);
+		}
+		out.align();
+		for (double [] pl:probabilitySets) {
+			for (double p:pl) out.putDouble(p);
+		}
+		if (vLong) {
+			for (long [] vl:valueSetsL) {
+				for (long v:vl) out.putLong(v);
+			}
+		} else {
+			for (int [] vl:valueSets) {
+				for (int v:vl) out.putInt(v);
+			}
+		}
+		out.align();
+		writeNSIndex(out, dp, vids);
+	}
+	
+	//
+	// write a section from this mapping (re-save of a mapped model)
+	//
+	void writeSection(Writer out, VDataPlane dp) throws IOException {
+		long [][] vids = getSortedVids(dp);
+		writeSectionHeader(out, groupCount, probs.limit(), valLong ? valsL.limit() : vals.limit(), valLong, vids);
+		for (int i=0;i<groups.limit();i++) out.putInt(groups.get(i));
+		out.align();
+		for (int i=0;i<probs.limit();i++) out.putDouble(probs.get(i));
+		if (valLong) {
+			for (int i=0;i<valsL.limit();i++) out.putLong(valsL.get(i));
+		} else {
+			for (int i=0;i<vals.limit();i++) out.putInt(vals.get(i));
+		}
+		out.align();
+		writeNSIndex(out, dp, vids);
+	}
+	
+	private static void writeSectionHeader(Writer out, int groupCount, int probCount, int valCount, boolean vLong, long [][] vids) throws IOException {
+		out.putInt(groupCount);
+		out.putInt(probCount);
+		out.putInt(valCount);
+		out.putInt(vLong ? 1 : 0);
+		out.putInt(vids.length);
+		out.putInt(0);
+		for (long [] vl:vids) out.putInt(vl.length);
+		out.align();
+	}
+	
+	private static long [][] getSortedVids(VDataPlane dp) {
+		long [][] vids = new long[dp.getNSCount()][];
+		for (int i=0;i<vids.length;i++) {
+			MLNumberSetHash nsh = dp.getNSHash(i);
+			if (nsh == null || !nsh.isSolid()) vids[i] = new long[0];
+			else vids[i] = nsh.getListSolidVid();
+			Arrays.sort(vids[i]);
+		}
+		return vids;
+	}
+	
+	private static void writeNSIndex(Writer out, VDataPlane dp, long [][] vids) throws IOException {
+		for (int i=0;i<vids.length;i++) {
+			if (vids[i].length == 0) continue;
+			MLNumberSetHash nsh = dp.getNSHash(i);
+			for (long v:vids[i]) out.putLong(v);
+			for (long v:vids[i]) out.putInt(nsh.getSolid(v));
+			out.align();
+		}
+	}
+	
+	
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	// map
+	
+	//
+	// read and check the file header
+	// returns [dpCount, metaOffset, metaLength, tableOffset]
+	//
+	static long [] readHeader(FileChannel ch) throws IOException {
+		ByteBuffer hb = read(ch, 0, HEADER_SIZE);
+		if (hb.getLong() != MAGIC) throw new IOException("not a solid model file");
+		int version = hb.getInt();
+		if (version != VERSION) throw new IOException("solid model version["+version+"] not supported");
+		long [] h = new long[4];
+		h[0] = hb.getInt();
+		h[1] = hb.getLong();
+		h[2] = hb.getLong();
+		h[3] = hb.getLong();
+		return h;
+	}
+	
+	static byte [] readMeta(FileChannel ch, long [] header) throws IOException {
+		if (header[2] > Integer.MAX_VALUE) throw new IOException("solid model meta too large");
+		ByteBuffer mb = read(ch, header[1], (int)header[2]);
+		byte [] meta = new byte[mb.remaining()];
+		mb.get(meta);
+		return meta;
+	}
+	
+	//
+	// map all dataplane sections
+	//
+	static MLSolidMap [] mapAll(FileChannel ch, long [] header) throws IOException {
+		int dpCount = (int)header[0];
+		ByteBuffer tb = read(ch, header[3], dpCount*16);
+		MLSolidMap [] maps = new MLSolidMap[dpCount];
+		for (int i=0;i<dpCount;i++) {
+			long off = tb.getLong();
+			tb.getLong();
+			maps[i] = map(ch, off);
+		}
+		return maps;
+	}
+	
+	//
+	// map one section; each table gets its own mapping (a mapping is limited to 2GB)
+	//
+	static MLSolidMap map(FileChannel ch, long off) throws IOException {
+		ByteBuffer sh = read(ch, off, SECTION_HEADER_SIZE);
+		int groupCount = sh.getInt();
+		int probCount = sh.getInt();
+		int valCount = sh.getInt();
+		boolean valLong = (sh.getInt() != 0);
+		int nsCount = sh.getInt();
+		long pos = off + SECTION_HEADER_SIZE;
+		
+		ByteBuffer nb = read(ch, pos, nsCount*4);
+		int [] nsSize = new int[nsCount];
+		for (int i=0;i<nsCount;i++) nsSize[i] = nb.getInt();
+		pos = align(pos + (nsCount*4L));
+		
+		IntBuffer groups = mapRegion(ch, pos, groupCount*3L*4).asIntBuffer();
+		pos = align(pos + (groupCount*3L*4));
+		DoubleBuffer probs = mapRegion(ch, pos, probCount*8L).asDoubleBuffer();
+		pos += probCount*8L;
+		IntBuffer vals = null;
+		LongBuffer valsL = null;
+		if (valLong) {
+			valsL = mapRegion(ch, pos, valCount*8L).asLongBuffer();
+			pos += valCount*8L;
+		} else {
+			vals = mapRegion(ch, pos, valCount*4L).asIntBuffer();
+			pos += valCount*4L;
+		}
+		pos = align(pos);
+		
+		LongBuffer [] nsVids = new LongBuffer[nsCount];
+		IntBuffer [] nsGids = new IntBuffer[nsCount];
+		for (int i=0;i<nsCount;i++) {
+			nsVids[i] = mapRegion(ch, pos, nsSize[i]*8L).asLongBuffer();
+			pos += nsSize[i]*8L;
+			nsGids[i] = mapRegion(ch, pos, nsSize[i]*4L).asIntBuffer();
+			pos = align(pos + (nsSize[i]*4L));
+		}
+		return new MLSolidMap(groupCount, valLong, groups, probs, vals, valsL, nsVids, nsGids);
+	}
+	
+	private static ByteBuffer mapRegion(FileChannel ch, long pos, long size) throws IOException {
+		if (size > Integer.MAX_VALUE) throw new IOException("solid model table too large to map["+size+"]");
+		return ch.map(FileChannel.MapMode.READ_ONLY, pos, size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	private static ByteBuffer read(FileChannel ch, long pos, int size) throws IOException {
+		ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+		while (b.hasRemaining()) {
+			if (ch.read(b, pos + b.position()) < 0) throw new IOException("solid model file truncated");
+		}
+		b.flip();
+		return b;
+	}
+	
+	private static long align(long pos) {
+		return (pos + 7) & ~7L;
+	}
+}
@@ -33,8 +33,12 @@
 package vegml;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import vegml.VDRetainSet.DsRetainVal;
 import vegml.VegTest.TestMod;
@@ -42,254 +46,261 @@ import vegml.VegTest.TestModSet;
 import vegml.Data.VDataSets;
 
 
+/**
+ * Parallel work for training, testing and tuning
+ * 
+ * Work is a list of typed tasks run on the VegML instance's thread pool (see VegML.setCfgThreadCount()
+ * and VegML.setCfgThreadPool()); results are returned in task order. Dataset work is split into
+ * chunks smaller than the callers sets so the pool can balance (work stealing with ForkJoinPool)
+ */
 class MLThreadUtil {
 	
-	///////////////////////////////////////////////////////////////////////////////////////////
-	// Thread Pool
-	private static final int TOTAL_THREADS = 20;
-	private static int threadcount = TOTAL_THREADS;
-	static private List<Thread> theadList = null;
-	static private boolean thruning = false;
-	static class workItem {
-		int cmd;
-		Object item;
-		int pos;
-		ConcurrentHashMap<Integer, Object> outList;
-	}
-	static private List<workItem> workItemList = null;
-
-	// work item
-	static class test extends workItem {
-		public VDataPlane dp;
-		public TestModSet modtest;
-		public int currentTotPass;
-		List<List<DsRetainVal>> rsdSet = null;
-		boolean noRsv;
-		boolean recordInfo = false;
-		VDataSets dss = null;
-		public double mergeValue;
-		
-		test(int position, VDataPlane dp, TestModSet modtest, List<List<DsRetainVal>> rsdSet, VDataSets dss, boolean noRsv, boolean recordInfo) {
-			this.dp = dp;
-			this.modtest = modtest;
-			this.rsdSet = rsdSet;
-			this.noRsv = noRsv;
-			this.recordInfo = recordInfo;
-			this.pos = position;
-			this.dss = dss;
-		}
-	}
-	static List<VResultSet> runTestPredictModify(VDataPlane dp, List<Object> set, TestModSet modtest, List<List<List<DsRetainVal>>> rsdSets, List<VDataSets> dssl, boolean noRsv) {
-		set.clear();
+	// dataset chunks per thread when splitting for balance
+	private static final int CHUNKS_PER_THREAD = 4;
+	// fewest cached tokens in a merge eval task
+	private static final int MIN_MERGE_TOKENS = 4096;
+	
+	static List<VResultSet> runTestPredictModify(VDataPlane dp, TestModSet modtest, List<List<List<DsRetainVal>>> rsdSets, List<VDataSets> dssl, boolean noRsv) {
+		// retained sets match the caller's datasets: no chunks
+		List<Supplier<List<VResultSet>>> tasks = new ArrayList<>();
 		for (int xx=0;xx<dssl.size();xx++) {
-			set.add(new test(xx, dp,  modtest, rsdSets.get(xx), dssl.get(xx), noRsv, false));
+			final List<List<DsRetainVal>> rsdSet = rsdSets.get(xx);
+			tasks.add(() -> VDRetainSet.testSetsModify(dp, modtest, rsdSet, noRsv));
 		}
-		return processSetRS(set, 1);
+		return processSetRS(dp.getVegML(), tasks);
 	}
-	public static List<VResultSet> runTestPredictModify(VDataPlane dp, List<Object> set, TestModSet modtest, List<VDataSets> dssl, boolean noRsv, boolean recordInfo) {
-		set.clear();
-		for (int xx=0;xx<dssl.size();xx++) {
-			set.add(new test(xx, dp,  modtest, null, dssl.get(xx), noRsv, recordInfo));
+	public static List<VResultSet> runTestPredictModify(VDataPlane dp, TestModSet modtest, List<VDataSets> dssl, boolean noRsv, boolean recordInfo) {
+		List<Supplier<List<VResultSet>>> tasks = new ArrayList<>();
+		for (VDataSets dss:getChunks(dp.getVegML(), dssl)) {
+			tasks.add(() -> VegTest.testSetsModify(dp.getVegML(), dp.getDimensionTag(), dp.getTag(), modtest, dss, true, recordInfo, false));
 		}
-		return processSetRS(set, 3);
+		return processSetRS(dp.getVegML(), tasks);
 	}
 
 	static VResultSet runtestSetsDsRetain(VDataPlane dp, List<VDataSets> dssl) {
-		List<Object> set = new ArrayList<>();
-		for (int xx=0;xx<dssl.size();xx++) {
-			set.add(new test(xx, dp, null, null, dssl.get(xx), false, false));
+		List<Supplier<List<VResultSet>>> tasks = new ArrayList<>();
+		for (VDataSets dss:getChunks(dp.getVegML(), dssl)) {
+			tasks.add(() -> {
+				TestModSet dsrTest = new TestModSet();
+				dsrTest.add(dp, new TestMod(dp.getCfgNSWeightRaw()));
+				return VegTest.testSetsModify(dp.getVegML(), dp.getDimensionTag(), dp.getTag(), dsrTest, dss, false, false, true);
+			});
 		}
-		List<VResultSet> rs = processSetRS(set, 4);
-		return rs.get(0);
+		return processSetRS(dp.getVegML(), tasks).get(0);
 	}
 
 	public static VResultSet runTrainDataSets(VDataPlane dp, List<VDataSets> dssl) {
-		List<Object> set = new ArrayList<>();
-		for (int xx=0;xx<dssl.size();xx++) {
-			set.add(new test(xx, dp, null, null, dssl.get(xx), false, false));
+		List<Supplier<List<VResultSet>>> tasks = new ArrayList<>();
+		for (VDataSets dss:getChunks(dp.getVegML(), dssl)) {
+			tasks.add(() -> single(VegTrain.trainDataSets(dp, dss, true)));
 		}
-		List<VResultSet> rs = processSetRS(set, 11);
+		List<VResultSet> rs = processSetRS(dp.getVegML(), tasks);
 		dp.removeAllEmptyAccum();
 		return rs.get(0);
 	}
 	
-	
-	static VResultSet runTestPredictFull(VDataPlane dp, List<Object> set, double mergeValue, List<VDataSets> dssl) {
-		set.clear();
+	// train each shard with its dataset
+	static VResultSet runTrainShards(List<VDataPlane> shards, List<VDataSets> dssl) {
+		List<Supplier<List<VResultSet>>> tasks = new ArrayList<>();
 		for (int xx=0;xx<dssl.size();xx++) {
-			test tp = new test(xx, dp, null, null, dssl.get(xx), false, false);
-			tp.mergeValue = mergeValue;
-			set.add(tp);
+			final VDataPlane sdp = shards.get(xx);
+			final VDataSets dss = dssl.get(xx);
+			tasks.add(() -> single(VegTrain.train(sdp, dss, true)));
 		}
-		List<VResultSet> rs = processSetRS(set, 90);
-		return rs.get(0);
+		return processSetRS(shards.get(0).getVegML(), tasks).get(0);
 	}
 	
-	public static VResultSet runTestSetsFull(VDataPlane dp, List<VDataSets> dssl) {
-		List<Object> set = new ArrayList<>();
-		for (int xx=0;xx<dssl.size();xx++) {
-			test tp = new test(xx, dp, null, null, dssl.get(xx), false, false);
-			tp.mergeValue = 0;
-			set.add(tp);
+	// merge each right shard into its left; each numberSet is a task
+	static void runMergeShards(List<VDataPlane> left, List<VDataPlane> right) {
+		List<Supplier<Boolean>> tasks = new ArrayList<>();
+		for (int xx=0;xx<left.size();xx++) {
+			final VDataPlane ldp = left.get(xx), rdp = right.get(xx);
+			for (int ns=-1;ns<ldp.getNSCount();ns++) {
+				final int setNumber = ns;
+				tasks.add(() -> {
+					ldp.mergeShard(rdp, setNumber);
+					return true;
+				});
+			}
 		}
-		List<VResultSet> rs = processSetRS(set, 90);
-		return rs.get(0);
+		processSet(left.get(0).getVegML(), tasks);
 	}
 	
+	// entangle each numberSet; each is a task
+	static long runEntangle(VDataPlane dp, List<MLNumberSetHash> nshl) {
+		List<Supplier<Integer>> tasks = new ArrayList<>();
+		for (MLNumberSetHash nsh:nshl) {
+			tasks.add(() -> dp.getVegML().entangle(dp, nsh));
+		}
+		long cnt = 0;
+		for (Integer c:processSet(dp.getVegML(), tasks)) cnt += c;
+		return cnt;
+	}
 	
-	// 
-	// do something
-	// move complete items from inList to outList
-	//
-	static private void processWorkItem(workItem wi, int position) {
-		if (wi.item == null) return;
-		Object out = null;
-		
-		if (wi.cmd == 1) {
-			test tsp = (test)wi.item;
-			// process predict
-			out = VDRetainSet.testSetsModify(tsp.dp, tsp.modtest, tsp.rsdSet, tsp.noRsv);			
-		} else if (wi.cmd == 3) {
-			test tsp = (test)wi.item;
-			// process predict
-			out = VegTest.testSetsModify(tsp.dp.getVegML(), tsp.dp.getDimensionTag(), tsp.dp.getTag(), tsp.modtest, tsp.dss, true, tsp.recordInfo, false);	
-		} else if (wi.cmd == 4) {
-			test tsp = (test)wi.item;			
-			TestModSet dsrTest = new TestModSet();
-			dsrTest.add(tsp.dp, new TestMod(tsp.dp.getCfgNSWeightRaw()));
-			out = VegTest.testSetsModify(tsp.dp.getVegML(), tsp.dp.getDimensionTag(), tsp.dp.getTag(), dsrTest, tsp.dss, false, false, true);
-		} else if (wi.cmd == 11) {
-			test tsp = (test)wi.item;
-			VResultSet rs = VegTrain.trainDataSets(tsp.dp.getVegML(), tsp.dp.getDimensionTag(), tsp.dp.getTag(), tsp.dss, true);	
-			List<VResultSet> rl = new ArrayList<>();
-			rl.add(rs);
-			out = rl;
-		} else if (wi.cmd == 90) {
-			// process predict
-			test tp = (test)wi;
-			VResultSet rs = VegTest.testSets(tp.dp.getVegML(), tp.dp.getDimensionTag(), tp.dp.getTag(), tp.dss);
-			List<VResultSet> rl = new ArrayList<>();
-			rl.add(rs);
-			out = rl;
-		} else {
-			out = wi.item;
-			// FIXME process this predictionSet
+	// reduce each numberSet against its subsets; each is a task, returns the summed counts
+	static long [] runReduceSubsets(VDataPlane dp, List<Integer> nsl, VegTune.SubsetLattice lattice, boolean dryRun) {
+		List<Supplier<long []>> tasks = new ArrayList<>();
+		for (Integer ns:nsl) {
+			final int setNumber = ns;
+			tasks.add(() -> VegTune.reduceSubsetsWork(dp, setNumber, lattice, dryRun));
 		}
-		wi.outList.put(position, out);
-	}	
-	static public List<VResultSet> processSetRS(List<Object> set, int cmd) {	
-		ConcurrentHashMap<Integer, Object> rl = processSet(set, cmd);
-		// merge results
-		List<VResultSet> rModList = null;
-		int i=0;
-		while (true) {
-			Object r = rl.get(i);
-			if (r == null) break;	
-			@SuppressWarnings("unchecked")
-			List<VResultSet> ml = (List<VResultSet>)r;
-			if (rModList == null) rModList = ml;
-			else {
-				for (int xx=0;xx<ml.size();xx++) rModList.get(xx).add(ml.get(xx));
-			}
-			i++;
+		long [] cnt = new long[2];
+		for (long [] c:processSet(dp.getVegML(), tasks)) {
+			cnt[0] += c[0];
+			cnt[1] += c[1];
 		}
-		//System.out.println(" MOD_DONE["+rModList.size()+"]");
-		return rModList;		
+		return cnt;
 	}
-
-	// process this set with the pool
-	static public ConcurrentHashMap<Integer, Object> processSet(List<Object> set, int cmd) {	
-		if (theadList == null) {
-			loadThreads(threadcount);
+	
+	// test each merge value from the cached results; each is a task, returns counts in value order
+	static List<int [][][]> runMergeGrid(VegML vML, MLMergeCache cache, List<Double> mergeValues) {
+		List<Supplier<int [][][]>> tasks = new ArrayList<>();
+		for (Double mv:mergeValues) {
+			final double mergeValue = mv;
+			tasks.add(() -> {
+				double [][] megeMatrix = new double[VegML.getPredictionTypeCount()][VegML.getPredictionTypeCount()];
+				OptimizerMerge.fillArray(megeMatrix, mergeValue);
+				return cache.eval(megeMatrix);
+			});
 		}
+		return processSet(vML, tasks);
+	}
+	
+	// test one merge matrix from the cached results; token ranges are tasks, counts are summed
+	static int [][][] runMergeEval(VegML vML, MLMergeCache cache, double [][] megeMatrix) {
+		int tcnt = cache.getTokenCount();
+		int parts = Math.min(vML.getCfgThreadCount() * CHUNKS_PER_THREAD, tcnt / MIN_MERGE_TOKENS);
+		if (parts < 2) return cache.eval(megeMatrix);
 		
-		//System.out.println("processList["+total+"] " + sess.getContext());
-		int total = set.size();
-		ConcurrentHashMap<Integer, Object> listComplete = new ConcurrentHashMap<>();
-
-		// add each to work items
-		for (int i=0;i<set.size();i++) {
-			Object x = set.get(i);
-			addWorkItem(cmd, (workItem)x, listComplete, i == (set.size()-1));
+		List<Supplier<int [][][]>> tasks = new ArrayList<>();
+		for (int p=0;p<parts;p++) {
+			final int start = (int)((long)tcnt * p / parts), end = (int)((long)tcnt * (p+1) / parts);
+			tasks.add(() -> cache.eval(megeMatrix, start, end));
 		}
-
-		// wait for complete
-		while (listComplete.keySet().size() < total) {
-		//	System.out.println("  work-out["+listComplete.keySet().size()+"]["+total+"]");
-			// check if more time
-			try {
-				Thread.sleep(20);
-			} catch (InterruptedException e) { }
+		int [][][] counts = null;
+		for (int [][][] c:processSet(vML, tasks)) {
+			if (counts == null) {
+				counts = c;
+				continue;
+			}
+			for (int i=0;i<c.length;i++) {
+				for (int a=0;a<c[i].length;a++) {
+					for (int b=0;b<c[i][a].length;b++) counts[i][a][b] += c[i][a][b];
+				}
+			}
 		}
-		return listComplete;
+		return counts;
 	}
 	
-	// add some work
-	static private void addWorkItem(int cmd, workItem wi, ConcurrentHashMap<Integer, Object> outList, boolean signal) {
-		wi.cmd = cmd;
-		wi.outList = outList;
-		wi.item = wi;
-		synchronized (workItemList) {
-			workItemList.add(wi);
-			if (signal) workItemList.notifyAll();
-			//if (workItemList.size() == 1) workItemList.notifyAll();
+	// generate the rules for each numberSet; each is a task, returns the counts in set order
+	static List<int []> runGenerateRules(VegML vML, VegRules.RuleSetGen gen, VegRules.RuleEmitter em, List<Integer> nsl) {
+		// each task takes the next numberSet when it runs, not when queued: the emitter's
+		// ordered backpressure needs the numberSet being written to be running
+		final AtomicInteger nextOrder = new AtomicInteger(0);
+		final int [][] counts = new int[nsl.size()][];
+		List<Supplier<Boolean>> tasks = new ArrayList<>();
+		for (int o=0;o<nsl.size();o++) {
+			tasks.add(() -> {
+				int order = nextOrder.getAndIncrement();
+				int setNumber = nsl.get(order);
+				try {
+					counts[order] = gen.generateSet(setNumber, new VegRules.RuleOut(em, order, setNumber, gen.binary));
+				} catch (RuntimeException e) {
+					em.abort();
+					throw e;
+				}
+				return true;
+			});
 		}
+		processSet(vML, tasks);
+		return Arrays.asList(counts);
 	}
-	static private void loadThreads(int count) {
-		theadList = new ArrayList<>();
-		workItemList = new ArrayList<>();
-		thruning = true;
-		for (int i=0;i<count;i++) addThread();
-		//System.out.println("STARTED Threads["+count+"] ");
+	
+	static VResultSet runTestPredictFull(VDataPlane dp, List<VDataSets> dssl) {
+		return runTestSetsFull(dp, dssl);
 	}
-	static void endThreads() {
-		if (!thruning) return;
-		synchronized (workItemList) {
-			if (workItemList == null) return;
-			thruning = false;
-			workItemList.notifyAll();
+	
+	public static VResultSet runTestSetsFull(VDataPlane dp, List<VDataSets> dssl) {
+		List<Supplier<List<VResultSet>>> tasks = new ArrayList<>();
+		for (VDataSets dss:getChunks(dp.getVegML(), dssl)) {
+			tasks.add(() -> single(VegTest.testSets(dp.getVegML(), dp.getDimensionTag(), dp.getTag(), dss)));
 		}
-		try {
-			Thread.sleep(100);
-		} catch (InterruptedException e) { }
-		theadList = null;
-		workItemList = new ArrayList<>();
-		//System.out.println("STARTED Threads["+count+"] ");
+		return processSetRS(dp.getVegML(), tasks).get(0);
 	}
 	
-	// add async processing...
-	static private Thread addThread() {
-		// add thread / timer to process this
-		Thread thread = new Thread("Thread:rss") {
-			public void run() {
-				// would need to have work list... with all params in the global context
-				while (thruning) {
-					workItem wi = getNextWorkItem();
-					if (wi != null) {
-						processWorkItem(wi, wi.pos);
-					} else {
-						synchronized (workItemList) {
-						try {
-							workItemList.wait();
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						}
-						}
-					}
-				}
+	//
+	// release the instance's pool threads; it will be re-made if needed
+	//
+	static void endThreads(VegML vML) {
+		vML.endThreadPool();
+	}
+
+	
+	///////////////////////////////////////////////////////////////////////////////////////////
+	// scheduling
+	
+	private static List<VResultSet> single(VResultSet rs) {
+		List<VResultSet> rl = new ArrayList<>(1);
+		rl.add(rs);
+		return rl;
+	}
+	
+	//
+	// run the tasks on the pool and merge results in task order
+	//
+	static List<VResultSet> processSetRS(VegML vML, List<Supplier<List<VResultSet>>> tasks) {	
+		List<List<VResultSet>> rl = processSet(vML, tasks);
+		// merge results
+		List<VResultSet> rModList = null;
+		for (List<VResultSet> ml:rl) {
+			if (rModList == null) rModList = ml;
+			else {
+				for (int xx=0;xx<ml.size();xx++) rModList.get(xx).add(ml.get(xx));
 			}
-		};
-		thread.start();
-		synchronized (theadList) {
-			theadList.add(thread);
-		}		
-		return thread;
-	}	
-	static private workItem getNextWorkItem() {
-		synchronized (workItemList) {
-			if (workItemList.size() > 0) return workItemList.remove(0);
-			return null;
-		}	
+		}
+		return rModList;		
+	}
+
+	//
+	// run the tasks on the pool, return when all are complete with results in task order
+	//
+	static <T> List<T> processSet(VegML vML, List<Supplier<T>> tasks) {	
+		ExecutorService pool = vML.getThreadPool();
+		List<CompletableFuture<T>> fl = new ArrayList<>(tasks.size());
+		if (VegMetrics.enabled) {
+			// time in the queue and running
+			for (Supplier<T> t:tasks) {
+				final long queued = System.nanoTime();
+				fl.add(CompletableFuture.supplyAsync(() -> {
+					long st = System.nanoTime();
+					VegMetrics.THREAD_WAIT.record(st - queued);
+					T r = t.get();
+					VegMetrics.THREAD_TASK.record(System.nanoTime() - st);
+					return r;
+				}, pool));
+			}
+		} else {
+			for (Supplier<T> t:tasks) fl.add(CompletableFuture.supplyAsync(t, pool));
+		}
+		
+		List<T> rl = new ArrayList<>(tasks.size());
+		for (CompletableFuture<T> f:fl) rl.add(f.join());
+		return rl;
 	}
 	
+	//
+	// split the datasets in order into chunks so there are enough tasks to balance the pool
+	//
+	static List<VDataSets> getChunks(VegML vML, List<VDataSets> dssl) {
+		int target = vML.getCfgThreadCount() * CHUNKS_PER_THREAD;
+		if (dssl.size() >= target) return dssl;
+		int parts = (target + dssl.size() - 1) / dssl.size();
+		
+		List<VDataSets> cl = new ArrayList<>();
+		for (VDataSets dss:dssl) {
+			if (dss.size() < 2 || parts < 2) cl.add(dss);
+			else cl.addAll(dss.getDataSetSplit(Math.min(parts, dss.size())));
+		}
+		return cl;
+	}
 }
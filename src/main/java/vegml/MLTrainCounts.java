@@ -0,0 +1,131 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+package vegml;
+
+import java.util.Arrays;
+
+
+/**
+ * Per thread training counts for the dataplane default and numberSet default accumulators
+ * 
+ * Every trained vector updates these shared accumulators, with threads they are the contention 
+ * point. Each training thread counts into its own copy and adds them in with flush() when done.
+ * Same idea as a LongAdder: striped by thread, summed to read. Counts are exact.
+ */
+class MLTrainCounts {
+	private Accum defAccum;				// dataplane default
+	private Accum [] setAccums;			// numberSet default by setNumber
+	private int [] setTotals;			// numberSet default total only (filtered)
+	private long inCount = 0;
+	
+	MLTrainCounts() {
+		defAccum = new AccumIntHm();
+		setAccums = new Accum[8];
+		setTotals = new int[8];
+	}
+	
+	//
+	// count input
+	//
+	void incCount() {
+		inCount++;
+	}
+	
+	//
+	// dataplane default value
+	//
+	void addDefault(long valueId) {
+		defAccum.addCount(valueId);
+	}
+
+	//
+	// numberSet default value
+	//
+	void addSetDefault(int setNumber, long valueId) {
+		ensure(setNumber);
+		Accum ac = setAccums[setNumber];
+		if (ac == null) {
+			ac = new AccumIntHm();
+			setAccums[setNumber] = ac;
+		}
+		ac.addCount(valueId);
+	}
+	
+	//
+	// numberSet default total only
+	//
+	void addSetDefaultTotal(int setNumber, int inc) {
+		ensure(setNumber);
+		setTotals[setNumber] += inc;
+	}
+	
+	private void ensure(int setNumber) {
+		if (setNumber < setAccums.length) return;
+		int nsize = Math.max(setNumber+1, setAccums.length*2);
+		setAccums = Arrays.copyOf(setAccums, nsize);
+		setTotals = Arrays.copyOf(setTotals, nsize);
+	}
+	
+	//
+	// add all counts into the dataplane and reset
+	// other threads flush to the same accumulators: each merge holds the target's lock
+	//
+	void flush(VDataPlane dp) {
+		Accum dac = dp.getAccumDefault();
+		synchronized (dac) {
+		defAccum.mergeInto(dac);
+		}
+		defAccum.clear();
+
+		for (int i=0;i<setAccums.length;i++) {
+			if (setAccums[i] == null && setTotals[i] == 0) continue;
+			MLNumberSetHash nsh = dp.getNSHashW(i);
+			if (nsh != null) {
+				Accum sac = nsh.getAccumSetDefault();
+				synchronized (sac) {
+				if (setAccums[i] != null) setAccums[i].mergeInto(sac);
+				if (setTotals[i] != 0) sac.adjustTotalInc(setTotals[i]);
+				}
+			}
+			setAccums[i] = null;
+			setTotals[i] = 0;
+		}
+		
+		VegML vML = dp.getVegML();
+		synchronized (vML) {
+		vML.setInCount(vML.getInCount()+inCount);
+		}
+		inCount = 0;
+	}
+}
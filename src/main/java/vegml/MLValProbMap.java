@@ -0,0 +1,182 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+package vegml;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Reusable prediction scratch space for a VFrame
+ * 
+ * Merges value probabilities from all the numberSets: a value to slot open addressing map with the
+ * probability, count and counter in parallel arrays. Merge is O(1) per value and nothing is allocated 
+ * once sized; ValProbs are only made for the final list. Order is first added, same as mergeIntoVPList()
+ */
+class MLValProbMap {
+	private static final int BASE_SIZE = 16;
+	
+	// table: slot index+1 by hash of value, 0 is empty
+	private int [] table;
+	
+	// slots in order added
+	private long [] values;
+	private double [] probs;
+	private int [] counts;
+	private int [] counters;
+	private int [] tpos;			// table position of slot; for clear
+	private int size = 0;
+	
+	// read buffers for one accumulator's values
+	long [] rvalues;
+	int [] rcounts;
+	double [] rprobs;
+	
+	// scratch for the probability calculators
+	final ValProb vp = new ValProb();
+
+	MLValProbMap() {
+		table = new int[BASE_SIZE*2];
+		alloc(BASE_SIZE);
+		rvalues = new long[BASE_SIZE];
+		rcounts = new int[BASE_SIZE];
+		rprobs = new double[BASE_SIZE];
+	}
+	
+	private void alloc(int sz) {
+		values = new long[sz];
+		probs = new double[sz];
+		counts = new int[sz];
+		counters = new int[sz];
+		tpos = new int[sz];
+	}
+	
+	//
+	// read the accumulators values into the read buffers
+	// returns count of values
+	//
+	int read(Accum ac) {
+		int n = ac.getValueCount();
+		if (n > rvalues.length) {
+			int nsz = Math.max(n, rvalues.length*2);
+			rvalues = new long[nsz];
+			rcounts = new int[nsz];
+			rprobs = new double[nsz];
+		}
+		if (n == 0) return 0;
+		return ac.getValPs(rvalues, rcounts, rprobs);
+	}
+	
+	//
+	// add to existing or add new value
+	//
+	void add(long value, double probability, int count) {
+		int mask = table.length-1;
+		int i = hash(value, mask);
+		int s;
+		while ((s = table[i]) != 0) {
+			s--;
+			if (values[s] == value) {
+				probs[s] += probability;
+				counts[s] += count;
+				counters[s]++;
+				return;
+			}
+			i = (i+1) & mask;
+		}
+		if (size == values.length) grow();
+		values[size] = value;
+		probs[size] = probability;
+		counts[size] = count;
+		counters[size] = 1;
+		tpos[size] = i;
+		table[i] = ++size;
+		// keep load under 1/2
+		if (size*2 > table.length) rehash(table.length*2);
+	}
+	
+	//
+	// number of values
+	//
+	int size() {
+		return size;
+	}
+	
+	//
+	// make the ValProbs, in order added
+	//
+	void toVPList(List<ValProb> vpList) {
+		for (int i=0;i<size;i++) {
+			ValProb vp = new ValProb();
+			vp.value = values[i];
+			vp.probability = probs[i];
+			vp.count = counts[i];
+			vp.counter = counters[i];
+			vpList.add(vp);
+		}
+	}
+	
+	//
+	// empty: only touch what was used
+	//
+	void clear() {
+		for (int i=0;i<size;i++) table[tpos[i]] = 0;
+		size = 0;
+	}
+	
+	private void grow() {
+		int nsz = values.length*2;
+		values = Arrays.copyOf(values, nsz);
+		probs = Arrays.copyOf(probs, nsz);
+		counts = Arrays.copyOf(counts, nsz);
+		counters = Arrays.copyOf(counters, nsz);
+		tpos = Arrays.copyOf(tpos, nsz);
+	}
+	
+	private void rehash(int nsize) {
+		table = new int[nsize];
+		int mask = nsize-1;
+		for (int s=0;s<size;s++) {
+			int i = hash(values[s], mask);
+			while (table[i] != 0) i = (i+1) & mask;
+			table[i] = s+1;
+			tpos[s] = i;
+		}
+	}
+	
+	private static int hash(long value, int mask) {
+		long h = value * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+}
@@ -190,6 +190,19 @@ class MLValStrMap implements java.io.Serializable {
 		}
 	}
 	
+	//
+	// copy of all strings and mappings
+	//
+	MLValStrMap copy() {
+		MLValStrMap vsm = new MLValStrMap();
+		vsm.mapReg.putAll(mapReg);
+		for (int i=0;i<strMaps.size();i++) {
+			TIntObjectHashMap<String> dm = strMaps.get(i);
+			vsm.strMaps.add(dm == null ? null : new TIntObjectHashMap<>(dm));
+		}
+		return vsm;
+	}
+	
 	//
 	// Clear all strings and mappings
 	//
@@ -34,6 +34,7 @@ package vegml;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
@@ -59,7 +60,7 @@ class MLVectSetMap implements java.io.Serializable {
 	}
 	
 
-	public int add(int [] vectSet) {
+	public synchronized int add(int [] vectSet) {
 		/*
 		// check if same as last...
 		if (vsList.size() > 0) {
@@ -97,6 +98,15 @@ class MLVectSetMap implements java.io.Serializable {
 	//
 	// update for windowSize
 	// NOTE: this will break if they cross over multiple dataplans that are not all updating
+	//
+	// copy of all vector sets
+	//
+	synchronized MLVectSetMap copy() {
+		MLVectSetMap vsm = new MLVectSetMap();
+		for (int [] set:vsList) vsm.vsList.add(set == null ? null : Arrays.copyOf(set, set.length));
+		return vsm;
+	}
+	
 	// udpates by 1 only
 	public void updateWindowSize(VegML vML, boolean addAfter) {
 		if (this.getCount() < 1 || addAfter) return;		
@@ -180,7 +190,7 @@ class MLVectSetMap implements java.io.Serializable {
 			List<Integer> fset = dpix.getCfgNSFull();
 			
 	    	for (int i=0;i<dpix.getNSCount();i++) {
-	    		MLNumberSetHash hm = dpix.getNSHash(i);
+	    		MLNumberSetHash hm = dpix.getNSHashW(i);
 	    		// make the vectorSet
 	    		List<Integer> set = dpix.getNS(i);
 	    		int [] vs = this.get(fset, set, vsid);
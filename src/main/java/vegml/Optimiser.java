@@ -530,9 +530,12 @@ class Optimiser {
 		
 		TestModSet nstests = new TestModSet();
 		int noAddCnt = 0;
+		long stepStart = 0;
 		
 		// do it until it don't work no more
 		while (true) {
+			VegMetrics.OPTIMIZER_STEP.stop(stepStart);
+			stepStart = VegMetrics.OPTIMIZER_STEP.start();
 			int snscnt = tunedp.getNSCount();
 			//System.out.println("");
 			if (this.isMerge()) System.out.print("STEP["+(step+1)+"]["+dp.getIDString()+"]["+tunedp.getIDString()+"]ns["+snscnt+"]  =>  ");
@@ -686,7 +689,7 @@ class Optimiser {
 					
 					// test combined AND without
 					if (rsl == null) {
-						rsl = MLThreadUtil.runTestPredictModify(dp, new ArrayList<>(), nstests, threadTuneDs, true, true);
+						rsl = MLThreadUtil.runTestPredictModify(dp, nstests, threadTuneDs, true, true);
 					}
 
 					cpassTotal = rsl.get(0).getPassTotal(optType); // together
@@ -755,7 +758,7 @@ class Optimiser {
 						int remain = nsRetainOnlyUnique(rss, ns, true);
 						if (remain > 0) {
 							// run the nums..
-							rsl = MLThreadUtil.runTestPredictModify(tunedp, new ArrayList<>(), nstests, threadTuneDs, true, false);		
+							rsl = MLThreadUtil.runTestPredictModify(tunedp, nstests, threadTuneDs, true, false);		
 							cpassTotal = rsl.get(0).getPassTotal(optType);
 							cwpassTotal = rsl.get(1).getPassTotal(optType);
 			        		vectCnt = tunedp.getVectorCount(ns);
@@ -946,9 +949,10 @@ class Optimiser {
 		// Its Over
 		//////////////////////////////////////
 		System.out.println("");
+		VegMetrics.OPTIMIZER_STEP.stop(stepStart);
 		
 		// stop threads
-		MLThreadUtil.endThreads();
+		MLThreadUtil.endThreads(vML);
 		
 		// save current
 		step++;
@@ -1411,7 +1415,7 @@ class Optimiser {
 			// test with each current NS removed to see if any could be dropped		
 			TestModSet nstests = new TestModSet();
 			getDropTests(nstests);		
-			List<VResultSet> resCurDropList = MLThreadUtil.runTestPredictModify(dp, new ArrayList<>(), nstests, threadTuneDs, false, true);		
+			List<VResultSet> resCurDropList = MLThreadUtil.runTestPredictModify(dp, nstests, threadTuneDs, false, true);		
 			// get baseLine	from set
 			resCur = resCurDropList.remove(0);
 			curPassTotal = resCur.getPassTotal(optType);
@@ -1451,7 +1455,7 @@ class Optimiser {
 						removeNS(drp_ns, nsSets);		
 						// update and re-run tests
 						getDropTests(nstests);
-						resCurDropList = MLThreadUtil.runTestPredictModify(dp, new ArrayList<>(), nstests, threadTuneDs, false, true);		
+						resCurDropList = MLThreadUtil.runTestPredictModify(dp, nstests, threadTuneDs, false, true);		
 						// get baseLine	from set
 						resCur = resCurDropList.remove(0);
 						nstests.remove(0);	
@@ -1469,7 +1473,7 @@ class Optimiser {
 				TestMod t = new TestMod(tunedp.getCfgNSWeightsBase());	
 				nstests.add(tunedp, t.completeNSW());
 				
-				List<VResultSet> rsl = MLThreadUtil.runTestPredictModify(dp, new ArrayList<>(), nstests, threadTuneCtlDs, false, false);		
+				List<VResultSet> rsl = MLThreadUtil.runTestPredictModify(dp, nstests, threadTuneCtlDs, false, false);		
 				resCurCtl = rsl.get(0);
 			}
 		}
@@ -1602,7 +1606,7 @@ class Optimiser {
 		TestModSet nstests = new TestModSet();
 		TestMod t = new TestMod(tunedp.getCfgNSWeightsBase());	
 		nstests.add(tunedp, t.completeNSW());			
-		List<VResultSet> rl = MLThreadUtil.runTestPredictModify(dp, new ArrayList<>(), nstests, threadTuneDs, false, true);		
+		List<VResultSet> rl = MLThreadUtil.runTestPredictModify(dp, nstests, threadTuneDs, false, true);		
 		// get baseLine	from set
 		return rl.get(0).getPassTotal(optType);
 	}
@@ -1647,7 +1651,7 @@ class Optimiser {
 		
 		//System.out.print(" =>");
 		// run base line for each		
-		List<VResultSet> resList = MLThreadUtil.runTestPredictModify(dp, new ArrayList<>(), nstests, threadTuneDs, false, getinfo);
+		List<VResultSet> resList = MLThreadUtil.runTestPredictModify(dp, nstests, threadTuneDs, false, getinfo);
 		//System.out.print(".");	
 		VResultSet rcur = resList.remove(0); // drop current complete??
 		
@@ -1774,6 +1778,9 @@ class Optimiser {
 	protected String getFileNameJSON() {
 		return initBaseName + "-"+(initNameStep+tunedp.getCfgWindowSize())+".json";
 	}
+	protected String getFileNameBase() {
+		return initBaseName + "-"+(initNameStep+tunedp.getCfgWindowSize())+"-base.veg";
+	}
 	protected String getFileNameTemp() {
 		return initName.substring(0, initName.length()-4) + "-"+tunedp.getCfgWindowSize()+"-temp.veg";
 	}
@@ -1787,14 +1794,22 @@ class Optimiser {
 		tunedp.setCfgScratch("optStep", step); // count
 		tunedp.setCfgScratch("optNSTry", nsTryTotal); // ns tried	
 		
+		// step saves are checkpoints: only what changed since the base is written
+		// each window has its own base, written at the window's first save
+		String base = vML.getCheckpointBase();
+		if (base == null || !base.equals(getFileNameBase())) {
+			VFileUtil.delFile(getFileNameBase());
+			vML.saveSilent(getFileNameBase());
+		}
+		
 		// save with alternate default?
 		if (this.optm.getCfg("mergeSetInfoDefaultD") != null) {
 			VDataPlane ddp = vML.getCfgDefaultDataPlane();
 			vML.setCfgDefaultDataPlane(optm.getCfgString("mergeSetInfoDefaultD"), optm.getCfgString("mergeSetInfoDefaultDP"));	
-			vML.saveSilent(getFileName());
+			vML.saveCheckpoint(getFileName());
 			vML.setCfgDefaultDataPlane(ddp.getDimensionTag(), ddp.getTag());
 		} else {
-			vML.saveSilent(getFileName());
+			vML.saveCheckpoint(getFileName());
 		}
 		/*
 		// if unknown, remove idenitity
@@ -1812,7 +1827,7 @@ class Optimiser {
 	void saveTemp() {		
 		String fn = getFileNameTemp();
 		VFileUtil.delFile(fn);
-		vML.saveSilent(fn);
+		vML.saveCheckpoint(fn);
 		System.gc();
 	}
 	void saveJSON() {	
@@ -1981,7 +1996,7 @@ class Optimiser {
 		}	
 			
 		// run base line for each
-		List<VResultSet> resList = MLThreadUtil.runTestPredictModify(dp, new ArrayList<>(), nstests, threadTuneDs, false, true);
+		List<VResultSet> resList = MLThreadUtil.runTestPredictModify(dp, nstests, threadTuneDs, false, true);
 
 		// save NumberSet to each in val2
 		for (int ns=0;ns<resList.size();ns++) resList.get(ns).val2 = ns;
@@ -2027,7 +2042,7 @@ class Optimiser {
 		System.out.print("=>");	
 
 		// run base line for each
-		List<VResultSet> resList = MLThreadUtil.runTestPredictModify(dpbt, new ArrayList<>(), nstests, threadTuneDs, false, false);
+		List<VResultSet> resList = MLThreadUtil.runTestPredictModify(dpbt, nstests, threadTuneDs, false, false);
 		// clear
 		dpbt.reset();
 		
@@ -340,7 +340,7 @@ class Optimiser2 extends Optimiser {
 		System.out.println("");
 		
 		// stop threads
-		MLThreadUtil.endThreads();
+		MLThreadUtil.endThreads(vML);
 	
 		
 		// save current
@@ -407,7 +407,7 @@ class Optimiser2 extends Optimiser {
 		// test with each current NS removed to see if any could be dropped		
 		TestModSet nstests = new TestModSet();
 		getDropTests(nstests);		
-		List<VResultSet> resCurDropList = MLThreadUtil.runTestPredictModify(dp, new ArrayList<>(), nstests, threadTuneDs, false, false);		
+		List<VResultSet> resCurDropList = MLThreadUtil.runTestPredictModify(dp, nstests, threadTuneDs, false, false);		
 		// get baseLine	from set
 		resCur = resCurDropList.remove(0);
 		curPassTotal = resCur.getPassTotal(optType);
@@ -450,7 +450,7 @@ class Optimiser2 extends Optimiser {
 					removeNS(drp_ns, null);						
 					// update and re-run tests
 					getDropTests(nstests);
-					resCurDropList = MLThreadUtil.runTestPredictModify(dp, new ArrayList<>(), nstests, threadTuneDs, false, false);		
+					resCurDropList = MLThreadUtil.runTestPredictModify(dp, nstests, threadTuneDs, false, false);		
 					// get baseLine	from set
 					resCur = resCurDropList.remove(0);
 					nstests.remove(0);	
@@ -468,7 +468,7 @@ class Optimiser2 extends Optimiser {
 			TestMod t = new TestMod(tunedp.getCfgNSWeightsBase());	
 			nstests.add(tunedp, t.completeNSW());
 			
-			List<VResultSet> rsl = MLThreadUtil.runTestPredictModify(dp, new ArrayList<>(), nstests, threadTuneCtlDs, false, false);		
+			List<VResultSet> rsl = MLThreadUtil.runTestPredictModify(dp, nstests, threadTuneCtlDs, false, false);		
 			resCurCtl = rsl.get(0);
 		}
 	
@@ -355,7 +355,7 @@ class Optimize {
 				boolean carvePass = true;
 				if (getCfgBool("applyCarve")) {
 					// assess before depend, then decide if keep depend	
-					rsl = MLThreadUtil.runTestPredictModify(mz.getDP(), new ArrayList<>(), nstests, mz.threadTuneDs, true, true);
+					rsl = MLThreadUtil.runTestPredictModify(mz.getDP(), nstests, mz.threadTuneDs, true, true);
 					curPassTotalAfterCarve = rsl.get(0).getPassTotal(mz.getPType());	
 					
 					if (getCfgBool("fullAlways") && ns == mz.getTuneDP().getCfgNSFullNumber()) {
@@ -711,7 +711,10 @@ class OptimizerLogical {
 		int smax = 8;
 		int lastChange = 0;
 		int startPass = 0;
+		long stepStart = 0;
 		for (int set=0;set<(cycles-1);set++) {
+			VegMetrics.OPTIMIZER_STEP.stop(stepStart);
+			stepStart = VegMetrics.OPTIMIZER_STEP.start();
 			int max = cycles-set;
 			for (int i=0;i<nsVotes.length;i++) {
 				nsVotes[i].clear();
@@ -795,7 +798,7 @@ class OptimizerLogical {
 					System.out.println("DONE");			
 					String fd = "";
 					if (!fullData) fd ="p";
-					dp.getVegML().save(pre+"-"+dp.getCfgWindowSize()+"-w"+wType.ordinal()+"-s"+fd+(set+2)+".veg");
+					dp.getVegML().saveCheckpoint(pre+"-"+dp.getCfgWindowSize()+"-w"+wType.ordinal()+"-s"+fd+(set+2)+".veg");
 					break;
 				}
 				min++;
@@ -814,12 +817,13 @@ class OptimizerLogical {
 			} else {
 				String fd = "";
 				if (!fullData) fd ="p";
-				dp.getVegML().save(pre+"-"+dp.getCfgWindowSize()+"-w"+wType.ordinal()+"-s"+fd+(set+2)+".veg");
+				dp.getVegML().saveCheckpoint(pre+"-"+dp.getCfgWindowSize()+"-w"+wType.ordinal()+"-s"+fd+(set+2)+".veg");
 			}
 			lastChange = res.getPassTotal(optType);
 			if (min <= 0) break;
 			if (max <= 0) break;
 		}
+		VegMetrics.OPTIMIZER_STEP.stop(stepStart);
 
 		dp.setCfgFramerArg(null);	
 		dp.print();
@@ -1000,7 +1004,9 @@ class OptimizerLogical {
 					if (isCtx) continue;
 					
 					// remove this one
-					Accum ac = dp.getAccumulator(ns, vid);
+					MLNumberSetHash nsh = dp.getNSHashW(ns);
+					if (nsh == null) continue;
+					Accum ac = nsh.get(vid);
 					if (ac == null) continue;
 					if (ac.remove(dvid) > 0) changeTotal++;
 				}				
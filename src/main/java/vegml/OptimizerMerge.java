@@ -109,7 +109,6 @@ class OptimizerMerge {
 		int sameSame = 0;
 		VResultSet bts = null;
 		int baseLine = 0;
-		List<Object> set = new ArrayList<>();
 		
 		for (int xcnt=0;xcnt<MAX_ITR;xcnt++) {
 			// make update
@@ -131,7 +130,7 @@ class OptimizerMerge {
 			
 			//////////////////////////////
 			// Test with Value
-			VResultSet ts = MLThreadUtil.runTestPredictFull(dp, set, curVal, threadFullDs);
+			VResultSet ts = MLThreadUtil.runTestPredictFull(dp, threadFullDs);
 			ts.val = curVal;
 			rList.add(ts);
 			int dir = 0;
@@ -232,7 +231,7 @@ class OptimizerMerge {
 			lastts = ts;
 			ldir = dir;
 		}
-		MLThreadUtil.endThreads();
+		MLThreadUtil.endThreads(dp.getVegML());
 		
 		// get final and update
 		Collections.sort(rList, VegUtil.ResultSetSort);
@@ -888,6 +887,11 @@ class OptimizerMerge {
 		
 		// list of values
 		List<Long> dataValList = new ArrayList<>();
+		
+		// results are cached: the pre-set list is tested together
+		MLMergeCache cache = MLMergeCache.make(tuneValueSetsInt, rst1, rst2);
+		List<int [][][]> modSetCounts = null;
+		if (cache != null) modSetCounts = MLThreadUtil.runMergeGrid(dp1.getVegML(), cache, modSet);
 
 		//if (!print) System.out.print("TESTING: ");
 		
@@ -937,6 +941,10 @@ class OptimizerMerge {
 			if (valueMatrixTest) {
 				// individual value weights
 				passBase = runTest(rst1, rst2, tuneValueSetsInt, megeMatrix, valueWeightMatrix, megePassSet, rsfm, rsf1, rsf2, !evalDetails);
+			} else if (cache != null && rsf1 == null && rsf2 == null) {
+				// standard weight matrix from the cached results; the search steps are split by tokens
+				int [][][] counts = (x < modSet.size()) ? modSetCounts.get(x) : MLThreadUtil.runMergeEval(dp1.getVegML(), cache, megeMatrix);
+				passBase = runTest(counts, megePassSet, rsfm, rst1.getDataPlane());
 			} else {
 				// standard weight matrix
 				passBase = runTest(rst1, rst2, tuneValueSetsInt, megeMatrix, null, megePassSet, rsfm, rsf1, rsf2, !evalDetails);
@@ -1132,7 +1140,7 @@ class OptimizerMerge {
 			}
 		}
 
-		MLThreadUtil.endThreads();
+		MLThreadUtil.endThreads(dp1.getVegML());
 		rst1.reset();
 		rst2.reset();
 		
@@ -1234,6 +1242,25 @@ class OptimizerMerge {
 		return passBase;
 	}
 	
+	//////////////////////////
+	// fill results from cached merge counts
+	private static int runTest(int [][][] counts, VResultSet [] megePassSet, VResultSet rsfm, VDataPlane dp) {
+		startResSet(megePassSet, dp);
+		rsfm.reset();
+		int passBase = 0;
+		for (int xx=0;xx<megePassSet.length;xx++) {
+			for (int yy=0;yy<megePassSet.length;yy++) {
+				int pass = counts[0][xx][yy], fail = counts[1][xx][yy];
+				if ((pass + fail) == 0) continue;
+				megePassSet[xx].addResponseCounts(VegML.getPredictionTypeEnum(yy), pass, fail); // mixed with respect to input2
+				rsfm.addResponseCounts(VegML.getPredictionTypeEnum(xx), pass, fail);
+				passBase += pass;
+			}
+		}
+		endResSet(megePassSet);
+		return passBase;
+	}
+	
 	// update for iteration of savce
 	private static double updateMatrix(MergeResultSet set, int fullResultValue, int resultValue, double mergeValue, boolean recordOnly, boolean noExclude) {
 		if (set.done) return set.best.mergeValue;
@@ -1682,165 +1709,5 @@ class OptimizerMerge {
 	}
 
 
-	/*
-
-	///////////////////////////////////////////////////////////////////////////////////////////
-	// Thread Pool
-	private static final int TOTAL_THREADS = 6;
-	private static int threadcount = TOTAL_THREADS;
-	static private List<Thread> theadList = null;
-	static private boolean thruning = false;
-	static class workItem {
-		int cmd;
-		Object item;
-		List<Object> outList;
-	}
-	static private List<workItem> workItemList = null;
-
-	// work item
-	static class test extends workItem {
-		public DataPlane dp;
-		public VDataSets dss;
-		public double mergeValue;
-	}
-
-	static ResultSet runTestPredictFull(DataPlane dp, List<Object> set, double mergeValue, List<VDataSets> dssl) {
-		set.clear();
-		for (int xx=0;xx<dssl.size();xx++) {
-			test tp = new test();
-			// setup
-			tp.dp = dp;
-			tp.mergeValue = mergeValue;
-			tp.dss = dssl.get(xx);
-			set.add(tp);
-		}
-		List<Object> rl = processSet(set, 2);
-		// merge results
-		ResultSet rst = null;
-		for (Object r:rl) {
-			ResultSet rt = (ResultSet)r;
-			if (rst == null) rst = rt;
-			else rst.add(rt);
-		}
-		return rst;
-	}
-	// 
-	// do something
-	// move complete items from inList to outList
-	//
-	static private void processWorkItem(workItem wi) {
-		if (wi.item == null) return;
-		Object out = null;
-		
-		if (wi.cmd == 2) {
-			// process predict
-			test tp = (test)wi;
-			out = VegTest.testSets(tp.dp.getVegML(), tp.dp.getDimensionTag(), tp.dp.getTag(), tp.dss);
-		} else {
-			out = wi.item;
-			// FIXME process this predictionSet
-		}
-			
-		synchronized (wi.outList) {
-			wi.outList.add(out);
-		}	
-	}
-
-	
-	// process this set with the pool
-	static public List<Object> processSet(List<Object> set, int cmd) {	
-		if (theadList == null) {
-			loadThreads(threadcount);
-		}
-		
-		//System.out.println("processList["+total+"] " + sess.getContext());
-		int total = set.size();
-		List<Object> listComplete = new ArrayList<>();
-
-		// add each to work items
-		for (int i=0;i<set.size();i++) {
-			Object x = set.get(i);
-			addWorkItem(cmd, (workItem)x, listComplete, i == (set.size()-1));
-		}
-
-		// wait for complete
-		while (listComplete.size() < total) {
-			// check if more time
-			try {
-				Thread.sleep(30);
-			} catch (InterruptedException e) { }
-		}
-		return listComplete;
-	}
-	
-	// add some work
-	static private void addWorkItem(int cmd, workItem wi, List<Object> outList, boolean signal) {
-		wi.cmd = cmd;
-		wi.outList = outList;
-		wi.item = wi;
-		synchronized (workItemList) {
-			workItemList.add(wi);
-			if (signal) workItemList.notifyAll();
-			//if (workItemList.size() == 1) workItemList.notifyAll();
-		}
-	}
-	static private void loadThreads(int count) {
-		theadList = new ArrayList<>();
-		workItemList = new ArrayList<>();
-		thruning = true;
-		for (int i=0;i<count;i++) addThread();
-		//System.out.println("STARTED Threads["+count+"] ");
-	}
-	static private void endThreads() {
-		if (!thruning) return;
-		synchronized (workItemList) {
-			if (workItemList == null) return;
-			thruning = false;
-			workItemList.notifyAll();
-		}
-		try {
-			Thread.sleep(100);
-		} catch (InterruptedException e) { }
-		theadList = null;
-		workItemList = new ArrayList<>();
-		//System.out.println("STARTED Threads["+count+"] ");
-	}
-	
-	
-	// add async processing...
-	static private Thread addThread() {
-		// add thread / timer to process this
-		Thread thread = new Thread("Thread:rss") {
-			public void run() {
-				// would need to have work list... with all params in the global context
-				while (thruning) {
-					workItem wi = getNextWorkItem();
-					if (wi != null) {
-						processWorkItem(wi);
-					} else {
-						synchronized (workItemList) {
-						try {
-							workItemList.wait();
-						} catch (InterruptedException e) {
-							e.printStackTrace();
-						}
-						}
-					}
-				}
-			}
-		};
-		thread.start();
-		synchronized (theadList) {
-			theadList.add(thread);
-		}		
-		return thread;
-	}	
-	static private workItem getNextWorkItem() {
-		synchronized (workItemList) {
-			if (workItemList.size() > 0) return workItemList.remove(0);
-			return null;
-		}	
-	}
-	*/
 	
 }
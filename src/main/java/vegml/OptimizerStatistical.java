@@ -160,6 +160,22 @@ class OptimizerStatistical {
 			String mergeDimensionTag, String mergeDataPlaneTag, boolean mergeSetIsbase,
 			List<Integer> nsSetFirst,
 			int setFullData, VDataSets dss) {		
+		long stepStart = VegMetrics.OPTIMIZER_STEP.start();
+		try {
+			return carveStepN(step, dimensionTag, dataPlaneTag, initName, pre, window, wType, optType, 
+								dropPercent, minSet, phases, identityFilter, noBackingUp, useReduction, downWeight, 
+								mergeDimensionTag, mergeDataPlaneTag, mergeSetIsbase, nsSetFirst, setFullData, dss);
+		} finally {
+			VegMetrics.OPTIMIZER_STEP.stop(stepStart);
+		}
+	}
+	private static int carveStepN(int step, String dimensionTag, String dataPlaneTag, String initName, 
+			String pre, int window, NSWeightBase wType, 
+			PredictionType optType, double dropPercent, int minSet, int phases, boolean identityFilter,
+			boolean noBackingUp, boolean useReduction, double downWeight,
+			String mergeDimensionTag, String mergeDataPlaneTag, boolean mergeSetIsbase,
+			List<Integer> nsSetFirst,
+			int setFullData, VDataSets dss) {		
 
 		if (!useReduction && downWeight <= 0) downWeight = 0.8;
 		boolean cleanup = true;
@@ -284,7 +300,7 @@ class OptimizerStatistical {
 			int cstep = dp.getCfgScratchInt("optStep");
 			if (cstep > 1) {
 				dp.setCfgFramerArg(null);
-				dp.getVegML().save(pre+"-"+dp.getCfgWindowSize()+"-w"+wType.ordinal()+"-s"+fd+step+".veg");
+				dp.getVegML().saveCheckpoint(pre+"-"+dp.getCfgWindowSize()+"-w"+wType.ordinal()+"-s"+fd+step+".veg");
 				return 100;
 			}
 			// Show per value Per numberSet pass/fail/pfail accountabilty 
@@ -363,7 +379,7 @@ class OptimizerStatistical {
 		dp.setCfgFramerArg(null);
 		dp.setCfgIdentityOnly(idFilterState);
 
-		dp.getVegML().save(pre+"-"+dp.getCfgWindowSize()+"-w"+wType.ordinal()+"-s"+fd+step+".veg");
+		dp.getVegML().saveCheckpoint(pre+"-"+dp.getCfgWindowSize()+"-w"+wType.ordinal()+"-s"+fd+step+".veg");
 		//dp.print(true, true);
 		
 		return passTotal;
@@ -587,10 +603,9 @@ class OptimizerStatistical {
 		// get all the data		
 		if (!silent) System.out.print("PREPARING NumberSets["+nstests.size()+"]["+dp.getNSTurnedOnCount()+" / "+dp.getNSCount()+"] =>");
 		
-		List<Object> set = new ArrayList<>();
 		if (rList == null) {
 			// this should use the rsdSet; currently it is very very slow for no good reason
-			rList = MLThreadUtil.runTestPredictModify(dp, set, nstests, rsdSets, threadFullDs, false);
+			rList = MLThreadUtil.runTestPredictModify(dp, nstests, rsdSets, threadFullDs, false);
 			rList.remove(0); // remove complete (not used)
 			for (int x=0;x<rList.size();x++) rList.get(x).val2 = nsMap.get(x);
 			if (!silent) System.out.println(" Time["+rList.get(0).getDurration()+"]");	
@@ -882,7 +897,7 @@ class OptimizerStatistical {
 				if (threadFullDs.size() == 1) {
 					rModList = VDRetainSet.testSetsModify(dp, testList, rsdSet);
 				} else {
-					rModList = MLThreadUtil.runTestPredictModify(dp, set, testList, rsdSets, threadFullDs, true);					
+					rModList = MLThreadUtil.runTestPredictModify(dp, testList, rsdSets, threadFullDs, true);					
 				}
 				if (rModList == null) continue;
 			
@@ -900,7 +915,7 @@ class OptimizerStatistical {
 					if (threadFullDs.size() == 1) {
 						rnModList = VDRetainSet.testSetsModify(dp, nexttestList, rsdSet);
 					} else {
-						rnModList = MLThreadUtil.runTestPredictModify(dp, set, nexttestList, rsdSets, threadFullDs, true);
+						rnModList = MLThreadUtil.runTestPredictModify(dp, nexttestList, rsdSets, threadFullDs, true);
 					}
 					
 					////////////////////////
@@ -1021,7 +1036,7 @@ class OptimizerStatistical {
 			dp.removeCfgNSTurnedOff();	
 		} 
 		
-		if (!noEndThreads) MLThreadUtil.endThreads();
+		if (!noEndThreads) MLThreadUtil.endThreads(dp.getVegML());
 		dp.setCfgFramerArg(null);	
 		
 		if (!silent) System.out.println("STEP COMPLETE START["+basePassTotal +" => "+curPassTotal+" / "+curFailTotal+"] ");			
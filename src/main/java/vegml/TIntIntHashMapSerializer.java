@@ -33,6 +33,8 @@
 package vegml;
 
 
+import java.util.Arrays;
+
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
@@ -70,11 +72,13 @@ class TIntIntHashMapSerializer extends Serializer<TIntIntHashMap> {
         output.writeVarInt(map.size(), true);
 
         // All entries, most are positive in our application?
-        map.forEachEntry((k, v) -> {
+        // in key order so the same content always writes the same bytes
+        int [] keys = map.keys();
+        Arrays.sort(keys);
+        for (int k:keys) {
             output.writeVarInt(k, optimizePositive);
-            output.writeVarInt(v, optimizePositive);
-            return true;
-        });
+            output.writeVarInt(map.get(k), optimizePositive);
+        }
     }
 
     @Override
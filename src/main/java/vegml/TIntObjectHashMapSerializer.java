@@ -33,6 +33,8 @@
 package vegml;
 
 
+import java.util.Arrays;
+
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
@@ -67,11 +69,13 @@ class TIntObjectHashMapSerializer extends Serializer<TIntObjectHashMap<String>>
 
         // All entries, most are positive in our application?
 
-        map.forEachEntry((k, v) -> {
+        // in key order so the same content always writes the same bytes
+        int [] keys = map.keys();
+        Arrays.sort(keys);
+        for (int k:keys) {
             output.writeInt(k);
-            output.writeString(v);
-            return true;
-        });
+            output.writeString(map.get(k));
+        }
 
     }
 
@@ -32,6 +32,8 @@
 
 package vegml;
 
+import java.util.Arrays;
+
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
@@ -63,11 +65,13 @@ import gnu.trove.map.hash.TLongIntHashMap;
         output.writeVarInt(map.size(), true);
 
         // All entries, most are positive in our application?
-        map.forEachEntry((k, v) -> {
+        // in key order so the same content always writes the same bytes
+        long [] keys = map.keys();
+        Arrays.sort(keys);
+        for (long k:keys) {
             output.writeVarLong(k, false);
-            output.writeInt(v, true);
-            return true;
-        });
+            output.writeInt(map.get(k), true);
+        }
     }
 
     @Override
@@ -33,6 +33,8 @@
 package vegml;
 
 
+import java.util.Arrays;
+
 import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryo.Serializer;
 import com.esotericsoftware.kryo.io.Input;
@@ -67,11 +69,13 @@ class TLongObjectHashMapNSVectMapSerializer extends Serializer<TLongObjectHashMa
         output.writeVarInt(map.size(), true);
 
         // All entries, most are positive in our application?
-        map.forEachEntry((k, v) -> {
+        // in key order so the same content always writes the same bytes
+        long [] keys = map.keys();
+        Arrays.sort(keys);
+        for (long k:keys) {
             output.writeLong(k);
-            kryo.writeObjectOrNull(output, v, NSVectMap.class);
-            return true;
-        });
+            kryo.writeObjectOrNull(output, map.get(k), NSVectMap.class);
+        }
 
     }
 
@@ -40,6 +40,9 @@ import com.esotericsoftware.kryo.io.Output;
 
 import gnu.trove.map.hash.TIntObjectHashMap;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -66,15 +69,19 @@ class TValStrMapSerializer extends Serializer<MLValStrMap> {
 	        output.writeInt(tm.size());
 	        if (tm.size() < 1) continue;
 	        
-	        tm.forEachEntry((k, v) -> {
+	        // in key order so the same content always writes the same bytes
+	        int [] keys = tm.keys();
+	        Arrays.sort(keys);
+	        for (int k:keys) {
 	            output.writeInt(k);
-	            output.writeString(v);
-	            return true;
-	        });
+	            output.writeString(tm.get(k));
+	        }
         }
         
         //kryo.writeObjectOrNull(output, regm, HashMap.class);
-    	for (String s:regm.keySet()) {
+        List<String> regk = new ArrayList<>(regm.keySet());
+        Collections.sort(regk);
+    	for (String s:regk) {
     		Integer k = regm.get(s);
             output.writeInt(k.intValue());
             output.writeString(s);
@@ -31,9 +31,14 @@
 
 package vegml;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import vegml.Data.VDataSet;
 import vegml.VegTest.TestModSet;
 
 
@@ -51,6 +56,18 @@ public class VContext {
 	private TestModSet tests = null;
 	private int test = -1;
 	
+	// memoized sub-predictions: per source dataplane, bounded LRU by dataset/position
+	private static final int DEF_PREDICTION_CACHE_SIZE = 8192;
+	private int predCacheSize = DEF_PREDICTION_CACHE_SIZE;
+	private Map<VDataPlane, LinkedHashMap<Long, PredCacheEntry>> predCache = null;
+	
+	private static class PredCacheEntry {
+		VDataSet ds;
+		int test;
+		int modCount;
+		List<ValProb> vpList;
+	}
+	
 	/**
 	 * Create Evaluation context for a VegML instance
 	 * 
@@ -60,6 +77,7 @@ public class VContext {
 		id = CONTEXT_ID++;
 		this.vML = vML;
 		test = -1;
+		setCfgPredictionCacheSize(vML.getCfgPredictionCacheSize());
 	}
 	
 	/**
@@ -71,6 +89,7 @@ public class VContext {
 		id = CONTEXT_ID++;
 		test = -1;
 		this.vML = dataplane.getVegML();
+		setCfgPredictionCacheSize(vML.getCfgPredictionCacheSize());
 	}
 	
 	/**
@@ -167,6 +186,7 @@ public class VContext {
 			return false;			
 		}
 		callThrough.add(t);
+		if (VegMetrics.enabled) VegMetrics.CALLOUT_DEPTH.record(callThrough.size());
 		return true;
 	}
 	
@@ -187,4 +207,81 @@ public class VContext {
 		if (callThrough != null) callThrough.remove(dtag+"/"+dptag);
 	}
 
+	
+	//
+	// memoization of sub-predictions
+	//
+	
+	/**
+	 * Set the max number of cached sub-predictions held per source dataplane
+	 * 
+	 * @param size max entries per dataplane, 0 for the default, -1 to turn off
+	 */
+	public void setCfgPredictionCacheSize(int size) {
+		if (size == 0) size = DEF_PREDICTION_CACHE_SIZE;
+		this.predCacheSize = size;
+		clearCache();
+	}
+	
+	/**
+	 * Get the max number of cached sub-predictions held per source dataplane
+	 * @return max entries per dataplane, -1 if off
+	 */
+	public int getCfgPredictionCacheSize() {
+		return predCacheSize;
+	}
+	
+	/**
+	 * Clear all memoized sub-predictions in this context
+	 * entries are dropped automaticly when the source dataplane is modified, 
+	 * call this if the source data or inputs are changed in place
+	 */
+	public void clearCache() {
+		predCache = null;
+	}
+	
+	//
+	// get a cached prediction for dataplane at position in dataset
+	// the list is shared: callers must not modify it
+	//
+	List<ValProb> getCachedPrediction(VDataPlane dp, VDataSet ds, int dataSetNumber, int position) {
+		if (predCache == null) return null;
+		LinkedHashMap<Long, PredCacheEntry> dpc = predCache.get(dp);
+		if (dpc == null) return null;
+		Long key = ((long)dataSetNumber << 32) | (position & 0xFFFFFFFFL);
+		PredCacheEntry e = dpc.get(key);
+		if (e == null) return null;
+		if (e.ds != ds || e.test != test || e.modCount != dp.getModCount()) {
+			dpc.remove(key);
+			return null;
+		}
+		return e.vpList;
+	}
+	
+	//
+	// cache a prediction for dataplane at position in dataset
+	//
+	void putCachedPrediction(VDataPlane dp, VDataSet ds, int dataSetNumber, int position, List<ValProb> vpList) {
+		if (predCacheSize <= 0 || vpList == null) return;
+		if (predCache == null) predCache = new HashMap<>();
+		LinkedHashMap<Long, PredCacheEntry> dpc = predCache.get(dp);
+		if (dpc == null) {
+			final int max = predCacheSize;
+			dpc = new LinkedHashMap<Long, PredCacheEntry>(256, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Long, PredCacheEntry> eldest) {
+					return size() > max;
+				}
+			};
+			predCache.put(dp, dpc);
+		}
+		PredCacheEntry e = new PredCacheEntry();
+		e.ds = ds;
+		e.test = test;
+		e.modCount = dp.getModCount();
+		e.vpList = vpList;
+		dpc.put(((long)dataSetNumber << 32) | (position & 0xFFFFFFFFL), e);
+	}
+
 }
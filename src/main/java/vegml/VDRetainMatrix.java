@@ -0,0 +1,326 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+
+
+package vegml;
+
+import java.util.Arrays;
+import java.util.List;
+
+import vegml.VDRetainSet.DsRetainVal;
+import vegml.VegML.PredictionType;
+import vegml.VegML.ProbMethod;
+import vegml.VegTest.TestMod;
+
+
+/**
+ * Scores all the weight only tests of a test set together against a retained token
+ * 
+ * Optimizers test many weight candidates (one numberSet off, weights stepped) over the same retained
+ * responses; per test each token's lists are walked and merged into a ValProb list. Here each
+ * retained entry is read once and multiplied into a column per test; weights are held [ns][test] 
+ * so the inner loop runs down one row. Sums are made in the same order as the list path so the
+ * results are identical.
+ * 
+ * Tests with value mods, tokens that merge with a base list, and top ties (ordered by the list 
+ * sort) are left to the list path: apply() returns false for them.
+ */
+class VDRetainMatrix {
+	static final int MIN_TESTS = 2;		// fewer than this, not worth it
+	
+	private final int [] slot;			// test -> column, -1 if not weight only
+	private final PredictionType [] tpType;
+	private final double [][] wt;		// weights [ns][column]
+	private final boolean [] ctx;		// ns is context
+	private final int cols, nsCount, idNs, fullNs;
+	private final boolean identityOnly, focusNone;
+	private final ProbMethod probMethod;
+	private final long defValue;
+	
+	// per token
+	private long [] vals = new long[32];
+	private double [] score = new double[32*4];
+	private int nv = 0;
+	private final int [] first, adCnt;
+	private final long [] recallValue;
+	private final boolean [] active, added;
+	private final PredictionType [] ret;
+	
+	// per token results
+	private final long [] fvalue;
+	private final PredictionType [] fpType;
+	private final boolean [] listPath, uval;
+	
+	private VDRetainMatrix(VDataPlane dp, List<TestMod> tests, int cols, long defValue) {
+		this.cols = cols;
+		this.nsCount = dp.getNSCount();
+		this.idNs = dp.getCfgNSIdentityNumber();
+		this.fullNs = dp.getCfgNSFullNumber();
+		this.identityOnly = dp.isCfgIdentityOnly();
+		this.focusNone = dp.isCfgFameFocusNone();
+		this.probMethod = dp.getCfgProbMethod();
+		this.defValue = defValue;
+		
+		this.slot = new int[tests.size()];
+		this.tpType = new PredictionType[cols];
+		this.wt = new double[nsCount][cols];
+		this.ctx = new boolean[nsCount];
+		for (int ns=0;ns<nsCount;ns++) ctx[ns] = dp.isCfgNSContext(ns);
+		int c = 0;
+		for (int x=0;x<tests.size();x++) {
+			TestMod test = tests.get(x);
+			if (!isWeightOnly(test, nsCount)) {
+				slot[x] = -1;
+				continue;
+			}
+			slot[x] = c;
+			tpType[c] = test.pType;
+			for (int ns=0;ns<nsCount;ns++) wt[ns][c] = test.nsWeights[ns];
+			c++;
+		}
+		
+		this.first = new int[cols];
+		this.adCnt = new int[cols];
+		this.recallValue = new long[cols];
+		this.active = new boolean[cols];
+		this.added = new boolean[cols];
+		this.ret = new PredictionType[cols];
+		this.fvalue = new long[cols];
+		this.fpType = new PredictionType[cols];
+		this.listPath = new boolean[cols];
+		this.uval = new boolean[cols];
+	}
+	
+	//
+	// make for the tests, null if too few are weight only
+	//
+	static VDRetainMatrix make(VDataPlane dp, List<TestMod> tests) {
+		ValProb defvp = dp.getAccumDefault().getFirstMostProbable();
+		if (defvp == null) return null;
+		int cnt = 0;
+		for (TestMod test:tests) {
+			if (isWeightOnly(test, dp.getNSCount())) cnt++;
+		}
+		if (cnt < MIN_TESTS) return null;
+		return new VDRetainMatrix(dp, tests, cnt, defvp.value);
+	}
+	
+	private static boolean isWeightOnly(TestMod test, int nsCount) {
+		if (test.vcnt != 0 || test.nsWeights == null || test.nsWeights.length != nsCount) return false;
+		for (int ns=0;ns<nsCount;ns++) {
+			if (test.getModCount(ns) > 0) return false;
+		}
+		return true;
+	}
+	
+	//
+	// score all columns for this token; false if the token must use the list path
+	//
+	boolean eval(DsRetainVal drv) {
+		if (drv.vpList != null || drv.nsl == null || drv.nsl.length != nsCount) return false;
+		
+		//
+		// shortcuts: same order as testModify()
+		//
+		int acnt = 0;
+		for (int c=0;c<cols;c++) {
+			listPath[c] = false;
+			uval[c] = false;
+			active[c] = false;
+			PredictionType pType = tpType[c];
+			boolean iac = (idNs >= 0 && drv.nsl[idNs] != null && wt[idNs][c] != 0);
+			if (iac) {
+				if ((identityOnly && drv.baseCnt == 1) 
+						|| pType == PredictionType.PredictUnknown || pType == PredictionType.AnyUnknown) {
+					setDefault(c, drv);
+					continue;
+				}
+			} else if (pType == PredictionType.NotUnknown) {
+				setDefault(c, drv);
+				continue;
+			}
+			List<ValProb> avs = null;
+			if (fullNs >= 0 && wt[fullNs][c] != 0) avs = drv.nsl[fullNs];
+			if (avs == null && (pType == PredictionType.Recall || pType == PredictionType.RecallPredict || pType == PredictionType.AnyRecall)) {
+				setDefault(c, drv);
+				continue;
+			}
+			
+			PredictionType r = PredictionType.Predict;
+			if (avs != null) {
+				r = (avs.size() > 1) ? PredictionType.RecallPredict : PredictionType.Recall;
+				if (r == PredictionType.Recall && probMethod == ProbMethod.AverageIfNotRecall) {
+					// single value: it is the answer if it has weight
+					if (avs.size() == 1) {
+						ValProb vp = avs.get(0);
+						if (vp.count > 0 && (vp.probability * wt[fullNs][c]) > 0) {
+							fvalue[c] = vp.value;
+							fpType[c] = PredictionType.Recall;
+							continue;
+						}
+					}
+					r = PredictionType.Predict;
+				}
+			}
+			if (!iac && !focusNone) r = PredictionType.PredictUnknown;
+			
+			ret[c] = r;
+			first[c] = -1;
+			adCnt[c] = 0;
+			recallValue[c] = 0;
+			active[c] = true;
+			acnt++;
+		}
+		if (acnt == 0) return true;
+		
+		//
+		// value dictionary for the token, then clear the scores
+		//
+		nv = 0;
+		for (int ns=0;ns<nsCount;ns++) {
+			List<ValProb> vs = drv.nsl[ns];
+			if (vs == null) continue;
+			for (int i=0;i<vs.size();i++) {
+				ValProb vp = vs.get(i);
+				if (vp.count > 0 && indexOf(vp.value) < 0) {
+					if (nv == vals.length) vals = Arrays.copyOf(vals, nv*2);
+					vals[nv++] = vp.value;
+				}
+			}
+		}
+		if (score.length < nv*cols) score = new double[nv*cols*2];
+		Arrays.fill(score, 0, nv*cols, 0);
+		
+		//
+		// accumulate: each entry times the weight row
+		//
+		for (int ns=0;ns<nsCount;ns++) {
+			List<ValProb> vs = drv.nsl[ns];
+			if (vs == null) continue;
+			double [] row = wt[ns];
+			for (int i=0;i<vs.size();i++) {
+				ValProb vp = vs.get(i);	
+				if (vp.count <= 0) continue;
+				int v = indexOf(vp.value);
+				int base = v * cols;
+				for (int c=0;c<cols;c++) {
+					if (!active[c] || row[c] == 0) continue;
+					double wavgProb = vp.probability * row[c];
+					if (wavgProb <= 0) continue;
+					score[base+c] += wavgProb;
+					added[c] = true;
+					if (first[c] < 0) first[c] = v;
+				}
+			}
+			for (int c=0;c<cols;c++) {
+				if (!added[c]) continue;
+				added[c] = false;
+				adCnt[c]++;
+				if (ns == fullNs) recallValue[c] = vs.get(0).value;
+				if (!ctx[ns] && ret[c] == PredictionType.Predict && ns != idNs) ret[c] = PredictionType.PredictRelate;
+			}
+		}
+		
+		//
+		// resolve each column
+		//
+		for (int c=0;c<cols;c++) {
+			if (!active[c]) continue;
+			if (first[c] < 0) {
+				// nothing: dataplane default
+				fvalue[c] = defValue;
+				fpType[c] = PredictionType.Default;
+				continue;
+			}
+			
+			// forced winner
+			if (probMethod == ProbMethod.AverageRecall && ret[c] == PredictionType.Recall && recallValue[c] != vals[first[c]]) {
+				int rv = indexOf(recallValue[c]);
+				if (rv >= 0 && score[rv*cols+c] > 0) {
+					double top = 0;
+					for (int v=0;v<nv;v++) top = Math.max(top, score[v*cols+c]);
+					score[rv*cols+c] = top + (top * VDataPlane.WIN_MARGIN_PERCENT);
+				}
+			}
+			
+			// average and get the best; a tie is ordered by the list sort
+			int best = -1;
+			double bp = 0;
+			boolean tie = false;
+			for (int v=0;v<nv;v++) {
+				double s = score[v*cols+c];
+				if (s <= 0) continue;
+				double p = s / adCnt[c];
+				if (best < 0 || p > bp) {
+					best = v;
+					bp = p;
+					tie = false;
+				} else if (p == bp) {
+					tie = true;
+				}
+			}
+			if (tie) {
+				listPath[c] = true;
+				continue;
+			}
+			fvalue[c] = vals[best];
+			fpType[c] = ret[c];
+			uval[c] = true;
+		}
+		return true;
+	}
+	
+	//
+	// record the response for the test; false if it must use the list path
+	//
+	boolean apply(int test, VResultSet ts, DsRetainVal drv, boolean noRsv) {
+		int c = slot[test];
+		if (c < 0 || listPath[c]) return false;
+		ts.addResponseDR(drv, fvalue[c], fpType[c], noRsv);
+		if (uval[c]) ts.uvalCount++;
+		return true;
+	}
+	
+	private void setDefault(int c, DsRetainVal drv) {
+		fvalue[c] = drv.dvalue;
+		fpType[c] = drv.dpType;
+	}
+	
+	private int indexOf(long value) {
+		for (int i=0;i<nv;i++) {
+			if (vals[i] == value) return i;
+		}
+		return -1;
+	}
+}
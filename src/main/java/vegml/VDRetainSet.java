@@ -112,6 +112,9 @@ public class VDRetainSet {
 		ValProb defvp = dac.getFirstMostProbable();
 		List<ValProb> freeVpList = new ArrayList<>();
 		List<TestMod> tests = testSet.get(dp);
+		
+		// weight only tests are scored together, a token at a time
+		VDRetainMatrix mx = VDRetainMatrix.make(dp, tests);
 				
 		// do the work
 		for (int set=0;set<dsrListSet.size();set++) {
@@ -120,196 +123,203 @@ public class VDRetainSet {
 			for (int sset=0;sset<dsrList.size();sset++) {
 				DsRetainVal drv = dsrList.get(sset);
 				if (drv == null) continue;
+				boolean mxToken = (mx != null && mx.eval(drv));
 
 				for (int x=0;x<tests.size();x++) {
 					VResultSet ts = tsList.get(x);
-					TestMod test = tests.get(x);
-									
-					// Identity
-					List<ValProb> iac = null;
-					if (dp.getCfgNSIdentityNumber() >= 0) {
-						iac = drv.nsl[dp.getCfgNSIdentityNumber()];
-						if (test.nsWeights[dp.getCfgNSIdentityNumber()] == 0) iac = null;
-					}
+					if (mxToken && mx.apply(x, ts, drv, noRsv)) continue;
+					testModify(dp, tests.get(x), ts, drv, dac, defvp, vpList, freeVpList, noRsv);
+				}
+			}
+		}
+		for (int i=0;i<tests.size();i++) {
+			tsList.get(i).end();
+		}
+		VegMetrics.predicted(tsList);
+		return tsList;
+	}
+	
+	// evaluate one test against one retained token and record the response
+	private static void testModify(VDataPlane dp, TestMod test, VResultSet ts, DsRetainVal drv, Accum dac, ValProb defvp,
+									List<ValProb> vpList, List<ValProb> freeVpList, boolean noRsv) {
+		// Identity
+		List<ValProb> iac = null;
+		if (dp.getCfgNSIdentityNumber() >= 0) {
+			iac = drv.nsl[dp.getCfgNSIdentityNumber()];
+			if (test.nsWeights[dp.getCfgNSIdentityNumber()] == 0) iac = null;
+		}
 
-					// optimization: if only intersted in:
-					if (iac != null) {
-						if (dp.isCfgIdentityOnly() && drv.baseCnt == 1 && drv.vpList == null) {
-							// FIXME unless value mode to IAC is the value.. then default
-							ts.addResponseDR(drv, drv.dvalue, drv.dpType, noRsv);
-							continue;							
-						}
-						if (test.pType == PredictionType.PredictUnknown || test.pType == PredictionType.AnyUnknown) {
-							// - unknown: skip if iac -> they dont matter
-							ts.addResponseDR(drv, drv.dvalue, drv.dpType, noRsv);
-							continue;
-						}
-					} else if (test.pType == PredictionType.NotUnknown) {
-						// - unknown: skip if iac -> they dont matter
-						ts.addResponseDR(drv, drv.dvalue, drv.dpType, noRsv);
-						continue;						
-					}
-					
-					// Full set
-					List<ValProb> avs = null;
-					if (dp.getCfgNSFullNumber() >= 0) {
-						avs = drv.nsl[dp.getCfgNSFullNumber()];
-						if (test.nsWeights[dp.getCfgNSFullNumber()] == 0) avs = null;
-					}
-					
-					// optimization: if only intersted in:
-					if (avs == null) {
-						if (test.pType == PredictionType.Recall || test.pType == PredictionType.RecallPredict || test.pType == PredictionType.AnyRecall) {
-							// - recall: skip if not recall -> they dont matter
-							ts.addResponseDR(drv, drv.dvalue, drv.dpType, noRsv);
-							continue;
-						}						
-					}
-					
-					// baseline vpList
-					if (freeVpList.size() < 200) freeVpList.addAll(vpList);
-					vpList.clear();
+		// optimization: if only intersted in:
+		if (iac != null) {
+			if (dp.isCfgIdentityOnly() && drv.baseCnt == 1 && drv.vpList == null) {
+				// FIXME unless value mode to IAC is the value.. then default
+				ts.addResponseDR(drv, drv.dvalue, drv.dpType, noRsv);
+				return;							
+			}
+			if (test.pType == PredictionType.PredictUnknown || test.pType == PredictionType.AnyUnknown) {
+				// - unknown: skip if iac -> they dont matter
+				ts.addResponseDR(drv, drv.dvalue, drv.dpType, noRsv);
+				return;
+			}
+		} else if (test.pType == PredictionType.NotUnknown) {
+			// - unknown: skip if iac -> they dont matter
+			ts.addResponseDR(drv, drv.dvalue, drv.dpType, noRsv);
+			return;						
+		}
+		
+		// Full set
+		List<ValProb> avs = null;
+		if (dp.getCfgNSFullNumber() >= 0) {
+			avs = drv.nsl[dp.getCfgNSFullNumber()];
+			if (test.nsWeights[dp.getCfgNSFullNumber()] == 0) avs = null;
+		}
+		
+		// optimization: if only intersted in:
+		if (avs == null) {
+			if (test.pType == PredictionType.Recall || test.pType == PredictionType.RecallPredict || test.pType == PredictionType.AnyRecall) {
+				// - recall: skip if not recall -> they dont matter
+				ts.addResponseDR(drv, drv.dvalue, drv.dpType, noRsv);
+				return;
+			}						
+		}
+		
+		// baseline vpList
+		if (freeVpList.size() < 200) freeVpList.addAll(vpList);
+		vpList.clear();
 
-					PredictionType ret = PredictionType.Predict;
-					long recallValue = 0;
-					
-					/////////////////////////////////
-					// get fullest numberSet
-					if (avs != null) {
-						ret = PredictionType.Recall;
-						if (avs.size() > 1) {
-							ret = PredictionType.RecallPredict;
-							if (test.getModCount(dp.getCfgNSFullNumber()) > 0) {
-								int cnt = 0;
-								for (int i=0;i<avs.size();i++) {
-									ValProb vp = avs.get(i);
-									if (vp.count <= 0) continue;
-									if (checkMod(test, drv, dp.getCfgNSFullNumber(), vp, null) == null) continue;
-									cnt++;
-								}
-								if (cnt == 1) ret = PredictionType.Recall;
-							} 
-						}
-						if (ret == PredictionType.Recall && dp.getCfgProbMethod() == ProbMethod.AverageIfNotRecall) {
-							//
-							// get fullest AND no collisions then this
-							//			
-							int cnt = 0;
-							for (int i=0;i<avs.size();i++) {
-								ValProb vp = avs.get(i);
-								if (vp.count <= 0) continue;
-								// get value mod
-								vp = checkMod(test, drv, dp.getCfgNSFullNumber(), vp, freeVpList);
-								if (vp == null) continue;	
-								
-								// use altered weights
-								double wavgProb = vp.probability * test.nsWeights[dp.getCfgNSFullNumber()];
-								if (wavgProb <= 0) continue;
-								vp.probability = wavgProb;
-								vpList.add(vp);
-								cnt++;
-							}
-							if (cnt > 0) {
-								//Collections.sort(vpList, VegUtil.VpSort);
-								setResult(dac, ts, freeVpList, drv, vpList, PredictionType.Recall, 1, noRsv);
-								continue;
-							}
-							// not there
-							ret = PredictionType.Predict;
-						}
-					}
-										
-					/////////////////////////////////
-					// identity info if filtering by it
-					if (iac != null && test.getModCount(dp.getCfgNSIdentityNumber()) > 0) {
-						int cnt = 0;
-						for (int i=0;i<iac.size();i++) {
-							ValProb vp = iac.get(i);
-							if (vp.count <= 0) continue;
-							// get value mod
-							vp = checkMod(test, drv, dp.getCfgNSIdentityNumber(), vp, null);
-							if (vp == null) continue;	
-							cnt++;
-						}	
-						if (cnt == 0) iac = null;
-					}
-					if (iac == null && !dp.isCfgFameFocusNone()) {				
-						ret = PredictionType.PredictUnknown;
+		PredictionType ret = PredictionType.Predict;
+		long recallValue = 0;
+		
+		/////////////////////////////////
+		// get fullest numberSet
+		if (avs != null) {
+			ret = PredictionType.Recall;
+			if (avs.size() > 1) {
+				ret = PredictionType.RecallPredict;
+				if (test.getModCount(dp.getCfgNSFullNumber()) > 0) {
+					int cnt = 0;
+					for (int i=0;i<avs.size();i++) {
+						ValProb vp = avs.get(i);
+						if (vp.count <= 0) continue;
+						if (checkMod(test, drv, dp.getCfgNSFullNumber(), vp, null) == null) continue;
+						cnt++;
 					}
-										
-					/////////////////////////////////
-					// get the probabilties and values
-					int acCnt = 0, adCnt = 0;
-					for (int vi =0;vi<drv.nsl.length;vi++) {
-						List<ValProb> vs = drv.nsl[vi];
-						if (vs == null) continue; // empty slot
-						if (test.nsWeights[vi] == 0) continue;
-						acCnt++;
-						boolean isCtx = dp.isCfgNSContext(vi);
-						
-						// get the set accumulators
-						//Accum sac = dp.getAccumSetDefault(vi);
-						boolean added = false;
-						for (int i=0;i<vs.size();i++) {
-							ValProb vp = vs.get(i);	
-							if (vp.count <= 0) continue;
-							
-							//testModAcValue mod = test.getMod(vi, vp.value);
-							vp = checkMod(test, drv, vi, vp, freeVpList);
-							if (vp == null) continue;
+					if (cnt == 1) ret = PredictionType.Recall;
+				} 
+			}
+			if (ret == PredictionType.Recall && dp.getCfgProbMethod() == ProbMethod.AverageIfNotRecall) {
+				//
+				// get fullest AND no collisions then this
+				//			
+				int cnt = 0;
+				for (int i=0;i<avs.size();i++) {
+					ValProb vp = avs.get(i);
+					if (vp.count <= 0) continue;
+					// get value mod
+					vp = checkMod(test, drv, dp.getCfgNSFullNumber(), vp, freeVpList);
+					if (vp == null) continue;	
+					
+					// use altered weights
+					double wavgProb = vp.probability * test.nsWeights[dp.getCfgNSFullNumber()];
+					if (wavgProb <= 0) continue;
+					vp.probability = wavgProb;
+					vpList.add(vp);
+					cnt++;
+				}
+				if (cnt > 0) {
+					//Collections.sort(vpList, VegUtil.VpSort);
+					setResult(dac, ts, freeVpList, drv, vpList, PredictionType.Recall, 1, noRsv);
+					return;
+				}
+				// not there
+				ret = PredictionType.Predict;
+			}
+		}
 							
-							// only use values in identity
-							if (iac != null && isCtx && dp.isCfgIdentityOnly()) {
-								vp = checkMod(test, drv, dp.getCfgNSIdentityNumber(), vp, null);
-								if (vp == null) continue;
-							}
+		/////////////////////////////////
+		// identity info if filtering by it
+		if (iac != null && test.getModCount(dp.getCfgNSIdentityNumber()) > 0) {
+			int cnt = 0;
+			for (int i=0;i<iac.size();i++) {
+				ValProb vp = iac.get(i);
+				if (vp.count <= 0) continue;
+				// get value mod
+				vp = checkMod(test, drv, dp.getCfgNSIdentityNumber(), vp, null);
+				if (vp == null) continue;	
+				cnt++;
+			}	
+			if (cnt == 0) iac = null;
+		}
+		if (iac == null && !dp.isCfgFameFocusNone()) {				
+			ret = PredictionType.PredictUnknown;
+		}
 							
-							// get the weighted version from the 'activation' fuction
-							double wavgProb = vp.probability * test.nsWeights[vi];
-							if (wavgProb <= 0) continue;						
-
-							VegUtil.mergeIntoVPList(vpList, vp.value, wavgProb, vp.count, freeVpList);
-							added = true;
-						}
-						if (added) {
-							adCnt++;
-							// get full list and merge it into the complete list
-							if (vi == dp.getCfgNSFullNumber()) recallValue = vs.get(0).value;
-							if (!isCtx && ret == PredictionType.Predict && vi != dp.getCfgNSIdentityNumber()) ret = PredictionType.PredictRelate;
-						}
-					}
-					
-					/////////////////////////////////
-					// if nothing -> Fall back when nothing -> use general dimension set probability: get best
-					if (vpList.size() < 1) {						
-						VegUtil.mergeIntoVPList(vpList, defvp, freeVpList);
-						setResult(dac, ts, freeVpList, drv, vpList, PredictionType.Default, 1, noRsv);						
-						continue;
-					}
-					
-					/////////////////////////////////
-					// forced winner
-					if (dp.getCfgProbMethod() == ProbMethod.AverageRecall && ret == PredictionType.Recall && recallValue != vpList.get(0).value) {
-						Collections.sort(vpList, VegUtil.VpSort);
-						for (int i=0;i<vpList.size();i++) {
-							ValProb vp = vpList.get(i);
-							if (vp.value == recallValue) {
-								vp.probability = vpList.get(0).probability + (vpList.get(0).probability * VDataPlane.WIN_MARGIN_PERCENT);
-								break;
-							}
-						}
-					}
-					
-					// save result
-					ts.uvalCount++;
-					setResult(dac, ts, freeVpList, drv, vpList, ret, adCnt, noRsv);
+		/////////////////////////////////
+		// get the probabilties and values
+		int acCnt = 0, adCnt = 0;
+		for (int vi =0;vi<drv.nsl.length;vi++) {
+			List<ValProb> vs = drv.nsl[vi];
+			if (vs == null) continue; // empty slot
+			if (test.nsWeights[vi] == 0) continue;
+			acCnt++;
+			boolean isCtx = dp.isCfgNSContext(vi);
+			
+			// get the set accumulators
+			//Accum sac = dp.getAccumSetDefault(vi);
+			boolean added = false;
+			for (int i=0;i<vs.size();i++) {
+				ValProb vp = vs.get(i);	
+				if (vp.count <= 0) continue;
+				
+				//testModAcValue mod = test.getMod(vi, vp.value);
+				vp = checkMod(test, drv, vi, vp, freeVpList);
+				if (vp == null) continue;
+				
+				// only use values in identity
+				if (iac != null && isCtx && dp.isCfgIdentityOnly()) {
+					vp = checkMod(test, drv, dp.getCfgNSIdentityNumber(), vp, null);
+					if (vp == null) continue;
 				}
+				
+				// get the weighted version from the 'activation' fuction
+				double wavgProb = vp.probability * test.nsWeights[vi];
+				if (wavgProb <= 0) continue;						
+
+				VegUtil.mergeIntoVPList(vpList, vp.value, wavgProb, vp.count, freeVpList);
+				added = true;
+			}
+			if (added) {
+				adCnt++;
+				// get full list and merge it into the complete list
+				if (vi == dp.getCfgNSFullNumber()) recallValue = vs.get(0).value;
+				if (!isCtx && ret == PredictionType.Predict && vi != dp.getCfgNSIdentityNumber()) ret = PredictionType.PredictRelate;
 			}
 		}
-		for (int i=0;i<tests.size();i++) {
-			tsList.get(i).end();
+		
+		/////////////////////////////////
+		// if nothing -> Fall back when nothing -> use general dimension set probability: get best
+		if (vpList.size() < 1) {						
+			VegUtil.mergeIntoVPList(vpList, defvp, freeVpList);
+			setResult(dac, ts, freeVpList, drv, vpList, PredictionType.Default, 1, noRsv);						
+			return;
 		}
-		return tsList;
+		
+		/////////////////////////////////
+		// forced winner
+		if (dp.getCfgProbMethod() == ProbMethod.AverageRecall && ret == PredictionType.Recall && recallValue != vpList.get(0).value) {
+			Collections.sort(vpList, VegUtil.VpSort);
+			for (int i=0;i<vpList.size();i++) {
+				ValProb vp = vpList.get(i);
+				if (vp.value == recallValue) {
+					vp.probability = vpList.get(0).probability + (vpList.get(0).probability * VDataPlane.WIN_MARGIN_PERCENT);
+					break;
+				}
+			}
+		}
+		
+		// save result
+		ts.uvalCount++;
+		setResult(dac, ts, freeVpList, drv, vpList, ret, adCnt, noRsv);
 	}
 	
 	// check the test mod rule, if null.. exclide			
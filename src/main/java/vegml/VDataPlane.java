@@ -32,6 +32,7 @@
 
 package vegml;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -65,7 +66,7 @@ import vegml.VegTest.TestMod;
 import vegml.VegTest.TestModSet;
 
 
-public class VDataPlane implements java.io.Serializable {
+public class VDataPlane implements java.io.Serializable, Cloneable {
 	private static final long serialVersionUID = -8766041306013925677L;
 
 	
@@ -174,12 +175,19 @@ public class VDataPlane implements java.io.Serializable {
 	// numberSet child vector mappings
 	private boolean [][][] nsChildMapVectorPosition = null;
 	private int [] nsChildMapVectorLength = null; 	// map of vector lengths: length -1 if turned off, 
+	// precompiled vid generation for the maps; rebuilt when the maps change
+	private transient VectorToVid.VidPlan vidPlan = null;
+	private transient VectorToVid.VidPlan vidPlanCh = null;
 
 	// Solid Model data
 	private double [][] probabilitySets = null;
 	private int [][] valueSets = null;
 	private long [][] valueSetsL = null;
 	private int [][] groupSet = null;
+	// Solid Model data mapped from a solid model file, in place of the above
+	private transient MLSolidMap solidMap = null;
+	private transient volatile int modCount = 0;
+	private transient volatile boolean modRead = false;	// modCount read for a cached prediction since it changed
 	
 	private HashMap<Long, Integer> trainFilter = null;
 
@@ -552,7 +560,7 @@ public class VDataPlane implements java.io.Serializable {
 	 */
 	public void clearNSData() {
 		for (int i=0;i<nsCount;i++) {
-			MLNumberSetHash nsh = this.getNSHash(i);
+			MLNumberSetHash nsh = this.getNSHashW(i);
 			if (nsh == null) continue;
 			nsh.clear();
 		}
@@ -564,7 +572,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param setNumber number set to clear data from
 	 */
 	public void clearNSData(int setNumber) {
-		MLNumberSetHash nsh = this.getNSHash(setNumber);
+		MLNumberSetHash nsh = this.getNSHashW(setNumber);
 		if (nsh == null) return;
 		nsh.clear();		
 	}
@@ -697,6 +705,7 @@ public class VDataPlane implements java.io.Serializable {
 		return removeCfgNS(nsList, -1);
 	}
 	private boolean removeCfgNS(List<Integer> nsList, int setNumber) {
+		modified();
 		// make list to keep
 		List<List<Integer>> setsKeep = new ArrayList<>();
 		List<Double> setsKeepW = new ArrayList<>();
@@ -1043,8 +1052,8 @@ public class VDataPlane implements java.io.Serializable {
 	 * @return true if complete
 	 */
 	public boolean mergeNS(int fromNs, int toNs) {
-		MLNumberSetHash fromNsh = this.getNSHash(fromNs);
-		MLNumberSetHash toNsh = this.getNSHash(toNs);
+		MLNumberSetHash fromNsh = this.getNSHashW(fromNs);
+		MLNumberSetHash toNsh = this.getNSHashW(toNs);
 		if (fromNsh == null || toNsh == null) return false;
 		//System.out.println("Merge NS: " +fromNs + "|"+fromNsh.size()+" => " + toNs +"|"+toNsh.size());
 		toNsh.merge(this, fromNsh, this);
@@ -1067,14 +1076,12 @@ public class VDataPlane implements java.io.Serializable {
 			List<ValProb> vpList = new ArrayList<>();
 			for (int i=0;i<gidl.length;i++) {
 				int g = gidl[i];
-				if (g >= this.groupSet.length) break; // ?? bad thing
-				//int probId = this.groupSet[gidl[i]][0];
-				int valId = this.groupSet[g][1];
-				int [] valList = this.valueSets[valId];
+				if (g >= this.getSolidGroupCount()) break; // ?? bad thing
+				int vlen = this.getSolidLength(g);
 				ValProb vp = new ValProb();
-				vp.count = valList.length*5; // hack
+				vp.count = vlen*5; // hack
 				vp.value = vidl[i];
-				vp.counter = valList.length;
+				vp.counter = vlen;
 				vpList.add(vp);
 			}
 			Collections.sort(vpList, VegUtil.VpFreqSort);	
@@ -1089,7 +1096,7 @@ public class VDataPlane implements java.io.Serializable {
 	 */
 	public void syncAccumTotals() {
 		for (int i=0;i<getNSCount();i++) {
-			MLNumberSetHash nsh = getNSHash(i);
+			MLNumberSetHash nsh = getNSHashW(i);
 			nsh.syncAccumTotals();
 		}	
 	}
@@ -1195,7 +1202,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @return
 	 */
 	public int getAccumCount() {
-		if (this.groupSet != null) return groupSet.length;
+		if (this.isSolid()) return getSolidGroupCount();
 		int aCnt = 0;
 		for (int i=0;i<getNSCount();i++) {
 			MLNumberSetHash nsh = getNSHash(i);
@@ -1250,6 +1257,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param windowSize
 	 */
 	public void setCfgWindowSize(int windowSize) {
+		modified();
 		if (window == windowSize) {
 			if (this.window == 1) this.setCfgScratch("posLastAddAfter", true);
 			return;
@@ -1447,6 +1455,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param valueFocus
 	 */
 	public void setCfgFrameFocus(int focus) {
+		modified();
 		this.before = focus;
 		this.after = (this.window-this.before)-1;
 		//this.setCfgFrameFocusNone(true);	
@@ -1480,6 +1489,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param identityOnly true to turn on identity filter
 	 */
 	public void setCfgIdentityOnly(boolean identityOnly) {
+		modified();
 		this.identityOnly = identityOnly;
 	}
 	
@@ -1518,6 +1528,26 @@ public class VDataPlane implements java.io.Serializable {
 	int [] getNSChildMapVectorLength() {
 		return nsChildMapVectorLength;
 	}	
+	
+	//
+	// get the vid generation plan for the current vector maps
+	//
+	VectorToVid.VidPlan getVidPlan() {
+		VectorToVid.VidPlan vp = vidPlan;
+		if (vp == null || !vp.isFor(nsMapVectorPosition, nsMapVectorLength, isNoEmptyElements(), getExceptVectNumber())) {
+			vp = VectorToVid.makeVidPlan(nsMapVectorPosition, nsMapVectorLength, isNoEmptyElements(), getExceptVectNumber());
+			vidPlan = vp;
+		}
+		return vp;
+	}
+	VectorToVid.VidPlan getVidPlanChild() {
+		VectorToVid.VidPlan vp = vidPlanCh;
+		if (vp == null || !vp.isFor(nsChildMapVectorPosition, nsChildMapVectorLength, isNoEmptyElements(), getExceptVectNumber())) {
+			vp = VectorToVid.makeVidPlan(nsChildMapVectorPosition, nsChildMapVectorLength, isNoEmptyElements(), getExceptVectNumber());
+			vidPlanCh = vp;
+		}
+		return vp;
+	}
 
 	//
 	// Get the base hash size
@@ -1553,6 +1583,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param baseType
 	 */
 	public void setCfgNSWeight(NSWeightBase baseType) {
+		modified();
 		this.nsBase = baseType;
 		if (baseType == NSWeightBase.None) {
 			this.setCfgPCalc(getVegML().getPCalcProbabilityOnly());
@@ -1582,6 +1613,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param weight weight to set
 	 */
 	public void setCfgNSWeight(int setNumber, double weight) {
+		modified();
 		if (setNumber >= nsWeights.length) return;
 		nsWeights[setNumber] = weight;
 	}
@@ -1594,6 +1626,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param setWeights list of numberSet weights to set
 	 */
 	public void setCfgNSWeights(double [] setWeights) {
+		modified();
 		this.nsWeights = Arrays.copyOf(setWeights, setWeights.length);
 	}
 	
@@ -1643,7 +1676,7 @@ public class VDataPlane implements java.io.Serializable {
 		this.getAccumDefault().adjustTotal(tot);
 		
 		for (int i=0;i<this.getNSCount();i++) {
-			MLNumberSetHash nsh = this.getNSHash(i);
+			MLNumberSetHash nsh = this.getNSHashW(i);
 			nsh.updateAccumTotalsWithTrainedValue(value, remove);
 		}
 	}
@@ -1724,6 +1757,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param obj object to add
 	 */
 	public void setCfgScratch(String key, Object obj) {
+		modified();
 		if (scratchPad == null) scratchPad = new HashMap<>();
 		scratchPad.put(key, obj);
 	}
@@ -1734,6 +1768,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param val value to add
 	 */
 	public void setCfgScratch(String key, double val) {
+		modified();
 		if (scratchPad == null) scratchPad = new HashMap<>();
 		scratchPad.put(key, val);
 	}
@@ -1744,6 +1779,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param val value to add
 	 */
 	public void setCfgScratch(String key, int val) {
+		modified();
 		if (scratchPad == null) scratchPad = new HashMap<>();
 		scratchPad.put(key, val);
 	}
@@ -1754,6 +1790,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param val value to add
 	 */
 	public void setCfgScratch(String key, boolean val) {
+		modified();
 		if (scratchPad == null) scratchPad = new HashMap<>();
 		scratchPad.put(key, val);
 	}
@@ -1982,6 +2019,49 @@ public class VDataPlane implements java.io.Serializable {
 		return nsHashHash.get(setNumber);
 	}
 	
+	//
+	// get a number set to change accumulators in: if its data is shared with a snapshot
+	// it is copied first. Use getNSHash() for reading
+	//
+	MLNumberSetHash getNSHashW(int setNumber) {
+		MLNumberSetHash nsh = nsHashHash.get(setNumber);
+		if (nsh != null) nsh.own();
+		// training writes: only a change since a cached prediction read the count needs a new one
+		if (modRead) modified();
+		return nsh;
+	}
+	
+	//
+	// modification count: changes on writes to the numberSets and on configuration 
+	// changes that effect predictions; cached predictions are invalid when it changes
+	//
+	int getModCount() {
+		modRead = true;
+		return modCount;
+	}
+	void modified() {
+		modRead = false;
+		modCount++;
+	}
+	
+	//
+	// true if predictions depend on prior results in valueOut: via the framer or the callout
+	// these can not be memoized by position
+	//
+	boolean isValueOutDependent() {
+		if (frameMaker != null && frameMaker.isValueOutDependent()) return true;
+		if (VegCallOut != null && VegCallOut.isValueOutDependent(this)) return true;
+		return false;
+	}
+	
+	// internal needed for sectioned deserialize
+	void setNSHashes(HashMap<Integer, MLNumberSetHash> nsHashHash) {
+		this.nsHashHash = nsHashHash;
+	}
+	void setNSHash(int setNumber, MLNumberSetHash nsh) {
+		nsHashHash.put(setNumber, nsh);
+	}
+	
 	/**
 	 * get a number set accumulator hash
 	 * @param setNumber
@@ -2012,6 +2092,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param calculator the VegPCalc instance with calulate implemented
 	 */
 	public void setCfgPCalc(VegPCalc calculator) {
+		modified();
 		this.VegPCalculator = calculator;
 	}
 	
@@ -2029,6 +2110,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param arg argument for handler
 	 */
 	public void setCfgCallout(VegCallOut callout, Object arg) {
+		modified();
 		this.VegCallOut = callout;
 		this.VegCallOutArg = arg;
 	}
@@ -2092,6 +2174,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param reverse true if reverse framing
 	 */
 	public void setCfgFramer(String name, VegFramer framer, Object arg, boolean reverse) {
+		modified();
 		this.frameMaker = framer;
 		this.frameReverse = reverse;
 		this.frameMakerArg = arg;
@@ -2103,6 +2186,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param arg argument
 	 */
 	public void setCfgFramerArg(Object arg) {
+		modified();
 		this.frameMakerArg = arg;
 	}
 	
@@ -2245,6 +2329,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param probMethod
 	 */
 	public void setCfgProbMethod(ProbMethod probMethod) {
+		modified();
 		this.probMethod = probMethod;
 	}
 		
@@ -2813,32 +2898,15 @@ public class VDataPlane implements java.io.Serializable {
 	
 	// get the list of ValProbs for a solid gid
 	private ValProb getVPForSolidID(int gid, long value) {
-		int probId = this.groupSet[gid][0];
-		int valId = this.groupSet[gid][1];
-		double [] probList = this.probabilitySets[probId];
-		if (this.valueSets != null) {
-			int [] valList = this.valueSets[valId];
-			for (int i=0;i<probList.length;i++) {
-				if (valList[i] == value) {
-					ValProb vp = new ValProb();
-					vp.counter = 1;
-					vp.probability = probList[i];
-					vp.value = value;
-					vp.count = 1;
-					return vp;
-				}
-			}			
-		} else {
-			long [] valList = this.valueSetsL[valId];
-			for (int i=0;i<probList.length;i++) {
-				if (valList[i] == value) {
-					ValProb vp = new ValProb();
-					vp.counter = 1;
-					vp.probability = probList[i];
-					vp.value = value;
-					vp.count = 1;
-					return vp;
-				}
+		int len = getSolidLength(gid);
+		for (int i=0;i<len;i++) {
+			if (getSolidValue(gid, i) == value) {
+				ValProb vp = new ValProb();
+				vp.counter = 1;
+				vp.probability = getSolidProb(gid, i);
+				vp.value = value;
+				vp.count = 1;
+				return vp;
 			}
 		}
 		return null;
@@ -2846,25 +2914,96 @@ public class VDataPlane implements java.io.Serializable {
 	
 	// get the list of ValProbs for a solid gid
 	List<ValProb> getVPListForSolidID(int gid) {
-		int probId = this.groupSet[gid][0];
-		int valId = this.groupSet[gid][1];
-		double [] probList = this.probabilitySets[probId];
 		List<ValProb> vpList = new ArrayList<>();
-		if (this.valueSets != null) {
-			int [] valList = this.valueSets[valId];
-			for (int i=0;i<probList.length;i++) {
-				// only use values in identity
-				VegUtil.mergeIntoVPList(vpList, valList[i], probList[i], 1);
-			}			
-		} else {
-			long [] valList = this.valueSetsL[valId];
-			for (int i=0;i<probList.length;i++) {
-				// only use values in identity
-				VegUtil.mergeIntoVPList(vpList, valList[i], probList[i], 1);
-			}
+		int len = getSolidLength(gid);
+		for (int i=0;i<len;i++) {
+			// only use values in identity
+			VegUtil.mergeIntoVPList(vpList, getSolidValue(gid, i), getSolidProb(gid, i), 1);
 		}
 		return vpList;
 	}
+	
+	//
+	// solid group access; from the mapped tables if mapped
+	//
+	int getSolidGroupCount() {
+		if (solidMap != null) return solidMap.getGroupCount();
+		return groupSet.length;
+	}
+	int getSolidLength(int gid) {
+		if (solidMap != null) return solidMap.getLength(gid);
+		return probabilitySets[groupSet[gid][0]].length;
+	}
+	double getSolidProb(int gid, int i) {
+		if (solidMap != null) return solidMap.getProb(gid, i);
+		return probabilitySets[groupSet[gid][0]][i];
+	}
+	long getSolidValue(int gid, int i) {
+		if (solidMap != null) return solidMap.getValue(gid, i);
+		if (valueSets != null) return valueSets[groupSet[gid][1]][i];
+		return valueSetsL[groupSet[gid][1]][i];
+	}
+	private boolean containsSolidValue(int gid, long value) {
+		if (solidMap != null) return solidMap.containsValue(gid, value);
+		if (valueSets != null) return containsVal(valueSets[groupSet[gid][1]], value);
+		return containsVal(valueSetsL[groupSet[gid][1]], value);
+	}
+	// amplify a group in place: as VegUtil.amplifyListProbGetTotal() and amplifyListProbSet()/LimitSet()
+	private double amplifySolidGetTotal(int gid, long [] ampSet, int noiseLimit) {
+		int len = getSolidLength(gid);
+		int tot = 0;
+		double sum = 0, fsum = 0;		
+		// clear the no-noes
+		for (int i=0;i<len;i++) {
+			double p = getSolidProb(gid, i);
+			fsum += p;
+			if (!VegUtil.containsv(ampSet, getSolidValue(gid, i))) {
+				if (noiseLimit <= 0 || i < noiseLimit) tot++;
+				else sum += p;
+			} else {
+				sum += p;
+			}
+		}
+		if (tot == 0) return 0;
+		return (fsum/sum);
+	}
+	private double amplifySolidProb(int gid, int pos, long [] ampSet, double mod, boolean limitSet) {
+		double p = getSolidProb(gid, pos);
+		boolean in = VegUtil.containsv(ampSet, getSolidValue(gid, pos));
+		if (limitSet) {
+			if (!in) return 0; // not this value
+			if (mod == 0) return p;
+			return p * mod;
+		}
+		if (mod == 0 || !in) return p;
+		return (p * mod);
+	}
+	
+	//
+	// use solid tables mapped from a solid model file
+	//
+	void setSolidMap(MLSolidMap solidMap) {
+		this.solidMap = solidMap;
+		this.probabilitySets = null;
+		this.valueSets = null;
+		this.valueSetsL = null;
+		this.groupSet = null;
+		for (int i=0;i<getNSCount();i++) {
+			MLNumberSetHash nsh = getNSHash(i);
+			if (nsh != null) nsh.setSolidMap(solidMap, i);
+		}
+	}
+	MLSolidMap getSolidMap() {
+		return solidMap;
+	}
+	
+	//
+	// write solid tables to a solid model file section
+	//
+	void writeSolid(MLSolidMap.Writer out) throws IOException {
+		if (solidMap != null) solidMap.writeSection(out, this);
+		else MLSolidMap.writeSection(out, this, groupSet, probabilitySets, valueSets, valueSetsL);
+	}
 
 
 	/**
@@ -2881,13 +3020,11 @@ public class VDataPlane implements java.io.Serializable {
 			long [] vidl = nsh.getListSolidVid();
 			List<ValProb> vpList = new ArrayList<>();
 			for (int i=0;i<gidl.length;i++) {
-				int probId = this.groupSet[gidl[i]][0];
-				int valId = this.groupSet[gidl[i]][1];
-				int [] valList = this.valueSets[valId];
+				int vlen = this.getSolidLength(gidl[i]);
 				ValProb vp = new ValProb();
-				vp.count = valList.length*5; // hack
+				vp.count = vlen*5; // hack
 				vp.value = vidl[i];
-				vp.counter = valList.length;
+				vp.counter = vlen;
 				vpList.add(vp);
 			}
 			Collections.sort(vpList, VegUtil.VpFreqSort);	
@@ -2939,18 +3076,9 @@ public class VDataPlane implements java.io.Serializable {
 		if (isSolid()) {
 			int id = getNSHash(this.getCfgNSIdentityNumber()).getSolid(vid);
 			if (id < 0) return null;
-			long v = 0;
-			if (this.isValLong()) {
-				long [] ll = this.valueSetsL[this.groupSet[id][1]];
-				if (ll.length != 1) return null;
-				v = ll[0];
-			} else {
-				int [] ll = this.valueSets[this.groupSet[id][1]];	
-				if (ll.length != 1) return null;
-				v = ll[0];
-			}
-			ValProb vp = new ValProb(v);
-			vp.probability = this.probabilitySets[groupSet[id][0]][0];
+			if (getSolidLength(id) != 1) return null;
+			ValProb vp = new ValProb(getSolidValue(id, 0));
+			vp.probability = getSolidProb(id, 0);
 			vp.type = PredictionType.Predict;
 			return vp;
 		} else {
@@ -2989,6 +3117,110 @@ public class VDataPlane implements java.io.Serializable {
 		predictAnswerAccum.optimize();
 	}
 	
+	//
+	// make a private training shard: shares all configuration with this dataplane
+	// but has its own empty numberSets and default accumulators
+	// it is not in the VegML instance; use mergeShard() to add its training in
+	//
+	VDataPlane makeShard() {
+		VDataPlane sdp = null;
+		try {
+			sdp = (VDataPlane)super.clone();
+		} catch (CloneNotSupportedException e) {
+			return null;
+		}
+		sdp.nsHashHash = new HashMap<>();
+		for (int i=0;i<getNSCount();i++) {
+			MLNumberSetHash nsh = this.getNSHash(i);
+			if (nsh == null) continue;
+			MLNumberSetHash snsh = new MLNumberSetHash(getBaseHashSize(), i, nsh.getNS(), nsh.getNSTier());
+			snsh.setTurnedOff(nsh.isTurnedOff());
+			sdp.nsHashHash.put(i, snsh);
+		}
+		sdp.defAccum = new AccumIntHm();
+		sdp.defAccum.setVectorCode(1);
+		sdp.recallAnswerAccum = new AccumIntHmCrt();
+		sdp.recallAnswerAccum.setVectorCode(1);
+		sdp.predictAnswerAccum = new AccumIntHmCrt();
+		sdp.predictAnswerAccum.setVectorCode(1);
+		sdp.scratchPad = null;
+		return sdp;
+	}
+	
+	//
+	// merge a training shard numberSet into this one; the shard is consumed
+	// setNumber -1 for the dataplane default accumulator
+	//
+	void mergeShard(VDataPlane xdp, int setNumber) {
+		if (setNumber < 0) {
+			defAccum.mergeShard(xdp.defAccum);
+			return;
+		}
+		MLNumberSetHash nsh = this.getNSHashW(setNumber);
+		MLNumberSetHash xnsh = xdp.getNSHash(setNumber);
+		if (nsh == null || xnsh == null) return;
+		nsh.mergeShard(xnsh);
+	}
+	
+	//
+	// make a copy-on-write snapshot for another VegML instance
+	// configuration and counts are copied, the numberSets share their data with this 
+	// dataplane's until one of them writes to it
+	//
+	VDataPlane snapshot(VegML vML) {
+		VDataPlane sdp = null;
+		try {
+			sdp = (VDataPlane)super.clone();
+		} catch (CloneNotSupportedException e) {
+			return null;
+		}
+		sdp.veg = vML;
+		sdp.probPT = Arrays.copyOf(probPT, probPT.length);
+		if (scratchPad != null) sdp.scratchPad = new HashMap<>(scratchPad);
+		
+		// configuration
+		if (trainFilter != null) sdp.trainFilter = new HashMap<>(trainFilter);
+		sdp.numberSets = new ArrayList<>(numberSets);
+		if (numberSetsTier != null) sdp.numberSetsTier = new ArrayList<>(numberSetsTier);
+		if (nsWeights != null) sdp.nsWeights = Arrays.copyOf(nsWeights, nsWeights.length);
+		if (nsTypes != null) sdp.nsTypes = Arrays.copyOf(nsTypes, nsTypes.length);
+		sdp.nsMapVectorPosition = copyMapVectorPosition(nsMapVectorPosition);
+		if (nsMapVectorLength != null) sdp.nsMapVectorLength = Arrays.copyOf(nsMapVectorLength, nsMapVectorLength.length);
+		if (nsMapToVector != null) {
+			sdp.nsMapToVector = new int[nsMapToVector.length][];
+			for (int i=0;i<nsMapToVector.length;i++) {
+				if (nsMapToVector[i] != null) sdp.nsMapToVector[i] = Arrays.copyOf(nsMapToVector[i], nsMapToVector[i].length);
+			}
+		}
+		sdp.nsChildMapVectorPosition = copyMapVectorPosition(nsChildMapVectorPosition);
+		if (nsChildMapVectorLength != null) sdp.nsChildMapVectorLength = Arrays.copyOf(nsChildMapVectorLength, nsChildMapVectorLength.length);
+		
+		// counts
+		sdp.defAccum = defAccum.copy();
+		sdp.recallAnswerAccum = recallAnswerAccum.copy();
+		sdp.predictAnswerAccum = predictAnswerAccum.copy();
+		
+		// data: solid sets are never changed in place
+		sdp.nsHashHash = new HashMap<>();
+		for (Integer ns:nsHashHash.keySet()) {
+			MLNumberSetHash nsh = nsHashHash.get(ns);
+			sdp.nsHashHash.put(ns, nsh == null ? null : nsh.share());
+		}
+		return sdp;
+	}
+	private static boolean [][][] copyMapVectorPosition(boolean [][][] mvp) {
+		if (mvp == null) return null;
+		boolean [][][] nmvp = new boolean[mvp.length][][];
+		for (int i=0;i<mvp.length;i++) {
+			if (mvp[i] == null) continue;
+			nmvp[i] = new boolean[mvp[i].length][];
+			for (int j=0;j<mvp[i].length;j++) {
+				if (mvp[i][j] != null) nmvp[i][j] = Arrays.copyOf(mvp[i][j], mvp[i][j].length);
+			}
+		}
+		return nmvp;
+	}
+	
 	//
 	// merge dimensions
 	//
@@ -3056,7 +3288,10 @@ public class VDataPlane implements java.io.Serializable {
 			if (this.numberSetsTier != null) this.numberSetsTier = new ArrayList<>(xdp.getNSsTier());
 			else this.numberSetsTier = null;
 			
-			if (xdp.isSolid()) {
+			if (xdp.solidMap != null) {
+				// read-only: share
+				this.solidMap = xdp.solidMap;
+			} else if (xdp.isSolid()) {
 				this.probabilitySets = Arrays.copyOf(xdp.probabilitySets, xdp.probabilitySets.length);
 				this.valueSets = Arrays.copyOf(xdp.valueSets, xdp.valueSets.length);
 				this.valueSetsL = Arrays.copyOf(xdp.valueSetsL, xdp.valueSetsL.length);
@@ -3162,6 +3397,7 @@ public class VDataPlane implements java.io.Serializable {
 	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	// number set state
 	boolean setCfgNSTurnedOff(List<Integer> setNumbers, boolean turnedOff) {
+		modified();
 		int ns = getNSCount();
 		for (Integer setNumber:setNumbers) {
 			if (setNumber >= ns || setNumber < 0) return false;
@@ -3180,6 +3416,7 @@ public class VDataPlane implements java.io.Serializable {
 		return true;
 	}
 	boolean setCfgNSTurnedOff(int setNumber, boolean turnedOff) {
+		modified();
 		int ns = getNSCount();
 		if (setNumber >= ns || setNumber < 0) return false;
 		MLNumberSetHash nsh = this.getNSHash(setNumber);
@@ -3190,6 +3427,7 @@ public class VDataPlane implements java.io.Serializable {
 		return true;
 	}	
 	void setCfgNSTurnedOff(boolean turnedOff) {
+		modified();
 		for (int i=0;i<getNSCount();i++) {
 			MLNumberSetHash nsh = this.getNSHash(i);
 			if (nsh != null) nsh.setTurnedOff(turnedOff);
@@ -3247,7 +3485,8 @@ public class VDataPlane implements java.io.Serializable {
 	//
 	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	int makeSolid() {
-		if (probabilitySets != null) return 0;		
+		modified();
+		if (isSolid()) return 0;		
 		// smash it / optimize and entangle 
 		//this.getVegML().smash(this.getDimensionTag(), this.getTag());
 		getVegML().entangle(this);
@@ -3275,8 +3514,8 @@ public class VDataPlane implements java.io.Serializable {
 		}
 		pSets = null;
 		if (vSetsL != null) {
-			valueSetsL = new long [vSets.size()][];
-			for (int i=0;i<vSets.size();i++) {
+			valueSetsL = new long [vSetsL.size()][];
+			for (int i=0;i<vSetsL.size();i++) {
 				valueSetsL[i] = vSetsL.get(i);
 			}	
 			vSetsL = null;
@@ -3542,7 +3781,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @return true if solid, else false
 	 */
 	public boolean isSolid() {
-		return (probabilitySets != null);
+		return (probabilitySets != null || solidMap != null);
 	}
 	
 	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -3565,6 +3804,7 @@ public class VDataPlane implements java.io.Serializable {
 			MLNumberSetHash nsh = getNSHash(i);
 			if (nsh == null || i == this.getCfgNSIdentityNumber()) continue;
 			if (nsh.isTurnedOff()) continue;
+			nsh = getNSHashW(i);
 			cnt += removeAllNSValue(i, valueId, retainProbability);
 			
 			int tot = nsh.getAccumSetDefault().getTotal();
@@ -3583,7 +3823,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @return count of removed
 	 */
 	public int removeAllNSValue(int setNumber, long valueId, boolean retainProbability) {	
-		MLNumberSetHash nsh = this.getNSHash(setNumber);
+		MLNumberSetHash nsh = this.getNSHashW(setNumber);
 		if (nsh == null) return 0;	
 		if (this.isSolid()) return 0;
 		return nsh.removeAllValue(valueId, retainProbability);
@@ -3599,7 +3839,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @return count of removed
 	 */
 	public int removeAllNSValue(int setNumber, long valueId, int minCount, int maxCount, boolean retainProbability) {	
-		MLNumberSetHash nsh = this.getNSHash(setNumber);
+		MLNumberSetHash nsh = this.getNSHashW(setNumber);
 		if (nsh == null) return 0;		
 		if (this.isSolid()) return 0;
 		
@@ -3616,7 +3856,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @return count of removed
 	 */
 	public int removeAllNSValue(int setNumber, long valueId, int minCount, int maxCount, HashMap<Long, Integer> exList) {	
-		MLNumberSetHash nsh = this.getNSHash(setNumber);
+		MLNumberSetHash nsh = this.getNSHashW(setNumber);
 		if (nsh == null) return 0;		
 		if (this.isSolid()) return 0;
 		
@@ -3632,7 +3872,7 @@ public class VDataPlane implements java.io.Serializable {
 		if (this.isSolid()) return 0;
 		int cnt = 0;
 		for (int ns=0;ns < this.getNSCount();ns++) {
-			MLNumberSetHash nsh = this.getNSHash(ns);
+			MLNumberSetHash nsh = this.getNSHashW(ns);
 			if (nsh == null) continue;
 			cnt += nsh.removeAllValues(removeLists[ns], true);
 		}
@@ -3650,7 +3890,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @return count of modified
 	 */
 	public int weightAllNSValue(int setNumber, long valueId, int minCount, int maxCount, HashMap<Long, Integer> exList, double weight) {	
-		MLNumberSetHash nsh = this.getNSHash(setNumber);
+		MLNumberSetHash nsh = this.getNSHashW(setNumber);
 		if (nsh == null) return 0;
 		if (this.isSolid()) return 0;
 		return nsh.weightAllValue(valueId, minCount, maxCount, exList, weight);
@@ -3666,7 +3906,7 @@ public class VDataPlane implements java.io.Serializable {
 		if (this.isSolid()) return 0;
 		int cnt = 0;
 		for (int ns=0;ns < this.getNSCount();ns++) {
-			MLNumberSetHash nsh = this.getNSHash(ns);
+			MLNumberSetHash nsh = this.getNSHashW(ns);
 			if (nsh == null) continue;
 			cnt += nsh.weightAllValues(valueLists[ns], weight);
 		}
@@ -3681,7 +3921,7 @@ public class VDataPlane implements java.io.Serializable {
 	 */
 	public int removeAllNSVectorsExcept(int ns, List<Long> exceptionList) {	
 		if (this.isSolid()) return 0;
-		MLNumberSetHash nsh = this.getNSHash(ns);
+		MLNumberSetHash nsh = this.getNSHashW(ns);
 		if (nsh == null) return 0;
 		return nsh.removeAllVectorsExcept(exceptionList);
 	}
@@ -3694,7 +3934,7 @@ public class VDataPlane implements java.io.Serializable {
 	 */
 	public int removeAllNSVectors(int ns, List<Long> vidList) {	
 		if (this.isSolid() || vidList.size() < 1) return 0;
-		MLNumberSetHash nsh = this.getNSHash(ns);
+		MLNumberSetHash nsh = this.getNSHashW(ns);
 		if (nsh == null) return 0;
 		return nsh.removeAllVectors(vidList);
 	}
@@ -3707,7 +3947,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @return count removed
 	 */
 	public int removeAllNSAccum(int setNumber, int maxCount, boolean retainProbability) {	
-		MLNumberSetHash nsh = this.getNSHash(setNumber);
+		MLNumberSetHash nsh = this.getNSHashW(setNumber);
 		if (nsh == null) return 0;
 		
 		if (this.isSolid()) {	
@@ -3725,7 +3965,7 @@ public class VDataPlane implements java.io.Serializable {
 		if (this.isSolid()) return 0;
 		int cnt = 0;
 		for (int ns=0;ns < this.getNSCount();ns++) {
-			MLNumberSetHash nsh = this.getNSHash(ns);
+			MLNumberSetHash nsh = this.getNSHashW(ns);
 			if (nsh == null) continue;
 			cnt += nsh.removeAllEmptyAccum();
 		}
@@ -3764,7 +4004,7 @@ public class VDataPlane implements java.io.Serializable {
 	 */
 	public void addVectorValueCount(int setNumber, long vid, long valueId, int upCount, int downCount) {	
 		if (this.isSolid()) return;
-		MLNumberSetHash nsh = this.getNSHash(setNumber);
+		MLNumberSetHash nsh = this.getNSHashW(setNumber);
 		if (nsh == null) return;
 		nsh.addVectorValueCount(vid, valueId, upCount, downCount);
 	}
@@ -3779,7 +4019,7 @@ public class VDataPlane implements java.io.Serializable {
 	 */
 	public void addVectorValueCount(int setNumber, long vid, List<Long> valueIds, int upCount, int downCount) {	
 		if (this.isSolid()) return;
-		MLNumberSetHash nsh = this.getNSHash(setNumber);
+		MLNumberSetHash nsh = this.getNSHashW(setNumber);
 		if (nsh == null) return;
 		nsh.addVectorValueCount(vid, valueIds, upCount, downCount);
 	}
@@ -3791,7 +4031,7 @@ public class VDataPlane implements java.io.Serializable {
 		if (this.isSolid()) return 0;
 		int cnt = 0;
 		for (int i=0;i<getNSCount();i++) {
-			MLNumberSetHash nsh = getNSHash(i);
+			MLNumberSetHash nsh = getNSHashW(i);
 			if (nsh == null || i == this.getCfgNSIdentityNumber()) continue;
 			if (i == this.getCfgNSFullNumber()) continue;
 			if (!context && this.isCfgNSContext(i)) continue;
@@ -3807,7 +4047,7 @@ public class VDataPlane implements java.io.Serializable {
 		if (this.isSolid()) return 0;
 		int cnt = 0;
 		for (int i=0;i<getNSCount();i++) {
-			MLNumberSetHash nsh = getNSHash(i);
+			MLNumberSetHash nsh = getNSHashW(i);
 			if (nsh == null || i == this.getCfgNSIdentityNumber()) continue;
 			if (i == this.getCfgNSFullNumber()) continue;
 			if (!context && this.isCfgNSContext(i)) continue;
@@ -3828,7 +4068,7 @@ public class VDataPlane implements java.io.Serializable {
 	 * @param frame
 	 */
 	public void genVectors(VFrame frame) {
-		VectorToVid.vectSetGen(this.nsMapVectorPosition, this.nsMapVectorLength, frame.getFrameFull(), frame.getVectSpace(), this.isNoEmptyElements(), this.getExceptVectNumber());
+		VectorToVid.vectSetGen(getVidPlan(), frame.getFrameFull(), frame.getVectSpace(), frame.getVidState());
 	}
 	
 	
@@ -3849,7 +4089,13 @@ public class VDataPlane implements java.io.Serializable {
 		PredictionType pType = null;
 		if (isSolid()) pType = this.getValPListDirectSolid_int(frame, nodefaults);			
 		else pType = this.getValPListDirect_int(frame, nodefaults);	
-		
+		return getValPListResult(ctx, frame, valueOut, pType, valueIds, segment);
+	}
+	
+	//
+	// callout and finalize the results for a frame
+	//
+	private PredictionType getValPListResult(VContext ctx, VFrame frame, List<Long> valueOut, PredictionType pType, Long [] valueIds, boolean segment) {
 		if (frame.vpList.size() > 0) frame.vpList.get(0).type = pType;
 		long valueid = 0;
 		if (valueIds != null) valueid = valueIds[0];
@@ -3874,6 +4120,111 @@ public class VDataPlane implements java.io.Serializable {
 		return pType;
 	}
  
+	//
+	// batch of made frames: vectors are generated in sequence, the numberSet lookups are grouped per vector
+	// then each frame is resolved as getValPList(); valueOut gets the results in frame order
+	// frames marked resolved already have their results in vpList
+	//
+	void getValPListBatch(VContext ctx, VFrame [] frames, int count, boolean [] resolved, List<Long> valueOut, PredictionType [] types) {
+		if (count < 1) return;
+		if (this.getNSCount() == 0 || this.defAccum.total == 0 || isValueOutDependent()) {
+			for (int f=0;f<count;f++) {
+				PredictionType pType = null;
+				if (resolved != null && resolved[f]) pType = getValPListResolved(frames[f], valueOut);
+				else pType = getValPList(ctx, frames[f], valueOut, false, null, false);
+				if (types != null) types[f] = pType;
+			}
+			return;
+		}
+		
+		/////////////////////////////////
+		// Vector generate for all: in sequence so shifted frames reuse vids
+		VectorToVid.VidPlan plan = getVidPlan();
+		VectorToVid.VidState state = new VectorToVid.VidState();
+		for (int f=0;f<count;f++) {
+			if (resolved != null && resolved[f]) Arrays.fill(frames[f].getVectSpace(), -1);
+			else VectorToVid.vectSetGen(plan, frames[f].getFrameFull(), frames[f].getVectSpace(), state);
+		}
+		
+		/////////////////////////////////
+		// map accumulators / group Ids for all
+		int [] nsCnt = mapAccumSpaceBatch(frames, count);
+		
+		for (int f=0;f<count;f++) {
+			VFrame frame = frames[f];
+			if (resolved != null && resolved[f]) {
+				PredictionType pType = getValPListResolved(frame, valueOut);
+				if (types != null) types[f] = pType;
+				continue;
+			}
+			frame.vpList.clear();
+			PredictionType pType = null;
+			if (isSolid()) pType = this.getValPListDirectSolidMapped_int(frame, false, nsCnt[f]);			
+			else pType = this.getValPListDirectMapped_int(frame, false, nsCnt[f]);	
+			pType = getValPListResult(ctx, frame, valueOut, pType, null, false);
+			if (types != null) types[f] = pType;
+		}
+	}
+	
+	private PredictionType getValPListResolved(VFrame frame, List<Long> valueOut) {
+		if (frame.vpList.size() < 1) {
+			if (valueOut != null) valueOut.add((long)VegML.emptyVect);	
+			return PredictionType.Fail;
+		}
+		if (valueOut != null) valueOut.add(frame.vpList.get(0).value);
+		return frame.vpList.get(0).type;
+	}
+	
+	//
+	// map accumulators for a batch of frames with vectors generated
+	// per vector the vids are sorted and each distinct vid is looked up once
+	//
+	private int [] mapAccumSpaceBatch(VFrame [] frames, int count) {
+		int [] nsCnt = new int[count];
+		int vectCnt = frames[0].getVectSpace().length;
+		long [] vids = new long[count];
+		Accum [] uac = isSolid() ? null : new Accum[count];
+		int [] usid = isSolid() ? new int[count] : null;
+		
+		for (int i=0;i<vectCnt;i++) {
+			int n = 0;
+			for (int f=0;f<count;f++) {
+				VFrame frame = frames[f];
+				frame.getAccumSpace()[i] = null;
+				frame.getSetIds()[i] = -1;
+				long vid = frame.getVectSpace()[i];
+				if (vid == -2 || vid == -1 || vid == 0) {
+					frame.getVectSpace()[i] = -1; // set all to the same
+					continue;	
+				}
+				vids[n++] = vid;
+				nsCnt[f]++;
+			}
+			if (n == 0) continue;
+			
+			// distinct vids in order
+			Arrays.sort(vids, 0, n);
+			int u = 1;
+			for (int k=1;k<n;k++) {
+				if (vids[k] != vids[u-1]) vids[u++] = vids[k];
+			}
+			MLNumberSetHash nsh = getNSHash(getMapVectorNumberSet(i)); // get numberSet for the vector
+			for (int k=0;k<u;k++) {
+				if (usid != null) usid[k] = nsh.getSolid(vids[k]);
+				else uac[k] = nsh.get(vids[k]);
+			}
+			for (int f=0;f<count;f++) {
+				VFrame frame = frames[f];
+				long vid = frame.getVectSpace()[i];
+				if (vid == -1) continue;
+				int k = Arrays.binarySearch(vids, 0, u, vid);
+				if (usid != null) frame.getSetIds()[i] = usid[k];
+				else frame.getAccumSpace()[i] = uac[k];
+			}
+		}
+		return nsCnt;
+	}
+	
 	// DOES NOT call callout AND doe not add valueOut
 	PredictionType getValPList(VContext ctx, VFrame frame, List<Long> valueOut, boolean nodefaults, long [] valSet, boolean limitSet, int noiseLimitFocus, int noiseLimitContext, double ampIdentity) {
 		if (this.getNSCount() == 0) return PredictionType.Fail;
@@ -3898,12 +4249,19 @@ public class VDataPlane implements java.io.Serializable {
 		
 		/////////////////////////////////
 		// Vector generate for all
-		VectorToVid.vectSetGen(nsMapVectorPosition, nsMapVectorLength, frame.getFrameFull(), frame.getVectSpace(), isNoEmptyElements(), getExceptVectNumber());
+		VectorToVid.vectSetGen(getVidPlan(), frame.getFrameFull(), frame.getVectSpace(), frame.getVidState());
 
 		
 		/////////////////////////////////
 		// map group Ids		
 		int nsCnt = mapAccumSpace(frame);
+		return getValPListDirectSolidMapped_int(frame, nodefaults, nsCnt);
+	}
+	
+	//
+	// get for solid: vectors generated and group Ids mapped
+	//
+	private PredictionType getValPListDirectSolidMapped_int(VFrame frame, boolean nodefaults, int nsCnt) {
 			
 		PredictionType ret = PredictionType.Predict;
 		long recallValue = 0;
@@ -3914,71 +4272,47 @@ public class VDataPlane implements java.io.Serializable {
 		if (nsVectNumFull >= 0) avsGid = frame.getSetIds()[nsVectNumFull];
 		if (avsGid >= 0) {
 			ret = PredictionType.Recall;
-			long [] valListL = null;
-			int [] valList = null;
-			if (isValLong()) valListL = this.valueSetsL[groupSet[avsGid][1]];
-			else valList = this.valueSets[groupSet[avsGid][1]];
+			int avsLen = getSolidLength(avsGid);
 			
-			if (valList != null && valList.length > 1) ret = PredictionType.RecallPredict;
-			else if (valListL != null && valListL.length > 1) ret = PredictionType.RecallPredict;
+			if (avsLen > 1) ret = PredictionType.RecallPredict;
 			else if (getCfgProbMethod() == ProbMethod.AverageIfNotRecall) {
 				//
 				// get fullest AND no collisions then this
 				//
-				double [] probList = this.probabilitySets[this.groupSet[avsGid][0]];
-				for (int i=0;i<probList.length;i++) {
+				for (int i=0;i<avsLen;i++) {
 					// only use values in identity
-					long v = 0;
-					if (isValLong()) v = valListL[i];
-					else v = valList[i];
-					VegUtil.mergeIntoVPList(frame.vpList, v, probList[i], 1);
+					VegUtil.mergeIntoVPList(frame.vpList, getSolidValue(avsGid, i), getSolidProb(avsGid, i), 1);
 				}
 				//System.out.println(" RECAL[@"+frame.getDataSetPosition()+"] " + probList.length + " => " + vpList.size());
 				Collections.sort(frame.vpList, VegUtil.VpSort);
 				frame.vpList.get(0).type = ret;
 				return ret;
 			}
-			recallValue = valList[0];
+			recallValue = getSolidValue(avsGid, 0);
 		}
 		
 		/////////////////////////////////
 		// identity info if filtering by it
 		int iacGid = -1;
-		long [] iacValListL = null;
-		int [] iacValList = null;
 		if (nsVectNumIdentity >= 0) iacGid = frame.getSetIds()[nsVectNumIdentity];
 		if (iacGid < 0 && !isCfgFameFocusNone()) ret = PredictionType.PredictUnknown;	
 		if (!identityOnly) iacGid = -1;
-		if (iacGid >= 0) {
-			if (this.isValLong()) iacValListL = this.valueSetsL[this.groupSet[iacGid][1]];
-			else iacValList = this.valueSets[this.groupSet[iacGid][1]];
-		}
 		
 		/////////////////////////////////
 		// get the probabilties and values
 		for (int ns=0;ns<frame.getSetIds().length;ns++) {
-			if (frame.getSetIds()[ns] < 0) continue;
+			int gid = frame.getSetIds()[ns];
+			if (gid < 0) continue;
 			
-			double [] probList = this.probabilitySets[groupSet[frame.getSetIds()[ns]][0]];
+			int len = getSolidLength(gid);
 			boolean isCtx = isCfgNSContext(getMapVectorNumberSet(ns));
 			
 			boolean added = false;
-			if (isValLong()) {
-				long [] valList = this.valueSetsL[groupSet[frame.getSetIds()[ns]][1]];				
-				for (int i=0;i<probList.length;i++) {
-					long v = valList[i];
-					if (iacValListL != null && isCtx && !containsVal(iacValListL, v)) continue; // a bit slow -> PERF issue
-					VegUtil.mergeIntoVPList(frame.vpList, v, probList[i], 1);
-					added = true;
-				}				
-			} else {
-				int [] valList = this.valueSets[groupSet[frame.getSetIds()[ns]][1]];				
-				for (int i=0;i<probList.length;i++) {
-					long v = valList[i];
-					if (iacValList != null && isCtx && !containsVal(iacValList, v)) continue; // a bit slow -> PERF issue
-					VegUtil.mergeIntoVPList(frame.vpList, v, probList[i], 1);
-					added = true;
-				}
+			for (int i=0;i<len;i++) {
+				long v = getSolidValue(gid, i);
+				if (iacGid >= 0 && isCtx && !containsSolidValue(iacGid, v)) continue; // a bit slow -> PERF issue
+				VegUtil.mergeIntoVPList(frame.vpList, v, getSolidProb(gid, i), 1);
+				added = true;
 			}
 			if (added && !isCtx && ret == PredictionType.Predict && ns != nsVectNumIdentity) ret = PredictionType.PredictRelate;
 		}
@@ -4040,7 +4374,7 @@ public class VDataPlane implements java.io.Serializable {
 		
 		/////////////////////////////////
 		// Vector generate for all
-		VectorToVid.vectSetGen(nsMapVectorPosition, nsMapVectorLength, frame.getFrameFull(), frame.getVectSpace(), isNoEmptyElements(), getExceptVectNumber());
+		VectorToVid.vectSetGen(getVidPlan(), frame.getFrameFull(), frame.getVectSpace(), frame.getVidState());
 
 		/////////////////////////////////
 		// map group Ids		
@@ -4055,109 +4389,63 @@ public class VDataPlane implements java.io.Serializable {
 		if (nsVectNumFull >= 0) avsGid = frame.getSetIds()[nsVectNumFull];
 		if (avsGid >= 0) {
 			ret = PredictionType.Recall;
-			long [] valListL = null;
-			int [] valList = null;
-			if (isValLong()) valListL = this.valueSetsL[groupSet[avsGid][1]];
-			else valList = this.valueSets[groupSet[avsGid][1]];
+			int avsLen = getSolidLength(avsGid);
 			
-			if (valList != null && valList.length > 1) ret = PredictionType.RecallPredict;
-			else if (valListL != null && valListL.length > 1) ret = PredictionType.RecallPredict;
+			if (avsLen > 1) ret = PredictionType.RecallPredict;
 			else if (getCfgProbMethod() == ProbMethod.AverageIfNotRecall) {
 				//
 				// get fullest AND no collisions then this
 				//
-				double [] probList = this.probabilitySets[this.groupSet[avsGid][0]];
 				// get sum
-				double mod = 0;
-				if (isValLong()) mod = VegUtil.amplifyListProbGetTotal(probList, valListL, valSet, -1);
-				else mod = VegUtil.amplifyListProbGetTotal(probList, valList, valSet, -1);
-				for (int i=0;i<probList.length;i++) {
+				double mod = amplifySolidGetTotal(avsGid, valSet, -1);
+				for (int i=0;i<avsLen;i++) {
 					// only use values in identity
-					long v = 0;
-					double p = probList[i];
-					if (isValLong()) {
-						v = valListL[i];
-						p = VegUtil.amplifyListProbLimitSet(probList, valListL, i, valSet, mod);
-					} else {
-						v = valList[i];
-						p = VegUtil.amplifyListProbLimitSet(probList, valList, i, valSet, mod);
-					}
+					double p = amplifySolidProb(avsGid, i, valSet, mod, true);
 					if (p <= 0) continue;
-					VegUtil.mergeIntoVPList(frame.vpList, v, p, 1);
+					VegUtil.mergeIntoVPList(frame.vpList, getSolidValue(avsGid, i), p, 1);
 				}
 				//System.out.println(" RECAL[@"+frame.getDataSetPosition()+"] " + probList.length + " => " + vpList.size());
 				Collections.sort(frame.vpList, VegUtil.VpSort);
 				frame.vpList.get(0).type = ret;
 				return ret;
 			}
-			recallValue = valList[0];
+			recallValue = getSolidValue(avsGid, 0);
 		}
 		
 		/////////////////////////////////
 		// identity info if filtering by it
 		int iacGid = -1;
-		long [] iacValListL = null;
-		int [] iacValList = null;
 		if (nsVectNumIdentity >= 0) iacGid = frame.getSetIds()[nsVectNumIdentity];
 		if (iacGid < 0 && !isCfgFameFocusNone()) ret = PredictionType.PredictUnknown;	
 		if (!identityOnly) iacGid = -1;
-		if (iacGid >= 0) {
-			if (this.isValLong()) iacValListL = this.valueSetsL[this.groupSet[iacGid][1]];
-			else iacValList = this.valueSets[this.groupSet[iacGid][1]];
-		}		
 				
 		/////////////////////////////////
-		// get the probabilties and values
+		// get the probabilties and values; groups are read in place
 		for (int ns=0;ns<frame.getSetIds().length;ns++) {
-			if (frame.getSetIds()[ns] < 0) continue;
+			int gid = frame.getSetIds()[ns];
+			if (gid < 0) continue;
 			int numberSet = getMapVectorNumberSet(ns);
 
 			// per number set noise limits		
 			//contains focus
-			// per number set noise limits		
 			int noiseLimit = noiseLimitContext;
 			boolean isCtx = isCfgNSContext(numberSet);
 			if (!isCtx) noiseLimit = noiseLimitFocus;
 
-			double mod = 0;
 			boolean added = false;
-			
-			double [] probList = this.probabilitySets[groupSet[frame.getSetIds()[ns]][0]];
-			
-			if (isValLong()) {
-				long [] valList = this.valueSetsL[groupSet[frame.getSetIds()[ns]][1]];
-				mod = VegUtil.amplifyListProbGetTotal(probList, valList, valSet, noiseLimit);
-				double p = 0;
-	
-				for (int i=0;i<probList.length;i++) {
-					long v = valList[i];
-					if (!limitSet) p = VegUtil.amplifyListProbSet(probList, valList, i, valSet, mod);
-					else p = VegUtil.amplifyListProbLimitSet(probList, valList, i, valSet, mod);
-					if (p <= 0) continue;
-					
-					// best is numberSet change AND limit
-					if (nsVectNumIdentity == ns && ampIdentity > 0) p *= ampIdentity;	// numberSet weight change?
-					else if (iacValListL != null && isCtx && !containsVal(iacValListL, v)) continue; // a bit slow -> PERF issue			
-					VegUtil.mergeIntoVPList(frame.vpList, v, p, 1);
-					added = true;
-				}				
-			} else {
-				int [] valList = this.valueSets[groupSet[frame.getSetIds()[ns]][1]];
-				mod = VegUtil.amplifyListProbGetTotal(probList, valList, valSet, noiseLimit);
-				double p = 0;
+			int len = getSolidLength(gid);
+			double mod = amplifySolidGetTotal(gid, valSet, noiseLimit);
 
-				for (int i=0;i<probList.length;i++) {
-					long v = valList[i];
-					if (!limitSet) p = VegUtil.amplifyListProbSet(probList, valList, i, valSet, mod);
-					else p = VegUtil.amplifyListProbLimitSet(probList, valList, i, valSet, mod);					
-					if (p <= 0) continue;
-					
-					// best is numberSet change AND limit
-					if (nsVectNumIdentity == ns && ampIdentity > 0) p *= ampIdentity;	// numberSet weight change?
-					else if (iacValList != null && isCtx && !containsVal(iacValList, v)) continue; // a bit slow -> PERF issue					
-					VegUtil.mergeIntoVPList(frame.vpList, v, p, 1);
-					added = true;
-				}
+			for (int i=0;i<len;i++) {
+				long v = getSolidValue(gid, i);
+				double p = amplifySolidProb(gid, i, valSet, mod, limitSet);
+				if (p <= 0) continue;
+				
+				// best is numberSet change AND limit
+				if (nsVectNumIdentity == ns && ampIdentity > 0) p *= ampIdentity;	// numberSet weight change?
+				else if (iacGid >= 0 && isCtx && !containsSolidValue(iacGid, v)) continue; // a bit slow -> PERF issue
+				VegUtil.mergeIntoVPList(frame.vpList, v, p, 1);
+				added = true;
 			}
 			if (added && !isCtx && ret == PredictionType.Predict && ns != nsVectNumIdentity) ret = PredictionType.PredictRelate;
 		}
@@ -4255,11 +4543,18 @@ public class VDataPlane implements java.io.Serializable {
 				
 		/////////////////////////////////
 		// Vector generate for all
-		VectorToVid.vectSetGen(nsMapVectorPosition, nsMapVectorLength, frame.getFrameFull(), frame.getVectSpace(), isNoEmptyElements(), getExceptVectNumber());
+		VectorToVid.vectSetGen(getVidPlan(), frame.getFrameFull(), frame.getVectSpace(), frame.getVidState());
 
 		/////////////////////////////////
 		// map accumulators		
 		int nsCnt = mapAccumSpace(frame);
+		return getValPListDirectMapped_int(frame, nodefaults, nsCnt);
+	}
+	
+	//
+	// get the simplest list: vectors generated and accumulators mapped
+	//
+	private PredictionType getValPListDirectMapped_int(VFrame frame, boolean nodefaults, int nsCnt) {
 
 		// get the default accumulator
 		Accum dac = getAccumDefault();
@@ -4308,6 +4603,10 @@ public class VDataPlane implements java.io.Serializable {
 
 		/////////////////////////////////
 		// get the probabilties and values
+		// merged in the frame's scratch map: no ValProb per value per numberSet
+		MLValProbMap vpm = frame.getValProbMap();
+		vpm.clear();
+		ValProb svp = vpm.vp;
 		int ccc = 0;
 		for (int vi =0;vi<frame.getAccumSpace().length;vi++) {
 			Accum vs = frame.getAccumSpace()[vi];
@@ -4315,36 +4614,37 @@ public class VDataPlane implements java.io.Serializable {
 			int numberSet = getMapVectorNumberSet(vi);
 
 			// get full list and merge it into the complete list
-			frame.vpTempList.clear();		
-		//	if (this.isBaseLineBooleanMode()) vs.getValPsSortedBoolean(frame.vpTempList);
-		//	else 
-				vs.getValPs(frame.vpTempList);
-			if (frame.vpTempList.size() < 1) continue;
+			int vcnt = vpm.read(vs);
+			if (vcnt < 1) continue;
 			
 			boolean isCtx = isCfgNSContext(numberSet);
 			
 			// get the set accumulators
 			Accum sac = getAccumSetDefault(numberSet);
 			boolean added = false;
-			for (int i=0;i<frame.vpTempList.size();i++) {
-				ValProb vp = frame.vpTempList.get(i);	
+			for (int i=0;i<vcnt;i++) {
+				svp.value = vpm.rvalues[i];
 				// only use values in identity
-				if (iac != null && isCtx && iac.getCount(vp.value) < 1) continue; // a bit slow
+				if (iac != null && isCtx && iac.getCount(svp.value) < 1) continue; // a bit slow
+				svp.probability = vpm.rprobs[i];
+				svp.count = vpm.rcounts[i];
+				svp.counter = 0;
+				svp.type = null;
 				
 				// get the weighted version from the 'activation' fuction
-				double wavgProb = getCfgPCalc().calculateProb(getCfgProbMethod(), this, dac, getCfgNSWeightRaw(), numberSet, (iac != null), sac, vs, vp);
+				double wavgProb = getCfgPCalc().calculateProb(getCfgProbMethod(), this, dac, getCfgNSWeightRaw(), numberSet, (iac != null), sac, vs, svp);
 				if (wavgProb <= 0) continue;
-				vp.probability = wavgProb;
-				vp.counter = 1;
-				VegUtil.mergeIntoVPList(frame.vpList, vp);
+				vpm.add(svp.value, wavgProb, svp.count);
 				added = true;
 			}
 			if (added) {
 				ccc++;
-				if (vi == nsVectNumFull) recallValue = frame.vpTempList.get(0).value;	
+				if (vi == nsVectNumFull) recallValue = vpm.rvalues[0];	
 				if (!isCtx && ret == PredictionType.Predict && vi != nsVectNumIdentity) ret = PredictionType.PredictRelate;
 			}
 		}
+		vpm.toVPList(frame.vpList);
+		vpm.clear();
 
 		/////////////////////////////////
 		// if nothing -> Fall back when nothing -> use general dimension set probability: get best
@@ -4398,7 +4698,7 @@ public class VDataPlane implements java.io.Serializable {
 			
 		/////////////////////////////////
 		// Vector generate for all
-		VectorToVid.vectSetGen(nsMapVectorPosition, nsMapVectorLength, frame.getFrameFull(), frame.getVectSpace(), isNoEmptyElements(), getExceptVectNumber());
+		VectorToVid.vectSetGen(getVidPlan(), frame.getFrameFull(), frame.getVectSpace(), frame.getVidState());
 
 		/////////////////////////////////
 		// map accumulators		
@@ -4618,7 +4918,7 @@ public class VDataPlane implements java.io.Serializable {
 		// Vector generate for all
 		VFrame bframe = sframe;
 		if (bframe == null) bframe = frameList.get(0); // use this for vectors
-		VectorToVid.vectSetGen(nsMapVectorPosition, nsMapVectorLength, bframe.getFrameFull(), bframe.getVectSpace(), isNoEmptyElements(), getExceptVectNumber());
+		VectorToVid.vectSetGen(getVidPlan(), bframe.getFrameFull(), bframe.getVectSpace(), bframe.getVidState());
 		
 		/////////////////////////////////
 		// map accumulators		
@@ -5159,7 +5459,7 @@ public class VDataPlane implements java.io.Serializable {
 	 */
 	public void trainNumberSet(int setNumber, long vid, long valueId) {
 		// add direct for position (in window)
-		MLNumberSetHash nsh = getNSHash(setNumber);
+		MLNumberSetHash nsh = getNSHashW(setNumber);
 
 		// set probability
 		Accum sac = nsh.getAccumSetDefault();
@@ -5185,6 +5485,7 @@ public class VDataPlane implements java.io.Serializable {
 		if (accumulatorType == AccumType.HashLong) return new AccumLongHm();
 		if (accumulatorType == AccumType.Long) return new AccumLongHm();
 		if (accumulatorType == AccumType.Boolean) return new AccumBool();		
+		if (accumulatorType == AccumType.Arena) return new AccumArena();
 		return new AccumInt();
 	}
 
@@ -39,6 +39,7 @@ import vegml.VegML.PredictionType;
 import vegml.ValProb;
 import vegml.Data.VDataSet;
 import vegml.Data.VDataSets;
+import vegml.Data.VectorToVid;
 
 public class VFrame {
 	static final int VPLIST_BASE = 1024;
@@ -59,12 +60,21 @@ public class VFrame {
 	
 	private long [] vectSpace = null;
 	private long [] vectSpaceCh = null;
+	// prior frame for streaming vid generation
+	private VectorToVid.VidState vidState = null;
+	private VectorToVid.VidState vidStateCh = null;
 	
 	// set ids for solid models
 	private int [] setIds = null;
 	private Accum [] accumSpace = null;
 	private VDataPlane dataplane = null;
 	
+	// per thread default counts for concurrent training
+	private MLTrainCounts trainCounts = null;
+	
+	// prediction merge scratch
+	private MLValProbMap vpMap = null;
+	
 	List<ValProb> vpList = null;
 	List<ValProb> vpTempList = null;
 		
@@ -320,6 +330,14 @@ public class VFrame {
 	long [] getVectSpace() {
 		return vectSpace;
 	}
+	VectorToVid.VidState getVidState() {
+		if (vidState == null) vidState = new VectorToVid.VidState();
+		return vidState;
+	}
+	VectorToVid.VidState getVidStateCh() {
+		if (vidStateCh == null) vidStateCh = new VectorToVid.VidState();
+		return vidStateCh;
+	}
 	
 	/**
 	 * Get the space in the frame for vectors long values
@@ -345,6 +363,26 @@ public class VFrame {
 		return this.accumSpace;
 	}
 	
+	/**
+	 * Scratch space for merging value probabilities while predicting
+	 * @return
+	 */
+	MLValProbMap getValProbMap() {
+		if (vpMap == null) vpMap = new MLValProbMap();
+		return vpMap;
+	}
+	
+	/**
+	 * Training counts for concurrent training, null if counting direct
+	 * @return
+	 */
+	MLTrainCounts getTrainCounts() {
+		return this.trainCounts;
+	}
+	void setTrainCounts(MLTrainCounts trainCounts) {
+		this.trainCounts = trainCounts;
+	}
+	
 	/**
 	 * direct full access to long frame space
 	 * @return
@@ -583,7 +621,7 @@ public class VFrame {
 	public void setValues(VDataPlane dp, VDataSets dss, VDataSet data, int dataSetNumber, int dataSetPosition) { 
 		init(dp);
 		for (int i=0;i<dp.getCfgWindowSize();i++) {
-			this.lframe[0][i] = data.getDataV(dataSetPosition);
+			this.lframe[0][i] = data.getDataVid(dataSetPosition, VegML.emptyVect);
 			this.frame[0][i] = (int)this.lframe[0][i];
 		}
 		this.frameFocus = dp.getCfgFrameFocus();
@@ -819,9 +857,8 @@ public class VFrame {
 	public int addSetDataBefore(int framePos, int count) {
 		for (int j=count;j>0;j--) {
 			int p = dataSetPosition-j;
-			Long v = (long)VegML.emptyVect;
-			if (p >= 0) v = dss.getDataLLV(dataSetNumber, dataSetPosition-j);
-			if (v == null) v = (long)VegML.emptyVect;
+			long v = VegML.emptyVect;
+			if (p >= 0) v = dss.getDataLLVid(dataSetNumber, p, VegML.emptyVect);
 			this.lframe[0][framePos] = v;
 			this.frame[0][framePos] = (int)this.lframe[0][framePos];
 			framePos++;
@@ -840,9 +877,7 @@ public class VFrame {
 	public int addSetDataAfter(int framePos, int count) {
 		if (count < 1) return framePos;
 		for (int i=1;i <= count && i <= windowSize;i++) {					
-			Long v = dss.getDataLLV(dataSetNumber, dataSetPosition+i);
-			if (v == null) v = (long)VegML.emptyVect;
-			this.lframe[0][framePos] = v;
+			this.lframe[0][framePos] = dss.getDataLLVid(dataSetNumber, dataSetPosition+i, VegML.emptyVect);
 			this.frame[0][framePos] = (int)this.lframe[0][framePos];
 			framePos++;
 		}
@@ -38,7 +38,9 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import vegml.VDRetainSet.DsRetainVal;
@@ -74,6 +76,7 @@ public class VResultSet {
 	// timing
 	public long startTime = 0;
 	public long endTime = 0;
+	private LinkedHashMap<String, Long> phaseTimes = null;	// for multi-phase operations
 	private VDataPlane dataPlane = null;
 	 
 	//////////////////////////////////
@@ -319,6 +322,17 @@ public class VResultSet {
 		}
 	}
 	
+	//
+	// add counted responses of a prediction type: no per value or list info
+	//
+	void addResponseCounts(PredictionType pType, int pass, int fail) {
+		this.total += pass + fail;
+		this.passTotal += pass;
+		this.failTotal += fail;
+		this.pTpass[pType.ordinal()] += pass;
+		this.pTfail[pType.ordinal()] += fail;
+	}
+	
 	/**
 	 * Add non-evaluated response
 	 * Add valueout and contains if collection contains info
@@ -542,6 +556,36 @@ public class VResultSet {
 		return min + ":"+String.format("%02d", sec)+"."+String.format("%03d", msec);
 	}
 
+	/**
+	 * set the time for a phase of a multi-phase operation
+	 * @param phase name of phase
+	 * @param msec duration in milliseconds
+	 */
+	public void setPhaseTime(String phase, long msec) {
+		if (phaseTimes == null) phaseTimes = new LinkedHashMap<>();
+		phaseTimes.put(phase, msec);
+	}
+	
+	/**
+	 * get the time for a phase of a multi-phase operation
+	 * @param phase name of phase
+	 * @return duration in milliseconds or -1 if not set
+	 */
+	public long getPhaseTime(String phase) {
+		if (phaseTimes == null) return -1;
+		Long t = phaseTimes.get(phase);
+		if (t == null) return -1;
+		return t;
+	}
+	
+	/**
+	 * get all phase times in order of phase
+	 * @return map of phase to duration in milliseconds, or null
+	 */
+	public Map<String, Long> getPhaseTimes() {
+		return phaseTimes;
+	}
+	
 	/**
 	 * merge in another result sets values
 	 * @param ts result set to merge into this
@@ -46,13 +46,16 @@ public class ValProb {
 	public PredictionType type; // Prediction type
 	public int position;
 	
-	ValProb() {}
+	ValProb() {
+		if (VegMetrics.enabled) VegMetrics.VALPROB_ALLOC.inc();
+	}
 	
 	/**
 	 * get new ValProb with defaults and val
 	 * @param val
 	 */
 	public ValProb(long val) {
+		if (VegMetrics.enabled) VegMetrics.VALPROB_ALLOC.inc();
 		this.count = 1;
 		this.counter = 1;
 		this.probability = 1.0;
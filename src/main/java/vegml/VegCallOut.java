@@ -61,6 +61,17 @@ public class VegCallOut implements java.io.Serializable {
 	public void init(VDataPlane dp) {
 	}
 	
+	/**
+	 * Override and return true if the results refined depend on the prior results in valueOut
+	 * predictions from dataplanes with such a callout are not memoized in the context
+	 * 
+	 * @param dp dataplane the callout is set on
+	 * @return true if results use valueOut
+	 */
+	public boolean isValueOutDependent(VDataPlane dp) {
+		return false;
+	}
+	
 	/**
 	 * condition for conditional process
 	 */
@@ -253,6 +264,22 @@ public class VegCallOut implements java.io.Serializable {
 			pl.add(vm);			
 		}
 		
+		// results from other dataplanes: dependent if any of them are or chain further
+		@Override
+		public boolean isValueOutDependent(VDataPlane dataplane) {
+			for (List<VCOMap> pl:vcListHm.values()) {
+				for (VCOMap vm:pl) {
+					if (vm.lower || vm.cond != null) return true;
+					if (vm.dpTag == null) continue;
+					VDataPlane dp = dataplane.getVegML().getDataPlane(vm.dTag, vm.dpTag);
+					if (dp == null || dp == dataplane) continue;
+					if (dp.getFramer() != null && dp.getFramer().isValueOutDependent()) return true;
+					if (dp.getCfgCallout() != null) return true;
+				}
+			}
+			return false;
+		}
+		
 		String getAmpTuneName(VDataPlane dp) {
 			return "AMP_"+dp.getDimensionTag()+"_"+dp.getTag();
 		}
@@ -101,6 +101,36 @@ public class VegFramer implements java.io.Serializable {
 		return dataplane.addIncWindowSizeNS(optType, positionNumber, after, numberSets, newNsSet);
 	}	
 	
+	/**
+	 * Override and return true if the frame made depends on the prior results in valueOut
+	 * predictions from dataplanes with such a framer are not memoized in the context
+	 * The response and mix framers are: in a chain such as affix -> POS -> text only the affix 
+	 * predictions are memoized, the prior results the POS frames read differ at each position
+	 * 
+	 * @return true if framing uses valueOut
+	 */
+	public boolean isValueOutDependent() {
+		return false;
+	}
+	
+	//
+	// predict from the source dataplane at position, memoized in the context
+	// the returned list is shared with the cache: do not modify
+	//
+	static List<ValProb> predictVPCached(VContext ctx, String sDTag, String sDPTag, List<Long> valueOut, VDataSet ds, int position, int dataSetNumber) {
+		VDataPlane sdp = ctx.getVegML().getDataPlane(sDTag, sDPTag);
+		if (sdp == null || sdp.isValueOutDependent()) {
+			return VegTest.predictVP(ctx, sDTag, sDPTag, valueOut, ds, position, dataSetNumber);
+		}
+		List<ValProb> vpl = ctx.getCachedPrediction(sdp, ds, dataSetNumber, position);
+		if (vpl != null) return vpl;
+		int voAdd = valueOut.size();					
+		vpl = VegTest.predictVP(ctx, sDTag, sDPTag, valueOut, ds, position, dataSetNumber);
+		while (voAdd < valueOut.size()) valueOut.remove(valueOut.size()-1); // remove anything that is added
+		ctx.putCachedPrediction(sdp, ds, dataSetNumber, position, vpl);
+		return vpl;
+	}
+	
 	
 	/**
 	 * Framer - response framing
@@ -119,6 +149,10 @@ public class VegFramer implements java.io.Serializable {
 		vML.setCfgScratch(dimensionTag, dataPlaneTag, "srcdptag", srcDPTag);
 		
 		VegFramer vf = new VegFramer() {
+			@Override
+			public boolean isValueOutDependent() {
+				return true;
+			}
 			@Override
 			public boolean makeFrame(VContext ctx, VDataPlane dataplane, VFrame frame, Object frameData, 
 									boolean predict, List<Long> valueOut, VDataSets dataSet, int dataSetNumber, int dataPosition) {
@@ -145,7 +179,7 @@ public class VegFramer implements java.io.Serializable {
 				Long tv = dataSet.getDataLLV(dataSetNumber, dataPosition);
 				int voAdd = valueOut.size();					
 				if (tv != VegML.emptyVect) {
-					List<ValProb> vpl = VegTest.predictVP(ctx, sDTag, sDPTag, valueOut, dataSet.get(frame.getDataSetNumber()), dataPosition, frame.getDataSetNumber());
+					List<ValProb> vpl = predictVPCached(ctx, sDTag, sDPTag, valueOut, dataSet.get(frame.getDataSetNumber()), dataPosition, frame.getDataSetNumber());
 					if (vpl == null || vpl.size() < 1) System.out.println("ERROR: FAIL-TEXT/POS[@"+dataPosition+"] "+dataplane.getDimensionTag()+"/"+dataplane.getTag()+" not trained yet" );
 					ValProb vp = vpl.get(0);
 					frame.setValue(dataplane, framePos, vp.value);
@@ -182,14 +216,12 @@ public class VegFramer implements java.io.Serializable {
 							String dv = dataSet.getDataLLS(dataSetNumber, dataPosition+x);
 							if (dv == null || !dv.equals(" ")) {						
 								// check cache
-								List<ValProb> vpl = VegTest.predictVP(ctx, sDTag, sDPTag, valueOut, dataSet.get(dataSetNumber), dataPosition+x, dataSetNumber);
+								List<ValProb> vpl = predictVPCached(ctx, sDTag, sDPTag, valueOut, dataSet.get(dataSetNumber), dataPosition+x, dataSetNumber);
 								//if (vpl == null || vpl.size() < 1) {
 								//	vpl = VegTest.predictVP(ctx, "affix", "pos", valuesOut, dataSet, dataPosition+x, frame.getDataSetNumber());
 								//}
 								if (vpl == null) return false;
-								ValProb vp = vpl.get(0);
-								vp.counter = dataPosition+x;
-								frame.setValue(dataplane, framePos, vp.value);
+								frame.setValue(dataplane, framePos, vpl.get(0).value);
 							} else {
 								frame.setValueEmpty(dataplane, framePos);
 							}					
@@ -229,6 +261,10 @@ public class VegFramer implements java.io.Serializable {
 		vML.setCfgScratch(dimensionTag, dataPlaneTag, "srcdptag", srcDPTag);
 		
 		VegFramer vf = new VegFramer() {
+			@Override
+			public boolean isValueOutDependent() {
+				return true;
+			}
 			@Override
 			//	public boolean makeFrame(VContext ctx, DataPlane dataplane, VFrame frame, long trainValue, List<Long> valuesOut, 
 						//List<String> dataSet, int dataPosition, String dataValue, Object frameData) {
@@ -290,15 +326,12 @@ public class VegFramer implements java.io.Serializable {
 								String dv = dataSet.getDataLLS(dataSetNumber, dataPosition+x);
 								if (dv == null || !dv.equals(" ")) {						
 									// check cache
-									List<ValProb> vpl = null;
-									vpl = VegTest.predictVP(ctx, sDTag, sDPTag, valueOut, dataSet.get(dataSetNumber), dataPosition+x, dataSetNumber);
+									List<ValProb> vpl = predictVPCached(ctx, sDTag, sDPTag, valueOut, dataSet.get(dataSetNumber), dataPosition+x, dataSetNumber);
 									//if (vpl == null || vpl.size() < 1) {
 									//	vpl = VegTest.predictVP(ctx, "affix", "pos", valuesOut, dataSet, dataPosition+x, frame.getDataSetNumber());
 									//}
 									if (vpl == null) return false;
-									ValProb vp = vpl.get(0);
-									vp.counter = dataPosition+x;
-									frame.setValue(dataplane, framePos, vp.value);
+									frame.setValue(dataplane, framePos, vpl.get(0).value);
 								} else {
 									frame.setValueEmpty(dataplane, framePos);
 								}					
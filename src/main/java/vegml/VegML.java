@@ -31,6 +31,7 @@
 
 package vegml;
 
+import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
@@ -44,6 +45,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
 
 import com.google.gson.Gson;
@@ -53,6 +56,7 @@ import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 
 import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongIntHashMap;
 import vegml.Data.VDataSet;
 import vegml.Data.VDataSetDescriptor;
 import vegml.Data.VDataSets;
@@ -145,6 +149,8 @@ public class VegML implements java.io.Serializable {
 	 *  Long, 			// value is long (8 bytes)
 	 *  Hash, 			// value is integer (4 bytes); access via hash: use for large value sets
 	 *  HashLong, 		// value is long (8 bytes); access via hash: use for large value sets
+	 *  HashCrt, 		// value is integer (4 bytes); access via hash: with correct counts
+	 *  Arena, 			// value is integer (4 bytes); columnar storage per numberSet: use for large models
 	 */
 	public enum AccumType {
 		Default, 
@@ -153,7 +159,8 @@ public class VegML implements java.io.Serializable {
 		Long, 
 		Hash, 
 		HashLong,
-		HashCrt
+		HashCrt,
+		Arena
 	};
 	
 	/**
@@ -236,6 +243,11 @@ public class VegML implements java.io.Serializable {
 	 */
 	private boolean saveVectSets = false;				// retain vector data for rules AND for some reductions
 	private boolean showProgress = false;				// show progress to stdout for some calls
+	private int threadCount = 0;						// threads for parallel work, 0 for available processors
+	private int trainShards = 0;						// shards for threaded train(), less than 2 for none
+	private int predictionCacheSize = 0;				// per context memoized sub-predictions per dataplane, 0 for default, -1 off
+	private transient ExecutorService threadPool = null; // parallel work pool
+	private transient boolean threadPoolOwned = false;
 	private String tag = null;							// tag for Veg Instance
 	private String description = null;					// description of the Veg Instance
 	//private int defaultWindowSize = AUTO_START_SZ;		// default window size to use
@@ -245,6 +257,7 @@ public class VegML implements java.io.Serializable {
 	private long inCount = 0;							// count of trained frames in	
 	private List<VDataPlane> dpList; 					// set of dataplanes
 	private transient HashMap<String, VDataPlane> dpHash = null; // dataplanes hash for lookup	
+	private transient String checkpointBase = null;		// full file checkpoints are saved against
 
 	
 	/**
@@ -425,6 +438,10 @@ public class VegML implements java.io.Serializable {
 	void serdpHash(VDataPlane dp) {
 		dpHash.put(dp.getDimensionTag()+"/"+dp.getTag(), dp);
 	}
+	void addDataPlane(VDataPlane dp) {
+		dpList.add(dp);
+		serdpHash(dp);
+	}
 
 	/**
 	 * get a list of all dataPlane tags 
@@ -587,7 +604,7 @@ public class VegML implements java.io.Serializable {
 	 */
 	public void save(String filename) {
 		System.out.println("VegML Saving[all] => ["+filename+"]");
-		MLSerialize.saveVML(this, filename);
+		if (MLSerialize.saveVML(this, filename)) checkpointBase = filename;
 	}
 	
 	/**
@@ -596,7 +613,56 @@ public class VegML implements java.io.Serializable {
 	 * @param filename filename to save to
 	 */
 	public void saveSilent(String filename) {
-		MLSerialize.saveVML(this, filename);
+		if (MLSerialize.saveVML(this, filename)) checkpointBase = filename;
+	}
+	
+	/**
+	 * Save a checkpoint of this instance silently
+	 * Only the instance config, dataplanes and numberSets that changed since the base are written; the
+	 * rest refer to the base. The base is the last full file this instance was saved to or loaded from
+	 * (a checkpoint's base when loaded from a checkpoint). With no base this is a full save that becomes the base.
+	 * Load a checkpoint with load(); the base must not be changed or removed while checkpoints use it.
+	 * The base is found by path and checked only by its length and the crc32 of each chunk read from it.
+	 * 
+	 * @param filename filename to save to
+	 * @return true if saved
+	 */
+	public boolean saveCheckpoint(String filename) {
+		boolean full = (checkpointBase == null || !MLSerializeChunks.isBaseFile(checkpointBase));
+		if (!full) {
+			try {
+				full = new File(checkpointBase).getCanonicalPath().equals(new File(filename).getCanonicalPath());
+			} catch (IOException e) {
+				full = true;
+			}
+		}
+		if (full) {
+			if (!MLSerialize.saveVML(this, filename)) return false;
+			checkpointBase = filename;
+			return true;
+		}
+		return (MLSerialize.saveVMLCheckpoint(this, filename, checkpointBase) >= 0);
+	}
+	
+	// the file checkpoints are saved against
+	String getCheckpointBase() {
+		return checkpointBase;
+	}
+	void setCheckpointBase(String checkpointBase) {
+		this.checkpointBase = checkpointBase;
+	}
+	
+	/**
+	 * Save the selected dataplanes of this instance to a file, the instance configuration and strings are included
+	 * This can be used to checkpoint just the dataplane that changed
+	 * 
+	 * @param filename filename to save to
+	 * @param dimensionTag dimension tag to save, null for all
+	 * @param dataPlaneTag dataplane tag to save, null for all in the dimension
+	 * @return true if saved
+	 */
+	public boolean save(String filename, String dimensionTag, String dataPlaneTag) {
+		return MLSerialize.saveVML(this, filename, dimensionTag, dataPlaneTag);
 	}
 
 	/**
@@ -630,6 +696,27 @@ public class VegML implements java.io.Serializable {
 		//this.dimensionList = dl;		
 	}
 	
+	/**
+	 * Save this instance to a solid model file that can be memory mapped by loadSolid()
+	 * all dataplanes must be solid: see makeSolid()
+	 * 
+	 * @param filename filename to save to
+	 * @return true if saved
+	 */
+	public boolean saveSolid(String filename) {
+		System.out.println("VegML Saving[solid] => ["+filename+"]");
+		return MLSerialize.saveSolidVML(this, filename);
+	}
+	
+	/**
+	 * load from a solid model file; the solid tables are memory mapped read-only, not loaded
+	 * @param filename	file name to load from
+	 * @return VegML from the content
+	 */
+	public static VegML loadSolid(String filename) {
+		return MLSerialize.loadSolidVML(filename);
+	}
+	
 	/**
 	 * load from saved model
 	 * @param filename	file name to load from
@@ -639,6 +726,17 @@ public class VegML implements java.io.Serializable {
 		//System.out.println("VegML Loading <= ["+filename+"]");
 		return MLSerialize.loadVML(filename);
 	}
+	
+	/**
+	 * load only the selected dataplanes from saved model
+	 * @param filename	file name to load from
+	 * @param dimensionTag dimension tag to load, null for all
+	 * @param dataPlaneTag dataplane tag to load, null for all in the dimension
+	 * @return VegML from the content
+	 */
+	public static VegML load(String filename, String dimensionTag, String dataPlaneTag) {
+		return MLSerialize.loadVML(filename, dimensionTag, dataPlaneTag);
+	}
 
 	/**
 	 * import from a file into this VegML, these could be full or partials
@@ -700,6 +798,7 @@ public class VegML implements java.io.Serializable {
 	
 	/**
 	 * make a copy of this instance
+	 * all numberSets are copied and optimized; use snapshot() for a copy-on-write copy
 	 * @return
 	 */
 	public VegML copy() {
@@ -708,6 +807,33 @@ public class VegML implements java.io.Serializable {
 		return vML;
 	}
 	
+	/**
+	 * make a copy-on-write snapshot of this instance
+	 * The snapshot has its own configuration, strings and dataplanes; the trained numberSets
+	 * are shared with this instance and each is copied only when the snapshot or this
+	 * instance changes it. Changing a few numberSets in a snapshot costs only those copies
+	 * As with copy() the dataplane data definitions and vector converters are shared
+	 * @return snapshot instance
+	 */
+	public VegML snapshot() {
+		VegML vML = new VegML(this.tag);
+		vML.description = this.description;
+		vML.saveVectSets = this.saveVectSets;
+		vML.showProgress = this.showProgress;
+		vML.threadCount = this.threadCount;
+		vML.trainShards = this.trainShards;
+		vML.predictionCacheSize = this.predictionCacheSize;
+		vML.inCount = this.inCount;
+		vML.checkpointBase = this.checkpointBase;
+		if (this.scratchPad != null) vML.scratchPad = new HashMap<>(this.scratchPad);
+		vML.vectStrMap = this.vectStrMap.copy();
+		vML.vectSetMap = this.vectSetMap.copy();
+		for (int i=0;i<getDataPlaneCount();i++) {
+			vML.addDataPlane(getDataPlane(i).snapshot(vML));
+		}
+		return vML;
+	}
+	
 	/**
 	 * get the trained input frame count
 	 * @return
@@ -831,6 +957,115 @@ public class VegML implements java.io.Serializable {
 		return showProgress;
 	}
 	
+	/**
+	 * Enable or disable metrics collection: counters, histograms and timers for training, prediction, 
+	 * hashing, threads and optimizing. Metrics are process wide, see VegMetrics
+	 * @param enabled true to collect
+	 */
+	public void setCfgMetricsEnabled(boolean enabled) {
+		VegMetrics.get().setEnabled(enabled);
+	}
+	
+	/**
+	 * check if metrics collection is enabled
+	 * @return true if collecting
+	 */
+	public boolean isCfgMetricsEnabled() {
+		return VegMetrics.get().isEnabled();
+	}
+	
+	/**
+	 * get the metrics registry; add sinks to it for JMX or file reports
+	 * @return metrics registry
+	 */
+	public VegMetrics getMetrics() {
+		return VegMetrics.get();
+	}
+	
+	/**
+	 * Set the number of threads for parallel training, testing and tuning
+	 * @param threadCount thread count, 0 for the number of available processors
+	 */
+	public void setCfgThreadCount(int threadCount) {
+		this.threadCount = threadCount;
+		endThreadPool();
+	}
+	
+	/**
+	 * get the number of threads for parallel training, testing and tuning
+	 * @return
+	 */
+	public int getCfgThreadCount() {
+		if (threadCount < 1) return Runtime.getRuntime().availableProcessors();
+		return threadCount;
+	}
+	
+	/**
+	 * Set the shard count for threaded training: VegTrain.train() with threaded true trains
+	 * this many shards in parallel and merges them, see VegTrain.trainShards()
+	 * @param trainShards shard count, less than 2 to train in place
+	 */
+	public void setCfgTrainShards(int trainShards) {
+		this.trainShards = trainShards;
+	}
+	
+	/**
+	 * get the shard count for threaded training
+	 * @return shard count, less than 2 for none
+	 */
+	public int getCfgTrainShards() {
+		return trainShards;
+	}
+	
+	/**
+	 * Set the max number of sub-predictions memoized per source dataplane in each context
+	 * used by the response framers to predict each source position once
+	 * @param size max entries, 0 for the default, -1 to turn off
+	 */
+	public void setCfgPredictionCacheSize(int size) {
+		this.predictionCacheSize = size;
+	}
+	
+	/**
+	 * get the max number of sub-predictions memoized per source dataplane in each context
+	 * @return max entries, 0 for the default, -1 for off
+	 */
+	public int getCfgPredictionCacheSize() {
+		return predictionCacheSize;
+	}
+	
+	/**
+	 * Set the executor to use for parallel training, testing and tuning
+	 * the caller owns it; null to return to the default ForkJoinPool of getCfgThreadCount() threads
+	 * @param threadPool executor to use
+	 */
+	public void setCfgThreadPool(ExecutorService threadPool) {
+		endThreadPool();
+		synchronized (this) {
+		this.threadPool = threadPool;
+		this.threadPoolOwned = false;
+		}
+	}
+	
+	//
+	// get the pool for parallel work; make default if needed
+	//
+	synchronized ExecutorService getThreadPool() {
+		if (threadPool == null || threadPool.isShutdown()) {
+			threadPool = new ForkJoinPool(getCfgThreadCount());
+			threadPoolOwned = true;
+		}
+		return threadPool;
+	}
+	
+	//
+	// release the default pool threads; caller's pool is left running
+	//
+	synchronized void endThreadPool() {
+		if (threadPool != null && threadPoolOwned) threadPool.shutdown();
+		if (threadPoolOwned) threadPool = null;
+	}
+	
 	/**
 	 * set dataplane to save child vids to each accumulator instead of vectSetIds during training
 	 * default is off
@@ -3516,6 +3751,7 @@ public class VegML implements java.io.Serializable {
 			//System.out.println("   SET["+i+"] HashSize[" + hm.size()+"] set: " + setToString(getSet(i)));	
 			if (nsh == null || nsh.size() < 1 || nsh.isTurnedOff()) continue;
 			//System.out.println("   SET["+i+"]  set: " + nsh.size());	
+			nsh.own();
 
 			aCnt += nsh.size();
 			Set<Accum> delList = new HashSet<>();
@@ -3599,16 +3835,17 @@ public class VegML implements java.io.Serializable {
 		long rCnt = 0, cSize = 0, nSize = 0;
 		if (isCfgShowProgress()) System.out.print("   START Entanglement["+dataPlane.getDimensionTag()+"/"+dataPlane.getTag()+"] sets["+dataPlane.getNSCount()+"] .");
 
+		// each of these is a different set where i == setNumber; they are independent
+		List<MLNumberSetHash> nshl = new ArrayList<>();
 		for (int setNumber=0;setNumber<dataPlane.getNSCount();setNumber++) {
-			// each of these is a different set where i == setNumber
 			MLNumberSetHash nsh = dataPlane.getNSHash(setNumber);
 			if (nsh == null || nsh.size() < 1) continue;
-			//System.out.print("  Ent["+nsh.getSetNumber()+" of "+dataPlane.getNSCount()+"] size["+nsh.size()+"] => ");
 			cSize += nsh.size();
-			rCnt += entangle(dataPlane, setNumber);
-			nSize += nsh.size();
-			//System.out.println("["+nsh.size()+"]");
+			nshl.add(nsh);
 		}
+		rCnt = MLThreadUtil.runEntangle(dataPlane, nshl);
+		for (MLNumberSetHash nsh:nshl) nSize += nsh.size();
+		
 		double per0 = (double)100 - (((double)nSize / (double)cSize)*(double)100);
 		if (isCfgShowProgress()) System.out.println(".. COMPLETE Reduction["+String.format("%.2f", per0)+"%] size["+cSize+" => "+nSize+"]");
 		return rCnt;		
@@ -3626,6 +3863,7 @@ public class VegML implements java.io.Serializable {
 		// each of these is a different set where i == setNumber					
 		if (nsh == null || nsh.size() < 1) return 0;
 		if (nsh.isTurnedOff()) return 0;
+		nsh.own();
 
 		List<Accum> acList = nsh.getListSorted();
 		Object [] acArray = acList.toArray();	// this is exponentially faster
@@ -3637,30 +3875,51 @@ public class VegML implements java.io.Serializable {
 		int stSize = nsh.size();
 		nsh.clear();
 
-		int mergeCmt = 0, matchCnt = 0;
-		// get sorted list to work from for fast
-		List<Accum> etgList = new ArrayList<>();	// get list to entangle
+		//
+		// group by distribution fingerprint, verify with compare() on a collision
+		// sorted order is kept: the first of a group is its leader, as the neighbour compare did
+		//
+		int maxVc = 1;
+		for (int a=0;a<acArray.length;a++) maxVc = Math.max(maxVc, ((Accum)acArray[a]).getValueCount());
+		long [] vals = new long[maxVc];
+		int [] cnts = new int[maxVc];
+		double [] probs = new double[maxVc];
 		
+		TLongIntHashMap fpMap = new TLongIntHashMap(acArray.length);	// fingerprint -> first leader+1
+		int [] nextLeader = new int[acArray.length];	// leaders with the same fingerprint
+		int [] nextMember = new int[acArray.length];	// group members in order
+		int [] lastMember = new int[acArray.length];
+		int [] groupSize = new int[acArray.length];		// 0 for a member
 		for (int a=0;a<acArray.length;a++) {
 			Accum ac = (Accum)acArray[a];
-			if (ac == null) continue;
-			double acProb = ac.getFirstMostProbablity();
-			for (int a2=(a+1);a2<acArray.length;a2++) {
-				Accum ac2 = (Accum)acArray[a2];
-				if (ac2 == null) continue;
-				if (ac2.getValueCount() != ac.getValueCount()) break;
-				double ac2Prob = ac2.getFirstMostProbablity();
-				if (ac2Prob != acProb) break;			
-				// compare
-				if (ac2.compare(ac)) {
-					if (etgList.size() == 0) etgList.add(ac);	
-					etgList.add(ac2);
-
-					// remove from the list...
-					acArray[a2] = null;
-				}
+			nextLeader[a] = nextMember[a] = -1;
+			long fp = distFingerprint(ac, vals, cnts, probs);
+			int l = fpMap.get(fp)-1, pl = -1;
+			while (l >= 0 && !ac.compare((Accum)acArray[l])) {
+				pl = l;
+				l = nextLeader[l];
+			}
+			if (l >= 0) {
+				// member
+				nextMember[lastMember[l]] = a;
+				lastMember[l] = a;
+				groupSize[l]++;
+				continue;
 			}
-			if (etgList.size() > 1) {
+			// new leader
+			groupSize[a] = 1;
+			lastMember[a] = a;
+			if (pl < 0) fpMap.put(fp, a+1);
+			else nextLeader[pl] = a;
+		}
+		
+		int mergeCmt = 0, matchCnt = 0;
+		List<Accum> etgList = new ArrayList<>();	// get list to entangle
+		for (int a=0;a<acArray.length;a++) {
+			if (groupSize[a] == 0) continue;
+			Accum ac = (Accum)acArray[a];
+			if (groupSize[a] > 1) {
+				for (int m=a;m >= 0;m=nextMember[m]) etgList.add((Accum)acArray[m]);
 				matchCnt++;
 				mergeCmt += (etgList.size()-1);
 				// entanglement..
@@ -3700,6 +3959,27 @@ public class VegML implements java.io.Serializable {
 		ac.setVectSetId(-1); // clear it
 		mlist.clear();
 	}
+	
+	//
+	// fingerprint of an accumulator's value/probability distribution; the same for any that compare()
+	// order independent: the values are not sorted
+	//
+	private static long distFingerprint(Accum ac, long [] vals, int [] cnts, double [] probs) {
+		int n = ac.getValPs(vals, cnts, probs);
+		long h = n * 0x9E3779B97F4A7C15L;
+		for (int i=0;i<n;i++) {
+			h += mix64((vals[i] * 0xC2B2AE3D27D4EB4FL) ^ Double.doubleToLongBits(probs[i]));
+		}
+		return mix64(h);
+	}
+	private static long mix64(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
 
 	/**
 	 * De-Entangle accumulators for a dataplane
@@ -3747,6 +4027,7 @@ public class VegML implements java.io.Serializable {
 		if (nsh.isTurnedOff()) return 0;
 		// is this set entangled?
 		if (!nsh.isEntangled()) return 0;
+		nsh.own();
 		
 		int setNumber = nsh.getSetNumber();
 		
@@ -0,0 +1,527 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Metrics registry: counters, histograms and timers for training, prediction, hashing, threading and optimizing
+ * 
+ * Metrics are process wide, all VegML instances share this registry. Collection is off by default; 
+ * when off each instrumented point costs one static boolean check.
+ *   VegMetrics.get().setEnabled(true) or vML.setCfgMetricsEnabled(true)
+ * 
+ * Built in metrics
+ *  train.frames, predict.frames		counters with rate: frames/sec
+ *  train.time, predict.time			timers for each dataset set trained / tested
+ *  hash.probes							histogram: slots probed per numberSet hash lookup
+ *  hash.resize, hash.chain				counter of numberSet hash resizes; histogram of longest probe chain after resize
+ *  accum.alloc, valprob.alloc			allocation counters
+ *  callout.depth						histogram: dataplane recursion depth on callout / framer entry
+ *  thread.wait, thread.task			timers: pool queue wait and run time for each parallel task
+ *  optimizer.step, model.save, model.load	timers; optimizer.step is each step of Optimiser, OptimizerStatistical and OptimizerLogical
+ * 
+ * Sinks get the values when report() is called or periodically with startReporting()
+ *  VegMetricsJmx for JMX MBean attributes, VegMetricsFileSink for CSV or JSON dumps
+ */
+public class VegMetrics {
+	// hot path check; volatile so running loops see a change
+	static volatile boolean enabled = false;
+	
+	private static final VegMetrics metrics = new VegMetrics();
+	
+	// built in metrics
+	static final Counter TRAIN_FRAMES = metrics.counter("train.frames");
+	static final Counter PREDICT_FRAMES = metrics.counter("predict.frames");
+	static final Timer TRAIN_TIME = metrics.timer("train.time");
+	static final Timer PREDICT_TIME = metrics.timer("predict.time");
+	static final Histogram HASH_PROBES = metrics.histogram("hash.probes");
+	static final Counter HASH_RESIZE = metrics.counter("hash.resize");
+	static final Histogram HASH_CHAIN = metrics.histogram("hash.chain");
+	static final Counter ACCUM_ALLOC = metrics.counter("accum.alloc");
+	static final Counter VALPROB_ALLOC = metrics.counter("valprob.alloc");
+	static final Histogram CALLOUT_DEPTH = metrics.histogram("callout.depth");
+	static final Timer THREAD_WAIT = metrics.timer("thread.wait");
+	static final Timer THREAD_TASK = metrics.timer("thread.task");
+	static final Timer OPTIMIZER_STEP = metrics.timer("optimizer.step");
+	static final Timer MODEL_SAVE = metrics.timer("model.save");
+	static final Timer MODEL_LOAD = metrics.timer("model.load");
+	
+	private final Map<String, Metric> metricMap = new TreeMap<>();
+	private final List<VegMetricsSink> sinks = new ArrayList<>();
+	private ScheduledExecutorService reporter = null;
+	
+	private VegMetrics() {
+	}
+	
+	/**
+	 * get the metrics registry
+	 * @return registry
+	 */
+	public static VegMetrics get() {
+		return metrics;
+	}
+	
+	/**
+	 * Enable or disable metric collection
+	 * @param enable true to collect
+	 */
+	public void setEnabled(boolean enable) {
+		enabled = enable;
+	}
+	
+	/**
+	 * check if metrics are being collected
+	 * @return true if enabled
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	/**
+	 * get or add a counter
+	 * @param name metric name
+	 * @return counter, null if the name is in use by another type
+	 */
+	public synchronized Counter counter(String name) {
+		Metric m = metricMap.get(name);
+		if (m == null) {
+			m = new Counter(name);
+			metricMap.put(name, m);
+		}
+		if (!(m instanceof Counter)) return null;
+		return (Counter)m;
+	}
+	
+	/**
+	 * get or add a histogram
+	 * @param name metric name
+	 * @return histogram, null if the name is in use by another type
+	 */
+	public synchronized Histogram histogram(String name) {
+		Metric m = metricMap.get(name);
+		if (m == null) {
+			m = new Histogram(name);
+			metricMap.put(name, m);
+		}
+		if (!(m instanceof Histogram) || m instanceof Timer) return null;
+		return (Histogram)m;
+	}
+	
+	/**
+	 * get or add a timer
+	 * @param name metric name
+	 * @return timer, null if the name is in use by another type
+	 */
+	public synchronized Timer timer(String name) {
+		Metric m = metricMap.get(name);
+		if (m == null) {
+			m = new Timer(name);
+			metricMap.put(name, m);
+		}
+		if (!(m instanceof Timer)) return null;
+		return (Timer)m;
+	}
+	
+	/**
+	 * get a metric by name
+	 * @param name metric name
+	 * @return metric or null
+	 */
+	public synchronized Metric getMetric(String name) {
+		return metricMap.get(name);
+	}
+	
+	/**
+	 * get all metrics, sorted by name
+	 * @return list of metrics
+	 */
+	public synchronized List<Metric> getMetrics() {
+		return new ArrayList<>(metricMap.values());
+	}
+	
+	/**
+	 * get all values flattened: name.field -&gt; value, sorted by name
+	 * @return map of values
+	 */
+	public Map<String, Number> getValues() {
+		Map<String, Number> vm = new TreeMap<>();
+		for (Metric m:getMetrics()) m.getValues(vm);
+		return vm;
+	}
+	
+	/**
+	 * reset all metric values
+	 */
+	public void reset() {
+		for (Metric m:getMetrics()) m.reset();
+	}
+	
+	
+	////////////////////////////////////////////////////
+	// Sinks
+	
+	/**
+	 * add a sink for reports
+	 * @param sink sink to add
+	 */
+	public synchronized void addSink(VegMetricsSink sink) {
+		if (!sinks.contains(sink)) sinks.add(sink);
+	}
+	
+	/**
+	 * remove and close a sink
+	 * @param sink sink to remove
+	 */
+	public synchronized void removeSink(VegMetricsSink sink) {
+		if (sinks.remove(sink)) sink.close();
+	}
+	
+	/**
+	 * send the current values to all sinks
+	 */
+	public void report() {
+		List<VegMetricsSink> sl;
+		synchronized (this) {
+			sl = new ArrayList<>(sinks);
+		}
+		for (VegMetricsSink s:sl) {
+			try {
+				s.report(this);
+			} catch (RuntimeException e) {
+				System.out.println("ERROR metrics sink["+s.getClass().getSimpleName()+"]: " + e.getMessage());
+			}
+		}
+	}
+	
+	/**
+	 * report to the sinks periodically on a daemon thread
+	 * @param periodMs milliseconds between reports
+	 */
+	public synchronized void startReporting(long periodMs) {
+		stopReporting();
+		reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread t = new Thread(r, "vegml-metrics");
+			t.setDaemon(true);
+			return t;
+		});
+		reporter.scheduleAtFixedRate(this::report, periodMs, periodMs, TimeUnit.MILLISECONDS);
+	}
+	
+	/**
+	 * stop periodic reports
+	 */
+	public synchronized void stopReporting() {
+		if (reporter == null) return;
+		reporter.shutdown();
+		reporter = null;
+	}
+	
+	
+	////////////////////////////////////////////////////
+	// instrumentation helpers
+	
+	//
+	// result set for a training pass is complete
+	//
+	static void trained(VResultSet ts) {
+		if (!enabled || ts == null) return;
+		TRAIN_FRAMES.add(ts.total);
+		TRAIN_TIME.record(TimeUnit.MILLISECONDS.toNanos(ts.durration()));
+	}
+	
+	//
+	// result set for a test / prediction pass is complete
+	//
+	static void predicted(VResultSet ts) {
+		if (!enabled || ts == null) return;
+		PREDICT_FRAMES.add(ts.total);
+		PREDICT_TIME.record(TimeUnit.MILLISECONDS.toNanos(ts.durration()));
+	}
+	
+	//
+	// result sets for modification tests are complete: each test predicted every frame in the same time
+	//
+	static void predicted(List<VResultSet> tsList) {
+		if (!enabled || tsList == null || tsList.size() < 1) return;
+		for (VResultSet ts:tsList) PREDICT_FRAMES.add(ts.total);
+		PREDICT_TIME.record(TimeUnit.MILLISECONDS.toNanos(tsList.get(0).durration()));
+	}
+	
+	
+	////////////////////////////////////////////////////
+	// metric types
+	
+	/**
+	 * base for all metrics
+	 */
+	public static abstract class Metric {
+		protected final String name;
+		
+		Metric(String name) {
+			this.name = name;
+		}
+		
+		/**
+		 * get the metric name
+		 * @return name
+		 */
+		public String getName() {
+			return name;
+		}
+		
+		/**
+		 * add this metrics values to the map as name.field
+		 * @param vm map to add to
+		 */
+		public abstract void getValues(Map<String, Number> vm);
+		
+		/**
+		 * reset values
+		 */
+		public abstract void reset();
+	}
+	
+	/**
+	 * Counter with rate since first count or reset
+	 */
+	public static class Counter extends Metric {
+		private final LongAdder count = new LongAdder();
+		private volatile long startTime = 0;
+		
+		Counter(String name) {
+			super(name);
+		}
+		
+		/**
+		 * add one
+		 */
+		public void inc() {
+			add(1);
+		}
+		
+		/**
+		 * add to the count
+		 * @param n amount to add
+		 */
+		public void add(long n) {
+			if (startTime == 0) startTime = System.nanoTime();
+			count.add(n);
+		}
+		
+		/**
+		 * get the count
+		 * @return count
+		 */
+		public long getCount() {
+			return count.sum();
+		}
+		
+		/**
+		 * get count per second since the first count
+		 * @return rate
+		 */
+		public double getRate() {
+			long st = startTime;
+			if (st == 0) return 0;
+			double sec = (double)(System.nanoTime() - st) / 1000000000.0;
+			if (sec <= 0) return 0;
+			return (double)count.sum() / sec;
+		}
+		
+		@Override
+		public void getValues(Map<String, Number> vm) {
+			vm.put(name+".count", getCount());
+			vm.put(name+".rate", getRate());
+		}
+		
+		@Override
+		public void reset() {
+			count.reset();
+			startTime = 0;
+		}
+	}
+	
+	/**
+	 * Histogram of non-negative values
+	 * exact count, sum and max; percentiles are from power of 2 buckets
+	 */
+	public static class Histogram extends Metric {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder sum = new LongAdder();
+		private final AtomicLong max = new AtomicLong(0);
+		private final LongAdder [] buckets = new LongAdder[64];
+		
+		Histogram(String name) {
+			super(name);
+			for (int i=0;i<buckets.length;i++) buckets[i] = new LongAdder();
+		}
+		
+		/**
+		 * record a value
+		 * @param value value, negative is recorded as 0
+		 */
+		public void record(long value) {
+			if (value < 0) value = 0;
+			count.increment();
+			sum.add(value);
+			buckets[Math.min(63, 64 - Long.numberOfLeadingZeros(value))].increment();
+			long m = max.get();
+			while (value > m && !max.compareAndSet(m, value)) m = max.get();
+		}
+		
+		/**
+		 * get the number of values recorded
+		 * @return count
+		 */
+		public long getCount() {
+			return count.sum();
+		}
+		
+		/**
+		 * get the sum of values recorded
+		 * @return sum
+		 */
+		public long getSum() {
+			return sum.sum();
+		}
+		
+		/**
+		 * get the largest value recorded
+		 * @return max
+		 */
+		public long getMax() {
+			return max.get();
+		}
+		
+		/**
+		 * get the mean value
+		 * @return mean
+		 */
+		public double getMean() {
+			long c = count.sum();
+			if (c == 0) return 0;
+			return (double)sum.sum() / (double)c;
+		}
+		
+		/**
+		 * get the approximate value at percentile; the upper bound of its bucket, not above max
+		 * @param percentile 0 to 100
+		 * @return value
+		 */
+		public long getPercentile(double percentile) {
+			long c = count.sum();
+			if (c == 0) return 0;
+			long rank = (long)Math.ceil((percentile / 100.0) * c);
+			if (rank < 1) rank = 1;
+			long cnt = 0;
+			for (int i=0;i<buckets.length;i++) {
+				cnt += buckets[i].sum();
+				if (cnt >= rank) {
+					long top = (i == 0) ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+					return Math.min(top, max.get());
+				}
+			}
+			return max.get();
+		}
+		
+		@Override
+		public void getValues(Map<String, Number> vm) {
+			vm.put(name+".count", getCount());
+			vm.put(name+".mean", getMean());
+			vm.put(name+".p50", getPercentile(50));
+			vm.put(name+".p99", getPercentile(99));
+			vm.put(name+".max", getMax());
+		}
+		
+		@Override
+		public void reset() {
+			count.reset();
+			sum.reset();
+			max.set(0);
+			for (LongAdder b:buckets) b.reset();
+		}
+	}
+	
+	/**
+	 * Timer: histogram of durations in nanoseconds
+	 *  long t = timer.start(); ... timer.stop(t);
+	 */
+	public static class Timer extends Histogram {
+		
+		Timer(String name) {
+			super(name);
+		}
+		
+		/**
+		 * start timing
+		 * @return start time, 0 if metrics are disabled
+		 */
+		public long start() {
+			if (!enabled) return 0;
+			return System.nanoTime();
+		}
+		
+		/**
+		 * stop timing and record the duration
+		 * @param startTime value from start(); nothing is recorded if 0
+		 * @return duration in nanoseconds
+		 */
+		public long stop(long startTime) {
+			if (startTime == 0) return 0;
+			long d = System.nanoTime() - startTime;
+			record(d);
+			return d;
+		}
+		
+		@Override
+		public void getValues(Map<String, Number> vm) {
+			// report in milliseconds
+			vm.put(name+".count", getCount());
+			vm.put(name+".totalMs", (double)getSum() / 1000000.0);
+			vm.put(name+".meanMs", getMean() / 1000000.0);
+			vm.put(name+".p50Ms", (double)getPercentile(50) / 1000000.0);
+			vm.put(name+".p99Ms", (double)getPercentile(99) / 1000000.0);
+			vm.put(name+".maxMs", (double)getMax() / 1000000.0);
+		}
+	}
+}
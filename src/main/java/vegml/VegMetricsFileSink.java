@@ -0,0 +1,122 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+
+
+/**
+ * File sink: appends each report to a file as CSV or JSON lines
+ * 
+ * CSV:  one row per value: time,name,value
+ * JSON: one object per report: {"time":"..","values":{"name":value,..}}
+ * 
+ *   VegMetrics.get().addSink(new VegMetricsFileSink("metrics.csv"));
+ *   VegMetrics.get().startReporting(10000);
+ */
+public class VegMetricsFileSink implements VegMetricsSink {
+	private final String filename;
+	private final boolean json;
+	
+	/**
+	 * sink to file; JSON if the name ends with .json else CSV
+	 * @param filename file to append to
+	 */
+	public VegMetricsFileSink(String filename) {
+		this(filename, filename.toLowerCase().endsWith(".json"));
+	}
+	
+	/**
+	 * sink to file
+	 * @param filename file to append to
+	 * @param json true for JSON lines, false for CSV
+	 */
+	public VegMetricsFileSink(String filename, boolean json) {
+		this.filename = filename;
+		this.json = json;
+	}
+	
+	/**
+	 * get the file name
+	 * @return filename
+	 */
+	public String getFilename() {
+		return filename;
+	}
+	
+	@Override
+	public synchronized void report(VegMetrics metrics) {
+		String time = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS").format(new Date());
+		Map<String, Number> vm = metrics.getValues();
+		StringBuilder sb = new StringBuilder();
+		if (json) {
+			sb.append("{\"time\":\"").append(time).append("\",\"values\":{");
+			boolean first = true;
+			for (Map.Entry<String, Number> e:vm.entrySet()) {
+				if (!first) sb.append(',');
+				first = false;
+				sb.append('"').append(e.getKey()).append("\":").append(format(e.getValue()));
+			}
+			sb.append("}}\n");
+		} else {
+			for (Map.Entry<String, Number> e:vm.entrySet()) {
+				sb.append(time).append(',').append(e.getKey()).append(',').append(format(e.getValue())).append('\n');
+			}
+		}
+		try (Writer w = new FileWriter(filename, true)) {
+			w.write(sb.toString());
+		} catch (IOException e) {
+			System.out.println("ERROR metrics file["+filename+"]: " + e.getMessage());
+		}
+	}
+	
+	@Override
+	public void close() {
+		// opened per report
+	}
+	
+	private static String format(Number n) {
+		if (n instanceof Double) {
+			double d = n.doubleValue();
+			if (Double.isNaN(d) || Double.isInfinite(d)) return "0";
+			return String.format(Locale.ROOT, "%.3f", d);
+		}
+		return n.toString();
+	}
+}
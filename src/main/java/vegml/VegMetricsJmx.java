@@ -0,0 +1,162 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+
+/**
+ * JMX sink: exposes every metric value as a read only attribute of one MBean
+ * values are read live from the registry, so report() does nothing
+ * 
+ *   VegMetrics.get().addSink(new VegMetricsJmx());
+ *   jconsole: vegml:type=Metrics
+ */
+public class VegMetricsJmx implements VegMetricsSink, DynamicMBean {
+	public static final String DEFAULT_NAME = "vegml:type=Metrics";
+	
+	private final VegMetrics metrics;
+	private ObjectName objectName = null;
+	
+	/**
+	 * register the registry on the platform MBean server as vegml:type=Metrics
+	 */
+	public VegMetricsJmx() {
+		this(DEFAULT_NAME);
+	}
+	
+	/**
+	 * register the registry on the platform MBean server
+	 * @param name JMX object name
+	 */
+	public VegMetricsJmx(String name) {
+		this.metrics = VegMetrics.get();
+		try {
+			ObjectName on = new ObjectName(name);
+			MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+			if (mbs.isRegistered(on)) mbs.unregisterMBean(on);
+			mbs.registerMBean(this, on);
+			this.objectName = on;
+		} catch (JMException e) {
+			System.out.println("ERROR metrics JMX register["+name+"]: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * get the registered name
+	 * @return name or null if not registered
+	 */
+	public ObjectName getObjectName() {
+		return objectName;
+	}
+	
+	@Override
+	public void report(VegMetrics metrics) {
+		// live values
+	}
+	
+	@Override
+	public void close() {
+		if (objectName == null) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+		} catch (JMException e) {
+			System.out.println("ERROR metrics JMX unregister["+objectName+"]: " + e.getMessage());
+		}
+		objectName = null;
+	}
+	
+	
+	////////////////////////////////////////////////////
+	// DynamicMBean
+	
+	@Override
+	public Object getAttribute(String attribute) throws AttributeNotFoundException {
+		Number n = metrics.getValues().get(attribute);
+		if (n == null) throw new AttributeNotFoundException(attribute);
+		return n.doubleValue();
+	}
+	
+	@Override
+	public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+		throw new AttributeNotFoundException("read only: " + attribute.getName());
+	}
+	
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		Map<String, Number> vm = metrics.getValues();
+		AttributeList al = new AttributeList();
+		for (String a:attributes) {
+			Number n = vm.get(a);
+			if (n != null) al.add(new Attribute(a, n.doubleValue()));
+		}
+		return al;
+	}
+	
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+	
+	@Override
+	public Object invoke(String actionName, Object[] params, String[] signature) {
+		if ("reset".equals(actionName)) metrics.reset();
+		return null;
+	}
+	
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		// metrics can be added at any time: info is made from the current set
+		List<MBeanAttributeInfo> ail = new ArrayList<>();
+		for (String a:metrics.getValues().keySet()) {
+			ail.add(new MBeanAttributeInfo(a, "java.lang.Double", a, true, false, false));
+		}
+		return new MBeanInfo(VegMetricsJmx.class.getName(), "VegML metrics", ail.toArray(new MBeanAttributeInfo[ail.size()]), null, 
+				new javax.management.MBeanOperationInfo[] {
+					new javax.management.MBeanOperationInfo("reset", "reset all metrics", null, "void", javax.management.MBeanOperationInfo.ACTION)
+				}, null);
+	}
+}
@@ -32,14 +32,23 @@
 
 package vegml;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
 
+import gnu.trove.iterator.TIntObjectIterator;
+import gnu.trove.map.hash.TIntObjectHashMap;
 import vegml.VDataPlane.NSVectMap;
 import vegml.ValProb;
 
@@ -311,6 +320,68 @@ public class VegRules {
 	public static List<String> generateAll(VegML vML, String dimensionTag, String dataPlaneTag, 
 			double minProbability, int maxDepth,
 			Integer outcomeValue, VRuleFormatter rGen, Object rGenObj, boolean retRules) {
+		VDataPlane dataPlane = getRuleDataPlane(vML, dimensionTag, dataPlaneTag);
+		if (dataPlane == null) return null;
+		
+		// Smash everything
+		vML.smash(true);
+		
+		final List<String> ruleList = new ArrayList<>();
+		VRuleSink sink = new VRuleSink() {
+			@Override
+			public void rule(int setNumber, String rule) {
+				if (retRules) ruleList.add(rule);
+			}
+		};
+		generate(vML, dataPlane, minProbability, maxDepth, outcomeValue, rGen, rGenObj, sink, false, true);
+		return ruleList;
+	}
+	
+	/**
+	 * Generate the rules from the vML to a sink as they are made
+	 * Rules are not retained: the sink writes or handles each. NumberSets may be generated in parallel
+	 * on the instance's threads, with output in numberSet order or as each is ready. Sink calls are 
+	 * never concurrent. With parallel and ordered, a few chunks of rules from numberSets after the one
+	 * being written are held, then their generation waits for its turn.
+	 * 
+	 * The model is smashed for rules first; with snapshot this is done on a copy-on-write snapshot
+	 * and the vML is not changed. Only the dataplane exported is smashed.
+	 * 
+	 * @param vML VegML to generate from
+	 * @param dimensionTag dimension tag to generate for
+	 * @param dataPlaneTag dataPlane tag to generate for
+	 * @param minProbability  minimum probability to allow
+	 * @param maxDepth  of rules for each Accum -1=all, 0=varialbe, 1=first,2=first 2, 3=first 3... until dataWidth
+	 * @param outcomeValue  only for rules with this outcome if present
+	 * @param rGen  rule formatter, must be thread safe if parallel; not used for binary sinks
+	 * @param rGenObj  caller pass through object
+	 * @param sink destination for the rules, see makeTextSink() / makeBinarySink()
+	 * @param snapshot true to smash and generate from a snapshot
+	 * @param parallel true to generate numberSets in parallel
+	 * @param ordered true to output in numberSet order
+	 * @return count of rules or -1 if not able to generate or the sink failed
+	 */
+	public static int generateAll(VegML vML, String dimensionTag, String dataPlaneTag, 
+			double minProbability, int maxDepth, Integer outcomeValue, 
+			VRuleFormatter rGen, Object rGenObj, VRuleSink sink, 
+			boolean snapshot, boolean parallel, boolean ordered) {
+		VDataPlane dataPlane = getRuleDataPlane(vML, dimensionTag, dataPlaneTag);
+		if (dataPlane == null || sink == null) return -1;
+		
+		VegML xML = vML;
+		if (snapshot) {
+			xML = vML.snapshot();
+			dataPlane = xML.getDataPlane(dimensionTag, dataPlaneTag);
+		}
+		xML.smash(dimensionTag, dataPlaneTag, true);
+		
+		int cnt = generate(xML, dataPlane, minProbability, maxDepth, outcomeValue, rGen, rGenObj, sink, parallel, ordered);
+		sink.close();
+		if (sink.isFailed()) return -1;
+		return cnt;
+	}
+	
+	private static VDataPlane getRuleDataPlane(VegML vML, String dimensionTag, String dataPlaneTag) {
 		if (vML.getDataTotal() == 0) return null;
 
 		VDataPlane dataPlane = vML.getDataPlane(dimensionTag, dataPlaneTag);
@@ -321,10 +392,15 @@ public class VegRules {
 		}
 		
 		System.out.println("VegML GenRule for["+dimensionTag+"]["+dataPlaneTag+"]["+vML.getDataTotal()+"]");
-		
-		// Smash everything
-		vML.smash(true);
-		
+		return dataPlane;
+	}
+	
+	//
+	// generate the rules from the smashed model to the sink
+	//
+	private static int generate(VegML vML, VDataPlane dataPlane, 
+			double minProbability, int maxDepth, Integer outcomeValue, 
+			VRuleFormatter rGen, Object rGenObj, VRuleSink sink, boolean parallel, boolean ordered) {
 		
 		// determine min probabilityOutcome to retain
 		// FIXME 
@@ -332,247 +408,807 @@ public class VegRules {
 			// one of these ?
 			// the min will differ for each numberset ??
 
-		
+		RuleSetGen gen = new RuleSetGen(vML, dataPlane, minProbability, maxDepth, outcomeValue, rGen, rGenObj, sink.isBinary());
+		sink.start(vML, dataPlane);
+		RuleEmitter em = new RuleEmitter(sink, ordered);
 		
 		//  need all dimensions and dataplans
-		String rule [] = new String[dataPlane.getCfgWindowSize()];
 		int cnt = 0;
 		int baseRuleCnt = 0;
 		int baseRuleReducedCnt = 0;
-		int setAccList = 0;
-		int leftCnt = 0;
-						
-		List<String> ruleList = new ArrayList<>();
 		
-		// default Accumulator
-		Accum dac = dataPlane.getAccumDefault();
-		ValProb defVP = dac.getFirstMostProbable();
-				
-		double defProbability = defVP.probability;
-		String defValue = dataPlane.getString(defVP.value);
-		if (defValue == null) defValue = "ERR:"+defVP.value;
-				
 		// call once with the default rule (dac)
-		String dnr = rGen.makeRule(vML, RuleType.DEFAULT, rule, -1, defValue, defProbability, -1, (double)0, null, (double)0, 
-									defValue, defProbability, rGenObj);
-		if (dnr != null) {
-			if (retRules) ruleList.add(dnr);
-			cnt++;		
+		RuleOut dout = new RuleOut(em, -1, -1, gen.binary);
+		if (gen.binary) {
+			dout.ruleDefault(gen.defVP.value, gen.defProbability);
+			cnt++;
+		} else {
+			String rule [] = new String[dataPlane.getCfgWindowSize()];
+			String dnr = rGen.makeRule(vML, RuleType.DEFAULT, rule, -1, gen.defValue, gen.defProbability, -1, (double)0, null, (double)0, 
+										gen.defValue, gen.defProbability, rGenObj);
+			if (dnr != null) {
+				dout.rule(dnr);
+				cnt++;		
+			}
 		}
-		List<Integer> fset = dataPlane.getCfgNSFull();
+		dout.flush(true);
 
+		// the non-empty numberSets in order
+		List<Integer> nsl = new ArrayList<>();
 		for (int i=0;i<dataPlane.getNSCount();i++) {
-			setAccList++;
 			MLNumberSetHash nsh = dataPlane.getNSHash(i);
 			if (nsh == null || nsh.size() < 1) continue;
-			if (vML.isCfgShowProgress()) System.out.println("  GenRule NumberSet["+i+"]["+nsh.size()+"] ["+dataPlane.getNSFormatString(i)+"]");
+			nsl.add(i);
+		}
+		em.setOrder(0);
+		
+		List<int []> counts = null;
+		if (parallel) {
+			counts = MLThreadUtil.runGenerateRules(vML, gen, em, nsl);
+		} else {
+			counts = new ArrayList<>(nsl.size());
+			for (int o=0;o<nsl.size();o++) counts.add(gen.generateSet(nsl.get(o), new RuleOut(em, o, nsl.get(o), gen.binary)));
+		}
+		for (int [] c:counts) {
+			cnt += c[0];
+			baseRuleCnt += c[1];
+			baseRuleReducedCnt += c[2];
+		}
+		System.out.println("   RULE_CNT["+cnt+"] vpCnt["+baseRuleCnt+"] vpNot["+baseRuleReducedCnt+"]");
+		return cnt;
+	}
+	
+	
+	/**
+	 * Destination for generated rules
+	 * Override rule() to get each rule as it is made; calls are never concurrent.
+	 * See makeTextSink() and makeBinarySink() for writing to a stream
+	 */
+	public static class VRuleSink {
+		/**
+		 * a rule from the formatter
+		 * @param setNumber numberSet the rule is from or -1 for the default rule
+		 * @param rule formatted rule
+		 */
+		public void rule(int setNumber, String rule) {
+		}
+		
+		/**
+		 * called after the last rule
+		 */
+		public void close() {
+		}
+		
+		// binary sinks get blocks of encoded rules
+		boolean isBinary() {
+			return false;
+		}
+		void start(VegML vML, VDataPlane dataPlane) {
+		}
+		void block(byte [] data, int len) {
+		}
+		// true if a write failed and the output is incomplete
+		boolean isFailed() {
+			return false;
+		}
+	}
+	
+	/**
+	 * Make a sink that writes each formatted rule as a line
+	 * The writer is flushed on close, not closed; after a write error the rest are dropped 
+	 * and generateAll() returns -1
+	 * @param w writer for the rules
+	 * @return rule sink
+	 */
+	public static VRuleSink makeTextSink(final Writer w) {
+		return new VRuleSink() {
+			private boolean failed = false;
 			
-			// get the set
-			List<Integer> set = nsh.getNS();
-			// set Accumulator
-			Accum sac = nsh.getAccumSetDefault();
-
-			// FIXME use correct one			
-			ValProb setVP = sac.getFirstMostProbable();
-			if (setVP == null) {
-				System.err.println("ERROR SET["+i+"]cnt["+nsh.size()+" / "+sac.getTotal()+"] missing getFirstMostProbable");
-				continue;
+			@Override
+			public void rule(int setNumber, String rule) {
+				if (failed) return;
+				try {
+					w.write(rule);
+					w.write('\n');
+				} catch (IOException e) {
+					fail(e);
+				}
 			}
+			@Override
+			public void close() {
+				try {
+					w.flush();
+				} catch (IOException e) {
+					fail(e);
+				}
+			}
+			@Override
+			boolean isFailed() {
+				return failed;
+			}
+			private void fail(IOException e) {
+				if (!failed) System.out.println("ERROR: rule write: " + e.getMessage());
+				failed = true;
+			}
+		};
+	}
+	
+	/**
+	 * Make a sink that writes the rules in the binary rule format
+	 * The dataplane's strings are written once at the start and rules refer to them by id; 
+	 * see readBinary(). The stream is flushed on close, not closed
+	 * @param out stream for the rules
+	 * @return rule sink
+	 */
+	public static VRuleSink makeBinarySink(final OutputStream out) {
+		return new VRuleSink() {
+			private final DataOutputStream dos = new DataOutputStream(out);
+			private boolean failed = false;
 			
-			String setValue = dataPlane.getString(setVP.value);
-			if (setValue == null) setValue = "ERR:"+setVP.value;
+			@Override
+			boolean isBinary() {
+				return true;
+			}
+			@Override
+			void start(VegML vML, VDataPlane dataPlane) {
+				try {
+					dos.writeInt(BIN_MAGIC);
+					dos.writeUTF(dataPlane.getDimensionTag());
+					dos.writeUTF(dataPlane.getTag());
+					dos.writeShort(dataPlane.getCfgWindowSize());
+					dos.writeShort(dataPlane.getCfgFrameFocus());
+					writeStrings(dos, vML, dataPlane.getStrDimensionMapID());
+					writeStrings(dos, vML, dataPlane.getStrMapID());
+				} catch (IOException e) {
+					fail(e);
+				}
+			}
+			@Override
+			void block(byte [] data, int len) {
+				if (failed) return;
+				try {
+					dos.write(data, 0, len);
+				} catch (IOException e) {
+					fail(e);
+				}
+			}
+			@Override
+			public void close() {
+				try {
+					dos.writeByte(BIN_END);
+					dos.flush();
+				} catch (IOException e) {
+					fail(e);
+				}
+			}
+			@Override
+			boolean isFailed() {
+				return failed;
+			}
+			private void fail(IOException e) {
+				if (!failed) System.out.println("ERROR: rule write: " + e.getMessage());
+				failed = true;
+			}
+		};
+	}
+	
+	// binary rule format
+	private static final int BIN_MAGIC = 0x56525531; // VRU1
+	private static final int BIN_DEFAULT = 0, BIN_SET = 1, BIN_GENERAL = 2, BIN_END = 0xFF;
+	private static final int BIN_ALL = -1, BIN_ONE = 0;	// position matches all: '*' / one string, else count of strings
+	
+	private static void writeStrings(DataOutputStream dos, VegML vML, int mapId) throws IOException {
+		TIntObjectHashMap<String> m = null;
+		if (mapId >= 0) m = vML.vectStrMap.getMap(mapId);
+		if (m == null) {
+			dos.writeInt(0);
+			return;
+		}
+		dos.writeInt(m.size());
+		TIntObjectIterator<String> it = m.iterator();
+		while (it.hasNext()) {
+			it.advance();
+			dos.writeInt(it.key());
+			dos.writeUTF(it.value());
+		}
+	}
+	
+	private static TIntObjectHashMap<String> readStrings(DataInputStream dis) throws IOException {
+		int cnt = dis.readInt();
+		TIntObjectHashMap<String> m = new TIntObjectHashMap<>(Math.max(cnt, 4));
+		for (int i=0;i<cnt;i++) {
+			int id = dis.readInt();
+			m.put(id, dis.readUTF());
+		}
+		return m;
+	}
+	
+	/**
+	 * Read rules in the binary rule format and pass them through the formatter to the sink
+	 * The rules are the same as generateAll() makes with the formatter
+	 * 
+	 * @param vML VegML instance passed to the formatter
+	 * @param in stream of binary rules, not closed
+	 * @param rGen rule formatter
+	 * @param rGenObj caller pass through object
+	 * @param sink destination for the formatted rules
+	 * @return count of rules read or -1 on error or if the sink failed
+	 */
+	public static int readBinary(VegML vML, InputStream in, VRuleFormatter rGen, Object rGenObj, VRuleSink sink) {
+		DataInputStream dis = new DataInputStream(in);
+		int cnt = 0;
+		try {
+			if (dis.readInt() != BIN_MAGIC) {
+				System.out.println("ERROR: rule read: not a binary rule stream");
+				return -1;
+			}
+			dis.readUTF();
+			dis.readUTF();
+			int window = dis.readShort();
+			int focus = dis.readShort();
+			TIntObjectHashMap<String> dimStr = readStrings(dis);
+			TIntObjectHashMap<String> valStr = readStrings(dis);
 			
-			double setProbability = setVP.probability;
+			String rule [] = new String[window];
+			String defValue = null;
+			double defProbability = 0;
+			// per numberSet: set rules come before their general rules
+			HashMap<Integer, Object []> sets = new HashMap<>();
+			// first seen order, as generated
+			Set<String> ms = new LinkedHashSet<>();
+			StringBuilder sb = new StringBuilder();
 			
-			int setMaxDepth = maxDepth;
+			for (;;) {
+				int type = dis.readUnsignedByte();
+				if (type == BIN_END) break;
+				Arrays.fill(rule, null);
+				String nr = null;
+				int setNumber = -1;
+				
+				if (type == BIN_DEFAULT) {
+					int value = dis.readInt();
+					defProbability = dis.readDouble();
+					defValue = valStr.get(value);
+					if (defValue == null) defValue = "ERR:"+value;
+					nr = rGen.makeRule(vML, RuleType.DEFAULT, rule, -1, defValue, defProbability, -1, (double)0, null, (double)0, 
+										defValue, defProbability, rGenObj);
+				} else if (type == BIN_SET) {
+					setNumber = dis.readInt();
+					int value = dis.readInt();
+					double setProbability = dis.readDouble();
+					double sProb = dis.readDouble();
+					String setValue = valStr.get(value);
+					if (setValue == null) setValue = "ERR:"+value;
+					int pcnt = dis.readShort();
+					for (int p=0;p<pcnt;p++) {
+						int position = dis.readShort();
+						rule[position] = ""+position;
+					}
+					sets.put(setNumber, new Object [] {setValue, setProbability, sProb});
+					nr = rGen.makeRule(vML, RuleType.SET, rule, focus, setValue, setProbability, 
+										setNumber, sProb, setValue, setProbability, defValue, defProbability, rGenObj);
+				} else if (type == BIN_GENERAL) {
+					setNumber = dis.readInt();
+					double probability = dis.readDouble();
+					int vcnt = dis.readShort();
+					sb.setLength(0);
+					for (int x=0;x<vcnt;x++) {
+						if (x != 0) sb.append("/");
+						sb.append(valStr.get(dis.readInt()));
+					}
+					String value = sb.toString();
+					int pcnt = dis.readShort();
+					for (int p=0;p<pcnt;p++) {
+						int position = dis.readShort();
+						int icnt = dis.readShort();
+						if (icnt == BIN_ALL) {
+							rule[position] = "*";
+						} else if (icnt == BIN_ONE) {
+							rule[position] = dimStr.get(dis.readInt());
+						} else {
+							ms.clear();
+							for (int mi=0;mi<icnt;mi++) ms.add(dimStr.get(dis.readInt()));
+							StringBuilder sbr = new StringBuilder();
+							int o = 0;
+							for (String r:ms) {
+								if (o != 0) sbr.append("/");
+								sbr.append(r);
+								o++;
+							}
+							rule[position] = sbr.toString();
+						}
+					}
+					Object [] so = sets.get(setNumber);
+					String setValue = (so != null) ? (String)so[0] : null;
+					double setProbability = (so != null) ? (Double)so[1] : 0;
+					double sProb = (so != null) ? (Double)so[2] : 0;
+					nr = rGen.makeRule(vML, RuleType.GENERAL, rule, focus, value, probability, 
+							setNumber, sProb, setValue, setProbability, defValue, defProbability, rGenObj);
+				} else {
+					System.out.println("ERROR: rule read: bad rule type["+type+"]");
+					return -1;
+				}
+				if (nr != null) sink.rule(setNumber, nr);
+				cnt++;
+			}
+		} catch (IOException e) {
+			System.out.println("ERROR: rule read: " + e.getMessage());
+			return -1;
+		}
+		sink.close();
+		if (sink.isFailed()) return -1;
+		return cnt;
+	}
+	
+	
+	//
+	// rules from each numberSet; shared by the threads, read only
+	//
+	static class RuleSetGen {
+		final VegML vML;
+		final VDataPlane dataPlane;
+		final double minProbability;
+		final int maxDepth;
+		final Integer outcomeValue;
+		final VRuleFormatter rGen;
+		final Object rGenObj;
+		final boolean binary;
+		final Accum dac;
+		final ValProb defVP;
+		final double defProbability;
+		final String defValue;
+		final List<Integer> fset;
+		
+		RuleSetGen(VegML vML, VDataPlane dataPlane, double minProbability, int maxDepth, Integer outcomeValue, 
+				VRuleFormatter rGen, Object rGenObj, boolean binary) {
+			this.vML = vML;
+			this.dataPlane = dataPlane;
+			this.minProbability = minProbability;
+			this.maxDepth = maxDepth;
+			this.outcomeValue = outcomeValue;
+			this.rGen = rGen;
+			this.rGenObj = rGenObj;
+			this.binary = binary;
+			
+			// default Accumulator
+			this.dac = dataPlane.getAccumDefault();
+			this.defVP = dac.getFirstMostProbable();
+			this.defProbability = defVP.probability;
+			String dv = dataPlane.getString(defVP.value);
+			if (dv == null) dv = "ERR:"+defVP.value;
+			this.defValue = dv;
+			this.fset = dataPlane.getCfgNSFull();
+		}
+		
+		//
+		// generate the rules for numberSet i to out
+		// returns counts: rules, vpCnt, vpNot
+		//
+		int [] generateSet(int i, RuleOut out) {
+			int cnt = 0;
+			int baseRuleCnt = 0;
+			int baseRuleReducedCnt = 0;
+			String rule [] = new String[dataPlane.getCfgWindowSize()];
+			try {
+				MLNumberSetHash nsh = dataPlane.getNSHash(i);
+				if (nsh == null || nsh.size() < 1) return new int [] {cnt, baseRuleCnt, baseRuleReducedCnt};
+				if (vML.isCfgShowProgress()) System.out.println("  GenRule NumberSet["+i+"]["+nsh.size()+"] ["+dataPlane.getNSFormatString(i)+"]");
+			
+				// get the set
+				List<Integer> set = nsh.getNS();
+				// set Accumulator
+				Accum sac = nsh.getAccumSetDefault();
 
+				// FIXME use correct one			
+				ValProb setVP = sac.getFirstMostProbable();
+				if (setVP == null) {
+					System.err.println("ERROR SET["+i+"]cnt["+nsh.size()+" / "+sac.getTotal()+"] missing getFirstMostProbable");
+					return new int [] {cnt, baseRuleCnt, baseRuleReducedCnt};
+				}
+			
+				String setValue = dataPlane.getString(setVP.value);
+				if (setValue == null) setValue = "ERR:"+setVP.value;
 			
-			//int focus = vML.getSetFocus(set);
-			//System.out.println("SET["+i+"]["+vML.getCfgWindowSize()+"]["+set.size()+"] focus["+vML.getFocusOffset()+"] cnt["+hm.size()+" / "+sac.getTotal()+"] " + VegML.setToString(set));
+				double setProbability = setVP.probability;
 			
-			// add the probability of the set matching??
-			double sProb = (double)sac.getTotal() / (double)dac.getTotal();
+				int setMaxDepth = maxDepth;
 
-			// add set rule IF it has a count			
-			if (sac.getTotal() <= 0 || setProbability <= 0) {
-				continue;
-			}
-			// number of elements in numberset
-			int elementCount = nsh.getNSSize();
 			
-			// add set rule: positions in position spaces... no words to resolve (or '*') ..
-			for (int ri=0;ri<rule.length;ri++) rule[ri] = null;
-			for (Integer position:set) {
-				if (position < rule.length && position >= 0) rule[position] = ""+position;
-				// FIXME out of band
-			}
-			String snr = rGen.makeRule(vML, RuleType.SET, rule, dataPlane.getCfgFrameFocus(), setValue, setProbability, 
-										i, sProb, setValue, setProbability, defValue, defProbability, rGenObj);
-			if (snr != null) {
-				if (retRules) ruleList.add(snr);
-				cnt++;		
-			}
+				//int focus = vML.getSetFocus(set);
+				//System.out.println("SET["+i+"]["+vML.getCfgWindowSize()+"]["+set.size()+"] focus["+vML.getFocusOffset()+"] cnt["+hm.size()+" / "+sac.getTotal()+"] " + VegML.setToString(set));
+			
+				// add the probability of the set matching??
+				double sProb = (double)sac.getTotal() / (double)dac.getTotal();
+
+				// add set rule IF it has a count			
+				if (sac.getTotal() <= 0 || setProbability <= 0) {
+					return new int [] {cnt, baseRuleCnt, baseRuleReducedCnt};
+				}
+				// number of elements in numberset
+				int elementCount = nsh.getNSSize();
+			
+				// add set rule: positions in position spaces... no words to resolve (or '*') ..
+				for (int ri=0;ri<rule.length;ri++) rule[ri] = null;
+				for (Integer position:set) {
+					if (position < rule.length && position >= 0) rule[position] = ""+position;
+					// FIXME out of band
+				}
+				if (binary) {
+					out.ruleSet(i, setVP.value, setProbability, sProb, rule);
+					cnt++;
+				} else {
+					String snr = rGen.makeRule(vML, RuleType.SET, rule, dataPlane.getCfgFrameFocus(), setValue, setProbability, 
+												i, sProb, setValue, setProbability, defValue, defProbability, rGenObj);
+					if (snr != null) {
+						out.rule(snr);
+						cnt++;		
+					}
+				}
 		
 
-			List<int []> vsSets = new ArrayList<>();
-			List<ValProb> acSet = new ArrayList<>();
+				List<int []> vsSets = new ArrayList<>();
+				List<ValProb> acSet = new ArrayList<>();
 
-			// iterate through each SET
-			Iterator<Accum> it = nsh.iterator();
-			while (it.hasNext()) {
-				Accum vs = it.next();
-				// get the probabilities	
-				List<ValProb> vpList = vs.getValPsSorted();
+				// iterate through each SET
+				Iterator<Accum> it = nsh.iterator();
+				while (it.hasNext()) {
+					Accum vs = it.next();
+					// get the probabilities	
+					List<ValProb> vpList = vs.getValPsSorted();
 				
-				// each based on the focus and set generate a simple match for probability
-				// <1> <2> <X> value <3> == probability
-				// thus each vss creates a list of match rules that give a probability for something
-				baseRuleCnt += vpList.size();
-				double mostProb = vpList.get(0).probability;
-				if (mostProb < minProbability && minProbability > 0) {
-					//	System.out.println("   Bst["+vs.getValueCount()+"]["+hp+"]");
-					continue;
-				} 				
-				baseRuleReducedCnt += vpList.size();
+					// each based on the focus and set generate a simple match for probability
+					// <1> <2> <X> value <3> == probability
+					// thus each vss creates a list of match rules that give a probability for something
+					baseRuleCnt += vpList.size();
+					double mostProb = vpList.get(0).probability;
+					if (mostProb < minProbability && minProbability > 0) {
+						//	System.out.println("   Bst["+vs.getValueCount()+"]["+hp+"]");
+						continue;
+					} 				
+					baseRuleReducedCnt += vpList.size();
 					
-				// get the vector set
-				vsSets.clear();
+					// get the vector set
+					vsSets.clear();
 				
-				//if (VectSetMap.isSVSID(vs.getVectSetId())) {
-				if (vs.getVectSetId() == -1) {
-					// get the full list of vectSets
-					List<NSVectMap> vml = nsh.getVectorMapVectorToSet(vs.getVectorCode());
-					for (int mi=0;mi<vml.size();mi++) {
-						int [] vectSet = vML.getVectorSetForId(vml.get(mi).vsid, fset, set);
+					//if (VectSetMap.isSVSID(vs.getVectSetId())) {
+					if (vs.getVectSetId() == -1) {
+						// get the full list of vectSets
+						List<NSVectMap> vml = nsh.getVectorMapVectorToSet(vs.getVectorCode());
+						for (int mi=0;mi<vml.size();mi++) {
+							int [] vectSet = vML.getVectorSetForId(vml.get(mi).vsid, fset, set);
+							if (vectSet == null) continue;
+							vsSets.add(vectSet);
+						}
+					} else {
+						int [] vectSet = vML.getVectorSetForId(vs.getVectSetId(), fset, set);
 						if (vectSet == null) continue;
 						vsSets.add(vectSet);
 					}
-				} else {
-					int [] vectSet = vML.getVectorSetForId(vs.getVectSetId(), fset, set);
-					if (vectSet == null) continue;
-					vsSets.add(vectSet);
-				}
-				// iterate the individual Accumulators values				
-				int depth = 0;
+					// iterate the individual Accumulators values				
+					int depth = 0;
 				
-				// get the next set with the same probability
-				acSet.clear();
-				ValProb lastVp = null;
-				Set<String> ms = new HashSet<>();
+					// get the next set with the same probability
+					acSet.clear();
+					ValProb lastVp = null;
+					Set<String> ms = new LinkedHashSet<>();
 				
-				for (int k=0;k<vpList.size();k++) {
-					ValProb vp = vpList.get(k);
-					if (outcomeValue != null && vp.value != outcomeValue) {
-						// not the desired outcome
-						continue;
-					}
+					for (int k=0;k<vpList.size();k++) {
+						ValProb vp = vpList.get(k);
+						if (outcomeValue != null && vp.value != outcomeValue) {
+							// not the desired outcome
+							continue;
+						}
 					
-					if (setMaxDepth >= 0 && depth >= setMaxDepth) {
-						leftCnt += vpList.size()-k;
-						break;
-					}
-					if (mostProb != vp.probability) depth++;
+						if (setMaxDepth >= 0 && depth >= setMaxDepth) {
+							break;
+						}
+						if (mostProb != vp.probability) depth++;
 					
-					// use method for getting probability
-					double probability = dataPlane.getCfgPCalc().calculateProb(dataPlane.getCfgProbMethod(), dataPlane, dac, dataPlane.getCfgNSWeightRaw(), i, false, sac, vs, vp);
-					// check minimum
-					if (probability < minProbability && minProbability > 0) {
-						// if we drop on minprobability then a set of low probability rules that provide high probability togther will not be retained
-						continue;
-					}
+						// use method for getting probability
+						double probability = dataPlane.getCfgPCalc().calculateProb(dataPlane.getCfgProbMethod(), dataPlane, dac, dataPlane.getCfgNSWeightRaw(), i, false, sac, vs, vp);
+						// check minimum
+						if (probability < minProbability && minProbability > 0) {
+							// if we drop on minprobability then a set of low probability rules that provide high probability togther will not be retained
+							continue;
+						}
 					
-					///////////////////////////
-					// check if end of list of like probabilities
-					if (lastVp != null && (lastVp.probability != vp.probability || k == (vpList.size()-1))) {
-						// new probabilty... end of list
-						if (acSet.size() == 0) System.out.println(" AC["+vpList.size()+"]["+lastVp.probability+"] " + k);
-						lastVp = vp;
-						if (k != (vpList.size()-1)) k--;
-					} else if (lastVp == null) {
-						acSet.add(vp);
-						if (vpList.size() != 1) {
+						///////////////////////////
+						// check if end of list of like probabilities
+						if (lastVp != null && (lastVp.probability != vp.probability || k == (vpList.size()-1))) {
+							// new probabilty... end of list
+							if (acSet.size() == 0) System.out.println(" AC["+vpList.size()+"]["+lastVp.probability+"] " + k);
 							lastVp = vp;
+							if (k != (vpList.size()-1)) k--;
+						} else if (lastVp == null) {
+							acSet.add(vp);
+							if (vpList.size() != 1) {
+								lastVp = vp;
+								continue;
+							}
+						} else {
+							acSet.add(vp);
 							continue;
 						}
-					} else {
-						acSet.add(vp);
-						continue;
-					}
 					
-					///////////////////////////
-					// get value string(s)
-					StringBuilder sbv = new StringBuilder();
-					sbv.append(dataPlane.getString(acSet.get(0).value));			
-					if (acSet.size() > 1) {
-						for (int x=1;x<acSet.size();x++) {
-							if (x != 0) sbv.append("/");
-							sbv.append(dataPlane.getString(acSet.get(x).value));
-						}						
-					}
-					String value = sbv.toString();
-					acSet.clear();
+						///////////////////////////
+						// get value string(s)
+						String value = null;
+						List<ValProb> values = null;
+						if (binary) {
+							values = new ArrayList<>(acSet);
+						} else {
+							StringBuilder sbv = new StringBuilder();
+							sbv.append(dataPlane.getString(acSet.get(0).value));			
+							if (acSet.size() > 1) {
+								for (int x=1;x<acSet.size();x++) {
+									if (x != 0) sbv.append("/");
+									sbv.append(dataPlane.getString(acSet.get(x).value));
+								}						
+							}
+							value = sbv.toString();
+						}
+						acSet.clear();
 				
-					///////////////////////////
-					// Make Final Rule
-					int lposition = -1;
+						///////////////////////////
+						// Make Final Rule
+						int lposition = -1;
 					
-					// split vector sets into groups that can work in a rule as one
-					// CAN only mix if 1 and only one difference
-					Arrays.fill(rule, null);
+						// split vector sets into groups that can work in a rule as one
+						// CAN only mix if 1 and only one difference
+						Arrays.fill(rule, null);
 					
-					List<List<int []>> vsList = segmentVectSet(vsSets, elementCount);
-					for (int x=0;x<vsList.size();x++) {
-						List<int []> vsRuleSet = vsList.get(x);
+						List<List<int []>> vsList = segmentVectSet(vsSets, elementCount);
+						for (int x=0;x<vsList.size();x++) {
+							List<int []> vsRuleSet = vsList.get(x);
+							if (binary) {
+								out.ruleGeneral(i, probability, values, set, vsRuleSet, (elementCount == 1 && vsRuleSet.size() == dataPlane.getCfgDataWidth()));
+								cnt++;
+								continue;
+							}
 									
-						// for each position in the set
-						for (int p=0;p<set.size();p++) {
-							int position = set.get(p);
-							if (position < 0) continue; // FIXME out of band
+							// for each position in the set
+							for (int p=0;p<set.size();p++) {
+								int position = set.get(p);
+								if (position < 0) continue; // FIXME out of band
 							
-							if (vsRuleSet.size() == 1) {
-								// one string mapping
-								int [] vectSet = vsRuleSet.get(0);
-								rule[position] = dataPlane.getDimensionString(vectSet[p]);
-							} else if (elementCount == 1 && vsRuleSet.size() == dataPlane.getCfgDataWidth()) {
-								// general mapping ALL in
-								//int [] vectSet = vsSets.get(0);
-								rule[position] = "*";
-						//	} else if (vsSets.size() > (dataPlane.getCfgDataWidth()/2)) {
-								// make execption rull instead for better performance
-								// TODO
-							} else {
-								StringBuilder sb = new StringBuilder();
-								ms.clear();
+								if (vsRuleSet.size() == 1) {
+									// one string mapping
+									int [] vectSet = vsRuleSet.get(0);
+									rule[position] = dataPlane.getDimensionString(vectSet[p]);
+								} else if (elementCount == 1 && vsRuleSet.size() == dataPlane.getCfgDataWidth()) {
+									// general mapping ALL in
+									//int [] vectSet = vsSets.get(0);
+									rule[position] = "*";
+							//	} else if (vsSets.size() > (dataPlane.getCfgDataWidth()/2)) {
+									// make execption rull instead for better performance
+									// TODO
+								} else {
+									StringBuilder sb = new StringBuilder();
+									ms.clear();
 								
-								// multiple string mappings: '/' between each
-								for (int mi=0;mi<vsRuleSet.size();mi++) {
-									int [] vectSet = vsRuleSet.get(mi);
-									ms.add(dataPlane.getDimensionString(vectSet[p]));
+									// multiple string mappings: '/' between each
+									for (int mi=0;mi<vsRuleSet.size();mi++) {
+										int [] vectSet = vsRuleSet.get(mi);
+										ms.add(dataPlane.getDimensionString(vectSet[p]));
+									}
+									int o = 0;
+									for (String r:ms) {
+										if (o != 0) sb.append("/");
+										sb.append(r);
+										o++;
+									}
+									rule[position] = sb.toString();
 								}
-								int o = 0;
-								for (String r:ms) {
-									if (o != 0) sb.append("/");
-									sb.append(r);
-									o++;
-								}
-								rule[position] = sb.toString();
+								lposition = position;
 							}
-							lposition = position;
-						}
 						
-						// call the call back
-						String nr = rGen.makeRule(vML, RuleType.GENERAL, rule, dataPlane.getCfgFrameFocus(), value, probability, 
-								i, sProb, setValue, setProbability, 
-								defValue, defProbability, rGenObj);
-						if (retRules && nr != null) ruleList.add(nr);
-						cnt++;
+							// call the call back
+							String nr = rGen.makeRule(vML, RuleType.GENERAL, rule, dataPlane.getCfgFrameFocus(), value, probability, 
+									i, sProb, setValue, setProbability, 
+									defValue, defProbability, rGenObj);
+							if (nr != null) out.rule(nr);
+							cnt++;
+						}
 					}
 				}
+			} finally {
+				out.flush(true);
+			}
+			return new int [] {cnt, baseRuleCnt, baseRuleReducedCnt};
+		}
+	}
+	
+	//
+	// one numberSet's output; sent to the emitter in chunks
+	//
+	static class RuleOut {
+		private static final int CHUNK_RULES = 2048;
+		private final RuleEmitter em;
+		private final int order, setNumber;
+		private final boolean binary;
+		private List<String> rules = null;
+		private ByteArrayOutputStream bs = null;
+		private DataOutputStream ds = null;
+		private int count = 0;
+		
+		RuleOut(RuleEmitter em, int order, int setNumber, boolean binary) {
+			this.em = em;
+			this.order = order;
+			this.setNumber = setNumber;
+			this.binary = binary;
+			if (binary) {
+				bs = new ByteArrayOutputStream();
+				ds = new DataOutputStream(bs);
+			} else {
+				rules = new ArrayList<>();
+			}
+		}
+		
+		void rule(String rule) {
+			rules.add(rule);
+			added();
+		}
+		
+		void ruleDefault(long value, double probability) {
+			try {
+				ds.writeByte(BIN_DEFAULT);
+				ds.writeInt((int)value);
+				ds.writeDouble(probability);
+			} catch (IOException e) { } // in memory
+			added();
+		}
+		
+		void ruleSet(int setNumber, long value, double setProbability, double sProb, String rule []) {
+			try {
+				ds.writeByte(BIN_SET);
+				ds.writeInt(setNumber);
+				ds.writeInt((int)value);
+				ds.writeDouble(setProbability);
+				ds.writeDouble(sProb);
+				int pcnt = 0;
+				for (int p=0;p<rule.length;p++) if (rule[p] != null) pcnt++;
+				ds.writeShort(pcnt);
+				for (int p=0;p<rule.length;p++) if (rule[p] != null) ds.writeShort(p);
+			} catch (IOException e) { } // in memory
+			added();
+		}
+		
+		void ruleGeneral(int setNumber, double probability, List<ValProb> acSet, List<Integer> set, List<int []> vsRuleSet, boolean all) {
+			try {
+				ds.writeByte(BIN_GENERAL);
+				ds.writeInt(setNumber);
+				ds.writeDouble(probability);
+				ds.writeShort(acSet.size());
+				for (int x=0;x<acSet.size();x++) ds.writeInt((int)acSet.get(x).value);
+				int pcnt = 0;
+				for (int p=0;p<set.size();p++) if (set.get(p) >= 0) pcnt++;
+				ds.writeShort(pcnt);
+				for (int p=0;p<set.size();p++) {
+					int position = set.get(p);
+					if (position < 0) continue;
+					ds.writeShort(position);
+					if (vsRuleSet.size() == 1) {
+						ds.writeShort(BIN_ONE);
+						ds.writeInt(vsRuleSet.get(0)[p]);
+					} else if (all) {
+						ds.writeShort(BIN_ALL);
+					} else {
+						// distinct ids, in order
+						int icnt = 0;
+						for (int mi=0;mi<vsRuleSet.size();mi++) if (firstId(vsRuleSet, mi, p)) icnt++;
+						ds.writeShort(icnt);
+						for (int mi=0;mi<vsRuleSet.size();mi++) if (firstId(vsRuleSet, mi, p)) ds.writeInt(vsRuleSet.get(mi)[p]);
+					}
+				}
+			} catch (IOException e) { } // in memory
+			added();
+		}
+		private static boolean firstId(List<int []> vsRuleSet, int mi, int p) {
+			int id = vsRuleSet.get(mi)[p];
+			for (int x=0;x<mi;x++) if (vsRuleSet.get(x)[p] == id) return false;
+			return true;
+		}
+		
+		private void added() {
+			count++;
+			if (count >= CHUNK_RULES) flush(false);
+		}
+		
+		// send to the emitter; last ends this numberSet
+		void flush(boolean last) {
+			if (binary) {
+				em.emit(order, setNumber, null, bs.toByteArray(), last);
+				bs.reset();
+			} else {
+				em.emit(order, setNumber, rules, null, last);
+				rules = new ArrayList<>();
+			}
+			count = 0;
+		}
+	}
+	
+	//
+	// writes the chunks to the sink; in order of the numberSets if ordered
+	// a numberSet ahead of its turn holds up to MAX_WAITING chunks, then its producer waits
+	// producers must take numberSets in order so the one being written is always running
+	//
+	static class RuleEmitter {
+		private static final int MAX_WAITING = 4;
+		private final VRuleSink sink;
+		private final boolean ordered;
+		private int next = -1;
+		private boolean aborted = false;
+		private final HashMap<Integer, List<Object []>> waiting = new HashMap<>();
+		
+		RuleEmitter(VRuleSink sink, boolean ordered) {
+			this.sink = sink;
+			this.ordered = ordered;
+		}
+		
+		synchronized void setOrder(int next) {
+			this.next = next;
+		}
+		
+		synchronized void emit(int order, int setNumber, List<String> rules, byte [] data, boolean last) {
+			if (ordered && order > next) {
+				// hold for the prior numberSets
+				List<Object []> wl = waiting.get(order);
+				if (wl == null || wl.size() < MAX_WAITING) {
+					if (wl == null) {
+						wl = new ArrayList<>();
+						waiting.put(order, wl);
+					}
+					wl.add(new Object [] {setNumber, rules, data, last});
+					return;
+				}
+				// full: wait for its turn; the held chunks are written first
+				while (order > next && !aborted) {
+					try {
+						wait();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						abort();
+					}
+				}
+				if (aborted) return;
+			}
+			write(setNumber, rules, data);
+			if (ordered && last && order == next) {
+				next++;
+				drain();
+				notifyAll();
+			}
+		}
+		
+		// a producer failed; release the waiting ones, their rules are dropped
+		synchronized void abort() {
+			aborted = true;
+			notifyAll();
+		}
+		
+		@SuppressWarnings("unchecked")
+		private void drain() {
+			for (;;) {
+				List<Object []> wl = waiting.get(next);
+				if (wl == null) return;
+				boolean done = false;
+				for (Object [] c:wl) {
+					write((Integer)c[0], (List<String>)c[1], (byte [])c[2]);
+					if ((Boolean)c[3]) done = true;
+				}
+				waiting.remove(next);
+				if (!done) return;
+				next++;
+			}
+		}
+		
+		private void write(int setNumber, List<String> rules, byte [] data) {
+			if (data != null) {
+				if (data.length > 0) sink.block(data, data.length);
+			} else {
+				for (int i=0;i<rules.size();i++) sink.rule(setNumber, rules.get(i));
 			}
 		}
-		System.out.println("   RULE_CNT["+cnt+"] vpCnt["+baseRuleCnt+"] vpNot["+baseRuleReducedCnt+"]");
-
-		return ruleList;
 	}
 	
 	// CAN only mix if 1 and only one difference
@@ -130,6 +130,7 @@ public class VegTest {
 		}
 
 		ts.end();
+		VegMetrics.predicted(ts);
 				
 		if (vML.isCfgShowProgress()) System.out.println("!");
 		return ts;		
@@ -253,7 +254,7 @@ public class VegTest {
 			// set value size if they didn't prior 
 			for (int i=0;i<dataSet.size();i++, position++) {
 				Long [] valueId = dataSet.getValueVD(i);
-				long dvid = dataSet.getDataV(i);
+				long dvid = dataSet.getDataVid(i, VegML.emptyVect);
 				
 				int pidx = VegUtil.contains(inputNo, dvid);
 				if (pidx >= 0) {
@@ -313,6 +314,7 @@ public class VegTest {
 			}
 		}
 		ts.end();
+		VegMetrics.predicted(ts);
 		if (vML.isCfgShowProgress()) System.out.println("");
 		return ts;
 	}
@@ -456,6 +458,7 @@ public class VegTest {
 			}
 		}
 		ts.end();
+		VegMetrics.predicted(ts);
 		if (vML.isCfgShowProgress()) System.out.println("");
 		return ts;
 	}
@@ -575,6 +578,7 @@ public class VegTest {
 		}
 
 		ts.end();
+		VegMetrics.predicted(ts);
 				
 		if (vML.isCfgShowProgress()) System.out.println("!");
 		return ts;		
@@ -935,7 +939,7 @@ public class VegTest {
 			// for each token in dataset
 			for (int i=0;i<ds.size();i++, position++) {
 				Long [] vvect = ds.getValueVD(i);
-				long dvid = ds.getDataV(i);
+				long dvid = ds.getDataVid(i, VegML.emptyVect);
 				
 				int pidx = VegUtil.contains(inputNo, position);
 
@@ -1088,6 +1092,7 @@ public class VegTest {
 			tsList.get(i).end();
 			if (!minInfo) tsList.get(i).valueOut = valueOutList.get(i);
 		}
+		VegMetrics.predicted(tsList);
 		if (dsrListSet != null) {
 			tsList.get(tstRetain).setRetainedResolutionSet(dsrListSet);
 		}		
@@ -1231,7 +1236,7 @@ public class VegTest {
 			for (int i=0;i<ds.size();i++) {			
 				if (dataPlane.isCfgIdentityOnly()) {
 					// PERFORMANCE: fast path for single values..
-					long dvid = ds.getDataV(i);
+					long dvid = ds.getDataVid(i, VegML.emptyVect);
 					ValProb vp = dataPlane.getIdenityValProbIfSingle(dvid);
 					if (vp != null) {
 						frame.vpList.clear();
@@ -1268,11 +1273,153 @@ public class VegTest {
 			else ts.responseOut.add(valueOut);
 		}
 		ts.end();
+		VegMetrics.predicted(ts);
 		if (vML.isCfgShowProgress()) System.out.println("");
 		return ts;
 	}
 
 	
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	// Predict Batch
+	//
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	static final int BATCH_FRAMES = 256;
+
+	/**
+	 * Predict a dataset as a batch, results for each token in order
+	 * 
+	 * @param vML VegML instance
+	 * @param dimensionTag  dimension tag/name
+	 * @param dataPlaneTag  dataplane tag/name
+	 * @param ds dataset to predict
+	 * @param valueOut best value id per token, emptyVect if none
+	 * @param probOut best probability per token or null
+	 * @return number of tokens predicted, -1 if no dataplane or the buffers are too small
+	 */
+	public static int predictBatch(VegML vML, String dimensionTag, String dataPlaneTag, VDataSet ds, long [] valueOut, double [] probOut) {
+		return predictBatch(new VContext(vML), dimensionTag, dataPlaneTag, new VDataSets(ds), valueOut, probOut);
+	}
+	
+	/**
+	 * Predict datasets as a batch, results for each token in order across the datasets
+	 * 
+	 * @param vML VegML instance
+	 * @param dimensionTag  dimension tag/name
+	 * @param dataPlaneTag  dataplane tag/name
+	 * @param dss datasets to predict
+	 * @param valueOut best value id per token, emptyVect if none
+	 * @param probOut best probability per token or null
+	 * @return number of tokens predicted, -1 if no dataplane or the buffers are too small
+	 */
+	public static int predictBatch(VegML vML, String dimensionTag, String dataPlaneTag, VDataSets dss, long [] valueOut, double [] probOut) {
+		return predictBatch(new VContext(vML), dimensionTag, dataPlaneTag, dss, valueOut, probOut);
+	}
+	
+	/**
+	 * Predict datasets as a batch, results for each token in order across the datasets
+	 * frames are made for up to BATCH_FRAMES tokens at a time, vectorized together and the numberSet lookups 
+	 * are grouped per numberSet; if the dataplane depends on prior results each token is resolved in turn
+	 * 
+	 * @param ctx context for this resolution
+	 * @param dimensionTag  dimension tag/name
+	 * @param dataPlaneTag  dataplane tag/name
+	 * @param dss datasets to predict
+	 * @param valueOut best value id per token, emptyVect if none
+	 * @param probOut best probability per token or null
+	 * @return number of tokens predicted, -1 if no dataplane or the buffers are too small
+	 */
+	public static int predictBatch(VContext ctx, String dimensionTag, String dataPlaneTag, VDataSets dss, long [] valueOut, double [] probOut) {
+		if (ctx == null || dss == null) return -1;
+		VDataPlane dataPlane = ctx.getVegML().getDataPlane(dimensionTag, dataPlaneTag);
+		if (dataPlane == null || dataPlane.getNSCount() < 1) return -1;
+		int total = 0;
+		for (int set=0;set<dss.size();set++) total += dss.get(set).size();
+		if (valueOut.length < total || (probOut != null && probOut.length < total)) return -1;
+		
+		int batch = dataPlane.isValueOutDependent() ? 1 : BATCH_FRAMES;
+		VFrame [] frames = new VFrame[batch];
+		for (int i=0;i<batch;i++) frames[i] = new VFrame(dataPlane);
+		boolean [] resolved = new boolean[batch];
+
+		int pos = 0;
+		for (int set=0;set<dss.size();set++) {
+			VDataSet ds = dss.get(set);
+			List<Long> vOut = new ArrayList<>(ds.size());
+			int cnt = 0;
+			for (int i=0;i<ds.size();i++) {
+				VFrame frame = frames[cnt];
+				resolved[cnt] = false;
+				if (dataPlane.isCfgIdentityOnly()) {
+					// PERFORMANCE: fast path for single values..
+					ValProb vp = dataPlane.getIdenityValProbIfSingle(ds.getDataV(i));
+					if (vp != null) {
+						frame.vpList.clear();
+						frame.vpList.add(vp);
+						resolved[cnt] = true;
+					}
+				}
+				if (!resolved[cnt] && !dataPlane.getFramer().makeFrameSetup(ctx, dataPlane, frame, dataPlane.getFramerArg(), true, vOut, dss, set, i)) {
+					// resolve pending in order first
+					pos = predictBatchFrames(ctx, dataPlane, frames, cnt, resolved, vOut, valueOut, probOut, pos);
+					cnt = 0;
+					vOut.add((long)VegML.emptyVect);
+					valueOut[pos] = VegML.emptyVect;
+					if (probOut != null) probOut[pos] = 0;
+					pos++;
+					continue;
+				}
+				cnt++;
+				if (cnt == batch) {
+					pos = predictBatchFrames(ctx, dataPlane, frames, cnt, resolved, vOut, valueOut, probOut, pos);
+					cnt = 0;
+				}
+			}
+			pos = predictBatchFrames(ctx, dataPlane, frames, cnt, resolved, vOut, valueOut, probOut, pos);
+		}
+		return pos;
+	}
+	
+	/**
+	 * Predict frames as a batch, frames must be made for the dataplane
+	 * 
+	 * @param ctx context for this resolution
+	 * @param dimensionTag  dimension tag/name
+	 * @param dataPlaneTag  dataplane tag/name
+	 * @param frames frames to predict, results are also in each frame
+	 * @param valueOut best value id per frame, emptyVect if none
+	 * @param probOut best probability per frame or null
+	 * @return number of frames predicted, -1 if no dataplane or the buffers are too small
+	 */
+	public static int predictBatch(VContext ctx, String dimensionTag, String dataPlaneTag, List<VFrame> frames, long [] valueOut, double [] probOut) {
+		if (ctx == null || frames == null) return -1;
+		VDataPlane dataPlane = ctx.getVegML().getDataPlane(dimensionTag, dataPlaneTag);
+		if (dataPlane == null || dataPlane.getNSCount() < 1) return -1;
+		if (valueOut.length < frames.size() || (probOut != null && probOut.length < frames.size())) return -1;
+		return predictBatchFrames(ctx, dataPlane, frames.toArray(new VFrame[frames.size()]), frames.size(), null, new ArrayList<>(frames.size()), valueOut, probOut, 0);
+	}
+	
+	//
+	// resolve made frames into the output at pos, returns the next pos
+	//
+	private static int predictBatchFrames(VContext ctx, VDataPlane dp, VFrame [] frames, int count, boolean [] resolved, List<Long> vOut, long [] valueOut, double [] probOut, int pos) {
+		if (count < 1) return pos;
+		dp.getValPListBatch(ctx, frames, count, resolved, vOut, null);
+		for (int f=0;f<count;f++) {
+			List<ValProb> vpList = frames[f].vpList;
+			if (vpList.size() > 0) {
+				valueOut[pos] = vpList.get(0).value;
+				if (probOut != null) probOut[pos] = vpList.get(0).probability;
+			} else {
+				valueOut[pos] = VegML.emptyVect;
+				if (probOut != null) probOut[pos] = 0;
+			}
+			pos++;
+		}
+		return pos;
+	}
+	
+	
 	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	//
 	// Predict Value
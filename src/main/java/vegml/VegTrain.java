@@ -39,8 +39,9 @@ import java.util.List;
 import java.util.Set;
 
 import vegml.Data.VDataSet;
+import vegml.Data.VDataSetDescriptor.DSStructure;
+import vegml.Data.VDataSetStream;
 import vegml.Data.VDataSets;
-import vegml.Data.VFileUtil;
 import vegml.Data.VectorToVid;
 
 
@@ -157,6 +158,8 @@ public class VegTrain {
 	
 	/**
 	 * Train dataplane with dataset using definition in dataset, with threaded flag
+	 * If threaded and vML.getCfgTrainShards() is 2 or more the dataset is trained in shards on the instance's
+	 * threads, see trainShards(); the dataplane should not be trained from other threads at the same time
 	 * 
 	 * @param vML VegML instance
 	 * @param dimensionTag dimension tag/name
@@ -165,6 +168,7 @@ public class VegTrain {
 	 * @return result set
 	 */
 	public static VResultSet train(VegML vML, String dimensionTag, String dataPlaneTag, VDataSets dss, boolean threaded) {
+		if (threaded && vML.getCfgTrainShards() > 1) return trainShards(vML, dimensionTag, dataPlaneTag, dss, vML.getCfgTrainShards());
 		switch (dss.getDefinition().getDataStructure()) {
 		case Segment:
 			return trainSegments(vML, dimensionTag, dataPlaneTag, dss, threaded);
@@ -176,6 +180,93 @@ public class VegTrain {
 			return trainDataSets(vML, dimensionTag, dataPlaneTag, dss, threaded);
 		}
 	}
+	
+	//
+	// train dataplane with dataset using definition in dataset; dataplane may be a training shard
+	//
+	static VResultSet train(VDataPlane dataPlane, VDataSets dss, boolean threaded) {
+		switch (dss.getDefinition().getDataStructure()) {
+		case Segment:
+			return trainSegments(dataPlane, dss, threaded);
+		case Stream:
+			return trainStreams(dataPlane, dss, threaded);
+		case Block:
+			return trainBlocks(dataPlane, dss, threaded);
+		default:
+			return trainDataSets(dataPlane, dss, threaded);
+		}
+	}
+	
+	/**
+	 * Train dataplane with dataset in parallel shards, using definition in dataset
+	 * 
+	 * The dataset is split in order into shardCount parts; each is trained into a private shard of the 
+	 * dataplane with no locking. The shards are then merged in order with a parallel tree reduction, 
+	 * each numberSet merged on its own. Accumulator values, counts and totals are the same as training in sequence.
+	 * 
+	 * With isCfgSaveVectSets() vect sets are added as the shards reach them, so their ids are not in data order
+	 * and a vect set may be held more than once; each accumulator's vect set has the same content as in sequence.
+	 * 
+	 * phase times are in the result set: split, train, merge, finish
+	 * 
+	 * @param vML VegML instance
+	 * @param dimensionTag dimension tag/name
+	 * @param dataPlaneTag dataplane tag/name
+	 * @param dss dataset with definition
+	 * @param shardCount number of shards to train in parallel
+	 * @return result set
+	 */
+	public static VResultSet trainShards(VegML vML, String dimensionTag, String dataPlaneTag, VDataSets dss, int shardCount) {
+		VDataPlane dataPlane = vML.getDataPlane(dimensionTag, dataPlaneTag);
+		if (dss == null || dataPlane == null) return null;
+		if (shardCount < 2 || dss.size() < 2 || dataPlane.isEntangled() || dataPlane.isSolid()) {
+			// shards can't have the mappings
+			return train(vML, dimensionTag, dataPlaneTag, dss, false);
+		}
+		VResultSet ts = new VResultSet(dataPlane);
+		ts.start();
+		
+		// split in order
+		long t = System.currentTimeMillis();
+		List<VDataSets> dssl = dss.getDataSetSplit(shardCount);
+		List<VDataPlane> shards = new ArrayList<>();
+		for (int i=0;i<dssl.size();i++) shards.add(dataPlane.makeShard());
+		ts.setPhaseTime("split", System.currentTimeMillis()-t);
+		
+		// train each shard
+		t = System.currentTimeMillis();
+		VResultSet rs = MLThreadUtil.runTrainShards(shards, dssl);
+		ts.total = rs.total;
+		ts.setPhaseTime("train", System.currentTimeMillis()-t);
+		
+		// tree reduction: right merges into left so value order is data order
+		t = System.currentTimeMillis();
+		for (int step=1;step<shards.size();step *= 2) {
+			List<VDataPlane> left = new ArrayList<>(), right = new ArrayList<>();
+			for (int i=0;(i+step)<shards.size();i += step*2) {
+				left.add(shards.get(i));
+				right.add(shards.get(i+step));
+			}
+			MLThreadUtil.runMergeShards(left, right);
+		}
+		// dataplane is first in order
+		List<VDataPlane> left = new ArrayList<>(), right = new ArrayList<>();
+		left.add(dataPlane);
+		right.add(shards.get(0));
+		MLThreadUtil.runMergeShards(left, right);
+		ts.setPhaseTime("merge", System.currentTimeMillis()-t);
+		
+		// same as after threaded training
+		t = System.currentTimeMillis();
+		if (dss.getDefinition().getDataStructure() == DSStructure.Stream) {
+			long blvalue = dataPlane.getCfgVToV().toVectGen(dss.getDefinition().getTagValueBaselineTotal());
+			dataPlane.setCfgBaseLineBooleanModeAndClear(blvalue, false);
+		}
+		dataPlane.removeAllEmptyAccum();
+		ts.setPhaseTime("finish", System.currentTimeMillis()-t);
+		ts.end();
+		return ts;
+	}
 
 	
 	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -207,6 +298,21 @@ public class VegTrain {
 	public static VResultSet trainDataSets(VegML vML, String dimensionTag, String dataPlaneTag, VDataSets dss, boolean threaded) {
 		VDataPlane dataPlane = vML.getDataPlane(dimensionTag, dataPlaneTag);
 		if (dss == null || dataPlane == null) return null;
+		return trainDataSets(dataPlane, dss, threaded);
+	}
+	
+	//
+	// train dataplane with dataset as sequence; dataplane may be a training shard
+	//
+	static VResultSet trainDataSets(VDataPlane dataPlane, VDataSets dss, boolean threaded) {
+		return trainDataSets(dataPlane, dss, threaded, !threaded);
+	}
+	
+	//
+	// cleanup false leaves empty accumulators for the caller to remove once, as trainStream does after all chunks
+	//
+	static VResultSet trainDataSets(VDataPlane dataPlane, VDataSets dss, boolean threaded, boolean cleanup) {
+		VegML vML = dataPlane.getVegML();
 		
 		int progressTick = 1, progressCnt = 0, progressLast = -1;
 		if (vML.isCfgShowProgress()) {
@@ -217,6 +323,7 @@ public class VegTrain {
 		VContext ctx = new VContext(vML);
 		ts.start();
 		VFrame frame = new VFrame();
+		if (threaded) frame.setTrainCounts(new MLTrainCounts());
 		
 		// use vals for frame data				
 		for (int set=0;set<dss.size();set++) {
@@ -236,13 +343,70 @@ public class VegTrain {
 				valueOut.add(valueId[0]);
 			}
 		}
-		if (!threaded) dataPlane.removeAllEmptyAccum();
+		if (threaded) frame.getTrainCounts().flush(dataPlane);
+		if (cleanup) dataPlane.removeAllEmptyAccum();
 		ts.end();
+		VegMetrics.trained(ts);
 		if (vML.isCfgShowProgress()) System.out.println("");	
 		return ts;
 	}
 	
 
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	// STREAM
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Train dataplane with datasets as sequence from a stream; files are read while training
+	 * each chunk is trained as it arrives and dropped after
+	 * 
+	 * @param vML VegML instance
+	 * @param dimensionTag dimension tag/name
+	 * @param dataPlaneTag dataplane tag/name
+	 * @param stream dataset stream
+	 * @return result set
+	 */
+	public static VResultSet trainStream(VegML vML, String dimensionTag, String dataPlaneTag, VDataSetStream stream) {
+		return trainStream(vML, dimensionTag, dataPlaneTag, stream, false);
+	}
+	
+	/**
+	 * Train dataplane with datasets from a stream, as sequence or as segments
+	 * 
+	 * @param vML VegML instance
+	 * @param dimensionTag dimension tag/name
+	 * @param dataPlaneTag dataplane tag/name
+	 * @param stream dataset stream
+	 * @param segments if true train as segments
+	 * @return result set
+	 */
+	public static VResultSet trainStream(VegML vML, String dimensionTag, String dataPlaneTag, VDataSetStream stream, boolean segments) {
+		VDataPlane dataPlane = vML.getDataPlane(dimensionTag, dataPlaneTag);
+		if (stream == null || dataPlane == null) return null;
+		
+		// same converter trainDataSets() values were made with
+		if (stream.getCfgVectorToVid() == null) stream.setCfgVectorToVid(dataPlane.getCfgVToV());
+		
+		VResultSet ts = new VResultSet(dataPlane);
+		ts.start();
+		stream.start();
+		VDataSets dss;
+		while ((dss = stream.next()) != null) {
+			VResultSet cts = null;
+			if (segments) cts = trainSegments(dataPlane, dss, false, false);
+			else cts = trainDataSets(dataPlane, dss, false, false);
+			if (cts != null) ts.total += cts.total;
+			dss.freeResources();
+		}
+		// one full scan after the last chunk, not one per chunk
+		dataPlane.removeAllEmptyAccum();
+		ts.end();
+		if (vML.isCfgShowProgress()) {
+			System.out.println("-trainStream files["+stream.getFileCount()+"] sets["+stream.getSetCount()+"] tokens["+stream.getTokenCount()+"] chunks["+stream.getChunkCount()+"] time["+ts.getDurration()+"]");
+		}
+		return ts;
+	}
+	
+
 	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	// SEGMENTS
 	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
@@ -271,6 +435,21 @@ public class VegTrain {
 	public static VResultSet trainSegments(VegML vML, String dimensionTag, String dataPlaneTag, VDataSets dss, boolean threaded) {
 		VDataPlane dataPlane = vML.getDataPlane(dimensionTag, dataPlaneTag);
 		if (dss == null || dataPlane == null) return null;
+		return trainSegments(dataPlane, dss, threaded);
+	}
+	
+	//
+	// train dataplane with dataset as segments; dataplane may be a training shard
+	//
+	static VResultSet trainSegments(VDataPlane dataPlane, VDataSets dss, boolean threaded) {
+		return trainSegments(dataPlane, dss, threaded, !threaded);
+	}
+	
+	//
+	// cleanup false leaves empty accumulators for the caller to remove once, as trainStream does after all chunks
+	//
+	static VResultSet trainSegments(VDataPlane dataPlane, VDataSets dss, boolean threaded, boolean cleanup) {
+		VegML vML = dataPlane.getVegML();
 		
 		int progressTick = 1, progressCnt = 0, progressLast = -1;
 		if (vML.isCfgShowProgress()) {	
@@ -283,6 +462,7 @@ public class VegTrain {
 		VContext ctx = new VContext(vML);
 		ts.start();			
 		VFrame frame = new VFrame();
+		if (threaded) frame.setTrainCounts(new MLTrainCounts());
 		boolean isD = dss.isFmtValueD();
 		
 		// for each dataset
@@ -306,8 +486,10 @@ public class VegTrain {
 				valueOut.add((long)valueId[0]);
 			}
 		}
-		if (!threaded) dataPlane.removeAllEmptyAccum();
+		if (threaded) frame.getTrainCounts().flush(dataPlane);
+		if (cleanup) dataPlane.removeAllEmptyAccum();
 		ts.end();
+		VegMetrics.trained(ts);
 		if (vML.isCfgShowProgress()) System.out.println("");	
 		return ts;
 	}	
@@ -342,6 +524,14 @@ public class VegTrain {
 	public static VResultSet trainBlocks(VegML vML, String dimensionTag, String dataPlaneTag, VDataSets dss, boolean threaded) {
 		VDataPlane dataPlane = vML.getDataPlane(dimensionTag, dataPlaneTag);
 		if (dss == null || dataPlane == null) return null;
+		return trainBlocks(dataPlane, dss, threaded);
+	}
+	
+	//
+	// train dataplane with dataset as blocks; dataplane may be a training shard
+	//
+	static VResultSet trainBlocks(VDataPlane dataPlane, VDataSets dss, boolean threaded) {
+		VegML vML = dataPlane.getVegML();
 		
 		int progressTick = 1, progressCnt = 0, progressLast = -1;
 		if (vML.isCfgShowProgress()) {
@@ -352,6 +542,7 @@ public class VegTrain {
 		VContext ctx = new VContext(vML);
 		ts.start();
 		VFrame frame = new VFrame();
+		if (threaded) frame.setTrainCounts(new MLTrainCounts());
 		
 		// make sure the window is the size of the blocks
 		if (!dss.isFixedSetSize()) {
@@ -383,8 +574,10 @@ public class VegTrain {
 				valueOut.add(valueId[0]);
 			}
 		}
-		if (!threaded) dataPlane.removeAllEmptyAccum();
+		if (threaded) frame.getTrainCounts().flush(dataPlane);
+		else dataPlane.removeAllEmptyAccum();
 		ts.end();
+		VegMetrics.trained(ts);
 		if (vML.isCfgShowProgress()) System.out.println("");	
 		return ts;
 	}
@@ -419,6 +612,14 @@ public class VegTrain {
 	public static VResultSet trainStreams(VegML vML, String dimensionTag, String dataPlaneTag, VDataSets dss, boolean threaded) {
 		VDataPlane dataPlane = vML.getDataPlane(dimensionTag, dataPlaneTag);
 		if (dss == null || dataPlane == null) return null;
+		return trainStreams(dataPlane, dss, threaded);
+	}
+	
+	//
+	// train dataplane with dataset as streams; dataplane may be a training shard
+	//
+	static VResultSet trainStreams(VDataPlane dataPlane, VDataSets dss, boolean threaded) {
+		VegML vML = dataPlane.getVegML();
 // FIXME find all dep sets and train together		
 		
 		int progressTick = 1, progressCnt = 0, progressLast = -1;
@@ -430,6 +631,7 @@ public class VegTrain {
 		VContext ctx = new VContext(vML);
 		ts.start();
 		VFrame frame = new VFrame();
+		if (threaded) frame.setTrainCounts(new MLTrainCounts());
 		
 
 		// for each dataSet			
@@ -452,7 +654,9 @@ public class VegTrain {
 			}
 		}
 		
-		if (!threaded) {
+		if (threaded) {
+			frame.getTrainCounts().flush(dataPlane);
+		} else {
 			// set baseline boolean mode
 			long blvalue = dataPlane.getCfgVToV().toVectGen(dss.getDefinition().getTagValueBaselineTotal());
 			dataPlane.setCfgBaseLineBooleanModeAndClear(blvalue, false);
@@ -461,6 +665,7 @@ public class VegTrain {
 		}
 		
 		ts.end();
+		VegMetrics.trained(ts);
 		if (vML.isCfgShowProgress()) System.out.println("");	
 		return ts;
 	}
@@ -513,7 +718,7 @@ public class VegTrain {
 		List<int []> vectSets = vML.vectSetMap.getSubsetsList(vid, dataPlane.getCfgFrameFocus());
 		if (vectSets == null || vectSets.size() < 1) {
 			// just make the default one
-			MLNumberSetHash nsh = dataPlane.getNSHash(dataPlane.getCfgNSIdentityNumber());	
+			MLNumberSetHash nsh = dataPlane.getNSHashW(dataPlane.getCfgNSIdentityNumber());	
 			Accum iac = new AccumInt();
 			iac.setVectorCode(vid);
 			iac.addCount(valueId);
@@ -548,7 +753,7 @@ public class VegTrain {
 			}
 			//System.out.println("     SET   -->["+setShow+"] " +vSet.size());
 
-			MLNumberSetHash nsh = dataPlane.getNSHash(i);	
+			MLNumberSetHash nsh = dataPlane.getNSHashW(i);	
 			if (nsh == null) continue;
 			Accum sac = nsh.getAccumSetDefault();
 	
@@ -584,6 +789,9 @@ public class VegTrain {
 	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 	/**
 	 * Train and test to determine the learning curve for the model and dataset
+	 * When the dataplane's results depend only on its accumulators, test positions are re-predicted
+	 * only as training reaches their vectors; these tests no longer bump the dataplane's recall 
+	 * miss counters at each sample point.
 	 * 
 	 * @param vML VegML instance
 	 * @param minWindow minimum window to try or -1 for any
@@ -608,20 +816,17 @@ public class VegTrain {
 		int ws = minWindow;
 		for (;ws<=maxWindow;ws++) {
 			System.out.print("  Window["+ws+"] ");
-			String tmpfn = vML.getCfgDefaultDTag()+"-lc-"+ws+"-temp.veg";
 			dp.clearCfgNS();
 			dp.setCfgWindowSize(ws);
 			dp.setCfgFrameFocus(ws/2);
 			System.out.print("=");
 			dp.resetNSAndData();
 			System.out.print(">");
-			vML.save(tmpfn);
 			
 			List<Integer> pl = trainDataSetsLearningCurve(vML, true, dataSkip, trainDs, testDs, realTotal);
 			
 			System.out.println(" samples["+pl.size()+"] ["+pl.get(0)+" - "+pl.get(pl.size()-1)+"]");
 			passLists.add(pl);
-			VFileUtil.delFile(tmpfn);
 		}
 		System.out.println("COMPLETE ");
 	
@@ -644,6 +849,10 @@ public class VegTrain {
 		ts.start();
 		int position = 0;
 		
+		// only the test positions a trained token can change are predicted again
+		MLCurveEval curve = null;
+		if (MLCurveEval.canUse(dataPlane)) curve = new MLCurveEval(dataPlane, testDs);
+		
 		// for each DataSet
 		for (int set=0;set<trainDs.size();set++) {			
 			if (showMinProgress) {
@@ -665,7 +874,7 @@ public class VegTrain {
 					continue;
 				}
 
-				trainFocus(dataPlane, frame, vvect);
+				if (trainFocus(dataPlane, frame, vvect) && curve != null) curve.trained(frame);
 				valueOut.add((long)vvect[0]);
 				ts.total++;
 				
@@ -677,12 +886,21 @@ public class VegTrain {
 					else eval = false;
 				}
 				if (eval) {
-					VResultSet resXCur = VegTest.testSets(vML, dataPlane.getDimensionTag(), dataPlane.getTag(), testDs);
+					int passTotal, failTotal;
+					if (curve != null) {
+						curve.eval();
+						passTotal = curve.getPassTotal();
+						failTotal = curve.getFailTotal();
+					} else {
+						VResultSet resXCur = VegTest.testSets(vML, dataPlane.getDimensionTag(), dataPlane.getTag(), testDs);
+						passTotal = resXCur.passTotal;
+						failTotal = resXCur.failTotal;
+					}
 					if (realTotal > 0) {
 						// the fail count is real
-						passList.add(realTotal-resXCur.failTotal);
+						passList.add(realTotal-failTotal);
 					} else {
-						passList.add(resXCur.passTotal);	
+						passList.add(passTotal);	
 					}
 					//if (showMinProgress) System.out.println(" w["+dataPlane.getCfgWindowSize()+"][@"+position+"] => " + String.format("%.4f", resXCur.getPassPercent(null)) + "%");
 				}
@@ -691,6 +909,7 @@ public class VegTrain {
 		}
 		dataPlane.removeAllEmptyAccum();
 		ts.end();
+		VegMetrics.trained(ts);
 		return passList;
 	}
 
@@ -707,12 +926,15 @@ public class VegTrain {
 	 * @return true if value trained
 	 */
 	private static boolean trainFocus(final VDataPlane dp, final VFrame frame, final Long [] valueIds) {
-		dp.getVegML().incCount();
+		// concurrent training: shared default counts are kept per thread until flush
+		final MLTrainCounts tc = frame.getTrainCounts();
+		if (tc != null) tc.incCount();
+		else dp.getVegML().incCount();
 
 		if (dp.getCfgNonValue() == valueIds[0] && valueIds.length == 1) return false; // nope
 		
 		// single pass vector gen and check
-		VectorToVid.vectSetGen(dp.getNSMapVectorPositions(), dp.getNSMapVectorLength(), frame.getFrameFull(), frame.getVectSpace(), dp.isNoEmptyElements(), dp.getExceptVectNumber());				
+		VectorToVid.vectSetGen(dp.getVidPlan(), frame.getFrameFull(), frame.getVectSpace(), frame.getVidState());				
 
 		// check training filter for identity only
 		// need to create / add to total on context numberSets; not add value
@@ -721,13 +943,13 @@ public class VegTrain {
 		
 		if (dp.isCfgSaveChildVids() && !filtered) {
 			// generate child Vids here
-			VectorToVid.vectSetGen(dp.getNSChildMapVectorPositions(), dp.getNSChildMapVectorLength(), frame.getFrameFull(), frame.getVectSpaceCh(), dp.isNoEmptyElements(), dp.getExceptVectNumber());		
+			VectorToVid.vectSetGen(dp.getVidPlanChild(), frame.getFrameFull(), frame.getVectSpaceCh(), frame.getVidStateCh());		
 		}
 			
 		// get or add full set, get vsid to use
 		long fvid = -1;
 		if (dp.getCfgNSVectNumFullNumber() >= 0) fvid = frame.getVectSpace()[dp.getCfgNSVectNumFullNumber()];	
-		MLNumberSetHash fnsh = dp.getNSHash(dp.getCfgNSFullNumber());
+		MLNumberSetHash fnsh = dp.getNSHashW(dp.getCfgNSFullNumber());
 		
 		// if predicting at position: no sets that include that position 
 		// use valueFocus or default
@@ -759,8 +981,13 @@ public class VegTrain {
 					else vsid = vs.getVectSetId();
 				}
 			} else if (fnsh != null) {
+				Accum vs = null;
+				if (tc != null) vs = fnsh.addCountConcurrent(accumFVid, accumFValue);
+				if (vs != null) {
+					vsid = vs.getVectSetId();
+				} else {
 				synchronized (fnsh) {
-				Accum vs = fnsh.addCount(accumFVid, accumFValue);	
+				vs = fnsh.addCount(accumFVid, accumFValue);	
 				if (vs == null) {
 					// make this variable to improve mem/performance for the set
 					vs = dp.getAccumulator();			
@@ -778,8 +1005,17 @@ public class VegTrain {
 					vsid = vs.getVectSetId();
 				}
 				}
+				}
 			}
-						
+			
+			if (tc != null) {
+				// per thread counts
+				if (!filtered) tc.addDefault(valueId);
+				if (fnsh != null) {
+					if (!filtered) tc.addSetDefault(dp.getCfgNSFullNumber(), accumFValue);	
+					else tc.addSetDefaultTotal(dp.getCfgNSFullNumber(), 1);
+				}
+			} else {
 			// defAccumulator accounting
 			if (!filtered) dp.getAccumDefault().addCount(valueId);
 			//else dp.getAccumDefault().adjustTotalInc(1);
@@ -789,6 +1025,7 @@ public class VegTrain {
 				if (!filtered) fnsh.getAccumSetDefault().addCount(accumFValue);	
 				else fnsh.getAccumSetDefault().adjustTotalInc(1);
 			}
+			}
 			
 			//
 			// all subsets add a vector accum value
@@ -804,11 +1041,16 @@ public class VegTrain {
 				}
 											
 				// add direct for position (in window)
-				MLNumberSetHash nsh = dp.getNSHash(setNumber);
+				MLNumberSetHash nsh = dp.getNSHashW(setNumber);
 					
 				// set probability
-				if (!filtered) nsh.getAccumSetDefault().addCount(valueId);
-				else nsh.getAccumSetDefault().adjustTotalInc(1);
+				if (tc != null) {
+					if (!filtered) tc.addSetDefault(setNumber, valueId);
+					else tc.addSetDefaultTotal(setNumber, 1);
+				} else {
+					if (!filtered) nsh.getAccumSetDefault().addCount(valueId);
+					else nsh.getAccumSetDefault().adjustTotalInc(1);
+				}
 			
 				// get the Vid to set in the accumulator vectCode
 				long accumVid = vid;
@@ -819,6 +1061,15 @@ public class VegTrain {
 					accumVid = valueId;
 				} 
 				
+				// concurrent: update existing accumulator without the numberSet lock
+				if (tc != null) {
+					if (filtered) {
+						if (nsh.addTotalConcurrent(accumVid) != null) continue;
+					} else {
+						if (nsh.addCountConcurrent(accumVid, accumValue) != null) continue;
+					}
+				}
+				
 				synchronized (nsh) {
 				if (filtered) {
 					// just add to total
@@ -33,6 +33,7 @@
 package vegml;
 
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 
@@ -671,6 +672,23 @@ public class VegTune {
 	 * @return
 	 */
 	public static long reduceRedundant(VegML vML, String dimensionTag, String dataPlaneTag, boolean retainNormalcy) {
+		return reduceRedundant(vML, dimensionTag, dataPlaneTag, retainNormalcy, false);
+	}
+	
+	/**
+	 * Reduce remove redundant sets between superset and subset that have same result
+	 * with dryRun nothing is removed: the values and accumulators that would be removed and 
+	 * an estimate of the memory reclaimed are reported
+	 * NOTE: an entangled dataplane is de-entangled and re-entangled, also for a dry run
+	 * 
+	 * @param vML VegML instance
+	 * @param dimensionTag dataplane dimension tag
+	 * @param dataPlaneTag dataplane tag
+	 * @param retainNormalcy if true don't reduce identity or fullest numberSets
+	 * @param dryRun if true only report what would be reduced
+	 * @return count of values removed (or would be removed)
+	 */
+	public static long reduceRedundant(VegML vML, String dimensionTag, String dataPlaneTag, boolean retainNormalcy, boolean dryRun) {
 		if (vML.getInCount() < 1) return 0;
 		if (!vML.isCfgSaveVectSets()) {
 			System.out.println("   START reduceRedundant["+dimensionTag+"/"+dataPlaneTag+"] FAILED must have saveVectSets on");
@@ -685,7 +703,7 @@ public class VegTune {
 		VDataPlane dpix = vML.getDataPlane(dimensionTag, dataPlaneTag);
 		if (dpix == null) return -1;
 		
-		long rCnt = 0;
+		long rCnt = 0, rAcCnt = 0;
 
 		int cCnt = 0, aCnt = 0;
 		for (int i=dpix.getCfgWindowSize();i>1;i--) {
@@ -695,12 +713,13 @@ public class VegTune {
 		}
 		
 		boolean ent = dpix.isEntangled();
+		String drs = dryRun ? " DryRun" : "";
 		if (ent) {
 			// deentangle
 			vML.deentanglement(dpix);
-			if (vML.isCfgShowProgress()) System.out.print("   START reduceRedundant["+dpix.getDimensionTag()+"/"+dpix.getTag()+"] Entangled sets[" + dpix.getNSCount()+"] .");
+			if (vML.isCfgShowProgress()) System.out.print("   START reduceRedundant"+drs+"["+dpix.getDimensionTag()+"/"+dpix.getTag()+"] Entangled sets[" + dpix.getNSCount()+"] .");
 		} else {
-			if (vML.isCfgShowProgress()) System.out.print("   START reduceRedundant["+dpix.getDimensionTag()+"/"+dpix.getTag()+"] sets[" + dpix.getNSCount()+"] .");
+			if (vML.isCfgShowProgress()) System.out.print("   START reduceRedundant"+drs+"["+dpix.getDimensionTag()+"/"+dpix.getTag()+"] sets[" + dpix.getNSCount()+"] .");
 		}
 		
 		/////////////////////////////////////////////////
@@ -713,11 +732,14 @@ public class VegTune {
 		 *  
 		 *  - we can get the actual direct value in each set
 		 *  	- take the superset and get the subset vector from the values 
+		 *  
+		 * A numberSet only changes itself and reads sets one smaller: each step down the lattice 
+		 * is done in parallel, the steps in order
 		 */
-		//this.print(true, true);
-		// process this sets in steps down
+		SubsetLattice lattice = new SubsetLattice(dpix);
 		for (int i=dpix.getCfgWindowSize();i>1;i--) {
 			//System.out.println(" WW["+i+"]");
+			List<Integer> nsl = new ArrayList<>();
 			for (int ns=0;ns<dpix.getNSCount();ns++) {			
 				MLNumberSetHash nsh = dpix.getNSHash(ns);			
 				if (nsh == null || nsh.size() < 1 || nsh.isTurnedOff()) continue;
@@ -725,15 +747,24 @@ public class VegTune {
 				if (numberSet.size() != i) continue;
 				if (noFullest && ns == dpix.getCfgNSFullNumber()) continue;
 				if (noIdentity && ns == dpix.getCfgNSIdentityNumber()) continue;
-
-				rCnt += reduceSubsetsWork(dpix, ns);
+				nsl.add(ns);
 			}
+			if (nsl.size() < 1) continue;
+			long [] r = MLThreadUtil.runReduceSubsets(dpix, nsl, lattice, dryRun);
+			rCnt += r[0];
+			rAcCnt += r[1];
 		}
 		
 		if (ent) {
 			// reentangle
 			vML.entangle(dpix);
 		}
+		if (dryRun) {
+			long mem = (rCnt * EST_VALUE_BYTES) + (rAcCnt * EST_ACCUM_BYTES);
+			if (vML.isCfgShowProgress()) System.out.println(".. COMPLETE");
+			System.out.println("   reduceRedundant DryRun["+dpix.getDimensionTag()+"/"+dpix.getTag()+"] values["+rCnt+"] accumulators["+rAcCnt+" of "+aCnt+"] reclaim[~"+String.format("%.2f", (double)mem/(1024*1024))+" MB]");
+			return rCnt;
+		}
 		for (int i=dpix.getCfgWindowSize();i>1;i--) {
 			MLNumberSetHash nsh = dpix.getNSHash(i);			
 			if (nsh == null) continue;
@@ -747,111 +778,143 @@ public class VegTune {
 		}
 		return rCnt;
 	}
+	
+	// approximate heap for dry run reports: an accumulator with its slot, and a value in it
+	private static final int EST_ACCUM_BYTES = 96;
+	private static final int EST_VALUE_BYTES = 24;
+
+	//
+	// the numberSet subset lattice for a dataplane: for each numberSet the sets one smaller that are
+	// its subsets (getSubsetsOrder() order) and where each subset element is in the superset, so the
+	// subset vector is taken from the accumulator's retained vector set
+	//
+	static class SubsetLattice {
+		final int [][] subsets;		// [ns][] subset numberSets
+		final int [][][] subPos;	// [ns][subset][] position in the superset
+		
+		SubsetLattice(VDataPlane dp) {
+			List<List<Integer>> nss = dp.getNSs();
+			subsets = new int[nss.size()][];
+			subPos = new int[nss.size()][][];
+			for (int ns=0;ns<nss.size();ns++) {
+				List<Integer> superset = nss.get(ns);
+				if (superset == null || superset.size() < 2) continue;
+				List<Integer> subOrder = MLNumberSetUtil.getSubsetsOrder(nss, ns, superset.size()-1);
+				subsets[ns] = new int[subOrder.size()];
+				subPos[ns] = new int[subOrder.size()][];
+				for (int s=0;s<subOrder.size();s++) {
+					int ks = subOrder.get(s);
+					List<Integer> subset = nss.get(ks);
+					subsets[ns][s] = ks;
+					int [] pos = new int[subset.size()];
+					for (int i=0;i<subset.size();i++) {
+						for (int k=0;k<superset.size();k++) {
+							if (superset.get(k).intValue() == subset.get(i).intValue()) pos[i] = k;
+						}
+					}
+					subPos[ns][s] = pos;
+				}
+			}
+		}
+	}
+	
 	// reduce children
 	private static final int MIN_TOTAL_REDUCE = 4;
-	private static long reduceSubsetsWork(VDataPlane dataPlane, int numberSet) {
-		// this needs to be threaded to improve perfomance... and maybe a bit of thought too				
+	// returns {values removed, accumulators removed}; with dryRun nothing is changed
+	static long [] reduceSubsetsWork(VDataPlane dataPlane, int numberSet, SubsetLattice lattice, boolean dryRun) {
 		// each of these is a different set where i == setNumber		
+		long [] rCnt = new long[2];
 
 		MLNumberSetHash nsh = dataPlane.getNSHash(numberSet);
-		if (nsh == null || nsh.size() < 1 || nsh.isTurnedOff()) return 0;
-		if (nsh.getNSSize() < 2) return 0;
+		if (nsh == null || nsh.size() < 1 || nsh.isTurnedOff()) return rCnt;
+		if (nsh.getNSSize() < 2) return rCnt;
+		if (!dryRun) nsh.own();
 				
 		// get the superset (this slots set) for this iteration
 		List<Integer> superset = dataPlane.getNS(numberSet);
-		if (superset == null) return 0;
+		if (superset == null) return rCnt;
+		int [] subOrder = lattice.subsets[numberSet];
+		if (subOrder == null || subOrder.length == 0) return rCnt;
 	//	System.out.println("   RedundentSet["+dataPlane.getNSFormatString(numberSet)+"]");
-
-		long rCnt = 0;
+		
+		// the subset hashes
+		MLNumberSetHash [] snshs = new MLNumberSetHash[subOrder.length];
+		for (int s=0;s<subOrder.length;s++) snshs[s] = dataPlane.getNSHash(subOrder[s]);
+		int [] sVectSet = new int[superset.size()-1];
+		MLVectSetMap vsm = dataPlane.getVegML().vectSetMap;
 				
 		// get list
-		List<Accum> acList = nsh.getListSorted();
-		Object [] acArray = acList.toArray();	// this is exponentially faster
-		acList.clear();
-		acList = null;
+		List<Accum> acArray = nsh.getListSorted();
 		HashMap<Long, Integer> mergeCnt = new HashMap<>();
 		
 		//System.out.println("   RedundentSet["+dataPlane.getNSFormatString(numberSet)+"] ac: " + acArray.length);
 
 		/////////////////////////////
 		// for each accumulator in this numberSet
-		for (int i=0;i<acArray.length;i++) {
-			Accum ac = (Accum)acArray[i];
-			if (ac == null) continue;
+		for (int i=0;i<acArray.size();i++) {
+			Accum ac = acArray.get(i);
 			//System.out.println("     accum["+i+"]");
 			if (ac.getTotal() < MIN_TOTAL_REDUCE) continue; // MIN HACK
 			
-			// each of these is a different set where i == setNumber
-			// we can map what sets are subsets of the others to determine where exactly to get the subsets from... makeing it fast						
 			List<ValProb> vpl = ac.getValPs();
 			mergeCnt.clear();
 			
-			// through the other number sets
-			// get list from DataPlane numbersets, with correct numbers, sorted and just size-1
-			List<Integer> subOrder = MLNumberSetUtil.getSubsetsOrder(dataPlane.getNSs(), numberSet, superset.size()-1);
-			if (subOrder == null || subOrder.size() == 0) continue;
-			//System.out.println("   RedundentSet["+dataPlane.getNSFormatString(numberSet)+"] ac: " + acArray.length + " => " + subOrder.size());
+			// the vector set for this accumulator: one for all subsets
+			int [] vectSet = vsm.getBase(ac.getVectSetId());
+			if (vectSet != null && vectSet.length < superset.size()) vectSet = null;
 			
 			/////////////////////////////
 			// for each subset of this number set that is 1 element smaller
-			for (Integer sorder:subOrder) {
-				int ks = sorder.intValue();				
-				MLNumberSetHash snsh = dataPlane.getNSHash(ks);
+			for (int s=0;s<subOrder.length;s++) {
+				MLNumberSetHash snsh = snshs[s];
 				if (snsh == null || snsh.size() < 1) continue;
-				List<Integer> subset = dataPlane.getNS(ks);
 
-				//System.out.println("      subSet["+dataPlane.getNSFormatString(numberSet)+"] => ["+dataPlane.getNSFormatString(ks)+"]");
-			
 				// get the vector for this set
-				int [] vectSet = dataPlane.getVegML().getVectorSetForId(ac.getVectSetId(), superset, superset);
-				int [] sVectSet = VegML.makeSubVector(vectSet, superset, subset);
-				long subVector = VectorToVid.toVectorV64(sVectSet);
+				long subVector = 0;
+				if (vectSet != null) {
+					int [] pos = lattice.subPos[numberSet][s];
+					for (int k=0;k<pos.length;k++) sVectSet[k] = vectSet[pos[k]];
+					subVector = VectorToVid.toVectorV64(sVectSet);
+				}
 				Accum lvs = snsh.get(subVector);		
 				if (lvs == null) continue;	// NOT HERE
-								
-				if (error_checking) {
+				
+				if (error_checking && vectSet != null) {
 					int [] lvectSet = dataPlane.getVegML().getVectorSetForId(lvs.getVectSetId(), superset, superset);
 
 					// check if exact subset: value check
 					if (!MLNumberSetUtil.isSubVectorSet(vectSet, lvectSet)) {
-						System.out.println("  ERROR   vector Collision["+ subset.size()+"] SETS["+MLNumberSetUtil.setToString(lvectSet)+"]["+MLNumberSetUtil.setToString(sVectSet)+"]  VECTS["+ subVector+"]["+VectorToVid.toVectorV64(lvectSet)+"] ");
+						System.out.println("  ERROR   vector Collision["+ sVectSet.length+"] SETS["+MLNumberSetUtil.setToString(lvectSet)+"]["+MLNumberSetUtil.setToString(sVectSet)+"]  VECTS["+ subVector+"]["+VectorToVid.toVectorV64(lvectSet)+"] ");
 						continue;
 					}
-					if (DEBUG_REDUCE) System.out.println("      subVectSet["+ subset.size()+"]["+superset.size()+"] ("+MLNumberSetUtil.setToString(vectSet)+" == "+MLNumberSetUtil.setToString(lvectSet)+")");
+					if (DEBUG_REDUCE) System.out.println("      subVectSet["+ sVectSet.length+"]["+superset.size()+"] ("+MLNumberSetUtil.setToString(vectSet)+" == "+MLNumberSetUtil.setToString(lvectSet)+")");
 				}
 
-
 				// check the probabilities
+				int mcnt = 0;
 				for (int u=0;u<vpl.size();u++) {
 					ValProb vp = vpl.get(u);
 					// Check all values
 					if (lvs.getProbability(vp.value) == vp.probability) {
-						//System.out.println("       numS x["+ks+"] vpl["+vpl.size()+"] ["+vp.value+"] " + ac.getDistString());
 						// check count? may be from multiple sources... thus reducing the probability (count) would be correct
-					//	if (vs.getCount(vp.intValue()) == vs.getCount(vp.intValue())) {						
-							// remove if match
-							ac.remove(vp.value);	
-							rCnt++;
-							// increase vp's probability by  x cnt
-							// record info, increase AFTER finished with AC
-							Integer ct = mergeCnt.get(vp.value);
-							if (ct == null) mergeCnt.put(vp.value, 1);
-							else mergeCnt.put(vp.value, ct+1);		
-							// FIXME factor in the numberSet weight
-							
-							//if (DEBUG_REDUCE) System.out.println("  RM_val_su["+keys[k]+"]["+vp.intValue()+"]["+vp.probability+"]");
-					//	} else {
-							// never gets here
-					//		System.out.println("  RM_val_su["+vs.getCount(vp.intValue())+"]["+vs.getCount(vp.intValue())+"]");
-					//	}
+						mcnt++;
+						rCnt[0]++;
+						if (dryRun) continue;
+						// remove if match
+						ac.remove(vp.value);	
+						// increase vp's probability by  x cnt
+						// record info, increase AFTER finished with AC
+						Integer ct = mergeCnt.get(vp.value);
+						if (ct == null) mergeCnt.put(vp.value, 1);
+						else mergeCnt.put(vp.value, ct+1);		
+						// FIXME factor in the numberSet weight
 					}
 				}
 								
 				// remove Accum if empty
-				if (ac.getValueCount() < 1) {
-					//System.out.println(" RM_acc_su["+keys[k]+"]");
-					acArray[i] = null;
-					nsh.removeDirect(ac.getVectorCode());
+				if (mcnt == vpl.size()) {
+					rCnt[1]++;
+					if (!dryRun) nsh.removeDirect(ac.getVectorCode());
 				}
 
 				// JUST ONE SUBSET for a GIVE SUPERSET within a specific SET
@@ -868,7 +931,6 @@ public class VegTune {
 					ac.addCount(val, ccnt*ct);
 				}
 			}
-
 		}
 
 		//System.out.println("     reduceSET_E["+numberSet+" ] size["+hm.size()+"] " + rCnt);
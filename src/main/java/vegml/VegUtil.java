@@ -1011,7 +1011,7 @@ public class VegUtil {
 	 * @param v
 	 * @return true if in it
 	 */
-	private static boolean containsv(long [] valSet, long v) {
+	static boolean containsv(long [] valSet, long v) {
 		for (int i=0; i < valSet.length; i++) {
 			if (valSet[i] == v) return true;
 		}
@@ -0,0 +1,162 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+package vegml.serve;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loopback client for a VegServer and a load generator to measure it
+ */
+public class VegServeClient {
+	private final String base;
+	private int timeoutMs = 30000;
+	
+	/**
+	 * client for the server at host:port
+	 * @param host host
+	 * @param port port
+	 */
+	public VegServeClient(String host, int port) {
+		this.base = "http://"+host+":"+port;
+	}
+	
+	/**
+	 * Set connect and read timeout
+	 * @param timeoutMs timeout in milli seconds
+	 */
+	public void setCfgTimeout(int timeoutMs) {
+		this.timeoutMs = timeoutMs;
+	}
+	
+	/**
+	 * Predict sentences
+	 * 
+	 * @param sentences list of token lists
+	 * @return predicted values for each token of each sentence
+	 * @throws IOException on failure
+	 */
+	public List<List<String>> predict(List<List<String>> sentences) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (List<String> s:sentences) {
+			for (int i=0;i<s.size();i++) {
+				if (i > 0) sb.append(' ');
+				sb.append(s.get(i));
+			}
+			sb.append('\n');
+		}
+		HttpURLConnection con = (HttpURLConnection)new URL(base+"/predict").openConnection();
+		con.setConnectTimeout(timeoutMs);
+		con.setReadTimeout(timeoutMs);
+		con.setDoOutput(true);
+		con.setRequestMethod("POST");
+		con.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+		OutputStream os = con.getOutputStream();
+		os.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+		os.close();
+		int code = con.getResponseCode();
+		if (code != 200) {
+			String err = (con.getErrorStream() != null) ? VegServer.readBody(con.getErrorStream()) : "";
+			throw new IOException("HTTP["+code+"] "+err.trim());
+		}
+		String body = VegServer.readBody(con.getInputStream());
+		return VegServer.parseSentences(body);
+	}
+	
+	/**
+	 * Get the server stats
+	 * @return stats text
+	 * @throws IOException on failure
+	 */
+	public String getStats() throws IOException {
+		HttpURLConnection con = (HttpURLConnection)new URL(base+"/stats").openConnection();
+		con.setConnectTimeout(timeoutMs);
+		con.setReadTimeout(timeoutMs);
+		return VegServer.readBody(con.getInputStream()).trim();
+	}
+	
+	/**
+	 * Generate load: concurrent clients each sending requests of sentences taken in turn from the corpus
+	 * 
+	 * @param clients number of concurrent clients
+	 * @param requests total requests to send
+	 * @param sentencesPerRequest sentences in each request
+	 * @param corpus sentences to send
+	 * @return client side latency stats
+	 */
+	public VegServeStats runLoad(int clients, int requests, int sentencesPerRequest, final List<List<String>> corpus) {
+		final VegServeStats cstats = new VegServeStats();
+		if (corpus == null || corpus.size() < 1) return cstats;
+		final AtomicInteger next = new AtomicInteger(0);
+		List<Thread> tl = new ArrayList<>();
+		for (int c=0;c<clients;c++) {
+			Thread t = new Thread(() -> {
+				int r;
+				while ((r = next.getAndIncrement()) < requests) {
+					List<List<String>> req = new ArrayList<>(sentencesPerRequest);
+					int tokens = 0;
+					for (int i=0;i<sentencesPerRequest;i++) {
+						List<String> s = corpus.get(((r*sentencesPerRequest)+i) % corpus.size());
+						req.add(s);
+						tokens += s.size();
+					}
+					long st = System.nanoTime();
+					try {
+						predict(req);
+						cstats.addRequest((System.nanoTime()-st)/1000, req.size(), tokens);
+					} catch (IOException e) {
+						cstats.addError();
+					}
+				}
+			}, "vegserve-load-"+c);
+			tl.add(t);
+			t.start();
+		}
+		for (Thread t:tl) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		return cstats;
+	}
+}
@@ -0,0 +1,176 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+package vegml.serve;
+
+import java.util.Arrays;
+
+/**
+ * Latency and throughput counters for serving
+ * latencies are kept for the most recent requests to report percentiles
+ */
+public class VegServeStats {
+	private static final int DEF_WINDOW = 65536;
+	
+	private final long [] latency;	// micro seconds, ring
+	private int pos = 0;
+	private int size = 0;
+	private long requests = 0;
+	private long sentences = 0;
+	private long tokens = 0;
+	private long batches = 0;
+	private long errors = 0;
+	private long startTime;
+	
+	/**
+	 * stats with default window of recent latencies
+	 */
+	public VegServeStats() {
+		this(DEF_WINDOW);
+	}
+	
+	/**
+	 * stats for the window size of recent latencies
+	 * @param window number of recent requests to keep latency for
+	 */
+	public VegServeStats(int window) {
+		latency = new long[Math.max(1, window)];
+		startTime = System.currentTimeMillis();
+	}
+	
+	/**
+	 * record a completed request
+	 * @param micros latency in micro seconds
+	 * @param sentenceCount sentences in the request
+	 * @param tokenCount tokens in the request
+	 */
+	public synchronized void addRequest(long micros, int sentenceCount, int tokenCount) {
+		latency[pos] = micros;
+		pos = (pos+1) % latency.length;
+		if (size < latency.length) size++;
+		requests++;
+		sentences += sentenceCount;
+		tokens += tokenCount;
+	}
+	
+	/**
+	 * record a batch processed
+	 */
+	public synchronized void addBatch() {
+		batches++;
+	}
+	
+	/**
+	 * record a failed request
+	 */
+	public synchronized void addError() {
+		errors++;
+	}
+	
+	/**
+	 * clear all counters
+	 */
+	public synchronized void reset() {
+		pos = size = 0;
+		requests = sentences = tokens = batches = errors = 0;
+		startTime = System.currentTimeMillis();
+	}
+	
+	/**
+	 * Get latency at percentile for recent requests
+	 * @param percentile 0 - 100
+	 * @return latency in micro seconds, 0 if none
+	 */
+	public synchronized long getPercentile(double percentile) {
+		if (size == 0) return 0;
+		long [] l = Arrays.copyOf(latency, size);
+		Arrays.sort(l);
+		int idx = (int)Math.ceil((percentile / 100.0) * size) - 1;
+		if (idx < 0) idx = 0;
+		if (idx >= size) idx = size-1;
+		return l[idx];
+	}
+	
+	/**
+	 * Get median latency for recent requests
+	 * @return latency in micro seconds
+	 */
+	public long getP50() {
+		return getPercentile(50);
+	}
+	
+	/**
+	 * Get 99th percentile latency for recent requests
+	 * @return latency in micro seconds
+	 */
+	public long getP99() {
+		return getPercentile(99);
+	}
+	
+	public synchronized long getRequests() {
+		return requests;
+	}
+	public synchronized long getSentences() {
+		return sentences;
+	}
+	public synchronized long getTokens() {
+		return tokens;
+	}
+	public synchronized long getBatches() {
+		return batches;
+	}
+	public synchronized long getErrors() {
+		return errors;
+	}
+	
+	/**
+	 * Get requests per second since start or reset
+	 * @return requests per second
+	 */
+	public synchronized double getRequestRate() {
+		long ms = System.currentTimeMillis() - startTime;
+		if (ms <= 0) return 0;
+		return (double)requests * 1000 / ms;
+	}
+	
+	@Override
+	public String toString() {
+		double avgBatch = 0;
+		synchronized (this) {
+			if (batches > 0) avgBatch = (double)requests / batches;
+		}
+		return "requests["+getRequests()+"] sentences["+getSentences()+"] tokens["+getTokens()+"] errors["+getErrors()+"] batches["+getBatches()+"] "
+				+ "avgBatch["+String.format("%.2f", avgBatch)+"] rate["+String.format("%.1f", getRequestRate())+"/s] "
+				+ "p50["+getP50()+"us] p99["+getP99()+"us]";
+	}
+}
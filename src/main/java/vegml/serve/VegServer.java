@@ -0,0 +1,510 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+
+package vegml.serve;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import vegml.VContext;
+import vegml.VegML;
+import vegml.VegTest;
+import vegml.Data.VDataSet;
+import vegml.Data.VDataSets;
+
+/**
+ * Embedded prediction server for a dataplane
+ * 
+ * HTTP via the JDK httpserver:
+ *   POST /predict  body: one sentence per line, tokens separated by whitespace
+ *                  response: one line per sentence, the predicted value for each token
+ *   GET /stats     latency and throughput
+ *   
+ * Requests are handled on virtual threads when the JDK has them, else on a bounded pool.
+ * Concurrent requests are collected into micro-batches by batch threads and predicted 
+ * with VegTest.predictBatch(); each batch has its own VContext and frames so the only 
+ * shared state is the model. Do not train or tune the model while serving, serve a 
+ * VegML.snapshot() instead and change the original.
+ * At most setCfgQueueMax() requests wait for a batch, more fail as busy (503).
+ */
+public class VegServer {
+	private static final int DEF_PORT = 8090;
+	private static final int DEF_BATCH_MAX = 64;			// requests per batch
+	private static final long DEF_BATCH_WAIT_MICROS = 500;	// max wait to fill a batch
+	private static final int DEF_QUEUE_MAX = 4096;			// requests waiting for a batch
+	/** response for a token with no prediction */
+	public static final String NO_VALUE = "-";
+	
+	private final VegML vML;
+	private final String dimensionTag;
+	private final String dataPlaneTag;
+	
+	private String host = "127.0.0.1";
+	private int port = DEF_PORT;
+	private int batchMax = DEF_BATCH_MAX;
+	private long batchWaitMicros = DEF_BATCH_WAIT_MICROS;
+	private int batchThreads = 1;
+	private int handlerThreads = 0;
+	private int queueMax = DEF_QUEUE_MAX;
+	
+	private HttpServer server = null;
+	private ExecutorService handlers = null;
+	private List<Thread> batchers = null;
+	private volatile BlockingQueue<PredictRequest> queue = new LinkedBlockingQueue<>(DEF_QUEUE_MAX);
+	private volatile boolean running = false;
+	private final VegServeStats stats = new VegServeStats();
+	
+	//
+	// queued request
+	//
+	private static class PredictRequest {
+		final List<List<String>> sentences;
+		final long start;
+		final CompletableFuture<List<List<String>>> result = new CompletableFuture<>();
+		int tokens = 0;
+		
+		PredictRequest(List<List<String>> sentences) {
+			this.sentences = sentences;
+			this.start = System.nanoTime();
+			for (List<String> s:sentences) tokens += s.size();
+		}
+	}
+	
+	/**
+	 * Create a server for the default dataplane of the model
+	 * 
+	 * @param vML model to serve
+	 */
+	public VegServer(VegML vML) {
+		this(vML, vML.getCfgDefaultDTag(), vML.getCfgDefaultDPTag());
+	}
+	
+	/**
+	 * Create a server for a dataplane
+	 * 
+	 * @param vML model to serve
+	 * @param dimensionTag dimension tag
+	 * @param dataPlaneTag dataplane tag
+	 */
+	public VegServer(VegML vML, String dimensionTag, String dataPlaneTag) {
+		this.vML = vML;
+		this.dimensionTag = dimensionTag;
+		this.dataPlaneTag = dataPlaneTag;
+	}
+	
+	/**
+	 * Set the host address to bind to, default is loopback
+	 * @param host host address
+	 */
+	public void setCfgHost(String host) {
+		this.host = host;
+	}
+	public String getCfgHost() {
+		return host;
+	}
+	
+	/**
+	 * Set the port to listen on, 0 for any free port
+	 * @param port port number
+	 */
+	public void setCfgPort(int port) {
+		this.port = port;
+	}
+	
+	/**
+	 * Get the port, if started this is the port bound
+	 * @return port
+	 */
+	public int getCfgPort() {
+		if (server != null) return server.getAddress().getPort();
+		return port;
+	}
+	
+	/**
+	 * Set the max requests collected into a batch
+	 * @param batchMax max requests, 1 for no batching
+	 */
+	public void setCfgBatchMax(int batchMax) {
+		this.batchMax = Math.max(1, batchMax);
+	}
+	public int getCfgBatchMax() {
+		return batchMax;
+	}
+	
+	/**
+	 * Set the max time to wait for more requests once a batch has one
+	 * @param micros wait in micro seconds
+	 */
+	public void setCfgBatchWaitMicros(long micros) {
+		this.batchWaitMicros = Math.max(0, micros);
+	}
+	public long getCfgBatchWaitMicros() {
+		return batchWaitMicros;
+	}
+	
+	/**
+	 * Set the number of threads predicting batches
+	 * @param threads batch thread count
+	 */
+	public void setCfgBatchThreads(int threads) {
+		this.batchThreads = Math.max(1, threads);
+	}
+	public int getCfgBatchThreads() {
+		return batchThreads;
+	}
+	
+	/**
+	 * Set the number of request handler threads
+	 * @param threads thread count, 0 for virtual threads if available else 4 per processor
+	 */
+	public void setCfgHandlerThreads(int threads) {
+		this.handlerThreads = threads;
+	}
+	public int getCfgHandlerThreads() {
+		return handlerThreads;
+	}
+	
+	/**
+	 * Set the max requests waiting for a batch; requests past this fail as busy
+	 * takes effect on start
+	 * @param queueMax max waiting requests
+	 */
+	public void setCfgQueueMax(int queueMax) {
+		this.queueMax = Math.max(1, queueMax);
+	}
+	public int getCfgQueueMax() {
+		return queueMax;
+	}
+	
+	/**
+	 * Get the serving stats
+	 * @return stats
+	 */
+	public VegServeStats getStats() {
+		return stats;
+	}
+	
+	/**
+	 * check if running
+	 * @return true if started
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+	
+	/**
+	 * Start the batch threads and the HTTP listener
+	 * 
+	 * @throws IOException if the port can not be bound
+	 */
+	public synchronized void start() throws IOException {
+		if (running) return;
+		startBatchers();
+		try {
+			server = HttpServer.create(new InetSocketAddress(host, port), 0);
+		} catch (IOException e) {
+			stopBatchers();
+			throw e;
+		}
+		handlers = makeHandlerPool(handlerThreads);
+		server.setExecutor(handlers);
+		server.createContext("/predict", this::handlePredict);
+		server.createContext("/stats", this::handleStats);
+		server.start();
+	}
+	
+	/**
+	 * Start only the batch threads: for in process use of predict()
+	 */
+	public synchronized void startBatchers() {
+		if (running) return;
+		queue = new LinkedBlockingQueue<>(queueMax);
+		running = true;
+		batchers = new ArrayList<>();
+		for (int i=0;i<batchThreads;i++) {
+			Thread t = new Thread(this::batchLoop, "vegserve-batch-"+i);
+			t.setDaemon(true);
+			batchers.add(t);
+			t.start();
+		}
+	}
+	
+	/**
+	 * Stop the listener and the batch threads, pending requests fail
+	 */
+	public synchronized void stop() {
+		if (server != null) {
+			server.stop(0);
+			server = null;
+		}
+		if (handlers != null) {
+			handlers.shutdownNow();
+			handlers = null;
+		}
+		stopBatchers();
+	}
+	
+	private void stopBatchers() {
+		running = false;
+		if (batchers != null) {
+			for (Thread t:batchers) t.interrupt();
+			for (Thread t:batchers) {
+				try {
+					t.join(1000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			batchers = null;
+		}
+		PredictRequest r;
+		while ((r = queue.poll()) != null) r.result.completeExceptionally(new IOException("server stopped"));
+	}
+	
+	/**
+	 * Predict sentences through the batcher, blocks until complete
+	 * 
+	 * @param sentences list of token lists
+	 * @return predicted value strings for each token of each sentence
+	 * @throws IOException if stopped, busy or prediction failed
+	 */
+	public List<List<String>> predict(List<List<String>> sentences) throws IOException {
+		if (!running) throw new IOException("server not running");
+		PredictRequest r = new PredictRequest(sentences);
+		BlockingQueue<PredictRequest> q = queue;
+		if (!q.offer(r)) {
+			stats.addError();
+			throw new IOException("server busy");
+		}
+		// stopped (or restarted) while adding: if the drain missed it nothing will complete it
+		if ((!running || q != queue) && q.remove(r)) {
+			stats.addError();
+			throw new IOException("server stopped");
+		}
+		try {
+			List<List<String>> res = r.result.get();
+			stats.addRequest((System.nanoTime() - r.start) / 1000, sentences.size(), r.tokens);
+			return res;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			stats.addError();
+			throw new IOException("interrupted");
+		} catch (ExecutionException e) {
+			stats.addError();
+			throw new IOException(e.getCause());
+		}
+	}
+	
+	
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	// batching
+	//
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	private void batchLoop() {
+		List<PredictRequest> batch = new ArrayList<>(batchMax);
+		while (running) {
+			try {
+				PredictRequest r = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (r == null) continue;
+				batch.add(r);
+				// fill the batch till max or the wait is up
+				long deadline = System.nanoTime() + (batchWaitMicros * 1000);
+				while (batch.size() < batchMax) {
+					long wait = deadline - System.nanoTime();
+					PredictRequest n = (wait > 0) ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+					if (n == null) break;
+					batch.add(n);
+				}
+			} catch (InterruptedException e) {
+				// stopping
+			}
+			if (batch.size() > 0) {
+				processBatch(batch);
+				batch.clear();
+			}
+		}
+	}
+	
+	//
+	// predict all sentences of the batch in one call
+	//
+	private void processBatch(List<PredictRequest> batch) {
+		try {
+			VDataSets dss = new VDataSets();
+			int total = 0;
+			for (PredictRequest r:batch) {
+				for (List<String> s:r.sentences) {
+					dss.add(new VDataSet(s));
+					total += s.size();
+				}
+			}
+			long [] valueOut = new long[total];
+			if (total > 0) {
+				dss.complete();
+				dss.genVSets();
+				int cnt = VegTest.predictBatch(new VContext(vML), dimensionTag, dataPlaneTag, dss, valueOut, null);
+				if (cnt != total) throw new IllegalStateException("dataplane["+dimensionTag+"/"+dataPlaneTag+"] predicted["+cnt+"] of["+total+"]");
+			}
+			stats.addBatch();
+			
+			int pos = 0;
+			for (PredictRequest r:batch) {
+				List<List<String>> res = new ArrayList<>(r.sentences.size());
+				for (List<String> s:r.sentences) {
+					List<String> vl = new ArrayList<>(s.size());
+					for (int i=0;i<s.size();i++) {
+						String v = vML.getStringMapping(dimensionTag, dataPlaneTag, valueOut[pos]);
+						vl.add((v == null || v.isEmpty()) ? NO_VALUE : v);
+						pos++;
+					}
+					res.add(vl);
+				}
+				r.result.complete(res);
+			}
+		} catch (Exception e) {
+			for (PredictRequest r:batch) r.result.completeExceptionally(e);
+		}
+	}
+	
+	
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	//
+	// HTTP
+	//
+	///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	private void handlePredict(HttpExchange ex) throws IOException {
+		try {
+			if (!"POST".equals(ex.getRequestMethod())) {
+				send(ex, 405, "POST sentences, one per line\n");
+				return;
+			}
+			List<List<String>> sentences = parseSentences(readBody(ex.getRequestBody()));
+			if (sentences.size() < 1) {
+				send(ex, 400, "no sentences\n");
+				return;
+			}
+			List<List<String>> res = null;
+			try {
+				res = predict(sentences);
+			} catch (IOException e) {
+				send(ex, 503, "prediction failed: "+e.getMessage()+"\n");
+				return;
+			}
+			StringBuilder sb = new StringBuilder();
+			for (List<String> vl:res) {
+				for (int i=0;i<vl.size();i++) {
+					if (i > 0) sb.append(' ');
+					sb.append(vl.get(i));
+				}
+				sb.append('\n');
+			}
+			send(ex, 200, sb.toString());
+		} finally {
+			ex.close();
+		}
+	}
+	
+	private void handleStats(HttpExchange ex) throws IOException {
+		try {
+			send(ex, 200, stats.toString()+"\n");
+		} finally {
+			ex.close();
+		}
+	}
+	
+	//
+	// one sentence per line, whitespace separated tokens
+	//
+	static List<List<String>> parseSentences(String body) {
+		List<List<String>> sentences = new ArrayList<>();
+		for (String line:body.split("\n")) {
+			line = line.trim();
+			if (line.isEmpty()) continue;
+			List<String> tl = new ArrayList<>();
+			for (String t:line.split("\\s+")) tl.add(t);
+			sentences.add(tl);
+		}
+		return sentences;
+	}
+	
+	static String readBody(InputStream in) throws IOException {
+		ByteArrayOutputStream bo = new ByteArrayOutputStream();
+		byte [] buf = new byte[8192];
+		int n;
+		while ((n = in.read(buf)) > 0) bo.write(buf, 0, n);
+		return new String(bo.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	private static void send(HttpExchange ex, int code, String body) throws IOException {
+		byte [] b = body.getBytes(StandardCharsets.UTF_8);
+		ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		ex.sendResponseHeaders(code, b.length);
+		OutputStream os = ex.getResponseBody();
+		os.write(b);
+		os.close();
+	}
+	
+	//
+	// virtual threads if this JDK has them (21+), else a bounded pool
+	//
+	static ExecutorService makeHandlerPool(int threads) {
+		if (threads < 1) {
+			try {
+				Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+				return (ExecutorService)m.invoke(null);
+			} catch (Exception e) {
+				// older JDK
+			}
+			threads = Runtime.getRuntime().availableProcessors() * 4;
+		}
+		return Executors.newFixedThreadPool(threads);
+	}
+}
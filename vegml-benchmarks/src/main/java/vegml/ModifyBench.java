@@ -0,0 +1,98 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.annotations.Param;
+
+import vegml.VegTest.TestMod;
+import vegml.VegTest.TestModSet;
+import vegml.Data.VDataSets;
+import vegml.bench.BenchCorpus;
+import vegml.bench.CorpusState;
+
+/**
+ * Modification testing: MLThreadUtil.runTestPredictModify() as the optimizer uses it
+ * each modification turns one numberSet off via its weight
+ * in package vegml as MLThreadUtil is package private
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class ModifyBench {
+	
+	@State(Scope.Benchmark)
+	public static class ModSet {
+		@Param({"8"})
+		public int mods;
+		
+		public VDataPlane dp;
+		public TestModSet tests;
+		public List<VDataSets> dssl;
+		
+		@Setup(Level.Trial)
+		public void setup(CorpusState cs) {
+			dp = cs.trained.getDataPlane(BenchCorpus.DTAG, BenchCorpus.DPTAG);
+			tests = new TestModSet();
+			for (int i=0;i<mods;i++) {
+				double [] ws = dp.getCfgNSWeightsBase();
+				int ns = i % dp.getNSCount();
+				if (ns != dp.getCfgNSIdentityNumber()) ws[ns] = 0;
+				tests.add(dp, new TestMod(ws));
+			}
+			dssl = Collections.singletonList(cs.dss.getTuneDataSets());
+		}
+	}
+	
+	@Benchmark
+	public List<VResultSet> runTestPredictModify(ModSet m) {
+		return MLThreadUtil.runTestPredictModify(m.dp, m.tests, m.dssl, true, false);
+	}
+}
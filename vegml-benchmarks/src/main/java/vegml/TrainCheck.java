@@ -0,0 +1,152 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml;
+
+import java.util.Collections;
+import java.util.List;
+
+import vegml.VegML.AccumType;
+import vegml.Data.VDataSets;
+import vegml.bench.BenchCorpus;
+
+/**
+ * Equality check for the parallel training paths: a model trained on threads or in shards must 
+ * have the same accumulators as the same model trained in sequence
+ * Run with the synthetic corpus for each accumulator type; exits 1 on any difference
+ * in package vegml as MLThreadUtil and MLNumberSetHash are package private
+ * 
+ * 	cmdline# java -cp vegml-benchmarks/target/benchmarks.jar vegml.TrainCheck [tokens] [threads] [runs]
+ */
+public class TrainCheck {
+	
+	public static void main(String [] args) {
+		int tokens = (args.length > 0) ? Integer.parseInt(args[0]) : 50000;
+		int threads = (args.length > 1) ? Integer.parseInt(args[1]) : 8;
+		int runs = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+		
+		int fails = 0;
+		for (int run=0;run<runs;run++) {
+			VDataSets dss = BenchCorpus.makeDataSets(tokens, tokens/20, 12, 17+run);
+			for (AccumType at:AccumType.values()) {
+				int cnt = checkThreaded(dss, at, threads);
+				System.out.println("CHECK threaded["+run+"]["+at+"] threads["+threads+"] diffs["+cnt+"]");
+				if (cnt > 0) fails++;
+				cnt = checkShards(dss, at, threads);
+				System.out.println("CHECK shards["+run+"]["+at+"] shards["+threads+"] diffs["+cnt+"]");
+				if (cnt > 0) fails++;
+			}
+		}
+		System.out.println("CHECK "+((fails == 0) ? "PASS" : "FAIL fails["+fails+"]"));
+		if (fails > 0) System.exit(1);
+	}
+	
+	//
+	// MLThreadUtil.runTrainDataSets() against VegTrain.trainDataSets()
+	//
+	static int checkThreaded(VDataSets dss, AccumType at, int threads) {
+		VegML seq = makeModel(dss, at, 1);
+		VegTrain.trainDataSets(seq, BenchCorpus.DTAG, BenchCorpus.DPTAG, dss.getTrainDataSets());
+		
+		VegML par = makeModel(dss, at, threads);
+		List<VDataSets> dssl = Collections.singletonList(dss.getTrainDataSets());
+		MLThreadUtil.runTrainDataSets(par.getDataPlane(BenchCorpus.DTAG, BenchCorpus.DPTAG), dssl);
+		
+		return compare(seq.getDataPlane(BenchCorpus.DTAG, BenchCorpus.DPTAG), par.getDataPlane(BenchCorpus.DTAG, BenchCorpus.DPTAG), at);
+	}
+	
+	//
+	// VegTrain.train() threaded with shards against VegTrain.trainDataSets(); with a training filter so
+	// some totals are counted with no value
+	//
+	static int checkShards(VDataSets dss, AccumType at, int shards) {
+		VegML seq = makeModel(dss, at, 1);
+		addFilter(seq, at);
+		VegTrain.trainDataSets(seq, BenchCorpus.DTAG, BenchCorpus.DPTAG, dss.getTrainDataSets());
+		
+		VegML par = makeModel(dss, at, shards);
+		addFilter(par, at);
+		par.setCfgTrainShards(shards);
+		VegTrain.train(par, BenchCorpus.DTAG, BenchCorpus.DPTAG, dss.getTrainDataSets(), true);
+		
+		return compare(seq.getDataPlane(BenchCorpus.DTAG, BenchCorpus.DPTAG), par.getDataPlane(BenchCorpus.DTAG, BenchCorpus.DPTAG), at);
+	}
+	
+	static VegML makeModel(VDataSets dss, AccumType at, int threads) {
+		VegML vML = BenchCorpus.makeModel(dss, 5, 0);
+		vML.setCfgThreadCount(threads);
+		vML.setCfgAccumulatorType(BenchCorpus.DTAG, BenchCorpus.DPTAG, at);
+		return vML;
+	}
+	
+	// identity only training for two of the tags
+	// not for the hash map types: AccumIntHm, AccumIntHmCrt and AccumLongHm can't hold a total with no values
+	static void addFilter(VegML vML, AccumType at) {
+		if (at == AccumType.Hash || at == AccumType.HashCrt || at == AccumType.HashLong || at == AccumType.Long) return;
+		VDataPlane dp = vML.getDataPlane(BenchCorpus.DTAG, BenchCorpus.DPTAG);
+		dp.addTrainingFilter(dp.getCfgVToV().toVectGen("T0"), 1);
+		dp.addTrainingFilter(dp.getCfgVToV().toVectGen("T1"), 1);
+	}
+	
+	//
+	// count the accumulators that differ in total or any value count
+	// Boolean keeps the first two values to arrive, so with threads only the totals must match
+	//
+	static int compare(VDataPlane dp, VDataPlane xdp, AccumType at) {
+		boolean totalOnly = (at == AccumType.Boolean);
+		int cnt = compare(dp.getAccumDefault(), xdp.getAccumDefault(), false);
+		for (int i=0;i<dp.getNSCount();i++) {
+			MLNumberSetHash nsh = dp.getNSHash(i), xnsh = xdp.getNSHash(i);
+			if (nsh == null || xnsh == null) {
+				if (nsh != xnsh) cnt++;
+				continue;
+			}
+			if (nsh.size() != xnsh.size()) cnt++;
+			cnt += compare(nsh.getAccumSetDefault(), xnsh.getAccumSetDefault(), false);
+			for (Accum ac:nsh) cnt += compare(ac, xnsh.get(ac.getVectorCode()), totalOnly);
+		}
+		return cnt;
+	}
+	
+	static int compare(Accum ac, Accum xac, boolean totalOnly) {
+		if (ac == null || xac == null) return (ac == xac) ? 0 : 1;
+		if (ac.getTotal() != xac.getTotal()) return 1;
+		if (totalOnly) return 0;
+		if (ac.getValueCount() != xac.getValueCount()) return 1;
+		List<ValProb> vpList = ac.getValPs();
+		if (vpList == null) return 0;
+		for (ValProb vp:vpList) {
+			if (xac.getCount(vp.value) != vp.count) return 1;
+		}
+		return 0;
+	}
+}
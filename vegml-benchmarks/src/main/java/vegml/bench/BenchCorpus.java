@@ -0,0 +1,147 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import vegml.VegML;
+import vegml.VegTrain;
+import vegml.VegML.NSWeightBase;
+import vegml.VDataPlane;
+import vegml.Data.VDataSet;
+import vegml.Data.VDataSetDescriptor;
+import vegml.Data.VDataSetDescriptor.DSDataType;
+import vegml.Data.VDataSetDescriptor.DSSetType;
+import vegml.Data.VDataSets;
+
+/**
+ * Synthetic corpus and model generation for the benchmarks
+ * Everything is generated in-process from a seed so the benchmarks run offline and repeat exactly
+ * 
+ * The corpus is tagged text: words are drawn with a skewed (zipf like) frequency from the vocabulary, 
+ * each word has a base tag, a third of the time the tag is shifted by the prior tag and a tenth of the time it is noise.
+ * This gives the model both context and identity relations to learn, like part-of-speech text.
+ */
+public final class BenchCorpus {
+	public static final String DTAG = "text";
+	public static final String DPTAG = "tag";
+	
+	private BenchCorpus() {
+	}
+	
+	/**
+	 * make a tagged corpus split 70/15/15 into train/tune/test
+	 * 
+	 * @param tokens total tokens to generate
+	 * @param vocabulary distinct words
+	 * @param tagCount distinct tags
+	 * @param seed random seed
+	 * @return datasets with vectors generated
+	 */
+	public static VDataSets makeDataSets(int tokens, int vocabulary, int tagCount, long seed) {
+		Random r = new Random(seed);
+		VDataSetDescriptor dsd = new VDataSetDescriptor();
+		String [] tags = new String[tagCount];
+		for (int i=0;i<tagCount;i++) {
+			tags[i] = "T"+i;
+			dsd.addDataTag(tags[i], DSSetType.Open, DSDataType.String, null);
+		}
+		
+		VDataSets dss = new VDataSets(dsd, null);
+		int cnt = 0;
+		while (cnt < tokens) {
+			int len = Math.min(5 + r.nextInt(20), tokens - cnt);
+			List<String> d = new ArrayList<>(len), v = new ArrayList<>(len);
+			int prev = 0;
+			for (int i=0;i<len;i++) {
+				double x = r.nextDouble();
+				int w = (int)(x * x * x * vocabulary);
+				int t = w % tagCount;
+				if (r.nextInt(3) == 0) t = (t + prev) % tagCount;
+				if (r.nextInt(10) == 0) t = r.nextInt(tagCount);
+				d.add("w"+w); 
+				v.add(tags[t]);
+				prev = t;
+			}
+			dss.add(new VDataSet(d, v));
+			cnt += len;
+		}
+		dss.setSplitPercent(70, 15, 15);
+		dss.genVSets();
+		return dss;
+	}
+	
+	/**
+	 * make an empty model for the corpus
+	 * 
+	 * @param dss datasets to model
+	 * @param window window size
+	 * @param nsCount numberSets to keep, 0 or less for all of the window's numberSets
+	 * @return new model with dataplane DTAG/DPTAG
+	 */
+	public static VegML makeModel(VDataSets dss, int window, int nsCount) {
+		VegML vML = new VegML("bench");
+		vML.addDataPlane(DTAG, DPTAG, window, dss.getDefinition().getTagCount(), NSWeightBase.Distance);
+		vML.addStringMapping(DTAG, DPTAG, dss.getDefinition().getTagsStrings());
+		vML.setCfgDataDefinition(DTAG, DPTAG, dss.getDefinition());
+		
+		// keep identity, full and the first numberSets up to the count
+		VDataPlane dp = vML.getDataPlane(DTAG, DPTAG);
+		if (nsCount > 0 && nsCount < dp.getNSCount()) {
+			int keep = 0;
+			for (int i=0;i<dp.getNSCount();i++) {
+				if (i == dp.getCfgNSIdentityNumber() || i == dp.getCfgNSFullNumber()) continue;
+				if (keep < (nsCount-2)) keep++;
+				else vML.setCfgNSTurnedOff(DTAG, DPTAG, i, true);
+			}
+			vML.removeCfgNSTurnedOff(DTAG, DPTAG);
+		}
+		return vML;
+	}
+	
+	/**
+	 * make and train a model with the corpus training sets
+	 * 
+	 * @param dss datasets to train with
+	 * @param window window size
+	 * @param nsCount numberSets to keep, 0 or less for all
+	 * @return trained model
+	 */
+	public static VegML makeTrainedModel(VDataSets dss, int window, int nsCount) {
+		VegML vML = makeModel(dss, window, nsCount);
+		VegTrain.trainDataSets(vML, DTAG, DPTAG, dss.getTrainDataSets());
+		return vML;
+	}
+}
@@ -0,0 +1,102 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import vegml.VegML;
+import vegml.Data.VDataSets;
+
+/**
+ * Shared benchmark state: the synthetic corpus and a model trained on it
+ * Sizes are JMH parameters; override on the command line
+ *   java -jar benchmarks.jar -p tokens=200000 -p vocabulary=20000 -p window=7 -p nsCount=40
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+	
+	@Param({"50000"})
+	public int tokens;
+	
+	@Param({"5000"})
+	public int vocabulary;
+	
+	@Param({"12"})
+	public int tags;
+	
+	@Param({"5"})
+	public int window;
+	
+	// 0 for all numberSets of the window
+	@Param({"0"})
+	public int nsCount;
+	
+	public VDataSets dss;
+	public VegML trained;
+	public File modelFile;
+	
+	@Setup(Level.Trial)
+	public void setupCorpus() throws IOException {
+		dss = BenchCorpus.makeDataSets(tokens, vocabulary, tags, 42);
+		trained = BenchCorpus.makeTrainedModel(dss, window, nsCount);
+		modelFile = File.createTempFile("vegml-bench", ".veg");
+		trained.saveSilent(modelFile.getAbsolutePath());
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDownCorpus() {
+		if (modelFile != null) modelFile.delete();
+	}
+	
+	/**
+	 * new empty model for the corpus
+	 */
+	public VegML newModel() {
+		return BenchCorpus.makeModel(dss, window, nsCount);
+	}
+	
+	/**
+	 * fresh copy of the trained model from the saved file
+	 */
+	public VegML loadTrained() {
+		return VegML.load(modelFile.getAbsolutePath());
+	}
+}
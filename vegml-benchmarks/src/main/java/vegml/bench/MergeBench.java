@@ -0,0 +1,107 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.annotations.TearDown;
+
+import vegml.VegML;
+import vegml.VegTrain;
+import vegml.Data.VDataSets;
+
+/**
+ * Merge: VegML.merge() of two models each trained on half the training sets
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class MergeBench {
+	
+	@State(Scope.Benchmark)
+	public static class HalfModels {
+		public File fileA, fileB;
+		
+		@Setup(Level.Trial)
+		public void setup(CorpusState cs) throws IOException {
+			List<VDataSets> halves = cs.dss.getTrainDataSets().getDataSetSplit(2);
+			fileA = File.createTempFile("vegml-bench-a", ".veg");
+			fileB = File.createTempFile("vegml-bench-b", ".veg");
+			VegML a = cs.newModel();
+			VegTrain.trainDataSets(a, BenchCorpus.DTAG, BenchCorpus.DPTAG, halves.get(0));
+			a.saveSilent(fileA.getAbsolutePath());
+			VegML b = cs.newModel();
+			VegTrain.trainDataSets(b, BenchCorpus.DTAG, BenchCorpus.DPTAG, halves.get(1));
+			b.saveSilent(fileB.getAbsolutePath());
+		}
+		@TearDown(Level.Trial)
+		public void tearDown() {
+			fileA.delete();
+			fileB.delete();
+		}
+	}
+	
+	@State(Scope.Thread)
+	public static class MergePair {
+		public VegML a, b;
+		
+		@Setup(Level.Invocation)
+		public void setup(HalfModels h) {
+			a = VegML.load(h.fileA.getAbsolutePath());
+			b = VegML.load(h.fileB.getAbsolutePath());
+		}
+	}
+	
+	@Benchmark
+	public VegML merge(MergePair p) {
+		p.a.merge(p.b);
+		return p.a;
+	}
+}
@@ -0,0 +1,87 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.openjdk.jmh.annotations.Param;
+
+import vegml.VResultSet;
+import vegml.VegML;
+import vegml.VegTest;
+
+/**
+ * Prediction: VegTest.testSets() over the corpus tune sets on non-solid and solid dataplanes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TestBench {
+	
+	@State(Scope.Benchmark)
+	public static class TestModel {
+		@Param({"false", "true"})
+		public boolean solid;
+		
+		public VegML vML;
+		
+		@Setup(Level.Trial)
+		public void setup(CorpusState cs) {
+			if (solid) {
+				vML = cs.loadTrained();
+				vML.makeSolid(BenchCorpus.DTAG, BenchCorpus.DPTAG);
+			} else {
+				vML = cs.trained;
+			}
+		}
+	}
+	
+	@Benchmark
+	public VResultSet testSets(CorpusState cs, TestModel m) {
+		return VegTest.testSets(m.vML, BenchCorpus.DTAG, BenchCorpus.DPTAG, cs.dss.getTuneDataSets());
+	}
+}
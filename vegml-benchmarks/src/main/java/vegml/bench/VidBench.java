@@ -0,0 +1,130 @@
+ /*************************************************************************
+ * VegML version 1.0.0
+ * __________________
+ * 
+ * Copyright (C) [2022] Aaron Ledbetter
+ * All Rights Reserved.
+ * 
+ * NOTICE: All information contained herein is, and remains
+ * the property of Aaron Ledbetter. The intellectual and technical 
+ * concepts contained herein are proprietary to Aaron Ledbetter and 
+ * may be covered by U.S. and Foreign Patents, patents in process, 
+ * and are protected by trade secret or copyright law. 
+ *
+ * @author Aaron Ledbetter
+ */
+/**
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+
+package vegml.bench;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import vegml.VDataPlane;
+import vegml.Data.VectorToVid;
+import vegml.Data.VectorToVid.VidPlan;
+import vegml.Data.VectorToVid.VidState;
+
+/**
+ * Vid generation: VectorToVid.vectSetGen() per frame for the trained model's numberSets
+ * frames slide over a token stream as they do in a sentence; the plan version reuses vids from the prior frame,
+ * the map version is the per frame generation
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class VidBench {
+	static final int FRAMES = 4096;
+	
+	@State(Scope.Thread)
+	public static class Frames {
+		public boolean [][][] nsMap;
+		public int [] nsMapLen;
+		public VidPlan plan;
+		public VidState state;
+		public int [][][] frames;
+		public long [] vectSpace;
+		
+		@Setup(Level.Trial)
+		public void setup(CorpusState cs) {
+			VDataPlane dp = cs.trained.getDataPlane(BenchCorpus.DTAG, BenchCorpus.DPTAG);
+			int window = dp.getCfgWindowSize();
+			int nsCount = dp.getNSCount();
+			
+			// single tier map of the numberSets: [vector][window][tier]
+			nsMap = new boolean[nsCount][window][1];
+			nsMapLen = new int[nsCount];
+			for (int i=0;i<nsCount;i++) {
+				List<Integer> ns = dp.getNS(i);
+				for (Integer p:ns) nsMap[i][p][0] = true;
+				nsMapLen[i] = ns.size();
+			}
+			plan = VectorToVid.makeVidPlan(nsMap, nsMapLen, false, -1);
+			state = new VidState();
+			vectSpace = new long[nsCount];
+			
+			// frames sliding over one token stream
+			Random r = new Random(42);
+			int [] stream = new int[FRAMES + window];
+			for (int i=0;i<stream.length;i++) stream[i] = 1 + r.nextInt(cs.vocabulary);
+			frames = new int[FRAMES][1][window];
+			for (int f=0;f<FRAMES;f++) {
+				System.arraycopy(stream, f, frames[f][0], 0, window);
+			}
+		}
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public long vectSetGenPlan(Frames fs) {
+		long sum = 0;
+		fs.state.reset();
+		for (int f=0;f<FRAMES;f++) {
+			VectorToVid.vectSetGen(fs.plan, fs.frames[f], fs.vectSpace, fs.state);
+			sum += fs.vectSpace[0];
+		}
+		return sum;
+	}
+	
+	@Benchmark
+	@OperationsPerInvocation(FRAMES)
+	public long vectSetGenMap(Frames fs) {
+		long sum = 0;
+		for (int f=0;f<FRAMES;f++) {
+			VectorToVid.vectSetGen(fs.nsMap, fs.nsMapLen, fs.frames[f], fs.vectSpace, false, -1);
+			sum += fs.vectSpace[0];
+		}
+		return sum;
+	}
+}